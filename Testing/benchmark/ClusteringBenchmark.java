@@ -0,0 +1,66 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import bll.DocumentClusterer;
+import dto.TermVector;
+
+/**
+ * Clusters a synthetic corpus of topic documents with fork-join pools of
+ * growing size.
+ *
+ * Usage: java benchmark.ClusteringBenchmark [files] [clusters]
+ */
+public class ClusteringBenchmark {
+	private static final int TERMS_PER_FILE = 150;
+	private static final int TOPIC_TERMS = 2000;
+	private static final int COMMON_TERMS = 20000;
+
+	public static void main(String[] args) {
+		int fileCount = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		int clusters = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+		Random random = new Random(42);
+		List<TermVector> vectors = new ArrayList<>();
+		for (int id = 1; id <= fileCount; id++) {
+			int topic = random.nextInt(clusters);
+			Map<Integer, Float> weights = new HashMap<>();
+			while (weights.size() < TERMS_PER_FILE) {
+				int termId = random.nextInt(3) > 0 ? COMMON_TERMS + topic * TOPIC_TERMS + random.nextInt(TOPIC_TERMS)
+						: random.nextInt(COMMON_TERMS);
+				weights.put(termId, 1f + random.nextFloat());
+			}
+			int[] termIds = new int[weights.size()];
+			float[] values = new float[weights.size()];
+			double norm = 0;
+			int i = 0;
+			for (Map.Entry<Integer, Float> weight : weights.entrySet()) {
+				termIds[i] = weight.getKey();
+				values[i] = weight.getValue();
+				norm += values[i] * values[i];
+				i++;
+			}
+			for (i = 0; i < values.length; i++) {
+				values[i] /= Math.sqrt(norm);
+			}
+			vectors.add(new TermVector(id, termIds, values));
+		}
+
+		System.out.println("Files:              " + fileCount + ", clusters: " + clusters);
+		double single = 0;
+		for (int threads = 1; threads <= Runtime.getRuntime().availableProcessors(); threads *= 2) {
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			long start = System.nanoTime();
+			int assigned = new DocumentClusterer(pool, 42).cluster(vectors, clusters).size();
+			double seconds = (System.nanoTime() - start) / 1e9;
+			pool.shutdown();
+			single = threads == 1 ? seconds : single;
+			System.out.println(String.format("%2d threads:         %.1f s (%.1fx), %d files", threads, seconds,
+					single / seconds, assigned));
+		}
+	}
+}
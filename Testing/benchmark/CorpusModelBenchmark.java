@@ -0,0 +1,62 @@
+package benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import dal.CorpusModel;
+
+/**
+ * Builds the corpus model of a synthetic corpus from its text, as a first
+ * start does, then times opening the saved snapshot as a restart does.
+ *
+ * Usage: java benchmark.CorpusModelBenchmark [files] [words per file]
+ */
+public class CorpusModelBenchmark {
+	private static final int VOCABULARY = 50000;
+
+	public static void main(String[] args) throws IOException {
+		int fileCount = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		int wordsPerFile = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+		Random random = new Random(42);
+		Map<Integer, String> contents = new LinkedHashMap<>();
+		for (int i = 1; i <= fileCount; i++) {
+			StringBuilder document = new StringBuilder();
+			for (int w = 0; w < wordsPerFile; w++) {
+				// Skewed towards low ids so the document frequencies look like text
+				int word = (int) (VOCABULARY * Math.pow(random.nextDouble(), 3));
+				document.append("w").append(word).append(' ');
+			}
+			contents.put(i, document.toString());
+		}
+		Path directory = Files.createTempDirectory("corpusmodel");
+		Path path = directory.resolve("corpus.model");
+
+		long start = System.nanoTime();
+		CorpusModel.build(path, contents, 0).close();
+		double buildMillis = (System.nanoTime() - start) / 1e6;
+
+		start = System.nanoTime();
+		CorpusModel model = CorpusModel.open(path);
+		double openMillis = (System.nanoTime() - start) / 1e6;
+		String document = contents.get(1);
+		start = System.nanoTime();
+		double score = model.calculateDocumentTfIdf(document, 1);
+		double scoreMillis = (System.nanoTime() - start) / 1e6;
+		model.close();
+
+		System.out.println("Files:           " + fileCount + ", words per file: " + wordsPerFile);
+		System.out.println(String.format("Snapshot:        %.1f MB", Files.size(directory.resolve("corpus.model.1")) / 1e6));
+		System.out.println(String.format("Build from text: %.0f ms", buildMillis));
+		System.out.println(String.format("Open snapshot:   %.0f ms", openMillis));
+		System.out.println(String.format("Score one file:  %.2f ms (%.4f)", scoreMillis, score));
+		for (File file : directory.toFile().listFiles()) {
+			file.delete();
+		}
+		directory.toFile().delete();
+	}
+}
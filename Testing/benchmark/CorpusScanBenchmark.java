@@ -0,0 +1,82 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import dal.CorpusScanner;
+import dto.CancellationToken;
+import dto.Documents;
+import dto.Pages;
+
+/**
+ * Runs a regex scan over a synthetic in-memory corpus with fork-join pools of
+ * growing size, to show how an unindexed query scales with cores.
+ *
+ * Usage: java benchmark.CorpusScanBenchmark [files] [pagesPerFile]
+ */
+public class CorpusScanBenchmark {
+	private static final int ROUNDS = 5;
+	private static final String LETTERS = "ابتثجحخدذرزسشصضطظعغفقكلمنهوي";
+
+	public static void main(String[] args) throws Exception {
+		int fileCount = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		int pagesPerFile = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+		Random random = new Random(42);
+		List<Documents> files = new ArrayList<>();
+		for (int id = 1; id <= fileCount; id++) {
+			List<Pages> pages = new ArrayList<>();
+			for (int number = 1; number <= pagesPerFile; number++) {
+				pages.add(new Pages(id * pagesPerFile + number, id, number, randomPage(random)));
+			}
+			files.add(new Documents(id, "file" + id + ".txt", "", "", "", pages));
+		}
+
+		Pattern pattern = Pattern.compile("ك[^ ]*ت[^ ]*ب");
+		CorpusScanner.PageMatcher matcher = content -> {
+			Matcher m = pattern.matcher(content);
+			return m.find() ? new int[][] { { m.start() }, { m.end() } } : null;
+		};
+		CorpusScanner.PageSource source = (afterFileId, count) -> {
+			List<Documents> chunk = new ArrayList<>();
+			for (int i = afterFileId; i < files.size() && chunk.size() < count; i++) {
+				chunk.add(files.get(i));
+			}
+			return chunk;
+		};
+
+		System.out.println("Pages:              " + fileCount * pagesPerFile);
+		double single = 0;
+		for (int threads = 1; threads <= Runtime.getRuntime().availableProcessors(); threads *= 2) {
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			CorpusScanner scanner = new CorpusScanner(source, pool);
+			long best = Long.MAX_VALUE;
+			int hits = 0;
+			for (int round = 0; round < ROUNDS; round++) {
+				long start = System.nanoTime();
+				hits = scanner.scan(matcher, Integer.MAX_VALUE, new CancellationToken()).size();
+				best = Math.min(best, System.nanoTime() - start);
+			}
+			pool.shutdown();
+			double millis = best / 1e6;
+			single = threads == 1 ? millis : single;
+			System.out.println(String.format("%2d threads:         %.1f ms (%.1fx), %d hits", threads, millis,
+					single / millis, hits));
+		}
+	}
+
+	private static String randomPage(Random random) {
+		StringBuilder page = new StringBuilder();
+		while (page.length() < 400) {
+			int length = 2 + random.nextInt(6);
+			for (int i = 0; i < length; i++) {
+				page.append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+			}
+			page.append(' ');
+		}
+		return page.toString();
+	}
+}
@@ -0,0 +1,61 @@
+package benchmark;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import dal.FuzzyVocabulary;
+
+/**
+ * Loads a FuzzyVocabulary over a synthetic vocabulary and reports fuzzy lookup latency
+ * for one and two edits.
+ *
+ * Usage: java benchmark.FuzzySearchBenchmark [vocabularySize]
+ */
+public class FuzzySearchBenchmark {
+	private static final int QUERIES = 500;
+	private static final String LETTERS = "ابتثجحخدذرزسشصضطظعغفقكلمنهوي";
+
+	public static void main(String[] args) {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		Random random = new Random(42);
+		String[] words = new String[size];
+		for (int i = 0; i < size; i++) {
+			words[i] = randomWord(random);
+		}
+
+		long start = System.nanoTime();
+		FuzzyVocabulary vocabulary = new FuzzyVocabulary();
+		vocabulary.addAll(Arrays.asList(words));
+		System.out.println("Terms:              " + vocabulary.size());
+		System.out.println(String.format("Build:              %.1f s", (System.nanoTime() - start) / 1e9));
+
+		for (int distance = 1; distance <= 2; distance++) {
+			long[] nanos = new long[QUERIES];
+			long matches = 0;
+			for (int q = 0; q < QUERIES; q++) {
+				String query = misspell(words[random.nextInt(size)], random);
+				long begin = System.nanoTime();
+				matches += vocabulary.search(query, distance).size();
+				nanos[q] = System.nanoTime() - begin;
+			}
+			Arrays.sort(nanos);
+			System.out.println(String.format("k=%d p50 %.2f ms, p99 %.2f ms, %.1f matches/query", distance,
+					nanos[QUERIES / 2] / 1e6, nanos[QUERIES * 99 / 100] / 1e6, (double) matches / QUERIES));
+		}
+	}
+
+	private static String randomWord(Random random) {
+		StringBuilder word = new StringBuilder();
+		int length = 4 + random.nextInt(6);
+		for (int i = 0; i < length; i++) {
+			word.append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+		}
+		return word.toString();
+	}
+
+	private static String misspell(String word, Random random) {
+		StringBuilder typo = new StringBuilder(word);
+		typo.setCharAt(random.nextInt(typo.length()), LETTERS.charAt(random.nextInt(LETTERS.length())));
+		return typo.toString();
+	}
+}
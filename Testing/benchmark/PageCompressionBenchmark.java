@@ -0,0 +1,98 @@
+package benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import dal.PageCodec;
+
+/**
+ * Compares the plain LONGTEXT page format with PageCodec: bytes stored and the
+ * time to turn stored bytes back into page text.
+ *
+ * Usage: java benchmark.PageCompressionBenchmark [file.txt ...]
+ * Without arguments a synthetic Arabic corpus is used.
+ */
+public class PageCompressionBenchmark {
+	private static final int PAGE_SIZE = 100;
+	private static final int ROUNDS = 20;
+
+	private static final String SAMPLE = "بِسْمِ اللَّهِ الرَّحْمَٰنِ الرَّحِيمِ الْحَمْدُ لِلَّهِ رَبِّ الْعَالَمِينَ "
+			+ "الرَّحْمَٰنِ الرَّحِيمِ مَالِكِ يَوْمِ الدِّينِ إِيَّاكَ نَعْبُدُ وَإِيَّاكَ نَسْتَعِينُ "
+			+ "ولدت ونشأت في مدينة جميلة وأنا طالب في الجامعة وأدرس علوم الحاسوب منذ سنوات "
+			+ "الكتب تمثل لي نافذة على العالم وأنا أحب قراءة أنواع مختلفة من الكتب في وقت الفراغ ";
+
+	public static void main(String[] args) throws IOException {
+		List<String> pages = new ArrayList<>();
+		if (args.length == 0) {
+			StringBuilder corpus = new StringBuilder();
+			for (int i = 0; i < 2000; i++) {
+				corpus.append(SAMPLE);
+			}
+			paginate(corpus.toString(), pages);
+		} else {
+			for (String path : args) {
+				paginate(new String(Files.readAllBytes(Paths.get(path)), StandardCharsets.UTF_8), pages);
+			}
+		}
+
+		List<byte[]> plain = new ArrayList<>();
+		List<byte[]> compressed = new ArrayList<>();
+		long plainBytes = 0;
+		long compressedBytes = 0;
+
+		for (String page : pages) {
+			byte[] encoded = PageCodec.compress(page);
+			compressed.add(encoded);
+			compressedBytes += encoded.length;
+		}
+
+		for (String page : pages) {
+			byte[] encoded = page.getBytes(StandardCharsets.UTF_8);
+			plain.add(encoded);
+			plainBytes += encoded.length;
+		}
+
+		long compressNanos = Long.MAX_VALUE;
+		long plainNanos = Long.MAX_VALUE;
+		long decompressNanos = Long.MAX_VALUE;
+		long checksum = 0;
+		for (int round = 0; round < ROUNDS; round++) {
+			long start = System.nanoTime();
+			for (String page : pages) {
+				checksum += PageCodec.compress(page).length;
+			}
+			compressNanos = Math.min(compressNanos, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			for (byte[] encoded : plain) {
+				checksum += new String(encoded, StandardCharsets.UTF_8).length();
+			}
+			plainNanos = Math.min(plainNanos, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			for (byte[] encoded : compressed) {
+				checksum += PageCodec.decompress(encoded).length();
+			}
+			decompressNanos = Math.min(decompressNanos, System.nanoTime() - start);
+		}
+
+		System.out.println("Pages:              " + pages.size());
+		System.out.println("Plain bytes:        " + plainBytes);
+		System.out.println("Compressed bytes:   " + compressedBytes + String.format(" (%.1f%% of plain)",
+				100.0 * compressedBytes / Math.max(1, plainBytes)));
+		System.out.println(String.format("Compress:           %.2f us/page", compressNanos / 1000.0 / pages.size()));
+		System.out.println(String.format("Read plain:         %.2f us/page", plainNanos / 1000.0 / pages.size()));
+		System.out.println(String.format("Read compressed:    %.2f us/page", decompressNanos / 1000.0 / pages.size()));
+		System.out.println("(checksum " + checksum + ")");
+	}
+
+	private static void paginate(String content, List<String> pages) {
+		for (int i = 0; i < content.length(); i += PAGE_SIZE) {
+			pages.add(content.substring(i, Math.min(content.length(), i + PAGE_SIZE)));
+		}
+	}
+}
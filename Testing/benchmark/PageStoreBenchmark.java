@@ -0,0 +1,118 @@
+package benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Random;
+
+import dal.EmbeddedDatabase;
+import dal.SegmentPageStore;
+
+/**
+ * Imports the same pages into SegmentPageStore and into the pages table of the
+ * embedded H2 database, then reads random pages back one at a time and reports
+ * import throughput and read latency percentiles.
+ *
+ * Usage: java benchmark.PageStoreBenchmark [files] [pagesPerFile]
+ */
+public class PageStoreBenchmark {
+	private static final int READS = 100000;
+
+	private static final String SAMPLE = "ولدت ونشأت في مدينة جميلة وأنا طالب في الجامعة وأدرس علوم الحاسوب منذ سنوات "
+			+ "الكتب تمثل لي نافذة على العالم وأنا أحب قراءة أنواع مختلفة من الكتب في وقت الفراغ ";
+
+	public static void main(String[] args) throws IOException, SQLException {
+		int files = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		int pagesPerFile = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+		Path dir = Files.createTempDirectory("realeditor-pagestore");
+
+		SegmentPageStore store = new SegmentPageStore(dir.resolve("pages"), 64 * 1024 * 1024, 0.5, 0);
+		long start = System.nanoTime();
+		for (int file = 1; file <= files; file++) {
+			for (int page = 1; page <= pagesPerFile; page++) {
+				store.put(file, page, page(file, page));
+			}
+		}
+		store.sync();
+		report("page store", files * pagesPerFile, System.nanoTime() - start, readStore(store, files, pagesPerFile));
+		store.close();
+
+		Connection conn = EmbeddedDatabase.open(dir.resolve("realeditor").toString());
+		conn.setAutoCommit(false);
+		start = System.nanoTime();
+		try (PreparedStatement fileStmt = conn
+				.prepareStatement("INSERT INTO files (fileid, fileName, fileHash) VALUES (?, ?, '')");
+				PreparedStatement pageStmt = conn
+						.prepareStatement("INSERT INTO pages (fileId, pageNumber, pageContent) VALUES (?, ?, ?)")) {
+			for (int file = 1; file <= files; file++) {
+				fileStmt.setInt(1, file);
+				fileStmt.setString(2, "benchmark-" + file);
+				fileStmt.executeUpdate();
+				for (int page = 1; page <= pagesPerFile; page++) {
+					pageStmt.setInt(1, file);
+					pageStmt.setInt(2, page);
+					pageStmt.setString(3, page(file, page));
+					pageStmt.addBatch();
+				}
+				pageStmt.executeBatch();
+			}
+		}
+		conn.commit();
+		report("embedded pages table", files * pagesPerFile, System.nanoTime() - start,
+				readTable(conn, files, pagesPerFile));
+		conn.close();
+	}
+
+	private static String page(int file, int page) {
+		int start = (file * 31 + page * 7) % (SAMPLE.length() - 100);
+		return SAMPLE.substring(start, start + 100);
+	}
+
+	private static long[] readStore(SegmentPageStore store, int files, int pagesPerFile) {
+		Random random = new Random(42);
+		long[] nanos = new long[READS];
+		long checksum = 0;
+		for (int i = 0; i < READS; i++) {
+			long start = System.nanoTime();
+			checksum += store.get(1 + random.nextInt(files), 1 + random.nextInt(pagesPerFile)).length();
+			nanos[i] = System.nanoTime() - start;
+		}
+		System.out.println("(checksum " + checksum + ")");
+		return nanos;
+	}
+
+	private static long[] readTable(Connection conn, int files, int pagesPerFile) throws SQLException {
+		Random random = new Random(42);
+		long[] nanos = new long[READS];
+		long checksum = 0;
+		try (PreparedStatement stmt = conn
+				.prepareStatement("SELECT pageContent FROM pages WHERE fileId = ? AND pageNumber = ?")) {
+			for (int i = 0; i < READS; i++) {
+				long start = System.nanoTime();
+				stmt.setInt(1, 1 + random.nextInt(files));
+				stmt.setInt(2, 1 + random.nextInt(pagesPerFile));
+				try (ResultSet rs = stmt.executeQuery()) {
+					rs.next();
+					checksum += rs.getString(1).length();
+				}
+				nanos[i] = System.nanoTime() - start;
+			}
+		}
+		System.out.println("(checksum " + checksum + ")");
+		return nanos;
+	}
+
+	private static void report(String name, int pages, long importNanos, long[] readNanos) {
+		Arrays.sort(readNanos);
+		System.out.println(name + " (" + pages + " pages)");
+		System.out.println(String.format("  import:     %10.0f pages/s", pages / (importNanos / 1e9)));
+		System.out.println(String.format("  read p50:   %10.2f us", readNanos[readNanos.length / 2] / 1000.0));
+		System.out.println(String.format("  read p99:   %10.2f us", readNanos[readNanos.length * 99 / 100] / 1000.0));
+		System.out.println(String.format("  read max:   %10.2f us", readNanos[readNanos.length - 1] / 1000.0));
+	}
+}
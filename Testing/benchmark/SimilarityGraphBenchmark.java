@@ -0,0 +1,92 @@
+package benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import dal.DocumentVectors;
+import dal.HnswIndex;
+import dto.TermVector;
+
+/**
+ * Compares the exact similar-file lookup of DocumentVectors with the HNSW
+ * graph on a synthetic topic corpus: build, save and load time, query latency
+ * and recall@10 for growing efSearch.
+ *
+ * Usage: java benchmark.SimilarityGraphBenchmark [files]
+ */
+public class SimilarityGraphBenchmark {
+	private static final int K = 10;
+	private static final int QUERIES = 200;
+	private static final int TOPICS = 100;
+	private static final int TOPIC_TERMS = 1000;
+	private static final int COMMON_TERMS = 20000;
+	private static final int TERMS_PER_FILE = 80;
+
+	public static void main(String[] args) throws Exception {
+		int fileCount = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+		Random random = new Random(42);
+		DocumentVectors vectors = new DocumentVectors();
+		for (int id = 1; id <= fileCount; id++) {
+			int topic = random.nextInt(TOPICS);
+			Map<Integer, Integer> termFreqs = new HashMap<>();
+			for (int t = 0; t < TERMS_PER_FILE; t++) {
+				int termId = random.nextInt(3) > 0 ? COMMON_TERMS + topic * TOPIC_TERMS + random.nextInt(TOPIC_TERMS)
+						: random.nextInt(COMMON_TERMS);
+				termFreqs.merge(termId, 1 + random.nextInt(3), Integer::sum);
+			}
+			vectors.put(id, termFreqs);
+		}
+		List<TermVector> termVectors = vectors.toTermVectors();
+
+		long start = System.nanoTime();
+		HnswIndex graph = new HnswIndex();
+		for (TermVector vector : termVectors) {
+			graph.insert(vector.getFileId(), vector.getTermIds(), vector.getWeights());
+		}
+		System.out.println(String.format("Files:              %d", fileCount));
+		System.out.println(String.format("Build:              %.1f s", (System.nanoTime() - start) / 1e9));
+
+		File file = File.createTempFile("similar", ".hnsw");
+		file.deleteOnExit();
+		start = System.nanoTime();
+		graph.save(file.toPath());
+		double saveMillis = (System.nanoTime() - start) / 1e6;
+		start = System.nanoTime();
+		graph = HnswIndex.load(file.toPath());
+		System.out.println(String.format("Save / load:        %.0f ms / %.0f ms (%d KB)", saveMillis,
+				(System.nanoTime() - start) / 1e6, file.length() / 1024));
+
+		int[] queries = new int[QUERIES];
+		List<Set<Integer>> exact = new ArrayList<>(QUERIES);
+		start = System.nanoTime();
+		for (int q = 0; q < QUERIES; q++) {
+			queries[q] = 1 + random.nextInt(fileCount);
+			Set<Integer> nearest = new HashSet<>();
+			for (DocumentVectors.Match match : vectors.findSimilar(queries[q], K)) {
+				nearest.add(match.fileId);
+			}
+			exact.add(nearest);
+		}
+		System.out.println(String.format("Exact:              %.2f ms/query", (System.nanoTime() - start) / 1e6 / QUERIES));
+
+		for (int ef = 16; ef <= 256; ef *= 2) {
+			int found = 0;
+			start = System.nanoTime();
+			for (int q = 0; q < QUERIES; q++) {
+				TermVector query = vectors.toTermVector(queries[q]);
+				for (DocumentVectors.Match match : graph.search(query.getTermIds(), query.getWeights(), K, ef,
+						queries[q])) {
+					found += exact.get(q).contains(match.fileId) ? 1 : 0;
+				}
+			}
+			System.out.println(String.format("HNSW efSearch %3d:  %.2f ms/query, recall@%d %.3f", ef,
+					(System.nanoTime() - start) / 1e6 / QUERIES, K, found / (double) (QUERIES * K)));
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package benchmark;
+
+import java.util.Random;
+
+import dal.SimilarityKernel;
+
+/**
+ * Times each similarity kernel on the loops it replaces: a dense dot product
+ * as in centre normalization, a sparse file against a dense centre as in
+ * clustering and graph search, and term counts against an IDF array as in
+ * batch TF-IDF scoring. Each case is warmed up before it is timed. Run one
+ * kernel per JVM so the calls are not profiled against another kernel.
+ *
+ * Usage: java benchmark.SimilarityKernelBenchmark [kernel]
+ */
+public class SimilarityKernelBenchmark {
+	private static final int DIMENSIONS = 20000;
+	private static final int TERMS = 150;
+	private static final int VECTORS = 1000;
+	private static final int WARMUP_ROUNDS = 3;
+	private static final int ROUNDS = 10;
+	private static final int DENSE_REPEATS = 2000;
+	private static final int SPARSE_REPEATS = 200;
+
+	// Sums are kept so the JIT cannot drop the loops
+	private static double sink;
+
+	public static void main(String[] args) {
+		Random random = new Random(42);
+		float[] dense = new float[DIMENSIONS];
+		double[] idf = new double[DIMENSIONS];
+		for (int i = 0; i < DIMENSIONS; i++) {
+			dense[i] = random.nextFloat();
+			idf[i] = random.nextDouble() * 8;
+		}
+		int[][] indices = new int[VECTORS][TERMS];
+		float[][] weights = new float[VECTORS][TERMS];
+		int[][] counts = new int[VECTORS][TERMS];
+		for (int v = 0; v < VECTORS; v++) {
+			for (int i = 0; i < TERMS; i++) {
+				indices[v][i] = random.nextInt(DIMENSIONS);
+				weights[v][i] = random.nextFloat();
+				counts[v][i] = 1 + random.nextInt(10);
+			}
+		}
+
+		String name = args.length > 0 ? args[0] : "unrolled";
+		SimilarityKernel kernel = SimilarityKernel.forName(name);
+		double denseTime = 0, gatherTime = 0, countsTime = 0;
+		for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+			long start = System.nanoTime();
+			for (int repeat = 0; repeat < DENSE_REPEATS; repeat++) {
+				sink += kernel.dot(dense, dense, DIMENSIONS);
+			}
+			long gatherStart = System.nanoTime();
+			for (int repeat = 0; repeat < SPARSE_REPEATS; repeat++) {
+				for (int v = 0; v < VECTORS; v++) {
+					sink += kernel.gatherDot(indices[v], weights[v], dense);
+				}
+			}
+			long countsStart = System.nanoTime();
+			for (int repeat = 0; repeat < SPARSE_REPEATS; repeat++) {
+				for (int v = 0; v < VECTORS; v++) {
+					sink += kernel.gatherDot(indices[v], counts[v], idf);
+				}
+			}
+			long end = System.nanoTime();
+			if (round >= WARMUP_ROUNDS) {
+				denseTime += (gatherStart - start) / (double) DENSE_REPEATS / ROUNDS;
+				gatherTime += (countsStart - gatherStart) / (VECTORS * (double) SPARSE_REPEATS) / ROUNDS;
+				countsTime += (end - countsStart) / (VECTORS * (double) SPARSE_REPEATS) / ROUNDS;
+			}
+		}
+
+		System.out.println("Kernel:             " + name);
+		System.out.println(String.format("Dense dot:          %.0f ns for %d values", denseTime, DIMENSIONS));
+		System.out.println(String.format("Sparse by dense:    %.0f ns for %d terms", gatherTime, TERMS));
+		System.out.println(String.format("Counts by IDF:      %.0f ns for %d terms", countsTime, TERMS));
+		if (sink == 42) {
+			System.out.println();
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import dal.DatabaseConnection;
+import dal.EditorDBDAO;
+import dal.EmbeddedDatabase;
+import dto.Documents;
+import dto.Pages;
+
+/**
+ * Runs the same import, read, update and delete workload through EditorDBDAO on
+ * MariaDB (db.url from config.properties) and on the embedded H2 backend (a
+ * fresh database in a temporary directory). Import time includes the text
+ * analyses, which cost the same on both backends; the read rows show the
+ * storage difference most clearly.
+ *
+ * Usage: java benchmark.StorageBackendBenchmark [mariadb] [embedded]
+ * Without arguments both backends are measured. The files written to MariaDB
+ * are named benchmark-N.txt and are deleted again at the end.
+ */
+public class StorageBackendBenchmark {
+	private static final int FILES = 20;
+	private static final int ROUNDS = 10;
+
+	private static final String SAMPLE = "ولدت ونشأت في مدينة جميلة وأنا طالب في الجامعة وأدرس علوم الحاسوب منذ سنوات "
+			+ "الكتب تمثل لي نافذة على العالم وأنا أحب قراءة أنواع مختلفة من الكتب في وقت الفراغ "
+			+ "the quick brown fox jumps over the lazy dog while the editor stores every page ";
+
+	public static void main(String[] args) throws IOException, SQLException {
+		List<String> backends = new ArrayList<>();
+		for (String arg : args) {
+			backends.add(arg);
+		}
+		if (backends.isEmpty()) {
+			backends.add("mariadb");
+			backends.add("embedded");
+		}
+
+		List<String> corpus = new ArrayList<>();
+		for (int i = 0; i < FILES; i++) {
+			StringBuilder content = new StringBuilder("document " + i + " ");
+			for (int j = 0; j < 4 + i % 4; j++) {
+				content.append(SAMPLE);
+			}
+			corpus.add(content.toString());
+		}
+
+		for (String backend : backends) {
+			if (backend.equals("mariadb")) {
+				Connection conn = DatabaseConnection.getInstance().getConnection();
+				if (conn == null) {
+					System.out.println("mariadb: no connection, skipped");
+					continue;
+				}
+				run("mariadb", new EditorDBDAO(conn), corpus);
+				DatabaseConnection.getInstance().closeConnection();
+			} else if (backend.equals("embedded")) {
+				Path dir = Files.createTempDirectory("realeditor-bench");
+				Connection conn = EmbeddedDatabase.open(dir.resolve("realeditor").toString());
+				run("embedded", new EditorDBDAO(conn), corpus);
+				conn.close();
+			} else {
+				System.out.println("Unknown backend: " + backend);
+			}
+		}
+	}
+
+	private static void run(String backend, EditorDBDAO dao, List<String> corpus) {
+		long start = System.nanoTime();
+		for (int i = 0; i < corpus.size(); i++) {
+			dao.createFileInDB("benchmark-" + i + ".txt", corpus.get(i));
+		}
+		long importNanos = System.nanoTime() - start;
+
+		List<Documents> mine = new ArrayList<>();
+		int pages = 0;
+		for (Documents document : dao.getFilesFromDB()) {
+			if (document.getName().startsWith("benchmark-")) {
+				mine.add(document);
+				pages += document.getPages().size();
+			}
+		}
+
+		long listNanos = Long.MAX_VALUE;
+		long analysisNanos = Long.MAX_VALUE;
+		long checksum = 0;
+		for (int round = 0; round < ROUNDS; round++) {
+			start = System.nanoTime();
+			checksum += dao.getFilesFromDB().size();
+			listNanos = Math.min(listNanos, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			for (Documents document : mine) {
+				for (Pages page : document.getPages()) {
+					checksum += dao.getPageAnalysis(page.getPageId()).getLemmas().size();
+				}
+			}
+			analysisNanos = Math.min(analysisNanos, System.nanoTime() - start);
+		}
+
+		start = System.nanoTime();
+		for (Documents document : mine) {
+			dao.updateFileInDB(document.getId(), document.getName(), 1, "updated " + SAMPLE);
+		}
+		long updateNanos = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for (Documents document : mine) {
+			dao.deleteFileInDB(document.getId());
+		}
+		long deleteNanos = System.nanoTime() - start;
+
+		System.out.println(backend + " (" + mine.size() + " files, " + pages + " pages)");
+		System.out.println(String.format("  import:           %8.2f ms/file", importNanos / 1e6 / mine.size()));
+		System.out.println(String.format("  list all files:   %8.2f ms", listNanos / 1e6));
+		System.out.println(String.format("  page analysis:    %8.3f ms/page", analysisNanos / 1e6 / pages));
+		System.out.println(String.format("  update page:      %8.2f ms/file", updateNanos / 1e6 / mine.size()));
+		System.out.println(String.format("  delete:           %8.2f ms/file", deleteNanos / 1e6 / mine.size()));
+		System.out.println("  (checksum " + checksum + ")");
+	}
+}
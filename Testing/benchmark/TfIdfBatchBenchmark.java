@@ -0,0 +1,57 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import dal.TFIDFCalculator;
+
+/**
+ * Rescores a synthetic corpus with the batch scorer and times a sample of
+ * documents scored one at a time against the rest, as the import path does.
+ *
+ * Usage: java benchmark.TfIdfBatchBenchmark [files] [words per file]
+ */
+public class TfIdfBatchBenchmark {
+	private static final int VOCABULARY = 50000;
+	private static final int SAMPLE = 20;
+
+	public static void main(String[] args) {
+		int fileCount = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		int wordsPerFile = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+		Random random = new Random(42);
+		List<String> documents = new ArrayList<>();
+		for (int i = 0; i < fileCount; i++) {
+			StringBuilder document = new StringBuilder();
+			for (int w = 0; w < wordsPerFile; w++) {
+				// Skewed towards low ids so the document frequencies look like text
+				int word = (int) (VOCABULARY * Math.pow(random.nextDouble(), 3));
+				document.append("w").append(word).append(' ');
+			}
+			documents.add(document.toString());
+		}
+
+		long start = System.nanoTime();
+		double[] scores = TFIDFCalculator.calculateCorpusTfIdf(documents);
+		double batchSeconds = (System.nanoTime() - start) / 1e9;
+
+		start = System.nanoTime();
+		double maxError = 0;
+		for (int i = 0; i < SAMPLE; i++) {
+			TFIDFCalculator rest = new TFIDFCalculator();
+			for (int j = 0; j < documents.size(); j++) {
+				if (j != i) {
+					rest.addDocumentToCorpus(documents.get(j));
+				}
+			}
+			maxError = Math.max(maxError, Math.abs(rest.calculateDocumentTfIdf(documents.get(i)) - scores[i]));
+		}
+		double perDocumentSeconds = (System.nanoTime() - start) / 1e9 / SAMPLE;
+
+		System.out.println("Files:              " + fileCount + ", words per file: " + wordsPerFile);
+		System.out.println(String.format("Batch rescore:      %.2f s", batchSeconds));
+		System.out.println(String.format("One at a time:      %.2f s per file, about %.0f s for all", perDocumentSeconds,
+				perDocumentSeconds * fileCount));
+		System.out.println("Largest difference: " + maxError);
+	}
+}
@@ -0,0 +1,93 @@
+package business;
+
+import junit.framework.TestCase;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import bll.DocumentClusterer;
+import dto.ClusterAssignment;
+import dto.TermVector;
+
+public class DocumentClustererTest extends TestCase {
+
+    public DocumentClustererTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        return new TestSuite(DocumentClustererTest.class);
+    }
+
+    public void testCluster_SeparatesTopicsRegardlessOfPoolSize() {
+        List<TermVector> vectors = topicVectors(3, 40, new Random(7));
+
+        Map<Integer, Integer> single = clusterOf(new DocumentClusterer(new ForkJoinPool(1), 1).cluster(vectors, 3));
+        Map<Integer, Integer> parallel = clusterOf(new DocumentClusterer(new ForkJoinPool(4), 1).cluster(vectors, 3));
+
+        assertEquals(120, single.size());
+        for (int fileId = 0; fileId < 120; fileId++) {
+            int topicStart = fileId / 40 * 40;
+            assertEquals("File " + fileId + " should share its topic's cluster", single.get(topicStart),
+                    single.get(fileId));
+        }
+        assertFalse(single.get(0).equals(single.get(40)));
+        assertFalse(single.get(40).equals(single.get(80)));
+        assertEquals("The pool size must not change the result", single, parallel);
+    }
+
+    public void testCluster_SkipsFilesWithoutSharedTermsAndCapsK() {
+        List<TermVector> vectors = new ArrayList<>();
+        vectors.add(new TermVector(1, new int[] { 1, 2 }, new float[] { 0.8f, 0.6f }));
+        vectors.add(new TermVector(2, new int[] { 1, 2 }, new float[] { 0.6f, 0.8f }));
+        vectors.add(new TermVector(3, new int[] { 99 }, new float[] { 1f }));
+
+        List<ClusterAssignment> assignments = new DocumentClusterer().cluster(vectors, 5);
+
+        assertEquals("File 3 has no term in common with the others", 2, assignments.size());
+        for (ClusterAssignment assignment : assignments) {
+            assertTrue("k is capped at the number of files", assignment.getClusterId() < 2);
+            assertTrue(assignment.getSimilarity() > 0);
+        }
+        assertTrue(new DocumentClusterer().cluster(new ArrayList<>(), 3).isEmpty());
+    }
+
+    // Files drawing most of their terms from one topic's vocabulary and a few from a shared one
+    static List<TermVector> topicVectors(int topics, int filesPerTopic, Random random) {
+        List<TermVector> vectors = new ArrayList<>();
+        for (int topic = 0; topic < topics; topic++) {
+            for (int f = 0; f < filesPerTopic; f++) {
+                Map<Integer, Float> weights = new HashMap<>();
+                for (int t = 0; t < 12; t++) {
+                    weights.put(1000 + topic * 50 + random.nextInt(50), 1f);
+                }
+                for (int t = 0; t < 3; t++) {
+                    weights.put(random.nextInt(100), 1f);
+                }
+                int[] termIds = new int[weights.size()];
+                float[] values = new float[weights.size()];
+                int i = 0;
+                for (int termId : weights.keySet()) {
+                    termIds[i] = termId;
+                    values[i++] = (float) (1 / Math.sqrt(weights.size()));
+                }
+                vectors.add(new TermVector(topic * filesPerTopic + f, termIds, values));
+            }
+        }
+        return vectors;
+    }
+
+    private static Map<Integer, Integer> clusterOf(List<ClusterAssignment> assignments) {
+        Map<Integer, Integer> clusters = new HashMap<>();
+        for (ClusterAssignment assignment : assignments) {
+            clusters.put(assignment.getFileId(), assignment.getClusterId());
+        }
+        return clusters;
+    }
+}
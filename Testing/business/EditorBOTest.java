@@ -5,14 +5,23 @@ import junit.framework.Test;
 import junit.framework.TestSuite;
 
 import bll.EditorBO;
+import dal.CorpusScanner;
 import dal.IFacadeDAO;
+import dal.PageAnalysis;
+import dto.CancellationToken;
+import dto.ClusterAssignment;
 import dto.Documents;
+import dto.ScoreFreshness;
+import dto.SearchHit;
+import dto.SearchResult;
+import dto.TermVector;
 
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.function.Consumer;
 
 
 public class EditorBOTest extends TestCase {
@@ -171,6 +180,164 @@ public class EditorBOTest extends TestCase {
         assertEquals("DAO should be called with correct file ID", fileId, mockDAO.getLastFileId());
     }
     
+    public void testSearchKeyword_MatchesOnSeveralPages_ReturnsEachFileOnce() {
+        List<Documents> docs = new ArrayList<>();
+        List<dto.Pages> pages1 = new ArrayList<>();
+        pages1.add(new dto.Pages(1, 1, 1, "the lazy dog"));
+        pages1.add(new dto.Pages(2, 1, 2, "another lazy afternoon"));
+        docs.add(new Documents(1, "file1.txt", "hash1", "2024-01-01", "2024-01-01", pages1));
+        List<dto.Pages> pages2 = new ArrayList<>();
+        pages2.add(new dto.Pages(3, 2, 1, "nothing to see"));
+        docs.add(new Documents(2, "file2.txt", "hash2", "2024-01-01", "2024-01-01", pages2));
+        mockDAO.setDocuments(docs);
+
+        List<String> result = editorBO.searchKeyword("lazy");
+
+        assertEquals("Each matching file should be listed once", 1, result.size());
+        assertEquals("file1.txt", result.get(0));
+        assertTrue("Short keywords should return nothing", editorBO.searchKeyword("la").isEmpty());
+    }
+
+    public void testSearchRanked_RespectsLimitAndKeywordRules() {
+        List<Documents> docs = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            List<dto.Pages> pages = new ArrayList<>();
+            pages.add(new dto.Pages(i, i, 1, "the lazy dog " + i));
+            docs.add(new Documents(i, "file" + i + ".txt", "hash" + i, "2024-01-01", "2024-01-01", pages));
+        }
+        mockDAO.setDocuments(docs);
+
+        assertEquals("Results should be cut at the limit", 2, editorBO.searchRanked("lazy", 2).size());
+        assertTrue("Short keywords should return nothing", editorBO.searchRanked("la", 10).isEmpty());
+        assertTrue("A zero limit should return nothing", editorBO.searchRanked("lazy", 0).isEmpty());
+    }
+
+    public void testSearchRanked_Streaming_StopsWhenCancelled() {
+        List<Documents> docs = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            List<dto.Pages> pages = new ArrayList<>();
+            pages.add(new dto.Pages(i, i, 1, "the lazy dog " + i));
+            docs.add(new Documents(i, "file" + i + ".txt", "hash" + i, "2024-01-01", "2024-01-01", pages));
+        }
+        mockDAO.setDocuments(docs);
+        CancellationToken token = new CancellationToken();
+        List<SearchResult> received = new ArrayList<>();
+
+        editorBO.searchRanked("lazy", 10, token, batch -> {
+            received.addAll(batch);
+            token.cancel();
+        });
+
+        assertEquals("No batch should follow the cancellation", 1, received.size());
+    }
+
+    public void testSearchNear_InvalidDistance_DoesNotReachDAO() {
+        editorBO.searchNear(" lazy ", "dog", 2);
+        assertEquals("lazy NEAR/2 dog", mockDAO.getLastSearchWord());
+
+        assertTrue(editorBO.searchNear("lazy", "dog", 0).isEmpty());
+        assertTrue(editorBO.searchNear("lazy", " ", 3).isEmpty());
+        assertEquals("Rejected queries should not reach the DAO", "lazy NEAR/2 dog", mockDAO.getLastSearchWord());
+    }
+
+    public void testSearchByRoot_TrimsWordAndIgnoresBlank() {
+        mockDAO.setDocuments(new ArrayList<>());
+
+        editorBO.searchByRoot("  كتب ");
+
+        assertEquals("DAO should receive the trimmed word", "كتب", mockDAO.getLastSearchWord());
+        assertTrue("Blank words should return nothing", editorBO.searchByRoot("   ").isEmpty());
+        assertEquals("Blank words should not reach the DAO", "كتب", mockDAO.getLastSearchWord());
+    }
+    
+    public void testSearchKeyword_RepeatedQuery_IsServedFromCache() {
+        mockDAO.setDocuments(lazyDocuments());
+
+        editorBO.searchKeyword("lazy");
+        List<String> result = editorBO.searchKeyword("LAZY");
+
+        assertEquals("file1.txt", result.get(0));
+        assertEquals("The folded query should hit the cache", 1, mockDAO.getSearchCalls());
+        assertEquals(1, editorBO.getSearchCache().getHits());
+        assertEquals(2, editorBO.getSearchCache().getLatencies().get("substring").getCount());
+    }
+
+    public void testCreateFile_ContainingQueryTerm_InvalidatesCachedSearch() {
+        mockDAO.setDocuments(lazyDocuments());
+        editorBO.searchPhrase("lazy dog");
+
+        editorBO.createFile("other.txt", "nothing to see");
+        editorBO.searchPhrase("lazy dog");
+        assertEquals("Unrelated content should keep the entry", 1, mockDAO.getSearchCalls());
+
+        editorBO.createFile("cat.txt", "a Lazy cat");
+        editorBO.searchPhrase("lazy dog");
+        assertEquals("Content with a query term should drop the entry", 2, mockDAO.getSearchCalls());
+    }
+
+    public void testDeleteFile_ListedInResults_InvalidatesCachedSearch() {
+        mockDAO.setDocuments(lazyDocuments());
+        editorBO.searchPhrase("lazy dog");
+
+        editorBO.deleteFile(7);
+        editorBO.searchPhrase("lazy dog");
+        assertEquals("Deleting an unlisted file should keep the entry", 1, mockDAO.getSearchCalls());
+
+        editorBO.deleteFile(1);
+        editorBO.searchPhrase("lazy dog");
+        assertEquals("Deleting a listed file should drop the entry", 2, mockDAO.getSearchCalls());
+    }
+
+    public void testWrites_WithoutQueryTerms_InvalidateCachedRanking() {
+        mockDAO.setDocuments(lazyDocuments());
+        editorBO.searchRanked("lazy", 10);
+
+        editorBO.createFile("other.txt", "nothing to see");
+        editorBO.searchRanked("lazy", 10);
+        assertEquals("An import changes the BM25 statistics", 2, mockDAO.getSearchCalls());
+
+        editorBO.deleteFile(7);
+        editorBO.searchRanked("lazy", 10);
+        assertEquals("So does deleting any file", 3, mockDAO.getSearchCalls());
+    }
+
+    public void testSearchRegex_ReturnsMatchOffsetsAndRejectsInvalidPattern() {
+        mockDAO.setDocuments(lazyDocuments());
+
+        List<SearchHit> hits = editorBO.searchRegex("L[a-z]+y", 10, new CancellationToken());
+
+        assertEquals(1, hits.size());
+        assertEquals("Match should span the word", 4, hits.get(0).getStartOffsets()[0]);
+        assertEquals(8, hits.get(0).getEndOffsets()[0]);
+        assertTrue("Invalid patterns should return nothing",
+                editorBO.searchRegex("la(zy", 10, new CancellationToken()).isEmpty());
+    }
+
+    public void testClusterDocuments_StoresOneClusterPerTopic() {
+        List<TermVector> vectors = new ArrayList<>();
+        vectors.add(new TermVector(1, new int[] { 1, 2 }, new float[] { 0.8f, 0.6f }));
+        vectors.add(new TermVector(2, new int[] { 1, 2 }, new float[] { 0.6f, 0.8f }));
+        vectors.add(new TermVector(3, new int[] { 3, 4 }, new float[] { 0.8f, 0.6f }));
+        vectors.add(new TermVector(4, new int[] { 3, 4 }, new float[] { 0.6f, 0.8f }));
+        mockDAO.setTermVectors(vectors);
+
+        assertEquals(4, editorBO.clusterDocuments(2));
+
+        List<SearchResult> cluster = editorBO.getFilesInCluster(mockDAO.getClusterOf(1));
+        assertEquals(2, cluster.size());
+        assertEquals(mockDAO.getClusterOf(1), mockDAO.getClusterOf(2));
+        assertFalse(mockDAO.getClusterOf(1) == mockDAO.getClusterOf(3));
+        assertEquals(0, editorBO.clusterDocuments(0));
+    }
+
+    private List<Documents> lazyDocuments() {
+        List<Documents> docs = new ArrayList<>();
+        List<dto.Pages> pages = new ArrayList<>();
+        pages.add(new dto.Pages(1, 1, 1, "the lazy dog"));
+        docs.add(new Documents(1, "file1.txt", "hash1", "2024-01-01", "2024-01-01", pages));
+        return docs;
+    }
+
     private File createTempFile(String fileName, String content) {
         try {
             File tempFile = File.createTempFile("test", ".txt");
@@ -194,6 +361,10 @@ public class EditorBOTest extends TestCase {
         private String lastFileName;
         private String lastContent;
         private int lastFileId;
+        private String lastSearchWord;
+        private int searchCalls;
+        private List<TermVector> termVectors = new ArrayList<>();
+        private List<ClusterAssignment> clusters = new ArrayList<>();
         
         public void setCreateFileResult(boolean result) { this.createFileResult = result; }
         public void setUpdateFileResult(boolean result) { this.updateFileResult = result; }
@@ -203,6 +374,18 @@ public class EditorBOTest extends TestCase {
         public String getLastFileName() { return lastFileName; }
         public String getLastContent() { return lastContent; }
         public int getLastFileId() { return lastFileId; }
+        public String getLastSearchWord() { return lastSearchWord; }
+        public int getSearchCalls() { return searchCalls; }
+        public void setTermVectors(List<TermVector> vectors) { this.termVectors = vectors; }
+
+        public int getClusterOf(int fileId) {
+            for (ClusterAssignment assignment : clusters) {
+                if (assignment.getFileId() == fileId) {
+                    return assignment.getClusterId();
+                }
+            }
+            return -1;
+        }
         
         public boolean createFileInDB(String nameOfFile, String content) {
             this.lastFileName = nameOfFile;
@@ -253,6 +436,14 @@ public class EditorBOTest extends TestCase {
         public double performTFIDF(List<String> unSelectedDocsContent, String selectedDocContent) {
             return 0.5;
         }
+
+        public int rescoreTfIdf() {
+            return 0;
+        }
+
+        public List<ScoreFreshness> getTfIdfFreshness(int limit) {
+            return new ArrayList<>();
+        }
         
         public Map<String, Double> performPMI(String content) {
             Map<String, Double> result = new HashMap<>();
@@ -277,5 +468,140 @@ public class EditorBOTest extends TestCase {
             result.put("test", "seg-ment");
             return result;
         }
+
+        public PageAnalysis getPageAnalysis(int pageId) {
+            return null;
+        }
+
+        public List<SearchHit> searchPages(String query) {
+            searchCalls++;
+            List<SearchHit> hits = new ArrayList<>();
+            for (Documents doc : documents) {
+                for (dto.Pages page : doc.getPages()) {
+                    if (page.getPageContent().toLowerCase().contains(query.toLowerCase())) {
+                        hits.add(new SearchHit(doc.getId(), doc.getName(), page.getPageId(), page.getPageNumber(),
+                                new int[0], new int[0]));
+                    }
+                }
+            }
+            return hits;
+        }
+
+        public List<SearchHit> searchFuzzy(String query, int maxDistance) {
+            lastSearchWord = query;
+            return searchPages(query);
+        }
+
+        public ScoreFreshness getTfIdf(int fileId) {
+            lastFileId = fileId;
+            return new ScoreFreshness(fileId, "file.txt", 0.5, 1, 0, false);
+        }
+
+        public Map<String, Double> getKeywords(int fileId) {
+            lastFileId = fileId;
+            return new HashMap<>();
+        }
+
+        public List<SearchResult> findFilesByKeyword(String word, int limit) {
+            lastSearchWord = word;
+            return new ArrayList<>();
+        }
+
+        public List<SearchResult> findSimilar(int fileId, int k) {
+            lastFileId = fileId;
+            return new ArrayList<>();
+        }
+
+        public List<SearchResult> findNearDuplicates(int fileId) {
+            lastFileId = fileId;
+            return new ArrayList<>();
+        }
+
+        public List<TermVector> getTermVectors() {
+            return termVectors;
+        }
+
+        public boolean storeClusters(List<ClusterAssignment> assignments) {
+            clusters = assignments;
+            return true;
+        }
+
+        public Map<Integer, List<SearchResult>> getClusters() {
+            Map<Integer, List<SearchResult>> grouped = new HashMap<>();
+            for (ClusterAssignment assignment : clusters) {
+                grouped.computeIfAbsent(assignment.getClusterId(), id -> new ArrayList<>()).add(new SearchResult(
+                        assignment.getFileId(), "file" + assignment.getFileId() + ".txt", assignment.getSimilarity(),
+                        new ArrayList<>(), new ArrayList<>()));
+            }
+            return grouped;
+        }
+
+        public List<SearchHit> scanPages(CorpusScanner.PageMatcher matcher, int limit, CancellationToken token) {
+            List<SearchHit> hits = new ArrayList<>();
+            for (Documents doc : documents) {
+                for (dto.Pages page : doc.getPages()) {
+                    int[][] offsets = matcher.match(page.getPageContent());
+                    if (offsets != null && hits.size() < limit) {
+                        hits.add(new SearchHit(doc.getId(), doc.getName(), page.getPageId(), page.getPageNumber(),
+                                offsets[0], offsets[1]));
+                    }
+                }
+            }
+            return hits;
+        }
+
+        public List<SearchHit> searchPhrase(String phrase) {
+            lastSearchWord = phrase;
+            return searchPages(phrase);
+        }
+
+        public List<SearchHit> searchNear(String first, String second, int distance) {
+            lastSearchWord = first + " NEAR/" + distance + " " + second;
+            return new ArrayList<>();
+        }
+
+        public List<SearchHit> searchSubstring(String fragment) {
+            return searchPages(fragment);
+        }
+
+        public List<SearchResult> searchRanked(String query, int limit) {
+            lastSearchWord = query;
+            List<SearchResult> results = new ArrayList<>();
+            for (SearchHit hit : searchPages(query)) {
+                if (results.size() < limit && (results.isEmpty()
+                        || results.get(results.size() - 1).getFileId() != hit.getFileId())) {
+                    results.add(new SearchResult(hit.getFileId(), hit.getFileName(), 1.0, new ArrayList<>(),
+                            new ArrayList<>()));
+                }
+            }
+            return results;
+        }
+
+        public void searchRanked(String query, int limit, CancellationToken token,
+                Consumer<List<SearchResult>> sink) {
+            for (SearchResult result : searchRanked(query, limit)) {
+                if (token.isCancelled()) {
+                    return;
+                }
+                List<SearchResult> batch = new ArrayList<>();
+                batch.add(result);
+                sink.accept(batch);
+            }
+        }
+
+        public List<SearchHit> searchByRoot(String word) {
+            lastSearchWord = word;
+            return new ArrayList<>();
+        }
+
+        public List<SearchHit> searchByLemma(String word) {
+            lastSearchWord = word;
+            return new ArrayList<>();
+        }
+
+        public List<SearchHit> searchByStem(String word) {
+            lastSearchWord = word;
+            return new ArrayList<>();
+        }
     }
 }
\ No newline at end of file
@@ -4,6 +4,9 @@ import junit.framework.TestCase;
 import junit.framework.Test;
 import junit.framework.TestSuite;
 
+import java.util.Arrays;
+import java.util.List;
+
 import dal.TFIDFCalculator;
 
 public class TFIDFCalculatorTest extends TestCase {
@@ -149,4 +152,33 @@ public class TFIDFCalculatorTest extends TestCase {
         assertFalse("Arabic text should not produce NaN", Double.isNaN(tfidfScore));
         assertTrue("Arabic text should produce valid score", tfidfScore >= 0);
     }
-}
\ No newline at end of file
+
+    public void testTFIDF_CorpusBatch_MatchesScoringEachDocumentAgainstTheRest() {
+        List<String> documents = Arrays.asList("the cat sat on the mat", "the dog ran in the park",
+                "@#$%", "cats and dogs are pets", "بسم الله الرحمن الرحيم", "the cat and the dog");
+
+        double[] scores = TFIDFCalculator.calculateCorpusTfIdf(documents);
+
+        assertEquals(documents.size(), scores.length);
+        for (int i = 0; i < documents.size(); i++) {
+            TFIDFCalculator rest = new TFIDFCalculator();
+            for (int j = 0; j < documents.size(); j++) {
+                if (j != i) {
+                    rest.addDocumentToCorpus(documents.get(j));
+                }
+            }
+            assertEquals("Score of document " + i, rest.calculateDocumentTfIdf(documents.get(i)), scores[i], 1e-12);
+        }
+        assertEquals("A document without words scores zero", 0.0, scores[2], 0.0);
+    }
+
+    public void testTFIDF_CorpusChangesAfterScoring_UsesNewDocumentFrequencies() {
+        calculator.addDocumentToCorpus("cat dog");
+        double before = calculator.calculateDocumentTfIdf("cat");
+
+        calculator.addDocumentToCorpus("bird fish");
+
+        assertTrue("Cached IDF must be rebuilt when a document is added",
+                calculator.calculateDocumentTfIdf("cat") > before);
+    }
+}
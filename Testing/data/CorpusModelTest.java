@@ -0,0 +1,147 @@
+package data;
+
+import junit.framework.TestCase;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import dal.CorpusModel;
+import dal.TFIDFCalculator;
+
+public class CorpusModelTest extends TestCase {
+
+    private static final String[] TEXTS = {
+            "ذهب الولد الى المدرسة في الصباح الباكر وقرأ الكتاب",
+            "عاد الولد الى البيت وتناول الغداء مع عائلته",
+            "السماء صافية اليوم والرياح هادئة على الساحل",
+            "قرأ الطالب الكتاب في المكتبة حتى المساء",
+            " ... " };
+
+    // Changes the model logs before folding them into a snapshot
+    private static final int LOG_RECORDS = 1000;
+
+    private Path directory;
+    private Path path;
+
+    public CorpusModelTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        return new TestSuite(CorpusModelTest.class);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        directory = Files.createTempDirectory("corpusmodel");
+        path = directory.resolve("corpus.model");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        File[] files = directory.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.toFile().delete();
+    }
+
+    public void testCalculateDocumentTfIdf_MatchesCalculatorOnOtherFiles() throws IOException {
+        CorpusModel model = CorpusModel.build(path, contents(), 7);
+
+        assertEquals(5, model.getFileCount(-1));
+        assertEquals(4, model.getFileCount(2));
+        for (int fileId = 1; fileId <= TEXTS.length; fileId++) {
+            assertEquals(expected(contents(), fileId, TEXTS[fileId - 1]),
+                    model.calculateDocumentTfIdf(TEXTS[fileId - 1], fileId), 1e-12);
+        }
+        String imported = "الولد قرأ الكتاب مرة أخرى";
+        assertEquals(expected(contents(), -1, imported), model.calculateDocumentTfIdf(imported, -1), 1e-12);
+        model.close();
+    }
+
+    public void testOpen_ReplaysLogAfterSnapshot() throws IOException {
+        CorpusModel model = CorpusModel.build(path, contents(), 7);
+        model.put(6, "كتب الولد الرسالة الى صديقه", 8);
+        model.put(2, "السماء ممطرة اليوم", 9);
+        model.remove(3, 10);
+        model.close();
+
+        Map<Integer, String> expected = contents();
+        expected.put(6, "كتب الولد الرسالة الى صديقه");
+        expected.put(2, "السماء ممطرة اليوم");
+        expected.remove(3);
+        CorpusModel reopened = CorpusModel.open(path);
+        assertEquals(10, reopened.getCorpusChanges());
+        assertEquals(5, reopened.getFileCount(-1));
+        String document = "الولد يقرأ الكتاب تحت السماء";
+        assertEquals(expected(expected, 6, document), reopened.calculateDocumentTfIdf(document, 6), 1e-12);
+        reopened.close();
+    }
+
+    public void testOpen_TornLogRecordIsDropped() throws IOException {
+        CorpusModel model = CorpusModel.build(path, contents(), 7);
+        model.put(6, "كتب الولد الرسالة الى صديقه", 8);
+        model.close();
+        File log = new File(path + ".log");
+        try (RandomAccessFile file = new RandomAccessFile(log, "rw")) {
+            file.setLength(file.length() - 3);
+        }
+
+        CorpusModel reopened = CorpusModel.open(path);
+        assertEquals(7, reopened.getCorpusChanges());
+        assertEquals(5, reopened.getFileCount(-1));
+        reopened.put(6, "كتب الولد الرسالة", 8);
+        reopened.close();
+        assertEquals(6, CorpusModel.open(path).getFileCount(-1));
+    }
+
+    public void testPut_FullLog_FoldsIntoNextSnapshot() throws IOException {
+        CorpusModel model = CorpusModel.build(path, contents(), 7);
+        Map<Integer, String> expected = contents();
+        for (int i = 0; i < LOG_RECORDS; i++) {
+            String text = TEXTS[i % 4] + " كلمة" + i;
+            model.put(10 + i % 50, text, 8 + i);
+            expected.put(10 + i % 50, text);
+        }
+        model.remove(1, 8 + LOG_RECORDS);
+        expected.remove(1);
+        model.close();
+
+        assertFalse(new File(path + ".1").exists());
+        assertTrue(new File(path + ".2").exists());
+        CorpusModel reopened = CorpusModel.open(path);
+        assertEquals(expected.size(), reopened.getFileCount(-1));
+        String document = "الولد يقرأ الكتاب كلمة7 كلمة999";
+        assertEquals(expected(expected, 12, document), reopened.calculateDocumentTfIdf(document, 12), 1e-12);
+        assertEquals(expected(expected, -1, document), reopened.calculateDocumentTfIdf(document, -1), 1e-12);
+        reopened.close();
+    }
+
+    private static Map<Integer, String> contents() {
+        Map<Integer, String> contents = new LinkedHashMap<>();
+        for (int i = 0; i < TEXTS.length; i++) {
+            contents.put(i + 1, TEXTS[i]);
+        }
+        return contents;
+    }
+
+    private static double expected(Map<Integer, String> contents, int excludeFileId, String document) {
+        TFIDFCalculator calculator = new TFIDFCalculator();
+        for (Map.Entry<Integer, String> content : contents.entrySet()) {
+            if (content.getKey() != excludeFileId) {
+                calculator.addDocumentToCorpus(content.getValue());
+            }
+        }
+        return calculator.calculateDocumentTfIdf(document);
+    }
+}
@@ -0,0 +1,92 @@
+package data;
+
+import junit.framework.TestCase;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import dal.CorpusScanner;
+import dto.CancellationToken;
+import dto.Documents;
+import dto.Pages;
+import dto.SearchHit;
+
+public class CorpusScannerTest extends TestCase {
+
+    private List<Documents> files;
+    private int reads;
+    private ForkJoinPool pool;
+
+    public CorpusScannerTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        return new TestSuite(CorpusScannerTest.class);
+    }
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        files = new ArrayList<>();
+        for (int id = 1; id <= 100; id++) {
+            List<Pages> pages = new ArrayList<>();
+            for (int number = 1; number <= 20; number++) {
+                pages.add(new Pages(id * 100 + number, id, number, number % 10 == 0 ? "the lazy dog" : "nothing"));
+            }
+            files.add(new Documents(id, "file" + id + ".txt", "hash", "2024-01-01", "2024-01-01", pages));
+        }
+        pool = new ForkJoinPool(4);
+    }
+
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        pool.shutdown();
+    }
+
+    public void testScan_WholeCorpus_ReturnsEveryMatchInOrder() throws Exception {
+        List<SearchHit> hits = scanner().scan(this::matchLazy, 1000, new CancellationToken());
+
+        assertEquals(200, hits.size());
+        for (int i = 0; i < hits.size(); i++) {
+            assertEquals("Hits should follow file order", i / 2 + 1, hits.get(i).getFileId());
+            assertEquals("Hits should follow page order", i % 2 == 0 ? 10 : 20, hits.get(i).getPageNumber());
+        }
+        assertEquals(4, hits.get(0).getStartOffsets()[0]);
+    }
+
+    public void testScan_LimitReached_StopsReadingFiles() throws Exception {
+        List<SearchHit> hits = scanner().scan(this::matchLazy, 5, new CancellationToken());
+
+        assertEquals(5, hits.size());
+        assertTrue("Files after the limit should not all be read", reads < 4);
+    }
+
+    public void testScan_Cancelled_ReturnsNothing() throws Exception {
+        CancellationToken token = new CancellationToken();
+        token.cancel();
+
+        assertTrue(scanner().scan(this::matchLazy, 1000, token).isEmpty());
+        assertEquals("A cancelled scan should not read past the first range", 1, reads);
+    }
+
+    private CorpusScanner scanner() {
+        return new CorpusScanner((afterFileId, fileCount) -> {
+            reads++;
+            List<Documents> chunk = new ArrayList<>();
+            for (Documents file : files) {
+                if (file.getId() > afterFileId && chunk.size() < fileCount) {
+                    chunk.add(file);
+                }
+            }
+            return chunk;
+        }, pool);
+    }
+
+    private int[][] matchLazy(String content) {
+        int at = content.indexOf("lazy");
+        return at < 0 ? null : new int[][] { { at }, { at + 4 } };
+    }
+}
@@ -0,0 +1,123 @@
+package data;
+
+import junit.framework.TestCase;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import dal.DocumentVectors;
+import dto.TermVector;
+
+public class DocumentVectorsTest extends TestCase {
+
+    private DocumentVectors vectors;
+
+    public DocumentVectorsTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        return new TestSuite(DocumentVectorsTest.class);
+    }
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        vectors = new DocumentVectors();
+        vectors.put(1, terms(10, 3, 11, 1, 12, 1));
+        vectors.put(2, terms(10, 2, 11, 1, 20, 1));
+        vectors.put(3, terms(12, 1, 30, 5));
+        vectors.put(4, terms(40, 1));
+    }
+
+    public void testFindSimilar_RanksBySharedTermsAndSkipsUnrelated() {
+        List<DocumentVectors.Match> matches = vectors.findSimilar(1, 10);
+
+        assertEquals("File 4 shares no term and should not be returned", 2, matches.size());
+        assertEquals("File 2 shares the most weight", 2, matches.get(0).fileId);
+        assertEquals(3, matches.get(1).fileId);
+        assertTrue(matches.get(0).score > matches.get(1).score);
+        assertTrue("Cosine similarity is at most one", matches.get(0).score <= 1.0);
+    }
+
+    public void testFindSimilar_IdenticalVectors_ScoreOne() {
+        vectors.put(5, terms(10, 3, 11, 1, 12, 1));
+
+        List<DocumentVectors.Match> matches = vectors.findSimilar(1, 1);
+
+        assertEquals(1, matches.size());
+        assertEquals(5, matches.get(0).fileId);
+        assertEquals(1.0, matches.get(0).score, 1e-6);
+    }
+
+    public void testRemove_FileNoLongerReturned() {
+        vectors.remove(2);
+
+        assertEquals(3, vectors.size());
+        assertEquals(3, vectors.findSimilar(1, 10).get(0).fileId);
+        assertTrue("A removed file has no neighbours", vectors.findSimilar(2, 10).isEmpty());
+    }
+
+    public void testTopTerms_RareTermsRankFirst() {
+        List<DocumentVectors.TermScore> top = vectors.topTerms(1, 2);
+
+        assertEquals(2, top.size());
+        assertEquals("Term 10 is frequent in file 1 and shared by one other file", 10, top.get(0).termId);
+        assertEquals("Term 11 and 12 tie on weight, the lower id wins", 11, top.get(1).termId);
+        assertTrue(top.get(0).score > top.get(1).score);
+    }
+
+    public void testToTermVector_AfterPut_MatchesFindSimilar() {
+        vectors.findSimilar(1, 10);
+        vectors.put(5, terms(10, 1, 12, 2, 30, 1));
+
+        TermVector added = vectors.toTermVector(5);
+        assertEquals(1.0, dot(added, added), 1e-6);
+        assertEquals(3, vectors.findSimilar(5, 10).size());
+        for (DocumentVectors.Match match : vectors.findSimilar(5, 10)) {
+            assertEquals(match.score, dot(added, vectors.toTermVector(match.fileId)), 1e-6);
+        }
+    }
+
+    public void testFindSimilar_AfterPut_ScoresAgainstNewCorpus() {
+        vectors.findSimilar(1, 10);
+        vectors.put(5, terms(10, 1, 50, 2));
+
+        DocumentVectors rebuilt = new DocumentVectors();
+        rebuilt.put(1, terms(10, 3, 11, 1, 12, 1));
+        rebuilt.put(2, terms(10, 2, 11, 1, 20, 1));
+        rebuilt.put(3, terms(12, 1, 30, 5));
+        rebuilt.put(4, terms(40, 1));
+        rebuilt.put(5, terms(10, 1, 50, 2));
+        List<DocumentVectors.Match> expected = rebuilt.findSimilar(1, 10);
+        List<DocumentVectors.Match> matches = vectors.findSimilar(1, 10);
+
+        assertEquals(expected.size(), matches.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).fileId, matches.get(i).fileId);
+            assertEquals(expected.get(i).score, matches.get(i).score, 1e-12);
+        }
+    }
+
+    private static double dot(TermVector a, TermVector b) {
+        Map<Integer, Float> weights = new HashMap<>();
+        for (int i = 0; i < a.getTermIds().length; i++) {
+            weights.put(a.getTermIds()[i], a.getWeights()[i]);
+        }
+        double sum = 0.0;
+        for (int i = 0; i < b.getTermIds().length; i++) {
+            sum += weights.getOrDefault(b.getTermIds()[i], 0f) * b.getWeights()[i];
+        }
+        return sum;
+    }
+
+    private static Map<Integer, Integer> terms(int... idsAndFreqs) {
+        Map<Integer, Integer> terms = new HashMap<>();
+        for (int i = 0; i < idsAndFreqs.length; i += 2) {
+            terms.put(idsAndFreqs[i], idsAndFreqs[i + 1]);
+        }
+        return terms;
+    }
+}
@@ -0,0 +1,224 @@
+package data;
+
+import junit.framework.TestCase;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import bll.EditorBO;
+import bll.QueryCache;
+import dal.CorpusModel;
+import dal.EditorDBDAO;
+import dal.EmbeddedDatabase;
+import dal.FacadeDAO;
+import dal.MinHash;
+import dto.Documents;
+import dto.Pages;
+import dto.ScoreFreshness;
+import dto.SearchHit;
+
+/**
+ * Runs EditorDBDAO against a fresh embedded database in a temporary
+ * directory. Every test fails when the H2 jar is not on the classpath.
+ */
+public class EditorDBDAOTest extends TestCase {
+
+    private static final String TEXT = "ذهب الولد الى المدرسة في الصباح الباكر وقرأ الكتاب مع أصدقائه"
+            + " ثم عاد الى البيت وتناول الغداء مع عائلته وجلس يكتب واجباته حتى المساء";
+
+    private Path directory;
+    private Connection conn;
+
+    public EditorDBDAOTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        return new TestSuite(EditorDBDAOTest.class);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        try {
+            Class.forName("org.h2.Driver");
+        } catch (ClassNotFoundException e) {
+            fail("EditorDBDAOTest needs the H2 jar on the classpath");
+        }
+        directory = Files.createTempDirectory("editordao");
+        conn = EmbeddedDatabase.open(directory.resolve("realeditor").toString());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (conn != null) {
+            conn.close();
+        }
+        delete(directory.toFile());
+    }
+
+    public void testCreateFileInDB_UnsavableCorpusModel_StillImports() throws Exception {
+        // A regular file where the model directory should be
+        File blocker = directory.resolve("blocker").toFile();
+        assertTrue(blocker.createNewFile());
+        EditorDBDAO dao = new EditorDBDAO(conn, null, blocker.toPath().resolve("corpus.model"));
+
+        assertTrue(dao.createFileInDB("first.txt", TEXT));
+        assertTrue(dao.createFileInDB("second.txt", "السماء صافية اليوم والرياح هادئة على الساحل الشمالي"));
+        assertEquals(2, dao.getFilesFromDB().size());
+        Documents second = dao.getFilesFromDB().get(1);
+        assertTrue("Scored against the stored files instead", dao.getTfIdf(second.getId()).getScore() > 0);
+    }
+
+    public void testUpdateFileInDB_UnchangedText_KeepsSignature() throws Exception {
+        EditorDBDAO dao = new EditorDBDAO(conn, null, null);
+        assertTrue(dao.createFileInDB("file.txt", TEXT));
+        Documents file = dao.getFilesFromDB().get(0);
+        assertTrue("Pages are cut mid-word", file.getPages().size() > 1);
+        int[] imported = readSignature(file.getId());
+        assertEquals(1.0, MinHash.similarity(MinHash.signature(TEXT), imported));
+
+        Pages first = file.getPages().get(0);
+        assertTrue(dao.updateFileInDB(file.getId(), "file.txt", first.getPageNumber(), first.getPageContent()));
+
+        assertEquals(1.0, MinHash.similarity(imported, readSignature(file.getId())));
+    }
+
+    public void testUpdateFileInDB_CorpusModelMatchesRebuild() throws Exception {
+        Path modelPath = directory.resolve("corpus.model");
+        EditorDBDAO dao = new EditorDBDAO(conn, null, modelPath);
+        assertTrue(dao.createFileInDB("first.txt", TEXT));
+        assertTrue(dao.createFileInDB("second.txt", "السماء صافية اليوم والرياح هادئة على الساحل الشمالي"));
+        assertTrue(dao.createFileInDB("third.txt", "قرأ الطالب الكتاب في المكتبة حتى المساء ثم عاد الى البيت"));
+        Documents first = dao.getFilesFromDB().get(0);
+        Pages page = first.getPages().get(1);
+        assertTrue(dao.updateFileInDB(first.getId(), "first.txt", page.getPageNumber(), "كتب الولد الرسالة الى صديقه"));
+        // Scored like a rescore would, before the delete below changes the corpus
+        assertEquals(expectedScore(dao, first.getId()), readStoredScore(first.getId()), 1e-4);
+        assertTrue(dao.deleteFileInDB(dao.getFilesFromDB().get(1).getId()));
+        dao.close();
+
+        Map<Integer, String> contents = new LinkedHashMap<>();
+        StringBuilder probe = new StringBuilder(TEXT);
+        for (Documents file : dao.getFilesFromDB()) {
+            StringBuilder content = new StringBuilder();
+            for (Pages filePage : file.getPages()) {
+                content.append(filePage.getPageContent());
+            }
+            contents.put(file.getId(), content.toString());
+            probe.append(' ').append(content);
+        }
+        CorpusModel kept = CorpusModel.open(modelPath);
+        CorpusModel rebuilt = CorpusModel.build(directory.resolve("rebuilt.model"), contents, kept.getCorpusChanges());
+        assertEquals(rebuilt.getFileCount(-1), kept.getFileCount(-1));
+        for (Map.Entry<Integer, String> content : contents.entrySet()) {
+            assertEquals(rebuilt.calculateDocumentTfIdf(content.getValue(), content.getKey()),
+                    kept.calculateDocumentTfIdf(content.getValue(), content.getKey()), 1e-12);
+            assertEquals(rebuilt.calculateDocumentTfIdf(probe.toString(), content.getKey()),
+                    kept.calculateDocumentTfIdf(probe.toString(), content.getKey()), 1e-12);
+        }
+        kept.close();
+        rebuilt.close();
+    }
+
+    public void testGetTfIdf_ReturnsStoredScoreAndFreshness() throws Exception {
+        EditorDBDAO dao = new EditorDBDAO(conn, null, null);
+        assertTrue(dao.createFileInDB("first.txt", TEXT));
+        assertTrue(dao.createFileInDB("second.txt", "السماء صافية اليوم والرياح هادئة على الساحل الشمالي"));
+        Documents second = dao.getFilesFromDB().get(1);
+
+        ScoreFreshness score = dao.getTfIdf(second.getId());
+        assertEquals(readStoredScore(second.getId()), score.getScore());
+        assertEquals("second.txt", score.getFileName());
+        assertEquals(0, score.getChangesSince());
+        assertFalse(score.isStale());
+        assertNull("Unknown files have no score", dao.getTfIdf(second.getId() + 100));
+    }
+
+    public void testSearchPages_LongWordsSharingPrefix_MatchOwnPage() throws Exception {
+        EditorDBDAO dao = new EditorDBDAO(conn, null, null);
+        StringBuilder prefix = new StringBuilder();
+        for (int i = 0; i < 600; i++) {
+            prefix.append('a');
+        }
+        assertTrue(dao.createFileInDB("first.txt", "first"));
+        assertTrue(dao.createFileInDB("second.txt", "second"));
+        Documents first = dao.getFilesFromDB().get(0);
+        Documents second = dao.getFilesFromDB().get(1);
+        assertTrue(dao.updateFileInDB(first.getId(), "first.txt", 1, prefix + "x"));
+        assertTrue(dao.updateFileInDB(second.getId(), "second.txt", 1, prefix + "y"));
+
+        List<SearchHit> hits = dao.searchPages(prefix + "x");
+        assertEquals(1, hits.size());
+        assertEquals(first.getId(), hits.get(0).getFileId());
+    }
+
+    public void testSearchRanked_UnrelatedImport_ReordersCachedQuery() throws Exception {
+        EditorBO editor = new EditorBO(new FacadeDAO(new EditorDBDAO(conn, null, null)), new QueryCache(16));
+        assertTrue(editor.createFile("cat.txt", "cat moon star tree"));
+        assertTrue(editor.createFile("dogs.txt", "dog dog"));
+        assertTrue(editor.createFile("dog.txt", "dog lamp"));
+        assertEquals("cat.txt", editor.searchRanked("cat dog", 10).get(0).getFileName());
+
+        // Shifts N and the average length, not the query terms
+        assertTrue(editor.createFile("bird.txt", "bird"));
+
+        assertEquals("dogs.txt", editor.searchRanked("cat dog", 10).get(0).getFileName());
+    }
+
+    private static double expectedScore(EditorDBDAO dao, int fileId) {
+        List<String> others = new ArrayList<>();
+        String content = null;
+        for (Documents file : dao.getFilesFromDB()) {
+            StringBuilder text = new StringBuilder();
+            for (Pages page : file.getPages()) {
+                text.append(page.getPageContent());
+            }
+            if (file.getId() == fileId) {
+                content = text.toString();
+            } else {
+                others.add(text.toString());
+            }
+        }
+        return dao.performTFIDF(others, content);
+    }
+
+    private double readStoredScore(int fileId) throws Exception {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT tfidfScore FROM tfidf WHERE fileId = ?")) {
+            stmt.setInt(1, fileId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                assertTrue(rs.next());
+                return rs.getDouble(1);
+            }
+        }
+    }
+
+    private int[] readSignature(int fileId) throws Exception {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT signature FROM minhash WHERE fileId = ?")) {
+            stmt.setInt(1, fileId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                assertTrue(rs.next());
+                return MinHash.decode(rs.getBytes(1));
+            }
+        }
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,73 @@
+package data;
+
+import junit.framework.TestCase;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import dal.FuzzyVocabulary;
+
+public class FuzzyVocabularyTest extends TestCase {
+
+    public FuzzyVocabularyTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        return new TestSuite(FuzzyVocabularyTest.class);
+    }
+
+    public void testDistance_BoundedLevenshtein() {
+        assertEquals(3, FuzzyVocabulary.distance("kitten", "sitting", 5));
+        assertEquals(1, FuzzyVocabulary.distance("الرحمن", "الرحمان", 2));
+        assertTrue("Distances above the bound should be cut off", FuzzyVocabulary.distance("kitten", "sitting", 1) > 1);
+    }
+
+    public void testSearch_ReturnsTermsWithinDistanceClosestFirst() {
+        FuzzyVocabulary vocabulary = new FuzzyVocabulary();
+        for (String term : new String[] { "book", "books", "boo", "cook", "cake", "boon", "cart", "bo" }) {
+            vocabulary.add(term);
+        }
+        assertFalse("Duplicates should not be added", vocabulary.add("book"));
+        assertEquals(8, vocabulary.size());
+
+        List<String> terms = new ArrayList<>();
+        for (FuzzyVocabulary.Match match : vocabulary.search("bok", 1)) {
+            terms.add(match.term);
+        }
+
+        assertEquals("Ties should be ordered by term", "bo", terms.get(0));
+        assertTrue(terms.contains("book"));
+        assertTrue(terms.contains("boo"));
+        assertFalse("cook is two edits away", terms.contains("cook"));
+    }
+
+    public void testSearch_MatchesBruteForceAcrossMerges() {
+        FuzzyVocabulary vocabulary = new FuzzyVocabulary();
+        List<String> words = new ArrayList<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 10000; i++) {
+            StringBuilder word = new StringBuilder();
+            int length = 1 + random.nextInt(8);
+            for (int j = 0; j < length; j++) {
+                word.append((char) ('a' + random.nextInt(5)));
+            }
+            if (vocabulary.add(word.toString())) {
+                words.add(word.toString());
+            }
+        }
+
+        for (String query : new String[] { "abcab", "e", "aaaaaaaa" }) {
+            int expected = 0;
+            for (String word : words) {
+                if (FuzzyVocabulary.distance(query, word, 2) <= 2) {
+                    expected++;
+                }
+            }
+            assertEquals(query, expected, vocabulary.search(query, 2).size());
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package data;
+
+import junit.framework.TestCase;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import dal.DocumentVectors;
+import dal.HnswIndex;
+
+public class HnswIndexTest extends TestCase {
+
+    private static final int FILES = 600;
+
+    private int[][] termIds;
+    private float[][] weights;
+    private HnswIndex index;
+
+    public HnswIndexTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        return new TestSuite(HnswIndexTest.class);
+    }
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        Random random = new Random(3);
+        termIds = new int[FILES][];
+        weights = new float[FILES][];
+        index = new HnswIndex();
+        for (int fileId = 0; fileId < FILES; fileId++) {
+            Set<Integer> terms = new HashSet<>();
+            while (terms.size() < 20) {
+                terms.add(random.nextInt(3) > 0 ? fileId % 30 * 40 + random.nextInt(40) : 2000 + random.nextInt(500));
+            }
+            termIds[fileId] = new int[terms.size()];
+            weights[fileId] = new float[terms.size()];
+            double norm = 0;
+            int i = 0;
+            for (int term : terms) {
+                termIds[fileId][i] = term;
+                weights[fileId][i] = 0.5f + random.nextFloat();
+                norm += weights[fileId][i] * weights[fileId][i];
+                i++;
+            }
+            for (i = 0; i < weights[fileId].length; i++) {
+                weights[fileId][i] /= Math.sqrt(norm);
+            }
+            index.insert(fileId, termIds[fileId], weights[fileId]);
+        }
+    }
+
+    public void testSearch_FindsMostExactNeighbours() {
+        int found = 0;
+        for (int fileId = 0; fileId < FILES; fileId += 10) {
+            Set<Integer> exact = exactNeighbours(fileId, 10);
+            for (DocumentVectors.Match match : index.search(termIds[fileId], weights[fileId], 10, 64, fileId)) {
+                found += exact.contains(match.fileId) ? 1 : 0;
+            }
+        }
+        double recall = found / (FILES / 10 * 10.0);
+        assertTrue("Recall@10 should be high, was " + recall, recall > 0.9);
+    }
+
+    public void testRemove_FileLeavesResultsAndSizeDrops() {
+        int neighbour = index.search(termIds[0], weights[0], 1, 64, 0).get(0).fileId;
+
+        index.remove(neighbour);
+
+        assertEquals(FILES - 1, index.size());
+        for (DocumentVectors.Match match : index.search(termIds[0], weights[0], 10, 64, 0)) {
+            assertFalse(match.fileId == neighbour);
+        }
+    }
+
+    public void testSaveAndLoad_ReturnsSameResults() throws Exception {
+        File file = File.createTempFile("similar", ".hnsw");
+        file.deleteOnExit();
+        index.remove(5);
+        index.save(file.toPath());
+
+        HnswIndex loaded = HnswIndex.load(file.toPath());
+
+        assertEquals(index.size(), loaded.size());
+        assertEquals("Saving resets the change count", 0, index.getChanges());
+        assertEquals(fileIds(index.search(termIds[7], weights[7], 10, 64, 7)),
+                fileIds(loaded.search(termIds[7], weights[7], 10, 64, 7)));
+    }
+
+    private Set<Integer> exactNeighbours(int fileId, int k) {
+        List<DocumentVectors.Match> all = new ArrayList<>();
+        for (int other = 0; other < FILES; other++) {
+            if (other != fileId) {
+                all.add(new DocumentVectors.Match(other, dot(fileId, other)));
+            }
+        }
+        all.sort((a, b) -> Double.compare(b.score, a.score));
+        return new HashSet<>(fileIds(all.subList(0, k)));
+    }
+
+    private double dot(int a, int b) {
+        double dot = 0;
+        for (int i = 0; i < termIds[a].length; i++) {
+            for (int j = 0; j < termIds[b].length; j++) {
+                if (termIds[a][i] == termIds[b][j]) {
+                    dot += weights[a][i] * weights[b][j];
+                }
+            }
+        }
+        return dot;
+    }
+
+    private static List<Integer> fileIds(List<DocumentVectors.Match> matches) {
+        List<Integer> ids = new ArrayList<>();
+        for (DocumentVectors.Match match : matches) {
+            ids.add(match.fileId);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,58 @@
+package data;
+
+import junit.framework.TestCase;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import dal.MinHash;
+
+public class MinHashTest extends TestCase {
+
+    private static final String TEXT = "ذهب الولد الى المدرسة في الصباح الباكر وقرأ الكتاب مع أصدقائه"
+            + " ثم عاد الى البيت وتناول الغداء مع عائلته وجلس يكتب واجباته حتى المساء";
+
+    public MinHashTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        return new TestSuite(MinHashTest.class);
+    }
+
+    public void testSignature_SameWordsDifferentFormatting_Identical() {
+        int[] signature = MinHash.signature(TEXT);
+
+        assertEquals(MinHash.HASHES, signature.length);
+        assertEquals(1.0, MinHash.similarity(signature, MinHash.signature("  " + TEXT.replace(" ", "\n") + ".")));
+        assertNull("A text without words has no signature", MinHash.signature(" ... "));
+    }
+
+    public void testSimilarity_SmallEditScoresHighAndSharesABand() {
+        int[] original = MinHash.signature(TEXT);
+        int[] edited = MinHash.signature(TEXT.replace("الغداء", "العشاء"));
+        int[] unrelated = MinHash.signature("السماء صافية اليوم والرياح هادئة على الساحل الشمالي للبلاد");
+
+        double similarity = MinHash.similarity(original, edited);
+        assertTrue("One changed word keeps most shingles, was " + similarity, similarity > 0.6);
+        assertTrue(MinHash.similarity(original, unrelated) < 0.1);
+        assertTrue("Near-duplicates must meet in at least one LSH band",
+                sharesBand(MinHash.bandKeys(original), MinHash.bandKeys(edited)));
+    }
+
+    public void testEncode_RoundTrips() {
+        int[] signature = MinHash.signature(TEXT);
+
+        int[] decoded = MinHash.decode(MinHash.encode(signature));
+
+        assertEquals(1.0, MinHash.similarity(signature, decoded));
+    }
+
+    private static boolean sharesBand(long[] a, long[] b) {
+        for (int band = 0; band < a.length; band++) {
+            if (a[band] == b[band]) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
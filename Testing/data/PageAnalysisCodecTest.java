@@ -0,0 +1,68 @@
+package data;
+
+import junit.framework.TestCase;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import java.util.Arrays;
+
+import dal.PageAnalysisCodec;
+import dal.PageAnalysisCodec.Section;
+
+public class PageAnalysisCodecTest extends TestCase {
+
+    public PageAnalysisCodecTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        return new TestSuite(PageAnalysisCodecTest.class);
+    }
+
+    private Section[] sampleSections() {
+        Section[] sections = new Section[PageAnalysisCodec.SECTION_COUNT];
+        for (int s = 0; s < PageAnalysisCodec.SECTION_COUNT; s++) {
+            if (PageAnalysisCodec.isScoreSection(s)) {
+                sections[s] = new Section(new int[] { 1, 300 + s }, null, new double[] { 0.25 * s, -1.5 });
+            } else {
+                sections[s] = new Section(new int[] { 1, 200000 + s, 7 }, new int[] { 2, 0, 70000 }, null);
+            }
+        }
+        return sections;
+    }
+
+    public void testPageAnalysisCodec_AllSections_RoundTrip() {
+        Section[] sections = sampleSections();
+
+        byte[] encoded = PageAnalysisCodec.encode(sections);
+
+        for (int s = 0; s < PageAnalysisCodec.SECTION_COUNT; s++) {
+            Section decoded = PageAnalysisCodec.decodeSection(encoded, s);
+            assertTrue("Word ids of section " + s, Arrays.equals(sections[s].wordIds, decoded.wordIds));
+            assertTrue("Value ids of section " + s, Arrays.equals(sections[s].valueIds, decoded.valueIds));
+            assertTrue("Scores of section " + s, Arrays.equals(sections[s].scores, decoded.scores));
+        }
+        assertEquals(PageAnalysisCodec.FORMAT_VERSION, PageAnalysisCodec.getFormatVersion(encoded));
+    }
+
+    public void testPageAnalysisCodec_EmptySections_AreSmall() {
+        Section[] sections = new Section[PageAnalysisCodec.SECTION_COUNT];
+
+        byte[] encoded = PageAnalysisCodec.encode(sections);
+
+        assertEquals("Version, seven lengths and seven counts", 15, encoded.length);
+        assertEquals(0, PageAnalysisCodec.decodeSection(encoded, PageAnalysisCodec.PMI).size());
+    }
+
+    public void testPageAnalysisCodec_UnknownVersion_ThrowsException() {
+        byte[] encoded = PageAnalysisCodec.encode(sampleSections());
+        encoded[0] = 42;
+
+        try {
+            PageAnalysisCodec.decodeSection(encoded, PageAnalysisCodec.POS);
+            fail("Unknown format version should be rejected");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("Unsupported analysis format"));
+        }
+    }
+}
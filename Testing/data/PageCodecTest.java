@@ -0,0 +1,62 @@
+package data;
+
+import junit.framework.TestCase;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import java.nio.charset.StandardCharsets;
+
+import dal.PageCodec;
+
+public class PageCodecTest extends TestCase {
+
+    public PageCodecTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        return new TestSuite(PageCodecTest.class);
+    }
+
+    public void testPageCodec_ArabicPage_RoundTrips() {
+        String page = "بِسْمِ اللَّهِ الرَّحْمَٰنِ الرَّحِيمِ الْحَمْدُ لِلَّهِ رَبِّ الْعَالَمِينَ في الأرض وفي السماء";
+
+        byte[] encoded = PageCodec.compress(page);
+
+        assertEquals("Decoded page should match the original", page, PageCodec.decompress(encoded));
+    }
+
+    public void testPageCodec_RepetitivePage_IsSmallerThanPlainText() {
+        String page = "الله الرحمن الرحيم الله الرحمن الرحيم الله الرحمن الرحيم الله الرحمن الرحيم";
+
+        byte[] encoded = PageCodec.compress(page);
+
+        assertTrue("Repetitive text should compress",
+                encoded.length < page.getBytes(StandardCharsets.UTF_8).length);
+        assertEquals(page, PageCodec.decompress(encoded));
+    }
+
+    public void testPageCodec_IncompressiblePage_StoredWithOneByteOverhead() {
+        String page = "q7#Zk!";
+
+        byte[] encoded = PageCodec.compress(page);
+
+        assertEquals("Short text should be stored plain", page.length() + 1, encoded.length);
+        assertEquals(page, PageCodec.decompress(encoded));
+    }
+
+    public void testPageCodec_EmptyAndNull_HandledGracefully() {
+        assertEquals("", PageCodec.decompress(PageCodec.compress("")));
+        assertNull("Null should stay null", PageCodec.compress(null));
+        assertNull("Null should stay null", PageCodec.decompress(null));
+    }
+
+    public void testPageCodec_UnknownFormat_ThrowsException() {
+        try {
+            PageCodec.decompress(new byte[] { 9, 1, 2 });
+            fail("Unknown format byte should be rejected");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("Unknown page format"));
+        }
+    }
+}
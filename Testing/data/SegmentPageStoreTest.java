@@ -0,0 +1,139 @@
+package data;
+
+import junit.framework.TestCase;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import dal.SegmentPageStore;
+
+public class SegmentPageStoreTest extends TestCase {
+
+    private Path directory;
+    private SegmentPageStore store;
+
+    public SegmentPageStoreTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        return new TestSuite(SegmentPageStoreTest.class);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        directory = Files.createTempDirectory("pagestore");
+        store = open();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        store.close();
+        File[] files = directory.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.toFile().delete();
+    }
+
+    private SegmentPageStore open() throws IOException {
+        // Small segments so the tests roll over and compact; no background compaction
+        return new SegmentPageStore(directory, 256, 0.5, 0);
+    }
+
+    private SegmentPageStore reopen() throws IOException {
+        store.close();
+        store = open();
+        return store;
+    }
+
+    public void testSegmentPageStore_PutAndOverwrite_ReturnsLatestBody() throws IOException {
+        store.put(1, 1, "بسم الله الرحمن الرحيم");
+        store.put(1, 2, "second page");
+        store.put(1, 1, "first page, edited");
+
+        assertEquals("first page, edited", store.get(1, 1));
+        assertEquals("second page", store.get(1, 2));
+        assertNull("Unknown page should return null", store.get(2, 1));
+    }
+
+    public void testSegmentPageStore_DeleteFile_RemovesOnlyThatFile() throws IOException {
+        store.put(1, 1, "a");
+        store.put(1, 2, "b");
+        store.put(2, 1, "c");
+
+        store.deleteFile(1);
+
+        assertFalse(store.contains(1, 1));
+        assertFalse(store.contains(1, 2));
+        assertEquals("c", store.get(2, 1));
+    }
+
+    public void testSegmentPageStore_Reopen_RebuildsIndex() throws IOException {
+        for (int page = 1; page <= 20; page++) {
+            store.put(7, page, "page " + page);
+        }
+        store.put(7, 3, "page three");
+        store.deleteFile(8);
+        store.put(9, 1, "gone");
+        store.deleteFile(9);
+        store.sync();
+
+        reopen();
+
+        assertEquals("page three", store.get(7, 3));
+        assertEquals("page 20", store.get(7, 20));
+        assertNull("Deleted page should stay deleted", store.get(9, 1));
+        assertTrue("Small segments should have rolled over", store.getSegmentCount() > 1);
+    }
+
+    public void testSegmentPageStore_TornTail_IsTruncatedOnOpen() throws IOException {
+        store.put(1, 1, "kept");
+        store.sync();
+        store.close();
+
+        Path last = null;
+        for (File file : directory.toFile().listFiles()) {
+            if (last == null || file.getName().compareTo(last.getFileName().toString()) > 0) {
+                last = file.toPath();
+            }
+        }
+        Files.write(last, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17 },
+                StandardOpenOption.APPEND);
+
+        store = open();
+        store.put(1, 2, "after recovery");
+        reopen();
+
+        assertEquals("kept", store.get(1, 1));
+        assertEquals("after recovery", store.get(1, 2));
+    }
+
+    public void testSegmentPageStore_Compact_DropsDeadSegmentsAndKeepsData() throws IOException {
+        for (int round = 0; round < 5; round++) {
+            for (int page = 1; page <= 10; page++) {
+                store.put(1, page, "round " + round + " page " + page);
+            }
+        }
+        store.put(2, 1, "deleted later");
+        store.deleteFile(2);
+        int before = store.getSegmentCount();
+
+        int removed = store.compact();
+        reopen();
+
+        assertTrue("Overwritten segments should be compacted", removed > 0);
+        assertTrue(store.getSegmentCount() < before);
+        for (int page = 1; page <= 10; page++) {
+            assertEquals("round 4 page " + page, store.get(1, page));
+        }
+        assertNull("Compaction must not resurrect deleted pages", store.get(2, 1));
+    }
+}
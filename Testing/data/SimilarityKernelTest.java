@@ -0,0 +1,61 @@
+package data;
+
+import junit.framework.TestCase;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import java.util.Random;
+
+import dal.SimilarityKernel;
+
+public class SimilarityKernelTest extends TestCase {
+
+    public SimilarityKernelTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        return new TestSuite(SimilarityKernelTest.class);
+    }
+
+    public void testUnrolled_MatchesScalarForEveryRemainder() {
+        Random random = new Random(7);
+        float[] dense = randomFloats(random, 64);
+        double[] idf = new double[64];
+        for (int i = 0; i < idf.length; i++) {
+            idf[i] = random.nextDouble() * 5;
+        }
+        for (int length = 0; length <= 9; length++) {
+            float[] values = randomFloats(random, length);
+            int[] indices = new int[length];
+            int[] counts = new int[length];
+            for (int i = 0; i < length; i++) {
+                indices[i] = random.nextInt(dense.length);
+                counts[i] = 1 + random.nextInt(20);
+            }
+
+            assertEquals("dot of " + length, SimilarityKernel.SCALAR.dot(values, dense, length),
+                    SimilarityKernel.UNROLLED.dot(values, dense, length), 1e-5f);
+            assertEquals("gather of " + length, SimilarityKernel.SCALAR.gatherDot(indices, values, dense),
+                    SimilarityKernel.UNROLLED.gatherDot(indices, values, dense), 1e-5f);
+            assertEquals("counts of " + length, SimilarityKernel.SCALAR.gatherDot(indices, counts, idf),
+                    SimilarityKernel.UNROLLED.gatherDot(indices, counts, idf), 1e-9);
+        }
+    }
+
+    public void testForName_UnknownClassFallsBackToScalar() {
+        assertSame(SimilarityKernel.UNROLLED, SimilarityKernel.forName("unrolled"));
+        assertSame(SimilarityKernel.SCALAR, SimilarityKernel.forName("scalar"));
+        assertSame(SimilarityKernel.SCALAR, SimilarityKernel.forName("no.such.VectorKernel"));
+        assertSame("A class that is not a kernel is not used", SimilarityKernel.SCALAR,
+                SimilarityKernel.forName("java.lang.Object"));
+    }
+
+    private static float[] randomFloats(Random random, int length) {
+        float[] values = new float[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = random.nextFloat() - 0.5f;
+        }
+        return values;
+    }
+}
@@ -0,0 +1,57 @@
+package data;
+
+import junit.framework.TestCase;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import java.util.List;
+
+import dal.PostingCodec;
+import dal.Tokenizer;
+
+public class TokenizerTest extends TestCase {
+
+    public TokenizerTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        return new TestSuite(TokenizerTest.class);
+    }
+
+    public void testTokenize_DiacritizedArabic_NormalizesTermsAndKeepsOffsets() {
+        String text = "بِسْمِ اللَّهِ، الرَّحْمَٰنِ";
+
+        List<Tokenizer.Token> tokens = Tokenizer.tokenize(text);
+
+        assertEquals(3, tokens.size());
+        assertEquals("Harakat should be removed from the term", "بسم", tokens.get(0).term);
+        assertEquals("الله", tokens.get(1).term);
+        assertEquals("Offsets should cover the original diacritized word", "اللَّهِ",
+                text.substring(tokens.get(1).start, tokens.get(1).end));
+        assertEquals(2, tokens.get(2).position);
+    }
+
+    public void testTokenize_EnglishPunctuation_SplitsAndLowercases() {
+        List<Tokenizer.Token> tokens = Tokenizer.tokenize("The quick, brown FOX!");
+
+        assertEquals(4, tokens.size());
+        assertEquals("the", tokens.get(0).term);
+        assertEquals("fox", tokens.get(3).term);
+        assertEquals("fox", Tokenizer.normalize(" Fox "));
+        assertNull("Two words are not a single term", Tokenizer.normalize("two words"));
+    }
+
+    public void testPostingCodec_Occurrences_RoundTrip() {
+        List<Tokenizer.Token> tokens = Tokenizer.tokenize("dog cat dog bird dog");
+        tokens.removeIf(token -> !token.term.equals("dog"));
+
+        PostingCodec.Occurrences decoded = PostingCodec.decode(PostingCodec.encode(tokens));
+
+        assertEquals(3, decoded.size());
+        assertEquals(2, decoded.positions[1]);
+        assertEquals(8, decoded.starts[1]);
+        assertEquals(11, decoded.ends[1]);
+        assertEquals(4, decoded.positions[2]);
+    }
+}
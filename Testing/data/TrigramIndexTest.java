@@ -0,0 +1,46 @@
+package data;
+
+import junit.framework.TestCase;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import java.util.Set;
+
+import dal.TrigramIndex;
+
+public class TrigramIndexTest extends TestCase {
+
+    public TrigramIndexTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        return new TestSuite(TrigramIndexTest.class);
+    }
+
+    public void testWordGrams_DiacritizedPage_HoldsGramsOfPlainAndDiacritizedQuery() {
+        Set<String> page = grams("ذَهَبَ الوَلَدُ إلى المَدْرَسَةِ فِي الصَّبَاحِ");
+
+        assertTrue(page.containsAll(grams("المدرسة")));
+        assertTrue(page.containsAll(grams("المَدْرَسَة")));
+        assertTrue("Fragments inside a word match too", page.containsAll(grams("درس")));
+        assertFalse(page.containsAll(grams("الكتاب")));
+    }
+
+    public void testWordGrams_FragmentInsideWord_IsSubset() {
+        Set<String> page = grams("The quick brown fox jumps over the Lazy dog");
+
+        assertTrue(page.containsAll(grams("azy")));
+        assertTrue("Stopwords are kept as grams", page.containsAll(grams("the")));
+        assertFalse("Grams do not span words", page.containsAll(grams("oxj")));
+    }
+
+    public void testWordGrams_ShortRuns_HaveNoGrams() {
+        assertTrue(grams("a b to").isEmpty());
+        assertEquals(1, grams("a-bcd").size());
+    }
+
+    private static Set<String> grams(String text) {
+        return TrigramIndex.wordGrams(TrigramIndex.normalize(text));
+    }
+}
@@ -18,6 +18,7 @@ CREATE TABLE `pages` (
 	`fileId` INT(11) NOT NULL,
 	`pageNumber` INT(11) NOT NULL,
 	`pageContent` LONGTEXT NOT NULL COLLATE 'utf8mb4_general_ci',
+	`pageContentZ` LONGBLOB NULL DEFAULT NULL,
 	PRIMARY KEY (`pageId`) USING BTREE,
 	UNIQUE INDEX `file_id` (`fileId`, `pageNumber`) USING BTREE,
 	CONSTRAINT `pages_ibfk_1` FOREIGN KEY (`fileId`) REFERENCES `files` (`fileid`) ON UPDATE RESTRICT ON DELETE CASCADE
@@ -30,6 +31,7 @@ CREATE TABLE `transliteratedpages` (
 	`id` INT(11) NOT NULL AUTO_INCREMENT,
 	`pageId` INT(11) NOT NULL,
 	`transliteratedText` LONGTEXT NOT NULL COLLATE 'utf8mb4_general_ci',
+	`transliteratedTextZ` LONGBLOB NULL DEFAULT NULL,
 	PRIMARY KEY (`id`) USING BTREE,
 	UNIQUE INDEX `page_id` (`pageId`) USING BTREE,
 	CONSTRAINT `transliteratedpages_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE
@@ -39,15 +41,29 @@ ENGINE=InnoDB
 AUTO_INCREMENT=32
 ;
 
+CREATE TABLE `words` (
+	`wordId` INT(11) NOT NULL AUTO_INCREMENT,
+	`word` VARCHAR(512) NOT NULL COLLATE 'utf8mb4_nopad_bin',
+	PRIMARY KEY (`wordId`) USING BTREE,
+	UNIQUE INDEX `word` (`word`) USING BTREE
+)
+COLLATE='utf8mb4_nopad_bin'
+ENGINE=InnoDB
+;
+
 CREATE TABLE `lemmatization` (
 	`id` INT(11) NOT NULL AUTO_INCREMENT,
 	`pageId` INT(11) NOT NULL,
-	`word` LONGTEXT NOT NULL COLLATE 'utf8mb4_general_ci',
-	`lemma` LONGTEXT NULL DEFAULT NULL COLLATE 'utf8mb4_general_ci',
+	`wordId` INT(11) NOT NULL,
+	`lemmaId` INT(11) NULL DEFAULT NULL,
 	PRIMARY KEY (`id`) USING BTREE,
 	UNIQUE INDEX `page_id` (`id`, `pageId`) USING BTREE,
 	INDEX `lemmatization_ibfk_1` (`pageId`) USING BTREE,
-	CONSTRAINT `lemmatization_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE
+	INDEX `lemmatization_ibfk_2` (`wordId`) USING BTREE,
+	INDEX `lemmatization_ibfk_3` (`lemmaId`) USING BTREE,
+	CONSTRAINT `lemmatization_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE,
+	CONSTRAINT `lemmatization_ibfk_2` FOREIGN KEY (`wordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT,
+	CONSTRAINT `lemmatization_ibfk_3` FOREIGN KEY (`lemmaId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT
 )
 COLLATE='utf8mb4_general_ci'
 ENGINE=InnoDB
@@ -57,12 +73,16 @@ AUTO_INCREMENT=14573
 CREATE TABLE `pos` (
 	`id` INT(11) NOT NULL AUTO_INCREMENT,
 	`pageId` INT(11) NOT NULL,
-	`word` LONGTEXT NOT NULL COLLATE 'utf8mb4_general_ci',
-	`pos` LONGTEXT NULL DEFAULT NULL COLLATE 'utf8mb4_general_ci',
+	`wordId` INT(11) NOT NULL,
+	`posId` INT(11) NULL DEFAULT NULL,
 	PRIMARY KEY (`id`) USING BTREE,
 	UNIQUE INDEX `page_id` (`id`, `pageId`) USING BTREE,
 	INDEX `pos_ibfk_1` (`pageId`) USING BTREE,
-	CONSTRAINT `pos_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE
+	INDEX `pos_ibfk_2` (`wordId`) USING BTREE,
+	INDEX `pos_ibfk_3` (`posId`) USING BTREE,
+	CONSTRAINT `pos_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE,
+	CONSTRAINT `pos_ibfk_2` FOREIGN KEY (`wordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT,
+	CONSTRAINT `pos_ibfk_3` FOREIGN KEY (`posId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT
 )
 COLLATE='utf8mb4_general_ci'
 ENGINE=InnoDB
@@ -72,12 +92,16 @@ AUTO_INCREMENT=613
 CREATE TABLE `rootextraction` (
 	`id` INT(11) NOT NULL AUTO_INCREMENT,
 	`pageId` INT(11) NOT NULL,
-	`word` LONGTEXT NOT NULL COLLATE 'utf8mb4_general_ci',
-	`root` LONGTEXT NULL DEFAULT NULL COLLATE 'utf8mb4_general_ci',
+	`wordId` INT(11) NOT NULL,
+	`rootId` INT(11) NULL DEFAULT NULL,
 	PRIMARY KEY (`id`) USING BTREE,
 	UNIQUE INDEX `page_id` (`id`, `pageId`) USING BTREE,
 	INDEX `rootExtraction_ibfk_1` (`pageId`) USING BTREE,
-	CONSTRAINT `rootExtraction_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE
+	INDEX `rootExtraction_ibfk_2` (`wordId`) USING BTREE,
+	INDEX `rootExtraction_ibfk_3` (`rootId`) USING BTREE,
+	CONSTRAINT `rootExtraction_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE,
+	CONSTRAINT `rootExtraction_ibfk_2` FOREIGN KEY (`wordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT,
+	CONSTRAINT `rootExtraction_ibfk_3` FOREIGN KEY (`rootId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT
 )
 COLLATE='utf8mb4_general_ci'
 ENGINE=InnoDB
@@ -87,12 +111,16 @@ AUTO_INCREMENT=14506
 CREATE TABLE `stemmation` (
 	`id` INT(11) NOT NULL AUTO_INCREMENT,
 	`pageId` INT(11) NOT NULL,
-	`word` LONGTEXT NOT NULL COLLATE 'utf8mb4_general_ci',
-	`stem` LONGTEXT NULL DEFAULT NULL COLLATE 'utf8mb4_general_ci',
+	`wordId` INT(11) NOT NULL,
+	`stemId` INT(11) NULL DEFAULT NULL,
 	PRIMARY KEY (`id`) USING BTREE,
 	UNIQUE INDEX `page_id` (`id`, `pageId`) USING BTREE,
 	INDEX `stemmation_ibfk_1` (`pageId`) USING BTREE,
-	CONSTRAINT `stemmation_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE
+	INDEX `stemmation_ibfk_2` (`wordId`) USING BTREE,
+	INDEX `stemmation_ibfk_3` (`stemId`) USING BTREE,
+	CONSTRAINT `stemmation_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE,
+	CONSTRAINT `stemmation_ibfk_2` FOREIGN KEY (`wordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT,
+	CONSTRAINT `stemmation_ibfk_3` FOREIGN KEY (`stemId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT
 )
 COLLATE='utf8mb4_general_ci'
 ENGINE=InnoDB
@@ -102,12 +130,16 @@ AUTO_INCREMENT=14460
 CREATE TABLE `wordsegementation` (
 	`id` INT(11) NOT NULL AUTO_INCREMENT,
 	`pageId` INT(11) NOT NULL,
-	`word` LONGTEXT NOT NULL COLLATE 'utf8mb4_general_ci',
-	`segment` LONGTEXT NULL DEFAULT NULL COLLATE 'utf8mb4_general_ci',
+	`wordId` INT(11) NOT NULL,
+	`segmentId` INT(11) NULL DEFAULT NULL,
 	PRIMARY KEY (`id`) USING BTREE,
 	UNIQUE INDEX `page_id` (`id`, `pageId`) USING BTREE,
 	INDEX `wordSegementation_ibfk_1` (`pageId`) USING BTREE,
-	CONSTRAINT `wordSegementation_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE
+	INDEX `wordSegementation_ibfk_2` (`wordId`) USING BTREE,
+	INDEX `wordSegementation_ibfk_3` (`segmentId`) USING BTREE,
+	CONSTRAINT `wordSegementation_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE,
+	CONSTRAINT `wordSegementation_ibfk_2` FOREIGN KEY (`wordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT,
+	CONSTRAINT `wordSegementation_ibfk_3` FOREIGN KEY (`segmentId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT
 )
 COLLATE='utf8mb4_general_ci'
 ENGINE=InnoDB
@@ -117,12 +149,14 @@ AUTO_INCREMENT=14475
 CREATE TABLE `pkl` (
 	`id` INT(11) NOT NULL AUTO_INCREMENT,
 	`pageId` INT(11) NOT NULL,
-	`word` LONGTEXT NOT NULL COLLATE 'utf8mb4_general_ci',
+	`wordId` INT(11) NOT NULL,
 	`pklScore` DOUBLE NOT NULL DEFAULT '0',
 	PRIMARY KEY (`id`) USING BTREE,
 	UNIQUE INDEX `page_id` (`id`, `pageId`) USING BTREE,
 	INDEX `pkl_ibfk_1` (`pageId`) USING BTREE,
-	CONSTRAINT `pkl_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE
+	INDEX `pkl_ibfk_2` (`wordId`) USING BTREE,
+	CONSTRAINT `pkl_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE,
+	CONSTRAINT `pkl_ibfk_2` FOREIGN KEY (`wordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT
 )
 COLLATE='utf8mb4_general_ci'
 ENGINE=InnoDB
@@ -131,23 +165,163 @@ AUTO_INCREMENT=14394
 CREATE TABLE `pmi` (
 	`id` INT(11) NOT NULL AUTO_INCREMENT,
 	`pageId` INT(11) NOT NULL,
-	`word` LONGTEXT NOT NULL COLLATE 'utf8mb4_general_ci',
+	`wordId` INT(11) NOT NULL,
 	`pmiScore` DOUBLE NOT NULL DEFAULT '0',
 	PRIMARY KEY (`id`) USING BTREE,
 	UNIQUE INDEX `page_id` (`id`, `pageId`) USING BTREE,
 	INDEX `pmi_ibfk_1` (`pageId`) USING BTREE,
-	CONSTRAINT `pmi_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE
+	INDEX `pmi_ibfk_2` (`wordId`) USING BTREE,
+	CONSTRAINT `pmi_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE,
+	CONSTRAINT `pmi_ibfk_2` FOREIGN KEY (`wordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT
 )
 COLLATE='utf8mb4_general_ci'
 ENGINE=InnoDB
 AUTO_INCREMENT=14386
 ;
+CREATE TABLE `morphindex` (
+	`form` TINYINT(4) NOT NULL,
+	`formId` INT(11) NOT NULL,
+	`pageId` INT(11) NOT NULL,
+	`wordId` INT(11) NOT NULL,
+	PRIMARY KEY (`form`, `formId`, `pageId`, `wordId`) USING BTREE,
+	INDEX `morphindex_ibfk_1` (`pageId`) USING BTREE,
+	INDEX `morphindex_ibfk_2` (`formId`) USING BTREE,
+	INDEX `morphindex_ibfk_3` (`wordId`) USING BTREE,
+	CONSTRAINT `morphindex_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE,
+	CONSTRAINT `morphindex_ibfk_2` FOREIGN KEY (`formId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT,
+	CONSTRAINT `morphindex_ibfk_3` FOREIGN KEY (`wordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT
+)
+COLLATE='utf8mb4_general_ci'
+ENGINE=InnoDB
+;
+CREATE TABLE `pageanalysis` (
+	`pageId` INT(11) NOT NULL,
+	`formatVersion` TINYINT(4) NOT NULL,
+	`analysis` LONGBLOB NOT NULL,
+	PRIMARY KEY (`pageId`) USING BTREE,
+	CONSTRAINT `pageanalysis_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE
+)
+COLLATE='utf8mb4_general_ci'
+ENGINE=InnoDB
+;
+CREATE TABLE `pagestats` (
+	`pageId` INT(11) NOT NULL,
+	`fileId` INT(11) NOT NULL,
+	`tokenCount` INT(11) NOT NULL,
+	PRIMARY KEY (`pageId`) USING BTREE,
+	INDEX `pagestats_fileId` (`fileId`) USING BTREE,
+	CONSTRAINT `pagestats_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE
+)
+COLLATE='utf8mb4_general_ci'
+ENGINE=InnoDB
+;
+CREATE TABLE `postings` (
+	`wordId` INT(11) NOT NULL,
+	`pageId` INT(11) NOT NULL,
+	`termFreq` INT(11) NOT NULL,
+	`positions` BLOB NOT NULL,
+	PRIMARY KEY (`wordId`, `pageId`) USING BTREE,
+	INDEX `postings_ibfk_1` (`pageId`) USING BTREE,
+	CONSTRAINT `postings_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE,
+	CONSTRAINT `postings_ibfk_2` FOREIGN KEY (`wordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT
+)
+COLLATE='utf8mb4_general_ci'
+ENGINE=InnoDB
+;
+CREATE TABLE `trigrams` (
+	`gram` BIGINT(20) NOT NULL,
+	`pageId` INT(11) NOT NULL,
+	PRIMARY KEY (`gram`, `pageId`) USING BTREE,
+	INDEX `trigrams_ibfk_1` (`pageId`) USING BTREE,
+	CONSTRAINT `trigrams_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE
+)
+COLLATE='utf8mb4_general_ci'
+ENGINE=InnoDB
+;
+CREATE TABLE `pagegrams` (
+	`pageId` INT(11) NOT NULL,
+	`grams` LONGTEXT NOT NULL COLLATE 'utf8mb4_general_ci',
+	PRIMARY KEY (`pageId`) USING BTREE,
+	FULLTEXT INDEX `pagegrams_fulltext` (`grams`),
+	CONSTRAINT `pagegrams_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE
+)
+COLLATE='utf8mb4_general_ci'
+ENGINE=InnoDB
+;
+CREATE TABLE `keywords` (
+	`fileId` INT(11) NOT NULL,
+	`wordId` INT(11) NOT NULL,
+	`score` DOUBLE NOT NULL,
+	`corpusFiles` INT(11) NOT NULL,
+	PRIMARY KEY (`fileId`, `wordId`) USING BTREE,
+	INDEX `keywords_word` (`wordId`, `score`) USING BTREE,
+	CONSTRAINT `keywords_ibfk_1` FOREIGN KEY (`fileId`) REFERENCES `files` (`fileid`) ON UPDATE RESTRICT ON DELETE CASCADE,
+	CONSTRAINT `keywords_ibfk_2` FOREIGN KEY (`wordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT
+)
+COLLATE='utf8mb4_general_ci'
+ENGINE=InnoDB
+;
+CREATE TABLE `minhash` (
+	`fileId` INT(11) NOT NULL,
+	`signature` BLOB NOT NULL,
+	PRIMARY KEY (`fileId`) USING BTREE,
+	CONSTRAINT `minhash_ibfk_1` FOREIGN KEY (`fileId`) REFERENCES `files` (`fileid`) ON UPDATE RESTRICT ON DELETE CASCADE
+)
+COLLATE='utf8mb4_general_ci'
+ENGINE=InnoDB
+;
+CREATE TABLE `lshbands` (
+	`band` TINYINT(4) NOT NULL,
+	`bucket` BIGINT(20) NOT NULL,
+	`fileId` INT(11) NOT NULL,
+	PRIMARY KEY (`band`, `bucket`, `fileId`) USING BTREE,
+	INDEX `lshbands_ibfk_1` (`fileId`) USING BTREE,
+	CONSTRAINT `lshbands_ibfk_1` FOREIGN KEY (`fileId`) REFERENCES `files` (`fileid`) ON UPDATE RESTRICT ON DELETE CASCADE
+)
+COLLATE='utf8mb4_general_ci'
+ENGINE=InnoDB
+;
+CREATE TABLE `nearduplicates` (
+	`fileId` INT(11) NOT NULL,
+	`duplicateOf` INT(11) NOT NULL,
+	`similarity` DOUBLE NOT NULL,
+	PRIMARY KEY (`fileId`, `duplicateOf`) USING BTREE,
+	INDEX `nearduplicates_ibfk_2` (`duplicateOf`) USING BTREE,
+	CONSTRAINT `nearduplicates_ibfk_1` FOREIGN KEY (`fileId`) REFERENCES `files` (`fileid`) ON UPDATE RESTRICT ON DELETE CASCADE,
+	CONSTRAINT `nearduplicates_ibfk_2` FOREIGN KEY (`duplicateOf`) REFERENCES `files` (`fileid`) ON UPDATE RESTRICT ON DELETE CASCADE
+)
+COLLATE='utf8mb4_general_ci'
+ENGINE=InnoDB
+;
+CREATE TABLE `fileclusters` (
+	`fileId` INT(11) NOT NULL,
+	`clusterId` INT(11) NOT NULL,
+	`similarity` DOUBLE NOT NULL,
+	PRIMARY KEY (`fileId`) USING BTREE,
+	INDEX `fileclusters_cluster` (`clusterId`, `similarity`) USING BTREE,
+	CONSTRAINT `fileclusters_ibfk_1` FOREIGN KEY (`fileId`) REFERENCES `files` (`fileid`) ON UPDATE RESTRICT ON DELETE CASCADE
+)
+COLLATE='utf8mb4_general_ci'
+ENGINE=InnoDB
+;
+CREATE TABLE `corpusstate` (
+	`id` TINYINT(4) NOT NULL,
+	`changes` BIGINT(20) NOT NULL DEFAULT '0',
+	PRIMARY KEY (`id`) USING BTREE
+)
+COLLATE='utf8mb4_general_ci'
+ENGINE=InnoDB
+;
+
 CREATE TABLE `tfidf` (
 	`tfidfId` INT(11) NOT NULL AUTO_INCREMENT,
 	`fileId` INT(11) NOT NULL,
 	`tfidfScore` DOUBLE NOT NULL DEFAULT '0',
+	`corpusFiles` INT(11) NOT NULL DEFAULT '0',
+	`corpusChanges` BIGINT(20) NOT NULL DEFAULT '-1',
 	PRIMARY KEY (`tfidfId`) USING BTREE,
 	INDEX `tfidf_fk` (`fileId`) USING BTREE,
+	INDEX `tfidf_changes` (`corpusChanges`) USING BTREE,
 	CONSTRAINT `tfidf_fk` FOREIGN KEY (`fileId`) REFERENCES `files` (`fileid`) ON UPDATE RESTRICT ON DELETE CASCADE
 )
 COLLATE='utf8mb4_general_ci'
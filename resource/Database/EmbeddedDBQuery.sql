@@ -0,0 +1,255 @@
+-- Schema for the embedded H2 backend (db.type = dal.EmbeddedDAOFactory). It is
+-- run automatically when the embedded database is created and mirrors
+-- EditorDBQuery.sql without the MariaDB-only table options. Keep both in sync.
+CREATE TABLE `files` (
+	`fileid` INT(11) NOT NULL AUTO_INCREMENT,
+	`fileName` VARCHAR(255) NOT NULL,
+	`fileHash` VARCHAR(255) NOT NULL,
+	`dateCreated` TIMESTAMP NOT NULL DEFAULT current_timestamp(),
+	`lastModified` TIMESTAMP NOT NULL DEFAULT current_timestamp() ON UPDATE current_timestamp(),
+	PRIMARY KEY (`fileid`)
+)
+;
+CREATE TABLE `pages` (
+	`pageId` INT(11) NOT NULL AUTO_INCREMENT,
+	`fileId` INT(11) NOT NULL,
+	`pageNumber` INT(11) NOT NULL,
+	`pageContent` LONGTEXT NOT NULL,
+	`pageContentZ` LONGBLOB NULL DEFAULT NULL,
+	PRIMARY KEY (`pageId`),
+	UNIQUE INDEX `file_id` (`fileId`, `pageNumber`),
+	CONSTRAINT `pages_ibfk_1` FOREIGN KEY (`fileId`) REFERENCES `files` (`fileid`) ON UPDATE RESTRICT ON DELETE CASCADE
+)
+;
+CREATE TABLE `transliteratedpages` (
+	`id` INT(11) NOT NULL AUTO_INCREMENT,
+	`pageId` INT(11) NOT NULL,
+	`transliteratedText` LONGTEXT NOT NULL,
+	`transliteratedTextZ` LONGBLOB NULL DEFAULT NULL,
+	PRIMARY KEY (`id`),
+	UNIQUE INDEX `page_id` (`pageId`),
+	CONSTRAINT `transliteratedpages_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE
+)
+;
+
+CREATE TABLE `words` (
+	`wordId` INT(11) NOT NULL AUTO_INCREMENT,
+	`word` VARCHAR(512) NOT NULL,
+	PRIMARY KEY (`wordId`),
+	UNIQUE INDEX `word` (`word`)
+)
+;
+
+CREATE TABLE `lemmatization` (
+	`id` INT(11) NOT NULL AUTO_INCREMENT,
+	`pageId` INT(11) NOT NULL,
+	`wordId` INT(11) NOT NULL,
+	`lemmaId` INT(11) NULL DEFAULT NULL,
+	PRIMARY KEY (`id`),
+	INDEX `lemmatization_ibfk_1` (`pageId`),
+	INDEX `lemmatization_ibfk_2` (`wordId`),
+	INDEX `lemmatization_ibfk_3` (`lemmaId`),
+	CONSTRAINT `lemmatization_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE,
+	CONSTRAINT `lemmatization_ibfk_2` FOREIGN KEY (`wordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT,
+	CONSTRAINT `lemmatization_ibfk_3` FOREIGN KEY (`lemmaId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT
+)
+;
+
+CREATE TABLE `pos` (
+	`id` INT(11) NOT NULL AUTO_INCREMENT,
+	`pageId` INT(11) NOT NULL,
+	`wordId` INT(11) NOT NULL,
+	`posId` INT(11) NULL DEFAULT NULL,
+	PRIMARY KEY (`id`),
+	INDEX `pos_ibfk_1` (`pageId`),
+	INDEX `pos_ibfk_2` (`wordId`),
+	INDEX `pos_ibfk_3` (`posId`),
+	CONSTRAINT `pos_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE,
+	CONSTRAINT `pos_ibfk_2` FOREIGN KEY (`wordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT,
+	CONSTRAINT `pos_ibfk_3` FOREIGN KEY (`posId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT
+)
+;
+
+CREATE TABLE `rootextraction` (
+	`id` INT(11) NOT NULL AUTO_INCREMENT,
+	`pageId` INT(11) NOT NULL,
+	`wordId` INT(11) NOT NULL,
+	`rootId` INT(11) NULL DEFAULT NULL,
+	PRIMARY KEY (`id`),
+	INDEX `rootExtraction_ibfk_1` (`pageId`),
+	INDEX `rootExtraction_ibfk_2` (`wordId`),
+	INDEX `rootExtraction_ibfk_3` (`rootId`),
+	CONSTRAINT `rootExtraction_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE,
+	CONSTRAINT `rootExtraction_ibfk_2` FOREIGN KEY (`wordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT,
+	CONSTRAINT `rootExtraction_ibfk_3` FOREIGN KEY (`rootId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT
+)
+;
+
+CREATE TABLE `stemmation` (
+	`id` INT(11) NOT NULL AUTO_INCREMENT,
+	`pageId` INT(11) NOT NULL,
+	`wordId` INT(11) NOT NULL,
+	`stemId` INT(11) NULL DEFAULT NULL,
+	PRIMARY KEY (`id`),
+	INDEX `stemmation_ibfk_1` (`pageId`),
+	INDEX `stemmation_ibfk_2` (`wordId`),
+	INDEX `stemmation_ibfk_3` (`stemId`),
+	CONSTRAINT `stemmation_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE,
+	CONSTRAINT `stemmation_ibfk_2` FOREIGN KEY (`wordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT,
+	CONSTRAINT `stemmation_ibfk_3` FOREIGN KEY (`stemId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT
+)
+;
+
+CREATE TABLE `wordsegementation` (
+	`id` INT(11) NOT NULL AUTO_INCREMENT,
+	`pageId` INT(11) NOT NULL,
+	`wordId` INT(11) NOT NULL,
+	`segmentId` INT(11) NULL DEFAULT NULL,
+	PRIMARY KEY (`id`),
+	INDEX `wordSegementation_ibfk_1` (`pageId`),
+	INDEX `wordSegementation_ibfk_2` (`wordId`),
+	INDEX `wordSegementation_ibfk_3` (`segmentId`),
+	CONSTRAINT `wordSegementation_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE,
+	CONSTRAINT `wordSegementation_ibfk_2` FOREIGN KEY (`wordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT,
+	CONSTRAINT `wordSegementation_ibfk_3` FOREIGN KEY (`segmentId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT
+)
+;
+
+CREATE TABLE `pkl` (
+	`id` INT(11) NOT NULL AUTO_INCREMENT,
+	`pageId` INT(11) NOT NULL,
+	`wordId` INT(11) NOT NULL,
+	`pklScore` DOUBLE NOT NULL DEFAULT '0',
+	PRIMARY KEY (`id`),
+	INDEX `pkl_ibfk_1` (`pageId`),
+	INDEX `pkl_ibfk_2` (`wordId`),
+	CONSTRAINT `pkl_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE,
+	CONSTRAINT `pkl_ibfk_2` FOREIGN KEY (`wordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT
+)
+;
+CREATE TABLE `pmi` (
+	`id` INT(11) NOT NULL AUTO_INCREMENT,
+	`pageId` INT(11) NOT NULL,
+	`wordId` INT(11) NOT NULL,
+	`pmiScore` DOUBLE NOT NULL DEFAULT '0',
+	PRIMARY KEY (`id`),
+	INDEX `pmi_ibfk_1` (`pageId`),
+	INDEX `pmi_ibfk_2` (`wordId`),
+	CONSTRAINT `pmi_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE,
+	CONSTRAINT `pmi_ibfk_2` FOREIGN KEY (`wordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT
+)
+;
+CREATE TABLE `morphindex` (
+	`form` TINYINT(4) NOT NULL,
+	`formId` INT(11) NOT NULL,
+	`pageId` INT(11) NOT NULL,
+	`wordId` INT(11) NOT NULL,
+	PRIMARY KEY (`form`, `formId`, `pageId`, `wordId`),
+	INDEX `morphindex_ibfk_1` (`pageId`),
+	INDEX `morphindex_ibfk_2` (`formId`),
+	INDEX `morphindex_ibfk_3` (`wordId`),
+	CONSTRAINT `morphindex_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE,
+	CONSTRAINT `morphindex_ibfk_2` FOREIGN KEY (`formId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT,
+	CONSTRAINT `morphindex_ibfk_3` FOREIGN KEY (`wordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT
+)
+;
+CREATE TABLE `pageanalysis` (
+	`pageId` INT(11) NOT NULL,
+	`formatVersion` TINYINT(4) NOT NULL,
+	`analysis` LONGBLOB NOT NULL,
+	PRIMARY KEY (`pageId`),
+	CONSTRAINT `pageanalysis_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE
+)
+;
+CREATE TABLE `pagestats` (
+	`pageId` INT(11) NOT NULL,
+	`fileId` INT(11) NOT NULL,
+	`tokenCount` INT(11) NOT NULL,
+	PRIMARY KEY (`pageId`),
+	INDEX `pagestats_fileId` (`fileId`),
+	CONSTRAINT `pagestats_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE
+)
+;
+CREATE TABLE `postings` (
+	`wordId` INT(11) NOT NULL,
+	`pageId` INT(11) NOT NULL,
+	`termFreq` INT(11) NOT NULL,
+	`positions` BLOB NOT NULL,
+	PRIMARY KEY (`wordId`, `pageId`),
+	INDEX `postings_ibfk_1` (`pageId`),
+	CONSTRAINT `postings_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE,
+	CONSTRAINT `postings_ibfk_2` FOREIGN KEY (`wordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT
+)
+;
+CREATE TABLE `trigrams` (
+	`gram` BIGINT(20) NOT NULL,
+	`pageId` INT(11) NOT NULL,
+	PRIMARY KEY (`gram`, `pageId`),
+	INDEX `trigrams_ibfk_1` (`pageId`),
+	CONSTRAINT `trigrams_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE
+)
+;
+CREATE TABLE `keywords` (
+	`fileId` INT(11) NOT NULL,
+	`wordId` INT(11) NOT NULL,
+	`score` DOUBLE NOT NULL,
+	`corpusFiles` INT(11) NOT NULL,
+	PRIMARY KEY (`fileId`, `wordId`),
+	INDEX `keywords_word` (`wordId`, `score`),
+	CONSTRAINT `keywords_ibfk_1` FOREIGN KEY (`fileId`) REFERENCES `files` (`fileid`) ON UPDATE RESTRICT ON DELETE CASCADE,
+	CONSTRAINT `keywords_ibfk_2` FOREIGN KEY (`wordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT
+)
+;
+CREATE TABLE `minhash` (
+	`fileId` INT(11) NOT NULL,
+	`signature` BLOB NOT NULL,
+	PRIMARY KEY (`fileId`),
+	CONSTRAINT `minhash_ibfk_1` FOREIGN KEY (`fileId`) REFERENCES `files` (`fileid`) ON UPDATE RESTRICT ON DELETE CASCADE
+)
+;
+CREATE TABLE `lshbands` (
+	`band` TINYINT(4) NOT NULL,
+	`bucket` BIGINT(20) NOT NULL,
+	`fileId` INT(11) NOT NULL,
+	PRIMARY KEY (`band`, `bucket`, `fileId`),
+	INDEX `lshbands_ibfk_1` (`fileId`),
+	CONSTRAINT `lshbands_ibfk_1` FOREIGN KEY (`fileId`) REFERENCES `files` (`fileid`) ON UPDATE RESTRICT ON DELETE CASCADE
+)
+;
+CREATE TABLE `nearduplicates` (
+	`fileId` INT(11) NOT NULL,
+	`duplicateOf` INT(11) NOT NULL,
+	`similarity` DOUBLE NOT NULL,
+	PRIMARY KEY (`fileId`, `duplicateOf`),
+	INDEX `nearduplicates_ibfk_2` (`duplicateOf`),
+	CONSTRAINT `nearduplicates_ibfk_1` FOREIGN KEY (`fileId`) REFERENCES `files` (`fileid`) ON UPDATE RESTRICT ON DELETE CASCADE,
+	CONSTRAINT `nearduplicates_ibfk_2` FOREIGN KEY (`duplicateOf`) REFERENCES `files` (`fileid`) ON UPDATE RESTRICT ON DELETE CASCADE
+)
+;
+CREATE TABLE `fileclusters` (
+	`fileId` INT(11) NOT NULL,
+	`clusterId` INT(11) NOT NULL,
+	`similarity` DOUBLE NOT NULL,
+	PRIMARY KEY (`fileId`),
+	INDEX `fileclusters_cluster` (`clusterId`, `similarity`),
+	CONSTRAINT `fileclusters_ibfk_1` FOREIGN KEY (`fileId`) REFERENCES `files` (`fileid`) ON UPDATE RESTRICT ON DELETE CASCADE
+)
+;
+CREATE TABLE `corpusstate` (
+	`id` TINYINT(4) NOT NULL,
+	`changes` BIGINT(20) NOT NULL DEFAULT '0',
+	PRIMARY KEY (`id`)
+)
+;
+CREATE TABLE `tfidf` (
+	`tfidfId` INT(11) NOT NULL AUTO_INCREMENT,
+	`fileId` INT(11) NOT NULL,
+	`tfidfScore` DOUBLE NOT NULL DEFAULT '0',
+	`corpusFiles` INT(11) NOT NULL DEFAULT '0',
+	`corpusChanges` BIGINT(20) NOT NULL DEFAULT '-1',
+	PRIMARY KEY (`tfidfId`),
+	INDEX `tfidf_fk` (`fileId`),
+	INDEX `tfidf_changes` (`corpusChanges`),
+	CONSTRAINT `tfidf_fk` FOREIGN KEY (`fileId`) REFERENCES `files` (`fileid`) ON UPDATE RESTRICT ON DELETE CASCADE
+)
+;
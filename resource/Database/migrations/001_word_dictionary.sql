@@ -0,0 +1,149 @@
+-- Moves the analysis tables from repeated LONGTEXT words to integer ids in a
+-- shared `words` dictionary. Run once against an existing realeditor database:
+--   mysql -u root -p < resource/Database/migrations/001_word_dictionary.sql
+-- Words longer than 512 characters are shortened by word_key below to the form
+-- WordDictionary.normalize stores: the first 479 UTF-16 units (478 when that
+-- would split a surrogate pair), '~' and the upper-case MD5 of the whole word.
+USE realeditor;
+
+DELIMITER //
+CREATE FUNCTION `word_key`(`word` LONGTEXT CHARSET utf8mb4) RETURNS VARCHAR(512) CHARSET utf8mb4 COLLATE utf8mb4_nopad_bin
+	DETERMINISTIC
+BEGIN
+	DECLARE units LONGBLOB;
+	DECLARE prefix LONGBLOB;
+	IF `word` IS NULL THEN
+		RETURN NULL;
+	END IF;
+	-- Big-endian UTF-16, so a high surrogate starts with 0xD8 to 0xDB
+	SET units = CAST(CONVERT(`word` USING utf16) AS BINARY);
+	IF LENGTH(units) <= 1024 THEN
+		RETURN `word`;
+	END IF;
+	SET prefix = LEFT(units, 958);
+	IF ASCII(SUBSTRING(prefix, 957, 1)) BETWEEN 216 AND 219 THEN
+		SET prefix = LEFT(prefix, 956);
+	END IF;
+	RETURN CONCAT(CONVERT(CONVERT(prefix USING utf16) USING utf8mb4), '~', UPPER(MD5(`word`)));
+END //
+DELIMITER ;
+
+CREATE TABLE `words` (
+	`wordId` INT(11) NOT NULL AUTO_INCREMENT,
+	`word` VARCHAR(512) NOT NULL COLLATE 'utf8mb4_nopad_bin',
+	PRIMARY KEY (`wordId`) USING BTREE,
+	UNIQUE INDEX `word` (`word`) USING BTREE
+)
+COLLATE='utf8mb4_nopad_bin'
+ENGINE=InnoDB
+;
+
+INSERT IGNORE INTO `words` (`word`) SELECT DISTINCT word_key(`word`) COLLATE utf8mb4_nopad_bin FROM `lemmatization`;
+INSERT IGNORE INTO `words` (`word`) SELECT DISTINCT word_key(`lemma`) COLLATE utf8mb4_nopad_bin FROM `lemmatization` WHERE `lemma` IS NOT NULL;
+INSERT IGNORE INTO `words` (`word`) SELECT DISTINCT word_key(`word`) COLLATE utf8mb4_nopad_bin FROM `pos`;
+INSERT IGNORE INTO `words` (`word`) SELECT DISTINCT word_key(`pos`) COLLATE utf8mb4_nopad_bin FROM `pos` WHERE `pos` IS NOT NULL;
+INSERT IGNORE INTO `words` (`word`) SELECT DISTINCT word_key(`word`) COLLATE utf8mb4_nopad_bin FROM `rootextraction`;
+INSERT IGNORE INTO `words` (`word`) SELECT DISTINCT word_key(`root`) COLLATE utf8mb4_nopad_bin FROM `rootextraction` WHERE `root` IS NOT NULL;
+INSERT IGNORE INTO `words` (`word`) SELECT DISTINCT word_key(`word`) COLLATE utf8mb4_nopad_bin FROM `stemmation`;
+INSERT IGNORE INTO `words` (`word`) SELECT DISTINCT word_key(`stem`) COLLATE utf8mb4_nopad_bin FROM `stemmation` WHERE `stem` IS NOT NULL;
+INSERT IGNORE INTO `words` (`word`) SELECT DISTINCT word_key(`word`) COLLATE utf8mb4_nopad_bin FROM `wordsegementation`;
+INSERT IGNORE INTO `words` (`word`) SELECT DISTINCT word_key(`segment`) COLLATE utf8mb4_nopad_bin FROM `wordsegementation` WHERE `segment` IS NOT NULL;
+INSERT IGNORE INTO `words` (`word`) SELECT DISTINCT word_key(`word`) COLLATE utf8mb4_nopad_bin FROM `pkl`;
+INSERT IGNORE INTO `words` (`word`) SELECT DISTINCT word_key(`word`) COLLATE utf8mb4_nopad_bin FROM `pmi`;
+
+-- lemmatization
+ALTER TABLE `lemmatization`
+	ADD COLUMN `wordId` INT(11) NULL AFTER `pageId`,
+	ADD COLUMN `lemmaId` INT(11) NULL AFTER `wordId`;
+UPDATE `lemmatization` a JOIN `words` w ON w.`word` = word_key(a.`word`) COLLATE utf8mb4_nopad_bin SET a.`wordId` = w.`wordId`;
+UPDATE `lemmatization` a JOIN `words` w ON w.`word` = word_key(a.`lemma`) COLLATE utf8mb4_nopad_bin SET a.`lemmaId` = w.`wordId`;
+ALTER TABLE `lemmatization`
+	DROP COLUMN `word`,
+	DROP COLUMN `lemma`,
+	MODIFY `wordId` INT(11) NOT NULL,
+	ADD INDEX `lemmatization_ibfk_2` (`wordId`) USING BTREE,
+	ADD INDEX `lemmatization_ibfk_3` (`lemmaId`) USING BTREE,
+	ADD CONSTRAINT `lemmatization_ibfk_2` FOREIGN KEY (`wordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT,
+	ADD CONSTRAINT `lemmatization_ibfk_3` FOREIGN KEY (`lemmaId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT;
+
+-- pos
+ALTER TABLE `pos`
+	ADD COLUMN `wordId` INT(11) NULL AFTER `pageId`,
+	ADD COLUMN `posId` INT(11) NULL AFTER `wordId`;
+UPDATE `pos` a JOIN `words` w ON w.`word` = word_key(a.`word`) COLLATE utf8mb4_nopad_bin SET a.`wordId` = w.`wordId`;
+UPDATE `pos` a JOIN `words` w ON w.`word` = word_key(a.`pos`) COLLATE utf8mb4_nopad_bin SET a.`posId` = w.`wordId`;
+ALTER TABLE `pos`
+	DROP COLUMN `word`,
+	DROP COLUMN `pos`,
+	MODIFY `wordId` INT(11) NOT NULL,
+	ADD INDEX `pos_ibfk_2` (`wordId`) USING BTREE,
+	ADD INDEX `pos_ibfk_3` (`posId`) USING BTREE,
+	ADD CONSTRAINT `pos_ibfk_2` FOREIGN KEY (`wordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT,
+	ADD CONSTRAINT `pos_ibfk_3` FOREIGN KEY (`posId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT;
+
+-- rootextraction
+ALTER TABLE `rootextraction`
+	ADD COLUMN `wordId` INT(11) NULL AFTER `pageId`,
+	ADD COLUMN `rootId` INT(11) NULL AFTER `wordId`;
+UPDATE `rootextraction` a JOIN `words` w ON w.`word` = word_key(a.`word`) COLLATE utf8mb4_nopad_bin SET a.`wordId` = w.`wordId`;
+UPDATE `rootextraction` a JOIN `words` w ON w.`word` = word_key(a.`root`) COLLATE utf8mb4_nopad_bin SET a.`rootId` = w.`wordId`;
+ALTER TABLE `rootextraction`
+	DROP COLUMN `word`,
+	DROP COLUMN `root`,
+	MODIFY `wordId` INT(11) NOT NULL,
+	ADD INDEX `rootExtraction_ibfk_2` (`wordId`) USING BTREE,
+	ADD INDEX `rootExtraction_ibfk_3` (`rootId`) USING BTREE,
+	ADD CONSTRAINT `rootExtraction_ibfk_2` FOREIGN KEY (`wordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT,
+	ADD CONSTRAINT `rootExtraction_ibfk_3` FOREIGN KEY (`rootId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT;
+
+-- stemmation
+ALTER TABLE `stemmation`
+	ADD COLUMN `wordId` INT(11) NULL AFTER `pageId`,
+	ADD COLUMN `stemId` INT(11) NULL AFTER `wordId`;
+UPDATE `stemmation` a JOIN `words` w ON w.`word` = word_key(a.`word`) COLLATE utf8mb4_nopad_bin SET a.`wordId` = w.`wordId`;
+UPDATE `stemmation` a JOIN `words` w ON w.`word` = word_key(a.`stem`) COLLATE utf8mb4_nopad_bin SET a.`stemId` = w.`wordId`;
+ALTER TABLE `stemmation`
+	DROP COLUMN `word`,
+	DROP COLUMN `stem`,
+	MODIFY `wordId` INT(11) NOT NULL,
+	ADD INDEX `stemmation_ibfk_2` (`wordId`) USING BTREE,
+	ADD INDEX `stemmation_ibfk_3` (`stemId`) USING BTREE,
+	ADD CONSTRAINT `stemmation_ibfk_2` FOREIGN KEY (`wordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT,
+	ADD CONSTRAINT `stemmation_ibfk_3` FOREIGN KEY (`stemId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT;
+
+-- wordsegementation
+ALTER TABLE `wordsegementation`
+	ADD COLUMN `wordId` INT(11) NULL AFTER `pageId`,
+	ADD COLUMN `segmentId` INT(11) NULL AFTER `wordId`;
+UPDATE `wordsegementation` a JOIN `words` w ON w.`word` = word_key(a.`word`) COLLATE utf8mb4_nopad_bin SET a.`wordId` = w.`wordId`;
+UPDATE `wordsegementation` a JOIN `words` w ON w.`word` = word_key(a.`segment`) COLLATE utf8mb4_nopad_bin SET a.`segmentId` = w.`wordId`;
+ALTER TABLE `wordsegementation`
+	DROP COLUMN `word`,
+	DROP COLUMN `segment`,
+	MODIFY `wordId` INT(11) NOT NULL,
+	ADD INDEX `wordSegementation_ibfk_2` (`wordId`) USING BTREE,
+	ADD INDEX `wordSegementation_ibfk_3` (`segmentId`) USING BTREE,
+	ADD CONSTRAINT `wordSegementation_ibfk_2` FOREIGN KEY (`wordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT,
+	ADD CONSTRAINT `wordSegementation_ibfk_3` FOREIGN KEY (`segmentId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT;
+
+-- pkl
+ALTER TABLE `pkl`
+	ADD COLUMN `wordId` INT(11) NULL AFTER `pageId`;
+UPDATE `pkl` a JOIN `words` w ON w.`word` = word_key(a.`word`) COLLATE utf8mb4_nopad_bin SET a.`wordId` = w.`wordId`;
+ALTER TABLE `pkl`
+	DROP COLUMN `word`,
+	MODIFY `wordId` INT(11) NOT NULL,
+	ADD INDEX `pkl_ibfk_2` (`wordId`) USING BTREE,
+	ADD CONSTRAINT `pkl_ibfk_2` FOREIGN KEY (`wordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT;
+
+-- pmi
+ALTER TABLE `pmi`
+	ADD COLUMN `wordId` INT(11) NULL AFTER `pageId`;
+UPDATE `pmi` a JOIN `words` w ON w.`word` = word_key(a.`word`) COLLATE utf8mb4_nopad_bin SET a.`wordId` = w.`wordId`;
+ALTER TABLE `pmi`
+	DROP COLUMN `word`,
+	MODIFY `wordId` INT(11) NOT NULL,
+	ADD INDEX `pmi_ibfk_2` (`wordId`) USING BTREE,
+	ADD CONSTRAINT `pmi_ibfk_2` FOREIGN KEY (`wordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT;
+
+DROP FUNCTION `word_key`;
@@ -0,0 +1,10 @@
+-- Adds the binary columns used when storage.compressPages = true. Existing
+-- pages stay readable as plain text; run `java dal.MaintenanceTool
+-- compress-pages` afterwards to move them into the compressed columns.
+USE realeditor;
+
+ALTER TABLE `pages`
+	ADD COLUMN `pageContentZ` LONGBLOB NULL DEFAULT NULL AFTER `pageContent`;
+
+ALTER TABLE `transliteratedpages`
+	ADD COLUMN `transliteratedTextZ` LONGBLOB NULL DEFAULT NULL AFTER `transliteratedText`;
@@ -0,0 +1,15 @@
+-- Adds the table used when storage.analysisLayout = blob. Pages analysed under
+-- the row layout stay readable; run `java dal.MaintenanceTool pack-analysis`
+-- afterwards to move them into the new table.
+USE realeditor;
+
+CREATE TABLE `pageanalysis` (
+	`pageId` INT(11) NOT NULL,
+	`formatVersion` TINYINT(4) NOT NULL,
+	`analysis` LONGBLOB NOT NULL,
+	PRIMARY KEY (`pageId`) USING BTREE,
+	CONSTRAINT `pageanalysis_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE
+)
+COLLATE='utf8mb4_general_ci'
+ENGINE=InnoDB
+;
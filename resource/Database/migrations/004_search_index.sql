@@ -0,0 +1,18 @@
+-- Adds the positional search index. Run `java dal.MaintenanceTool
+-- rebuild-search-index` afterwards so pages stored before the upgrade become
+-- searchable; new and edited pages are indexed as they are saved.
+USE realeditor;
+
+CREATE TABLE `postings` (
+	`wordId` INT(11) NOT NULL,
+	`pageId` INT(11) NOT NULL,
+	`termFreq` INT(11) NOT NULL,
+	`positions` BLOB NOT NULL,
+	PRIMARY KEY (`wordId`, `pageId`) USING BTREE,
+	INDEX `postings_ibfk_1` (`pageId`) USING BTREE,
+	CONSTRAINT `postings_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE,
+	CONSTRAINT `postings_ibfk_2` FOREIGN KEY (`wordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT
+)
+COLLATE='utf8mb4_general_ci'
+ENGINE=InnoDB
+;
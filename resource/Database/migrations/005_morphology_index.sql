@@ -0,0 +1,21 @@
+-- Adds the root, lemma and stem index behind morphology-aware search. Run
+-- `java dal.MaintenanceTool rebuild-search-index` afterwards to fill it from
+-- the analyses already stored.
+USE realeditor;
+
+CREATE TABLE `morphindex` (
+	`form` TINYINT(4) NOT NULL,
+	`formId` INT(11) NOT NULL,
+	`pageId` INT(11) NOT NULL,
+	`wordId` INT(11) NOT NULL,
+	PRIMARY KEY (`form`, `formId`, `pageId`, `wordId`) USING BTREE,
+	INDEX `morphindex_ibfk_1` (`pageId`) USING BTREE,
+	INDEX `morphindex_ibfk_2` (`formId`) USING BTREE,
+	INDEX `morphindex_ibfk_3` (`wordId`) USING BTREE,
+	CONSTRAINT `morphindex_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE,
+	CONSTRAINT `morphindex_ibfk_2` FOREIGN KEY (`formId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT,
+	CONSTRAINT `morphindex_ibfk_3` FOREIGN KEY (`wordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT
+)
+COLLATE='utf8mb4_general_ci'
+ENGINE=InnoDB
+;
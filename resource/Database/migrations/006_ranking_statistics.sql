@@ -0,0 +1,16 @@
+-- Adds the per-page token counts used for BM25 ranking. Run `java
+-- dal.MaintenanceTool rebuild-search-index` afterwards; until then pages
+-- stored before the upgrade are left out of ranked results.
+USE realeditor;
+
+CREATE TABLE `pagestats` (
+	`pageId` INT(11) NOT NULL,
+	`fileId` INT(11) NOT NULL,
+	`tokenCount` INT(11) NOT NULL,
+	PRIMARY KEY (`pageId`) USING BTREE,
+	INDEX `pagestats_fileId` (`fileId`) USING BTREE,
+	CONSTRAINT `pagestats_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE
+)
+COLLATE='utf8mb4_general_ci'
+ENGINE=InnoDB
+;
@@ -0,0 +1,15 @@
+-- Adds the character trigram index behind substring search. Run `java
+-- dal.MaintenanceTool rebuild-search-index` afterwards so pages stored before
+-- the upgrade can be found.
+USE realeditor;
+
+CREATE TABLE `trigrams` (
+	`gram` BIGINT(20) NOT NULL,
+	`pageId` INT(11) NOT NULL,
+	PRIMARY KEY (`gram`, `pageId`) USING BTREE,
+	INDEX `trigrams_ibfk_1` (`pageId`) USING BTREE,
+	CONSTRAINT `trigrams_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE
+)
+COLLATE='utf8mb4_general_ci'
+ENGINE=InnoDB
+;
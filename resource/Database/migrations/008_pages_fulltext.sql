@@ -0,0 +1,5 @@
+-- Adds the FULLTEXT index used for keyword search when search.fullText is
+-- enabled. MariaDB only; the embedded database keeps using the trigram index.
+USE realeditor;
+
+ALTER TABLE `pages` ADD FULLTEXT INDEX `pageContent_fulltext` (`pageContent`);
@@ -0,0 +1,18 @@
+-- Adds the table holding the top TF-IDF terms of every file. Run `java
+-- dal.MaintenanceTool refresh-keywords` afterwards to score the files already
+-- stored.
+USE realeditor;
+
+CREATE TABLE `keywords` (
+	`fileId` INT(11) NOT NULL,
+	`wordId` INT(11) NOT NULL,
+	`score` DOUBLE NOT NULL,
+	`corpusFiles` INT(11) NOT NULL,
+	PRIMARY KEY (`fileId`, `wordId`) USING BTREE,
+	INDEX `keywords_word` (`wordId`, `score`) USING BTREE,
+	CONSTRAINT `keywords_ibfk_1` FOREIGN KEY (`fileId`) REFERENCES `files` (`fileid`) ON UPDATE RESTRICT ON DELETE CASCADE,
+	CONSTRAINT `keywords_ibfk_2` FOREIGN KEY (`wordId`) REFERENCES `words` (`wordId`) ON UPDATE RESTRICT ON DELETE RESTRICT
+)
+COLLATE='utf8mb4_general_ci'
+ENGINE=InnoDB
+;
@@ -0,0 +1,37 @@
+-- Adds the MinHash signatures, LSH band keys and near-duplicate links of
+-- files. Run `java dal.MaintenanceTool index-duplicates` afterwards to sign the
+-- files already stored.
+USE realeditor;
+
+CREATE TABLE `minhash` (
+	`fileId` INT(11) NOT NULL,
+	`signature` BLOB NOT NULL,
+	PRIMARY KEY (`fileId`) USING BTREE,
+	CONSTRAINT `minhash_ibfk_1` FOREIGN KEY (`fileId`) REFERENCES `files` (`fileid`) ON UPDATE RESTRICT ON DELETE CASCADE
+)
+COLLATE='utf8mb4_general_ci'
+ENGINE=InnoDB
+;
+CREATE TABLE `lshbands` (
+	`band` TINYINT(4) NOT NULL,
+	`bucket` BIGINT(20) NOT NULL,
+	`fileId` INT(11) NOT NULL,
+	PRIMARY KEY (`band`, `bucket`, `fileId`) USING BTREE,
+	INDEX `lshbands_ibfk_1` (`fileId`) USING BTREE,
+	CONSTRAINT `lshbands_ibfk_1` FOREIGN KEY (`fileId`) REFERENCES `files` (`fileid`) ON UPDATE RESTRICT ON DELETE CASCADE
+)
+COLLATE='utf8mb4_general_ci'
+ENGINE=InnoDB
+;
+CREATE TABLE `nearduplicates` (
+	`fileId` INT(11) NOT NULL,
+	`duplicateOf` INT(11) NOT NULL,
+	`similarity` DOUBLE NOT NULL,
+	PRIMARY KEY (`fileId`, `duplicateOf`) USING BTREE,
+	INDEX `nearduplicates_ibfk_2` (`duplicateOf`) USING BTREE,
+	CONSTRAINT `nearduplicates_ibfk_1` FOREIGN KEY (`fileId`) REFERENCES `files` (`fileid`) ON UPDATE RESTRICT ON DELETE CASCADE,
+	CONSTRAINT `nearduplicates_ibfk_2` FOREIGN KEY (`duplicateOf`) REFERENCES `files` (`fileid`) ON UPDATE RESTRICT ON DELETE CASCADE
+)
+COLLATE='utf8mb4_general_ci'
+ENGINE=InnoDB
+;
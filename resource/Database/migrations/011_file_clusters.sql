@@ -0,0 +1,15 @@
+-- Adds the table holding the cluster of every file, written by
+-- EditorBO.clusterDocuments.
+USE realeditor;
+
+CREATE TABLE `fileclusters` (
+	`fileId` INT(11) NOT NULL,
+	`clusterId` INT(11) NOT NULL,
+	`similarity` DOUBLE NOT NULL,
+	PRIMARY KEY (`fileId`) USING BTREE,
+	INDEX `fileclusters_cluster` (`clusterId`, `similarity`) USING BTREE,
+	CONSTRAINT `fileclusters_ibfk_1` FOREIGN KEY (`fileId`) REFERENCES `files` (`fileid`) ON UPDATE RESTRICT ON DELETE CASCADE
+)
+COLLATE='utf8mb4_general_ci'
+ENGINE=InnoDB
+;
@@ -0,0 +1,19 @@
+-- Records the corpus each stored TF-IDF score was computed against, and adds
+-- the corpus change counter it is compared with. Scores stored before the
+-- upgrade count as stale and are rescored in the background, or at once with
+-- `java dal.MaintenanceTool refresh-tfidf`.
+USE realeditor;
+
+CREATE TABLE `corpusstate` (
+	`id` TINYINT(4) NOT NULL,
+	`changes` BIGINT(20) NOT NULL DEFAULT '0',
+	PRIMARY KEY (`id`) USING BTREE
+)
+COLLATE='utf8mb4_general_ci'
+ENGINE=InnoDB
+;
+
+ALTER TABLE `tfidf`
+	ADD COLUMN `corpusFiles` INT(11) NOT NULL DEFAULT '0' AFTER `tfidfScore`,
+	ADD COLUMN `corpusChanges` BIGINT(20) NOT NULL DEFAULT '-1' AFTER `corpusFiles`,
+	ADD INDEX `tfidf_changes` (`corpusChanges`) USING BTREE;
@@ -0,0 +1,18 @@
+-- Replaces the FULLTEXT index on page text with one on the folded trigrams of
+-- each page, so search.fullText ignores harakat and matches inside words like
+-- the trigram index. Run `java dal.MaintenanceTool rebuild-search-index` once
+-- afterwards to fill the table for the pages already stored.
+USE realeditor;
+
+ALTER TABLE `pages` DROP INDEX `pageContent_fulltext`;
+
+CREATE TABLE `pagegrams` (
+	`pageId` INT(11) NOT NULL,
+	`grams` LONGTEXT NOT NULL COLLATE 'utf8mb4_general_ci',
+	PRIMARY KEY (`pageId`) USING BTREE,
+	FULLTEXT INDEX `pagegrams_fulltext` (`grams`),
+	CONSTRAINT `pagegrams_ibfk_1` FOREIGN KEY (`pageId`) REFERENCES `pages` (`pageId`) ON UPDATE RESTRICT ON DELETE CASCADE
+)
+COLLATE='utf8mb4_general_ci'
+ENGINE=InnoDB
+;
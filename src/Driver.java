@@ -2,6 +2,7 @@ import bll.EditorBO;
 import bll.FacadeBO;
 import bll.IFacadeBO;
 import dal.AbstractDAOEditorFactory;
+import dal.EditorDBDAO;
 import dal.FacadeDAO;
 import dal.IEditorDBDAO;
 import dal.IFacadeDAO;
@@ -15,6 +16,11 @@ public class Driver {
     public static void main(String[] args) {
 
     	IEditorDBDAO editorDAO = AbstractDAOEditorFactory.getInstance().createEditorDAO();
+    	if (editorDAO instanceof EditorDBDAO) {
+    		EditorDBDAO dao = (EditorDBDAO) editorDAO;
+    		dao.startTfIdfRefresher();
+    		Runtime.getRuntime().addShutdownHook(new Thread(dao::close));
+    	}
         IFacadeDAO facadeDAO = new FacadeDAO(editorDAO);
         IFacadeBO editorBO = new FacadeBO(new EditorBO(facadeDAO));
         new EditorPO(editorBO);
@@ -0,0 +1,259 @@
+package bll;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+import dal.SimilarityKernel;
+import dto.ClusterAssignment;
+import dto.TermVector;
+
+/**
+ * Spherical k-means over unit-length TF-IDF vectors: each file joins the
+ * cluster whose centre has the highest cosine similarity with it, and each
+ * centre is the normalized sum of its files. Both steps are split across the
+ * fork-join pool, the assignment by file and the update by cluster.
+ *
+ * Terms found in a single file cannot pull two files together, so they are
+ * dropped before clustering; this keeps the centres to the shared vocabulary.
+ * Files left without terms are not assigned a cluster.
+ */
+public class DocumentClusterer {
+	private static final int MAX_ITERATIONS = 20;
+	// Stop once no more than this share of the files changes cluster
+	private static final double CONVERGED = 0.001;
+	private static final int FILES_PER_TASK = 256;
+
+	private final ForkJoinPool pool;
+	private final long seed;
+	private final SimilarityKernel kernel = SimilarityKernel.get();
+
+	public DocumentClusterer() {
+		this(ForkJoinPool.commonPool(), 42);
+	}
+
+	public DocumentClusterer(ForkJoinPool pool, long seed) {
+		this.pool = pool;
+		this.seed = seed;
+	}
+
+	/**
+	 * Groups the files into at most {@code k} clusters numbered from 0.
+	 */
+	public List<ClusterAssignment> cluster(List<TermVector> vectors, int k) {
+		int maxTermId = -1;
+		for (TermVector vector : vectors) {
+			for (int termId : vector.getTermIds()) {
+				maxTermId = Math.max(maxTermId, termId);
+			}
+		}
+		int[] columns = new int[maxTermId + 1];
+		for (TermVector vector : vectors) {
+			for (int termId : vector.getTermIds()) {
+				columns[termId]++;
+			}
+		}
+		int dimensions = 0;
+		for (int termId = 0; termId < columns.length; termId++) {
+			columns[termId] = columns[termId] > 1 ? dimensions++ : -1;
+		}
+
+		List<Integer> fileIds = new ArrayList<>();
+		List<int[]> fileColumns = new ArrayList<>();
+		List<float[]> fileWeights = new ArrayList<>();
+		for (TermVector vector : vectors) {
+			int[] termIds = vector.getTermIds();
+			int shared = 0;
+			for (int termId : termIds) {
+				shared += columns[termId] >= 0 ? 1 : 0;
+			}
+			if (shared == 0) {
+				continue;
+			}
+			int[] cols = new int[shared];
+			float[] weights = new float[shared];
+			double norm = 0;
+			for (int i = 0, j = 0; i < termIds.length; i++) {
+				if (columns[termIds[i]] >= 0) {
+					cols[j] = columns[termIds[i]];
+					weights[j] = vector.getWeights()[i];
+					norm += weights[j] * weights[j];
+					j++;
+				}
+			}
+			for (int j = 0; j < shared; j++) {
+				weights[j] /= Math.sqrt(norm);
+			}
+			fileIds.add(vector.getFileId());
+			fileColumns.add(cols);
+			fileWeights.add(weights);
+		}
+		int files = fileIds.size();
+		k = Math.min(k, files);
+		List<ClusterAssignment> assignments = new ArrayList<>();
+		if (k <= 0) {
+			return assignments;
+		}
+
+		Model model = new Model(fileColumns.toArray(new int[files][]), fileWeights.toArray(new float[files][]), k,
+				dimensions);
+		model.seed(new Random(seed));
+		for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+			int changed = model.assign();
+			if (changed <= files * CONVERGED) {
+				break;
+			}
+			model.update();
+		}
+		for (int i = 0; i < files; i++) {
+			assignments.add(new ClusterAssignment(fileIds.get(i), model.clusters[i], model.similarities[i]));
+		}
+		return assignments;
+	}
+
+	private class Model {
+		final int[][] columns;
+		final float[][] weights;
+		final float[][] centres;
+		final int[] clusters;
+		final float[] similarities;
+
+		Model(int[][] columns, float[][] weights, int k, int dimensions) {
+			this.columns = columns;
+			this.weights = weights;
+			this.centres = new float[k][dimensions];
+			this.clusters = new int[columns.length];
+			this.similarities = new float[columns.length];
+			Arrays.fill(clusters, -1);
+		}
+
+		// Starts each centre on a different random file
+		void seed(Random random) {
+			int[] order = new int[columns.length];
+			for (int i = 0; i < order.length; i++) {
+				order[i] = i;
+			}
+			for (int c = 0; c < centres.length; c++) {
+				int pick = c + random.nextInt(order.length - c);
+				int file = order[pick];
+				order[pick] = order[c];
+				order[c] = file;
+				setCentre(c, file);
+			}
+		}
+
+		int assign() {
+			AtomicInteger changed = new AtomicInteger();
+			parallelFor(columns.length, FILES_PER_TASK, i -> {
+				int best = 0;
+				float bestSimilarity = -1;
+				for (int c = 0; c < centres.length; c++) {
+					float dot = kernel.gatherDot(columns[i], weights[i], centres[c]);
+					if (dot > bestSimilarity) {
+						best = c;
+						bestSimilarity = dot;
+					}
+				}
+				if (clusters[i] != best) {
+					clusters[i] = best;
+					changed.incrementAndGet();
+				}
+				similarities[i] = bestSimilarity;
+			});
+			return changed.get();
+		}
+
+		void update() {
+			int[] sizes = new int[centres.length];
+			for (int cluster : clusters) {
+				sizes[cluster]++;
+			}
+			int[][] members = new int[centres.length][];
+			for (int c = 0; c < centres.length; c++) {
+				members[c] = new int[sizes[c]];
+				sizes[c] = 0;
+			}
+			for (int i = 0; i < clusters.length; i++) {
+				members[clusters[i]][sizes[clusters[i]]++] = i;
+			}
+
+			parallelFor(centres.length, 1, c -> {
+				float[] centre = centres[c];
+				Arrays.fill(centre, 0f);
+				for (int i : members[c]) {
+					for (int j = 0; j < columns[i].length; j++) {
+						centre[columns[i][j]] += weights[i][j];
+					}
+				}
+				normalize(centre);
+			});
+
+			// An emptied cluster restarts on the file farthest from its centre
+			for (int c = 0; c < centres.length; c++) {
+				if (members[c].length == 0) {
+					int farthest = 0;
+					for (int i = 1; i < clusters.length; i++) {
+						if (similarities[i] < similarities[farthest]) {
+							farthest = i;
+						}
+					}
+					setCentre(c, farthest);
+					similarities[farthest] = 1;
+				}
+			}
+		}
+
+		private void setCentre(int c, int file) {
+			Arrays.fill(centres[c], 0f);
+			for (int j = 0; j < columns[file].length; j++) {
+				centres[c][columns[file][j]] = weights[file][j];
+			}
+		}
+	}
+
+	private void normalize(float[] centre) {
+		double norm = kernel.dot(centre, centre, centre.length);
+		if (norm > 0) {
+			float scale = (float) (1 / Math.sqrt(norm));
+			for (int i = 0; i < centre.length; i++) {
+				centre[i] *= scale;
+			}
+		}
+	}
+
+	private void parallelFor(int count, int grain, IntConsumer body) {
+		pool.invoke(new RangeTask(0, count, grain, body));
+	}
+
+	private static class RangeTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int from;
+		private final int to;
+		private final int grain;
+		private final IntConsumer body;
+
+		RangeTask(int from, int to, int grain, IntConsumer body) {
+			this.from = from;
+			this.to = to;
+			this.grain = grain;
+			this.body = body;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= grain) {
+				for (int i = from; i < to; i++) {
+					body.accept(i);
+				}
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new RangeTask(from, middle, grain, body), new RangeTask(middle, to, grain, body));
+		}
+	}
+}
@@ -4,30 +4,54 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import dal.EditorConfig;
 import dal.IFacadeDAO;
+import dal.Tokenizer;
+import dal.TrigramIndex;
+import dto.CancellationToken;
+import dto.ClusterAssignment;
 import dto.Documents;
 import dto.Pages;
+import dto.ScoreFreshness;
+import dto.SearchHit;
+import dto.SearchResult;
 import pl.EditorPO;
 
 public class EditorBO implements IEditorBO {
 	private static final Logger LOGGER = LogManager.getLogger(EditorPO.class);
 
 	private IFacadeDAO db;
+	private final QueryCache cache;
+	private final DocumentClusterer clusterer = new DocumentClusterer();
 
 	public EditorBO(IFacadeDAO db) {
+		this(db, new QueryCache(EditorConfig.getInt("search.cacheSize", 256)));
+	}
+
+	public EditorBO(IFacadeDAO db, QueryCache cache) {
 		this.db = db;
+		this.cache = cache;
 	}
 
 	@Override
 	public boolean createFile(String nameOfFile, String content) {
 		try {
-			return db.createFileInDB(nameOfFile, content);
+			boolean created = db.createFileInDB(nameOfFile, content);
+			cache.contentWritten(-1, content);
+			return created;
 		} catch (Exception e) {
 			e.printStackTrace();
 			LOGGER.error(e.getMessage());
@@ -38,7 +62,9 @@ public class EditorBO implements IEditorBO {
 	@Override
 	public boolean updateFile(int id, String fileName, int pageNumber, String content) {
 		try {
-			return db.updateFileInDB(id, fileName, pageNumber, content);
+			boolean updated = db.updateFileInDB(id, fileName, pageNumber, content);
+			cache.contentWritten(id, content);
+			return updated;
 		} catch (Exception e) {
 			e.printStackTrace();
 			LOGGER.error(e.getMessage());
@@ -49,7 +75,9 @@ public class EditorBO implements IEditorBO {
 	@Override
 	public boolean deleteFile(int id) {
 		try {
-			return db.deleteFileInDB(id);
+			boolean deleted = db.deleteFileInDB(id);
+			cache.fileRemoved(id);
+			return deleted;
 		} catch (Exception e) {
 			e.printStackTrace();
 			LOGGER.error(e.getMessage());
@@ -71,7 +99,7 @@ public class EditorBO implements IEditorBO {
 					fileContent.append(line).append("\n");
 				}
 				reader.close();
-				return db.createFileInDB(fileName, fileContent.toString());
+				return createFile(fileName, fileContent.toString());
 			} else if (fileExtension.equalsIgnoreCase("docx") || fileExtension.equalsIgnoreCase("doc")) {
 				// For now, show user a helpful message for unsupported formats
 				LOGGER.warn("Unsupported file format: " + fileExtension + ". Please convert to .txt format.");
@@ -88,7 +116,7 @@ public class EditorBO implements IEditorBO {
 					fileContent.append(line).append("\n");
 				}
 				reader.close();
-				return db.createFileInDB(fileName, fileContent.toString());
+				return createFile(fileName, fileContent.toString());
 			}
 		} catch (Exception e) {
 			e.printStackTrace();
@@ -126,8 +154,212 @@ public class EditorBO implements IEditorBO {
 
 	@Override
 	public List<String> searchKeyword(String keyword) {
+		List<String> fileNames = new ArrayList<>();
+
+		// Same rules as SearchWord.searchKeyword
+		if (keyword == null || keyword.trim().isEmpty() || keyword.length() < 3) {
+			return fileNames;
+		}
+
+		String fragment = TrigramIndex.normalize(keyword).trim();
+		List<SearchHit> hits = cache.get("substring", fragment, QueryCache.Dependency.TEXT, null,
+				() -> db.searchSubstring(keyword), SearchHit::getFileId);
+		Set<Integer> fileIds = new HashSet<>();
+		for (SearchHit hit : hits) {
+			if (fileIds.add(hit.getFileId())) {
+				fileNames.add(hit.getFileName());
+			}
+		}
+		return fileNames;
+	}
+
+	@Override
+	public List<SearchResult> searchRanked(String keyword, int limit) {
+		if (!isSearchable(keyword, limit)) {
+			return new ArrayList<>();
+		}
+		// BM25 reads the file count, the average length and every term's df,
+		// which any write changes
+		return cache.get("ranked", terms(keyword) + "/" + limit, QueryCache.Dependency.ANY, null,
+				() -> db.searchRanked(keyword, limit), SearchResult::getFileId);
+	}
+
+	@Override
+	public void searchRanked(String keyword, int limit, CancellationToken token, Consumer<List<SearchResult>> sink) {
+		if (isSearchable(keyword, limit)) {
+			cache.stream("ranked", terms(keyword) + "/" + limit, QueryCache.Dependency.ANY, null, token,
+					sink, batches -> db.searchRanked(keyword, limit, token, batches), SearchResult::getFileId);
+		}
+	}
+
+	// Same rules as searchKeyword
+	private static boolean isSearchable(String keyword, int limit) {
+		return keyword != null && !keyword.trim().isEmpty() && keyword.length() >= 3 && limit > 0;
+	}
+
+	@Override
+	public List<SearchHit> searchFuzzy(String query, int maxDistance) {
+		if (query == null || query.trim().isEmpty() || maxDistance < 0) {
+			return new ArrayList<>();
+		}
+		return cache.get("fuzzy", terms(query) + "/" + maxDistance, QueryCache.Dependency.ANY, null,
+				() -> db.searchFuzzy(query.trim(), maxDistance), SearchHit::getFileId);
+	}
+
+	@Override
+	public ScoreFreshness getTfIdf(int fileId) {
+		return db.getTfIdf(fileId);
+	}
+
+	@Override
+	public Map<String, Double> getKeywords(int fileId) {
+		return db.getKeywords(fileId);
+	}
+
+	@Override
+	public List<SearchResult> findFilesByKeyword(String word, int limit) {
+		if (word == null || word.trim().isEmpty() || limit <= 0) {
+			return new ArrayList<>();
+		}
+		return db.findFilesByKeyword(word.trim(), limit);
+	}
+
+	@Override
+	public List<SearchResult> findSimilar(int fileId, int k) {
+		if (k <= 0) {
+			return new ArrayList<>();
+		}
+		return db.findSimilar(fileId, k);
+	}
+
+	@Override
+	public List<SearchResult> findNearDuplicates(int fileId) {
+		return db.findNearDuplicates(fileId);
+	}
+
+	/**
+	 * Clusters every file by its TF-IDF vector and stores the cluster of each,
+	 * replacing the previous run. Returns the number of files clustered.
+	 */
+	@Override
+	public int clusterDocuments(int k) {
+		if (k <= 0) {
+			return 0;
+		}
+		long start = System.nanoTime();
+		List<ClusterAssignment> assignments = clusterer.cluster(db.getTermVectors(), k);
+		if (assignments.isEmpty() || !db.storeClusters(assignments)) {
+			return 0;
+		}
+		LOGGER.info("Clustered " + assignments.size() + " files in " + (System.nanoTime() - start) / 1000000 + " ms");
+		return assignments.size();
+	}
+
+	@Override
+	public Map<Integer, List<SearchResult>> getClusters() {
+		return db.getClusters();
+	}
+
+	@Override
+	public List<SearchResult> getFilesInCluster(int clusterId) {
+		return db.getClusters().getOrDefault(clusterId, new ArrayList<>());
+	}
+
+	@Override
+	public List<SearchHit> searchRegex(String regex, int limit, CancellationToken token) {
+		if (regex == null || regex.trim().isEmpty() || limit <= 0) {
+			return new ArrayList<>();
+		}
+		Pattern pattern;
+		try {
+			pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+		} catch (PatternSyntaxException e) {
+			LOGGER.error("Invalid pattern: " + e.getMessage());
+			return new ArrayList<>();
+		}
+		return db.scanPages(content -> {
+			List<int[]> spans = new ArrayList<>();
+			Matcher matcher = pattern.matcher(content);
+			while (matcher.find()) {
+				if (matcher.end() > matcher.start()) {
+					spans.add(new int[] { matcher.start(), matcher.end() });
+				}
+			}
+			if (spans.isEmpty()) {
+				return null;
+			}
+			int[][] offsets = new int[2][spans.size()];
+			for (int i = 0; i < spans.size(); i++) {
+				offsets[0][i] = spans.get(i)[0];
+				offsets[1][i] = spans.get(i)[1];
+			}
+			return offsets;
+		}, limit, token);
+	}
+
+	@Override
+	public List<SearchHit> searchPhrase(String phrase) {
+		if (phrase == null || phrase.trim().isEmpty()) {
+			return new ArrayList<>();
+		}
+		return cache.get("phrase", terms(phrase), QueryCache.Dependency.TERMS, termList(phrase),
+				() -> db.searchPhrase(phrase.trim()), SearchHit::getFileId);
+	}
+
+	@Override
+	public List<SearchHit> searchNear(String first, String second, int distance) {
+		if (first == null || first.trim().isEmpty() || second == null || second.trim().isEmpty() || distance < 1) {
+			return new ArrayList<>();
+		}
+		List<String> terms = termList(first + " " + second);
+		return cache.get("near", terms(first) + "/" + terms(second) + "/" + distance, QueryCache.Dependency.TERMS,
+				terms, () -> db.searchNear(first.trim(), second.trim(), distance), SearchHit::getFileId);
+	}
+
+	@Override
+	public List<SearchHit> searchByRoot(String word) {
+		if (word == null || word.trim().isEmpty()) {
+			return new ArrayList<>();
+		}
+		return searchByForm("root", word, () -> db.searchByRoot(word.trim()));
+	}
 
-		return SearchWord.searchKeyword(keyword, getAllFiles());
+	@Override
+	public List<SearchHit> searchByLemma(String word) {
+		if (word == null || word.trim().isEmpty()) {
+			return new ArrayList<>();
+		}
+		return searchByForm("lemma", word, () -> db.searchByLemma(word.trim()));
+	}
+
+	@Override
+	public List<SearchHit> searchByStem(String word) {
+		if (word == null || word.trim().isEmpty()) {
+			return new ArrayList<>();
+		}
+		return searchByForm("stem", word, () -> db.searchByStem(word.trim()));
+	}
+
+	// Analyses are not derived from the page text alone, so any write may change these
+	private List<SearchHit> searchByForm(String mode, String word, Supplier<List<SearchHit>> loader) {
+		return cache.get(mode, word.trim(), QueryCache.Dependency.ANY, null, loader, SearchHit::getFileId);
+	}
+
+	private static List<String> termList(String query) {
+		List<String> terms = new ArrayList<>();
+		for (Tokenizer.Token token : Tokenizer.tokenize(query)) {
+			terms.add(token.term);
+		}
+		return terms;
+	}
+
+	private static String terms(String query) {
+		return String.join(" ", termList(query));
+	}
+
+	@Override
+	public QueryCache getSearchCache() {
+		return cache;
 	}
 
 	@Override
@@ -153,6 +385,34 @@ public class EditorBO implements IEditorBO {
 		return db.performTFIDF(unSelectedDocsContent, selectedDocContent);
 	}
 
+	/**
+	 * Rescores the stored TF-IDF of every file against the current corpus.
+	 * Returns the number of files rescored, or -1 when rescoring failed.
+	 */
+	@Override
+	public int rescoreTfIdf() {
+		long start = System.nanoTime();
+		int rescored = db.rescoreTfIdf();
+		if (rescored < 0) {
+			LOGGER.error("Rescoring the TF-IDF of every file failed");
+			return rescored;
+		}
+		LOGGER.info("Rescored the TF-IDF of " + rescored + " files in " + (System.nanoTime() - start) / 1000000 + " ms");
+		return rescored;
+	}
+
+	/**
+	 * How far the stored TF-IDF of each file has drifted from the current
+	 * corpus, oldest scores first.
+	 */
+	@Override
+	public List<ScoreFreshness> getTfIdfFreshness(int limit) {
+		if (limit <= 0) {
+			return new ArrayList<>();
+		}
+		return db.getTfIdfFreshness(limit);
+	}
+
 	@Override
 	public Map<String, Double> performPMI(String content) {
 
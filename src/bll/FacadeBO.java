@@ -3,8 +3,13 @@ package bll;
 import java.io.File;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
+import dto.CancellationToken;
 import dto.Documents;
+import dto.ScoreFreshness;
+import dto.SearchHit;
+import dto.SearchResult;
 
 public class FacadeBO implements IFacadeBO {
 
@@ -66,6 +71,97 @@ public class FacadeBO implements IFacadeBO {
 		return bo.searchKeyword(keyword);
 	}
 
+	@Override
+	public List<SearchResult> searchRanked(String keyword, int limit) {
+		return bo.searchRanked(keyword, limit);
+	}
+
+	@Override
+	public void searchRanked(String keyword, int limit, CancellationToken token,
+			Consumer<List<SearchResult>> sink) {
+		bo.searchRanked(keyword, limit, token, sink);
+	}
+
+	@Override
+	public List<SearchHit> searchFuzzy(String query, int maxDistance) {
+		return bo.searchFuzzy(query, maxDistance);
+	}
+
+	@Override
+	public ScoreFreshness getTfIdf(int fileId) {
+		return bo.getTfIdf(fileId);
+	}
+
+	@Override
+	public Map<String, Double> getKeywords(int fileId) {
+		return bo.getKeywords(fileId);
+	}
+
+	@Override
+	public List<SearchResult> findFilesByKeyword(String word, int limit) {
+		return bo.findFilesByKeyword(word, limit);
+	}
+
+	@Override
+	public List<SearchResult> findSimilar(int fileId, int k) {
+		return bo.findSimilar(fileId, k);
+	}
+
+	@Override
+	public List<SearchResult> findNearDuplicates(int fileId) {
+		return bo.findNearDuplicates(fileId);
+	}
+
+	@Override
+	public int clusterDocuments(int k) {
+		return bo.clusterDocuments(k);
+	}
+
+	@Override
+	public Map<Integer, List<SearchResult>> getClusters() {
+		return bo.getClusters();
+	}
+
+	@Override
+	public List<SearchResult> getFilesInCluster(int clusterId) {
+		return bo.getFilesInCluster(clusterId);
+	}
+
+	@Override
+	public List<SearchHit> searchRegex(String regex, int limit, CancellationToken token) {
+		return bo.searchRegex(regex, limit, token);
+	}
+
+	@Override
+	public List<SearchHit> searchPhrase(String phrase) {
+		return bo.searchPhrase(phrase);
+	}
+
+	@Override
+	public List<SearchHit> searchNear(String first, String second, int distance) {
+		return bo.searchNear(first, second, distance);
+	}
+
+	@Override
+	public List<SearchHit> searchByRoot(String word) {
+		return bo.searchByRoot(word);
+	}
+
+	@Override
+	public List<SearchHit> searchByLemma(String word) {
+		return bo.searchByLemma(word);
+	}
+
+	@Override
+	public List<SearchHit> searchByStem(String word) {
+		return bo.searchByStem(word);
+	}
+
+	@Override
+	public QueryCache getSearchCache() {
+		return bo.getSearchCache();
+	}
+
 	@Override
 	public Map<String, String> lemmatizeWords(String text) {
 		// TODO Auto-generated method stub
@@ -90,6 +186,16 @@ public class FacadeBO implements IFacadeBO {
 		return bo.performTFIDF(unSelectedDocsContent, selectedDocContent);
 	}
 
+	@Override
+	public int rescoreTfIdf() {
+		return bo.rescoreTfIdf();
+	}
+
+	@Override
+	public List<ScoreFreshness> getTfIdfFreshness(int limit) {
+		return bo.getTfIdfFreshness(limit);
+	}
+
 	@Override
 	public Map<String, Double> performPMI(String content) {
 		// TODO Auto-generated method stub
@@ -3,8 +3,13 @@ package bll;
 import java.io.File;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
+import dto.CancellationToken;
 import dto.Documents;
+import dto.ScoreFreshness;
+import dto.SearchHit;
+import dto.SearchResult;
 
 public interface IEditorBO {
 	boolean createFile(String nameOfFile, String content);
@@ -25,6 +30,42 @@ public interface IEditorBO {
 
 	List<String> searchKeyword(String keyword);
 
+	List<SearchResult> searchRanked(String keyword, int limit);
+
+	void searchRanked(String keyword, int limit, CancellationToken token, Consumer<List<SearchResult>> sink);
+
+	List<SearchHit> searchFuzzy(String query, int maxDistance);
+
+	ScoreFreshness getTfIdf(int fileId);
+
+	Map<String, Double> getKeywords(int fileId);
+
+	List<SearchResult> findFilesByKeyword(String word, int limit);
+
+	List<SearchResult> findSimilar(int fileId, int k);
+
+	List<SearchResult> findNearDuplicates(int fileId);
+
+	int clusterDocuments(int k);
+
+	Map<Integer, List<SearchResult>> getClusters();
+
+	List<SearchResult> getFilesInCluster(int clusterId);
+
+	List<SearchHit> searchRegex(String regex, int limit, CancellationToken token);
+
+	List<SearchHit> searchPhrase(String phrase);
+
+	List<SearchHit> searchNear(String first, String second, int distance);
+
+	List<SearchHit> searchByRoot(String word);
+
+	List<SearchHit> searchByLemma(String word);
+
+	List<SearchHit> searchByStem(String word);
+
+	QueryCache getSearchCache();
+
 	Map<String, String> lemmatizeWords(String text);
 
 	Map<String, List<String>> extractPOS(String text);
@@ -33,6 +74,10 @@ public interface IEditorBO {
 
 	double performTFIDF(List<String> unSelectedDocsContent, String selectedDocContent);
 
+	int rescoreTfIdf();
+
+	List<ScoreFreshness> getTfIdfFreshness(int limit);
+
 	Map<String, Double> performPMI(String content);
 
 	Map<String, Double> performPKL(String content);
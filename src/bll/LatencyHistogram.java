@@ -0,0 +1,61 @@
+package bll;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with power-of-two microsecond buckets: bucket i
+ * counts calls that took [2^i, 2^(i+1)) microseconds, so percentiles are
+ * reported as the upper bound of the bucket they fall in.
+ */
+public class LatencyHistogram {
+	private static final int BUCKETS = 40;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong total = new AtomicLong();
+	private final AtomicLong maxMicros = new AtomicLong();
+
+	public void record(long nanos) {
+		long micros = Math.max(1, nanos / 1000);
+		counts.incrementAndGet(Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(micros)));
+		total.incrementAndGet();
+		long max;
+		while (micros > (max = maxMicros.get()) && !maxMicros.compareAndSet(max, micros)) {
+			// retry
+		}
+	}
+
+	public long getCount() {
+		return total.get();
+	}
+
+	public long getMaxMicros() {
+		return maxMicros.get();
+	}
+
+	/**
+	 * @param percentile between 0 and 100
+	 * @return upper bound in microseconds of the bucket holding that percentile
+	 */
+	public long getPercentileMicros(double percentile) {
+		long count = total.get();
+		if (count == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(count * percentile / 100.0);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts.get(i);
+			if (seen >= rank) {
+				return Math.min(1L << (i + 1), Math.max(1, maxMicros.get()));
+			}
+		}
+		return maxMicros.get();
+	}
+
+	@Override
+	public String toString() {
+		return "n=" + getCount() + " p50=" + getPercentileMicros(50) + "us p95=" + getPercentileMicros(95)
+				+ "us p99=" + getPercentileMicros(99) + "us max=" + getMaxMicros() + "us";
+	}
+}
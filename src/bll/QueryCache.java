@@ -0,0 +1,274 @@
+package bll;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+import dal.Tokenizer;
+import dal.TrigramIndex;
+import dto.CancellationToken;
+
+/**
+ * Bounded LRU cache of search results keyed by mode and normalized query, with
+ * hit and miss counters and a latency histogram per mode.
+ *
+ * Writes invalidate precisely: new page text drops the entries whose query
+ * terms occur in it (or, for substring search, whose folded fragment does), and
+ * an updated or deleted file drops every entry that lists it. Fuzzy,
+ * morphology and ranked entries depend on more than the page text and are
+ * dropped on any write. A result loaded while a write was in progress is
+ * returned but not stored.
+ */
+public class QueryCache {
+	public enum Dependency {
+		/** Matches only pages containing one of the query terms. */
+		TERMS,
+		/** Matches only pages whose folded text contains the query. */
+		TEXT,
+		/** May match any page, or is ordered by corpus statistics. */
+		ANY
+	}
+
+	private static class CachedQuery {
+		final Dependency dependency;
+		final Set<String> terms;
+		final String text;
+		final List<?> results;
+		final Set<Integer> fileIds;
+
+		CachedQuery(Dependency dependency, Set<String> terms, String text, List<?> results, Set<Integer> fileIds) {
+			this.dependency = dependency;
+			this.terms = terms;
+			this.text = text;
+			this.results = results;
+			this.fileIds = fileIds;
+		}
+	}
+
+	private final int capacity;
+	private final LinkedHashMap<String, CachedQuery> entries;
+	private long generation;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong invalidations = new AtomicLong();
+	private final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+
+	public QueryCache(int capacity) {
+		this.capacity = Math.max(0, capacity);
+		this.entries = new LinkedHashMap<String, CachedQuery>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedQuery> eldest) {
+				return size() > QueryCache.this.capacity;
+			}
+		};
+	}
+
+	/**
+	 * Returns the cached results for the query, or loads and caches them.
+	 *
+	 * @param key   normalized query, including any parameters
+	 * @param terms query terms, used when dependency is TERMS
+	 */
+	public <T> List<T> get(String mode, String key, Dependency dependency, Collection<String> terms,
+			Supplier<List<T>> loader, ToIntFunction<T> fileIdOf) {
+		long start = System.nanoTime();
+		String cacheKey = mode + '\u0000' + key;
+		long loadedAt;
+		synchronized (this) {
+			List<T> cached = lookup(cacheKey);
+			if (cached != null) {
+				hits.incrementAndGet();
+				record(mode, start);
+				return new ArrayList<>(cached);
+			}
+			loadedAt = generation;
+		}
+		misses.incrementAndGet();
+		List<T> results = loader.get();
+		store(cacheKey, loadedAt, dependency, terms, key, results, fileIdOf);
+		record(mode, start);
+		return results;
+	}
+
+	/**
+	 * Streaming form of {@link #get}: a hit is replayed to the sink as one batch,
+	 * a miss is forwarded batch by batch and cached only if it ran to the end.
+	 */
+	public <T> void stream(String mode, String key, Dependency dependency, Collection<String> terms,
+			CancellationToken token, Consumer<List<T>> sink, Consumer<Consumer<List<T>>> loader,
+			ToIntFunction<T> fileIdOf) {
+		long start = System.nanoTime();
+		String cacheKey = mode + '\u0000' + key;
+		List<T> cached;
+		long loadedAt;
+		synchronized (this) {
+			cached = lookup(cacheKey);
+			loadedAt = generation;
+		}
+		if (cached != null) {
+			hits.incrementAndGet();
+			if (!cached.isEmpty() && !token.isCancelled()) {
+				sink.accept(new ArrayList<>(cached));
+			}
+			record(mode, start);
+			return;
+		}
+		misses.incrementAndGet();
+		List<T> results = new ArrayList<>();
+		loader.accept(batch -> {
+			results.addAll(batch);
+			sink.accept(batch);
+		});
+		if (!token.isCancelled()) {
+			store(cacheKey, loadedAt, dependency, terms, key, results, fileIdOf);
+		}
+		record(mode, start);
+	}
+
+	/**
+	 * Drops the entries new page text can change.
+	 *
+	 * @param fileId the file written, or -1 for a new file
+	 */
+	public void contentWritten(int fileId, String content) {
+		Set<String> contentTerms = new HashSet<>();
+		for (Tokenizer.Token token : Tokenizer.tokenize(content)) {
+			contentTerms.add(token.term);
+		}
+		String folded = TrigramIndex.normalize(content);
+
+		synchronized (this) {
+			generation++;
+			Iterator<CachedQuery> it = entries.values().iterator();
+			while (it.hasNext()) {
+				CachedQuery entry = it.next();
+				if (entry.fileIds.contains(fileId) || dependsOn(entry, contentTerms, folded)) {
+					it.remove();
+					invalidations.incrementAndGet();
+				}
+			}
+		}
+	}
+
+	public void fileRemoved(int fileId) {
+		synchronized (this) {
+			generation++;
+			Iterator<CachedQuery> it = entries.values().iterator();
+			while (it.hasNext()) {
+				CachedQuery entry = it.next();
+				if (entry.fileIds.contains(fileId) || entry.dependency == Dependency.ANY) {
+					it.remove();
+					invalidations.incrementAndGet();
+				}
+			}
+		}
+	}
+
+	public synchronized void clear() {
+		generation++;
+		invalidations.addAndGet(entries.size());
+		entries.clear();
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getInvalidations() {
+		return invalidations.get();
+	}
+
+	public double getHitRate() {
+		long total = hits.get() + misses.get();
+		return total == 0 ? 0 : (double) hits.get() / total;
+	}
+
+	/**
+	 * @return latency per search mode, including cache hits
+	 */
+	public Map<String, LatencyHistogram> getLatencies() {
+		return Collections.unmodifiableMap(new TreeMap<>(latencies));
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder summary = new StringBuilder();
+		summary.append(String.format("Search cache: %d/%d entries, %d hits, %d misses (%.1f%% hit rate), %d invalidated",
+				size(), capacity, getHits(), getMisses(), 100 * getHitRate(), getInvalidations()));
+		for (Map.Entry<String, LatencyHistogram> latency : getLatencies().entrySet()) {
+			summary.append('\n').append(latency.getKey()).append(": ").append(latency.getValue());
+		}
+		return summary.toString();
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> List<T> lookup(String cacheKey) {
+		CachedQuery entry = entries.get(cacheKey);
+		return entry == null ? null : (List<T>) entry.results;
+	}
+
+	private <T> void store(String cacheKey, long loadedAt, Dependency dependency, Collection<String> terms,
+			String text, List<T> results, ToIntFunction<T> fileIdOf) {
+		if (capacity == 0) {
+			return;
+		}
+		Set<Integer> fileIds = new HashSet<>();
+		for (T result : results) {
+			fileIds.add(fileIdOf.applyAsInt(result));
+		}
+		CachedQuery entry = new CachedQuery(dependency, terms == null ? Collections.<String>emptySet() : new HashSet<>(terms),
+				text, new ArrayList<>(results), fileIds);
+		synchronized (this) {
+			if (generation == loadedAt) {
+				entries.put(cacheKey, entry);
+			}
+		}
+	}
+
+	private static boolean dependsOn(CachedQuery entry, Set<String> contentTerms, String folded) {
+		switch (entry.dependency) {
+		case TERMS:
+			for (String term : entry.terms) {
+				if (contentTerms.contains(term)) {
+					return true;
+				}
+			}
+			return false;
+		case TEXT:
+			return folded.contains(entry.text);
+		default:
+			return true;
+		}
+	}
+
+	private void record(String mode, long start) {
+		latencies.computeIfAbsent(mode, m -> new LatencyHistogram()).record(System.nanoTime() - start);
+	}
+}
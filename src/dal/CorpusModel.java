@@ -0,0 +1,660 @@
+package dal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import pl.EditorPO;
+
+/**
+ * What {@link TFIDFCalculator} needs to know about the stored files, without
+ * their text: the vocabulary, the document frequency of every term, and the
+ * distinct terms of every file so that a file can be taken out again.
+ *
+ * The model is kept in a memory-mapped snapshot whose terms and files are
+ * sorted, so lookups binary-search the mapping and opening it does not depend
+ * on the corpus size. Every change after the snapshot is appended to a delta
+ * log and kept in memory on top of the mapping. Once the log holds
+ * {@value #LOG_RECORDS} changes both are folded into the snapshot of the next
+ * generation. Snapshots are written next to the model path as
+ * {@code <name>.<generation>} rather than over the mapped one, which some
+ * platforms cannot replace; older generations are deleted when possible.
+ *
+ * The model also records the value of the corpus change counter it matches
+ * (see {@link TfIdfScores}); a model that does not match the database must be
+ * rebuilt.
+ *
+ * <pre>
+ * snapshot:
+ *   int   magic, format version
+ *   long  generation, corpus changes
+ *   int   term count, file count, files with terms, term bytes
+ *   per term, by UTF-8 bytes: int byte offset, int byte length, int df
+ *   per file, by fileId:      int fileId, int first term id, int term count
+ *   UTF-8 bytes of the terms
+ *   int[] term ids of every file, sorted per file
+ * log:
+ *   int   magic, format version
+ *   long  generation of the snapshot it follows
+ *   per change: byte op, int fileId, long corpus changes,
+ *               and for a put: int term count, per term: short length, bytes
+ * </pre>
+ */
+public class CorpusModel {
+	private static final Logger LOGGER = LogManager.getLogger(EditorPO.class);
+	private static final int MAGIC = 0x434D444C;
+	private static final int LOG_MAGIC = 0x434D4C47;
+	private static final int VERSION = 2;
+	private static final int HEADER_BYTES = 40;
+	private static final int ENTRY_BYTES = 12;
+	private static final byte PUT = 1;
+	private static final byte REMOVE = 2;
+	static final int LOG_RECORDS = 1000;
+
+	private final Path path;
+	private final Path logPath;
+	private long generation;
+	private long corpusChanges;
+
+	// The mapped snapshot
+	private MappedByteBuffer snapshot;
+	private int termCount;
+	private int snapshotFiles;
+	private int fileIndex;
+	private int termBytes;
+	private int termIds;
+
+	// Changes since the snapshot: the terms of each changed file, null once
+	// removed, and the change to the df of each term
+	private final Map<Integer, Set<String>> changedFiles = new HashMap<>();
+	private final Map<String, Integer> frequencyChanges = new HashMap<>();
+	private int fileCount;
+	// Files with at least one term, the ones the calculator counts
+	private int documentCount;
+
+	private DataOutputStream log;
+	private int logRecords;
+
+	private CorpusModel(Path path) {
+		this.path = path;
+		this.logPath = sibling(path, ".log");
+	}
+
+	/**
+	 * Builds the model of the given files and saves it as a new snapshot.
+	 *
+	 * @param contents text of every file by fileId
+	 */
+	public static CorpusModel build(Path path, Map<Integer, String> contents, long corpusChanges)
+			throws IOException {
+		List<String> vocabulary = new ArrayList<>();
+		Map<String, Integer> ids = new HashMap<>();
+		SortedMap<Integer, int[]> files = new TreeMap<>();
+		for (Map.Entry<Integer, String> content : contents.entrySet()) {
+			files.put(content.getKey(), toIds(terms(content.getValue()), vocabulary, ids));
+		}
+		CorpusModel model = new CorpusModel(path);
+		model.corpusChanges = corpusChanges;
+		model.writeSnapshot(latestGeneration(path) + 1, vocabulary, files);
+		return model;
+	}
+
+	/**
+	 * Maps the latest snapshot and replays its delta log.
+	 *
+	 * @throws IOException when there is no readable snapshot
+	 */
+	public static CorpusModel open(Path path) throws IOException {
+		long latest = latestGeneration(path);
+		if (latest == 0) {
+			throw new IOException("No corpus model at " + path);
+		}
+		CorpusModel model = new CorpusModel(path);
+		model.map(latest);
+		model.deleteOlderSnapshots();
+		model.replayLog();
+		return model;
+	}
+
+	public synchronized long getCorpusChanges() {
+		return corpusChanges;
+	}
+
+	/**
+	 * Files in the model other than {@code excludeFileId}, with or without
+	 * words.
+	 */
+	public synchronized int getFileCount(int excludeFileId) {
+		return fileCount - (previousTerms(excludeFileId) != null ? 1 : 0);
+	}
+
+	/**
+	 * Adds or replaces the terms of a file after change {@code corpusChanges}.
+	 */
+	public synchronized void put(int fileId, String content, long corpusChanges) throws IOException {
+		Set<String> fileTerms = terms(content);
+		appendLog(PUT, fileId, corpusChanges, fileTerms);
+		apply(fileId, fileTerms);
+		this.corpusChanges = corpusChanges;
+		foldIfLogFull();
+	}
+
+	public synchronized void remove(int fileId, long corpusChanges) throws IOException {
+		appendLog(REMOVE, fileId, corpusChanges, null);
+		apply(fileId, null);
+		this.corpusChanges = corpusChanges;
+		foldIfLogFull();
+	}
+
+	/**
+	 * Scores a document as {@link TFIDFCalculator#calculateDocumentTfIdf}
+	 * does with every file but {@code excludeFileId} as the corpus.
+	 */
+	public synchronized double calculateDocumentTfIdf(String document, int excludeFileId) {
+		if (document == null || document.trim().isEmpty()) {
+			return 0.0;
+		}
+		Set<String> changedExcluded = changedFiles.get(excludeFileId);
+		int snapshotExcluded = changedFiles.containsKey(excludeFileId) ? -1 : findFile(excludeFileId);
+		boolean excludedHasTerms = changedExcluded != null ? !changedExcluded.isEmpty()
+				: snapshotExcluded >= 0 && fileEntry(snapshotExcluded, 2) > 0;
+		int corpusSize = documentCount - (excludedHasTerms ? 1 : 0);
+		String preprocessed = PreProcessText.preprocessText(document);
+		if (corpusSize == 0 || preprocessed == null || preprocessed.trim().isEmpty()) {
+			return 0.0;
+		}
+		String[] words = preprocessed.split("\\s+");
+		Map<String, Integer> counts = new HashMap<>();
+		for (String word : words) {
+			if (!word.trim().isEmpty()) {
+				counts.merge(word, 1, Integer::sum);
+			}
+		}
+		double totalTfIdf = 0.0;
+		for (Map.Entry<String, Integer> count : counts.entrySet()) {
+			String word = count.getKey();
+			int termId = findTerm(word.getBytes(StandardCharsets.UTF_8));
+			int frequency = (termId >= 0 ? termEntry(termId, 2) : 0) + frequencyChanges.getOrDefault(word, 0);
+			if (changedExcluded != null ? changedExcluded.contains(word)
+					: snapshotExcluded >= 0 && termId >= 0 && fileHasTerm(snapshotExcluded, termId)) {
+				frequency--;
+			}
+			double idf = frequency > 0 ? Math.log((double) corpusSize / frequency) : Math.log(corpusSize + 1);
+			totalTfIdf += (double) count.getValue() / words.length * idf;
+		}
+		return totalTfIdf / words.length;
+	}
+
+	public synchronized void close() throws IOException {
+		if (log != null) {
+			log.close();
+			log = null;
+		}
+	}
+
+	// Distinct words of a text as the calculator splits them
+	static Set<String> terms(String content) {
+		Set<String> fileTerms = new LinkedHashSet<>();
+		String preprocessed = content == null ? null : PreProcessText.preprocessText(content);
+		if (preprocessed != null && !preprocessed.trim().isEmpty()) {
+			for (String word : preprocessed.split("\\s+")) {
+				if (!word.trim().isEmpty()) {
+					fileTerms.add(word);
+				}
+			}
+		}
+		return fileTerms;
+	}
+
+	// Replaces the terms of a file, or removes it when fileTerms is null
+	private void apply(int fileId, Set<String> fileTerms) {
+		Collection<String> previous = previousTerms(fileId);
+		if (previous != null) {
+			fileCount--;
+			documentCount -= previous.isEmpty() ? 0 : 1;
+			for (String term : previous) {
+				frequencyChanges.merge(term, -1, (a, b) -> a + b == 0 ? null : a + b);
+			}
+		}
+		if (fileTerms != null) {
+			fileCount++;
+			documentCount += fileTerms.isEmpty() ? 0 : 1;
+			for (String term : fileTerms) {
+				frequencyChanges.merge(term, 1, (a, b) -> a + b == 0 ? null : a + b);
+			}
+		}
+		changedFiles.put(fileId, fileTerms);
+	}
+
+	// Current terms of a file, null when it is not in the model
+	private Collection<String> previousTerms(int fileId) {
+		if (changedFiles.containsKey(fileId)) {
+			return changedFiles.get(fileId);
+		}
+		int file = findFile(fileId);
+		if (file < 0) {
+			return null;
+		}
+		int first = fileEntry(file, 1);
+		int count = fileEntry(file, 2);
+		List<String> fileTerms = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			fileTerms.add(termAt(snapshot.getInt(termIds + (first + i) * 4)));
+		}
+		return fileTerms;
+	}
+
+	private void foldIfLogFull() throws IOException {
+		if (logRecords >= LOG_RECORDS) {
+			fold();
+		}
+	}
+
+	// Writes the snapshot with the logged changes as the next generation
+	private void fold() throws IOException {
+		List<String> vocabulary = new ArrayList<>(termCount);
+		Map<String, Integer> ids = new HashMap<>();
+		for (int termId = 0; termId < termCount; termId++) {
+			String term = termAt(termId);
+			vocabulary.add(term);
+			ids.put(term, termId);
+		}
+		SortedMap<Integer, int[]> files = new TreeMap<>();
+		for (int file = 0; file < snapshotFiles; file++) {
+			int fileId = fileEntry(file, 0);
+			if (!changedFiles.containsKey(fileId)) {
+				int[] fileTerms = new int[fileEntry(file, 2)];
+				for (int i = 0; i < fileTerms.length; i++) {
+					fileTerms[i] = snapshot.getInt(termIds + (fileEntry(file, 1) + i) * 4);
+				}
+				files.put(fileId, fileTerms);
+			}
+		}
+		for (Map.Entry<Integer, Set<String>> changed : changedFiles.entrySet()) {
+			if (changed.getValue() != null) {
+				files.put(changed.getKey(), toIds(changed.getValue(), vocabulary, ids));
+			}
+		}
+		writeSnapshot(generation + 1, vocabulary, files);
+	}
+
+	/**
+	 * Saves the given files as the snapshot of {@code nextGeneration}, maps it
+	 * and starts its empty log. Terms no file has are left out.
+	 */
+	private void writeSnapshot(long nextGeneration, List<String> vocabulary, SortedMap<Integer, int[]> files)
+			throws IOException {
+		close();
+		if (path.toAbsolutePath().getParent() != null) {
+			Files.createDirectories(path.toAbsolutePath().getParent());
+		}
+		int[] frequency = new int[vocabulary.size()];
+		int withTerms = 0;
+		for (int[] fileTerms : files.values()) {
+			for (int termId : fileTerms) {
+				frequency[termId]++;
+			}
+			withTerms += fileTerms.length > 0 ? 1 : 0;
+		}
+		List<byte[]> sorted = new ArrayList<>();
+		List<Integer> order = new ArrayList<>();
+		for (int termId = 0; termId < vocabulary.size(); termId++) {
+			if (frequency[termId] > 0) {
+				order.add(termId);
+			}
+		}
+		byte[][] bytes = new byte[vocabulary.size()][];
+		for (int termId : order) {
+			bytes[termId] = vocabulary.get(termId).getBytes(StandardCharsets.UTF_8);
+		}
+		Collections.sort(order, (a, b) -> compare(bytes[a], bytes[b]));
+		int[] newIds = new int[vocabulary.size()];
+		int totalBytes = 0;
+		for (int i = 0; i < order.size(); i++) {
+			newIds[order.get(i)] = i;
+			sorted.add(bytes[order.get(i)]);
+			totalBytes += bytes[order.get(i)].length;
+		}
+
+		Path temp = sibling(path, ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(nextGeneration);
+			out.writeLong(corpusChanges);
+			out.writeInt(sorted.size());
+			out.writeInt(files.size());
+			out.writeInt(withTerms);
+			out.writeInt(totalBytes);
+			int offset = 0;
+			for (int i = 0; i < sorted.size(); i++) {
+				out.writeInt(offset);
+				out.writeInt(sorted.get(i).length);
+				out.writeInt(frequency[order.get(i)]);
+				offset += sorted.get(i).length;
+			}
+			int first = 0;
+			for (Map.Entry<Integer, int[]> file : files.entrySet()) {
+				out.writeInt(file.getKey());
+				out.writeInt(first);
+				out.writeInt(file.getValue().length);
+				first += file.getValue().length;
+			}
+			for (byte[] term : sorted) {
+				out.write(term);
+			}
+			for (int[] fileTerms : files.values()) {
+				int[] mapped = new int[fileTerms.length];
+				for (int i = 0; i < fileTerms.length; i++) {
+					mapped[i] = newIds[fileTerms[i]];
+				}
+				Arrays.sort(mapped);
+				for (int termId : mapped) {
+					out.writeInt(termId);
+				}
+			}
+		}
+		Files.move(temp, snapshotPath(nextGeneration), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		map(nextGeneration);
+		// A crash before the new log is written leaves the old one, which the
+		// generation check then ignores
+		startLog();
+		deleteOlderSnapshots();
+	}
+
+	private void map(long snapshotGeneration) throws IOException {
+		Path snapshotPath = snapshotPath(snapshotGeneration);
+		try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getLong() != snapshotGeneration) {
+				throw new IOException("Not a corpus model: " + snapshotPath);
+			}
+			long changes = buffer.getLong();
+			int terms = buffer.getInt();
+			int files = buffer.getInt();
+			int withTerms = buffer.getInt();
+			int bytes = buffer.getInt();
+			long index = HEADER_BYTES + (long) terms * ENTRY_BYTES;
+			long pool = index + (long) files * ENTRY_BYTES;
+			if (terms < 0 || files < 0 || bytes < 0 || pool + bytes > channel.size()) {
+				throw new IOException("Truncated corpus model: " + snapshotPath);
+			}
+			snapshot = buffer;
+			generation = snapshotGeneration;
+			corpusChanges = changes;
+			termCount = terms;
+			snapshotFiles = files;
+			fileIndex = (int) index;
+			termBytes = (int) pool;
+			termIds = (int) pool + bytes;
+			fileCount = files;
+			documentCount = withTerms;
+			changedFiles.clear();
+			frequencyChanges.clear();
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Truncated corpus model: " + snapshotPath);
+		}
+	}
+
+	// Field 0, 1 or 2 of a term entry: byte offset, byte length, df
+	private int termEntry(int termId, int field) {
+		return snapshot.getInt(HEADER_BYTES + termId * ENTRY_BYTES + field * 4);
+	}
+
+	// Field 0, 1 or 2 of a file entry: fileId, first term id, term count
+	private int fileEntry(int file, int field) {
+		return snapshot.getInt(fileIndex + file * ENTRY_BYTES + field * 4);
+	}
+
+	private String termAt(int termId) {
+		byte[] bytes = new byte[termEntry(termId, 1)];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = snapshot.get(termBytes + termEntry(termId, 0) + i);
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private int findTerm(byte[] term) {
+		int low = 0;
+		int high = termCount - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int offset = termBytes + termEntry(middle, 0);
+			int length = termEntry(middle, 1);
+			int order = 0;
+			for (int i = 0; i < Math.min(length, term.length) && order == 0; i++) {
+				order = (snapshot.get(offset + i) & 0xFF) - (term[i] & 0xFF);
+			}
+			if (order == 0) {
+				order = length - term.length;
+			}
+			if (order < 0) {
+				low = middle + 1;
+			} else if (order > 0) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	private int findFile(int fileId) {
+		int low = 0;
+		int high = snapshotFiles - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int id = fileEntry(middle, 0);
+			if (id < fileId) {
+				low = middle + 1;
+			} else if (id > fileId) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	private boolean fileHasTerm(int file, int termId) {
+		int low = fileEntry(file, 1);
+		int high = low + fileEntry(file, 2) - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int id = snapshot.getInt(termIds + middle * 4);
+			if (id < termId) {
+				low = middle + 1;
+			} else if (id > termId) {
+				high = middle - 1;
+			} else {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void startLog() throws IOException {
+		close();
+		log = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(logPath)));
+		log.writeInt(LOG_MAGIC);
+		log.writeInt(VERSION);
+		log.writeLong(generation);
+		log.flush();
+		logRecords = 0;
+	}
+
+	private void appendLog(byte op, int fileId, long changes, Set<String> fileTerms) throws IOException {
+		if (log == null) {
+			log = new DataOutputStream(new BufferedOutputStream(
+					Files.newOutputStream(logPath, StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+		}
+		log.writeByte(op);
+		log.writeInt(fileId);
+		log.writeLong(changes);
+		if (op == PUT) {
+			log.writeInt(fileTerms.size());
+			for (String term : fileTerms) {
+				byte[] bytes = term.getBytes(StandardCharsets.UTF_8);
+				log.writeShort(bytes.length);
+				log.write(bytes);
+			}
+		}
+		log.flush();
+		logRecords++;
+	}
+
+	// Applies the changes logged after the snapshot; a torn last record is
+	// dropped with everything after it
+	private void replayLog() throws IOException {
+		if (!Files.exists(logPath)) {
+			startLog();
+			return;
+		}
+		long validBytes = 0;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(logPath)))) {
+			if (in.readInt() != LOG_MAGIC || in.readInt() != VERSION || in.readLong() != generation) {
+				startLog();
+				return;
+			}
+			validBytes = 16;
+			while (true) {
+				byte op = in.readByte();
+				int fileId = in.readInt();
+				long changes = in.readLong();
+				int size = 13;
+				Set<String> fileTerms = null;
+				if (op == PUT) {
+					fileTerms = new LinkedHashSet<>();
+					int count = in.readInt();
+					size += 4;
+					for (int i = 0; i < count; i++) {
+						byte[] bytes = new byte[in.readUnsignedShort()];
+						in.readFully(bytes);
+						fileTerms.add(new String(bytes, StandardCharsets.UTF_8));
+						size += 2 + bytes.length;
+					}
+				} else if (op != REMOVE) {
+					break;
+				}
+				apply(fileId, fileTerms);
+				corpusChanges = changes;
+				logRecords++;
+				validBytes += size;
+			}
+		} catch (EOFException e) {
+			// End of the log
+		}
+		if (validBytes == 0) {
+			startLog();
+			return;
+		}
+		try (FileChannel channel = FileChannel.open(logPath, StandardOpenOption.WRITE)) {
+			channel.truncate(validBytes);
+		}
+		foldIfLogFull();
+	}
+
+	private Path snapshotPath(long snapshotGeneration) {
+		return sibling(path, "." + snapshotGeneration);
+	}
+
+	// Snapshots still mapped elsewhere cannot be deleted on some platforms;
+	// they are older than the current one, so the next open removes them
+	private void deleteOlderSnapshots() {
+		for (long older : generations(path)) {
+			if (older < generation) {
+				try {
+					Files.deleteIfExists(snapshotPath(older));
+				} catch (IOException e) {
+					LOGGER.error("Could not delete " + snapshotPath(older) + ": " + e.getMessage());
+				}
+			}
+		}
+	}
+
+	private static long latestGeneration(Path path) throws IOException {
+		long latest = 0;
+		for (long generation : generations(path)) {
+			latest = Math.max(latest, generation);
+		}
+		return latest;
+	}
+
+	// Generations of the snapshots saved for the model at path
+	private static List<Long> generations(Path path) {
+		List<Long> generations = new ArrayList<>();
+		Path directory = path.toAbsolutePath().getParent();
+		String prefix = path.getFileName() + ".";
+		if (directory == null || !Files.isDirectory(directory)) {
+			return generations;
+		}
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*")) {
+			for (Path file : files) {
+				String suffix = file.getFileName().toString().substring(prefix.length());
+				if (!suffix.isEmpty() && suffix.length() < 19 && suffix.chars().allMatch(Character::isDigit)) {
+					generations.add(Long.parseLong(suffix));
+				}
+			}
+		} catch (IOException e) {
+			LOGGER.error(e.getMessage());
+		}
+		return generations;
+	}
+
+	private static Path sibling(Path path, String suffix) {
+		return path.resolveSibling(path.getFileName() + suffix);
+	}
+
+	private static int[] toIds(Set<String> fileTerms, List<String> vocabulary, Map<String, Integer> ids) {
+		int[] fileIds = new int[fileTerms.size()];
+		int i = 0;
+		for (String term : fileTerms) {
+			Integer termId = ids.get(term);
+			if (termId == null) {
+				termId = vocabulary.size();
+				ids.put(term, termId);
+				vocabulary.add(term);
+			}
+			fileIds[i++] = termId;
+		}
+		return fileIds;
+	}
+
+	// Orders UTF-8 bytes as unsigned values, the order of the term table
+	private static int compare(byte[] a, byte[] b) {
+		for (int i = 0; i < Math.min(a.length, b.length); i++) {
+			int order = (a[i] & 0xFF) - (b[i] & 0xFF);
+			if (order != 0) {
+				return order;
+			}
+		}
+		return a.length - b.length;
+	}
+}
@@ -0,0 +1,153 @@
+package dal;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import dto.CancellationToken;
+import dto.Documents;
+import dto.Pages;
+import dto.SearchHit;
+
+/**
+ * Full scan of the corpus for queries no index can answer, such as regular
+ * expressions. Files are read a range of fileIds at a time, and while one range
+ * is matched in parallel on a fork-join pool the next one is read from the
+ * database. The scan stops reading once the limit is reached or the token is
+ * cancelled.
+ */
+public class CorpusScanner {
+	static final int FILES_PER_CHUNK = 32;
+	private static final int PAGES_PER_TASK = 16;
+
+	public interface PageSource {
+		/**
+		 * @return up to {@code fileCount} files with fileId above
+		 *         {@code afterFileId}, with their pages, in fileId order
+		 */
+		List<Documents> readFiles(int afterFileId, int fileCount) throws SQLException;
+	}
+
+	public interface PageMatcher {
+		/**
+		 * @return start and end offsets of the matches in the page, or null when
+		 *         the page does not match
+		 */
+		int[][] match(String content);
+	}
+
+	private final PageSource source;
+	private final ForkJoinPool pool;
+
+	public CorpusScanner(PageSource source) {
+		this(source, ForkJoinPool.commonPool());
+	}
+
+	public CorpusScanner(PageSource source, ForkJoinPool pool) {
+		this.source = source;
+		this.pool = pool;
+	}
+
+	/**
+	 * Returns up to {@code limit} matching pages in file and page order. Pages
+	 * from the last range read are matched concurrently, so when the limit cuts
+	 * that range short a later page may be returned in place of an earlier one.
+	 */
+	public List<SearchHit> scan(PageMatcher matcher, int limit, CancellationToken token) throws SQLException {
+		List<SearchHit> hits = new ArrayList<>();
+		if (limit <= 0) {
+			return hits;
+		}
+		AtomicInteger found = new AtomicInteger();
+		List<Documents> chunk = source.readFiles(0, FILES_PER_CHUNK);
+		while (!chunk.isEmpty() && !token.isCancelled()) {
+			List<PageRef> pages = flatten(chunk);
+			ForkJoinTask<List<SearchHit>> matching = pool
+					.submit(new MatchTask(pages, 0, pages.size(), matcher, found, limit, token));
+
+			// Read the next range while this one is being matched
+			List<Documents> next = chunk.size() < FILES_PER_CHUNK ? Collections.<Documents>emptyList()
+					: source.readFiles(chunk.get(chunk.size() - 1).getId(), FILES_PER_CHUNK);
+
+			hits.addAll(matching.join());
+			if (hits.size() >= limit) {
+				return new ArrayList<>(hits.subList(0, limit));
+			}
+			chunk = next;
+		}
+		return token.isCancelled() ? new ArrayList<>() : hits;
+	}
+
+	private static class PageRef {
+		final Documents file;
+		final Pages page;
+
+		PageRef(Documents file, Pages page) {
+			this.file = file;
+			this.page = page;
+		}
+	}
+
+	private static class MatchTask extends RecursiveTask<List<SearchHit>> {
+		private static final long serialVersionUID = 1L;
+
+		private final List<PageRef> pages;
+		private final int from;
+		private final int to;
+		private final PageMatcher matcher;
+		private final AtomicInteger found;
+		private final int limit;
+		private final CancellationToken token;
+
+		MatchTask(List<PageRef> pages, int from, int to, PageMatcher matcher, AtomicInteger found, int limit,
+				CancellationToken token) {
+			this.pages = pages;
+			this.from = from;
+			this.to = to;
+			this.matcher = matcher;
+			this.found = found;
+			this.limit = limit;
+			this.token = token;
+		}
+
+		@Override
+		protected List<SearchHit> compute() {
+			if (to - from > PAGES_PER_TASK) {
+				int middle = (from + to) >>> 1;
+				MatchTask right = new MatchTask(pages, middle, to, matcher, found, limit, token);
+				right.fork();
+				List<SearchHit> hits = new MatchTask(pages, from, middle, matcher, found, limit, token).compute();
+				hits.addAll(right.join());
+				return hits;
+			}
+
+			List<SearchHit> hits = new ArrayList<>();
+			for (int i = from; i < to && found.get() < limit && !token.isCancelled(); i++) {
+				PageRef ref = pages.get(i);
+				String content = ref.page.getPageContent();
+				int[][] offsets = content == null ? null : matcher.match(content);
+				if (offsets != null) {
+					hits.add(new SearchHit(ref.file.getId(), ref.file.getName(), ref.page.getPageId(),
+							ref.page.getPageNumber(), offsets[0], offsets[1]));
+					found.incrementAndGet();
+				}
+			}
+			return hits;
+		}
+	}
+
+	private static List<PageRef> flatten(List<Documents> files) {
+		List<PageRef> pages = new ArrayList<>();
+		for (Documents file : files) {
+			for (Pages page : file.getPages()) {
+				pages.add(new PageRef(file, page));
+			}
+		}
+		return pages;
+	}
+}
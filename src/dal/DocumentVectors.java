@@ -0,0 +1,259 @@
+package dal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import dto.TermVector;
+
+/**
+ * In-memory sparse TF-IDF vectors of whole files, held as an inverted index
+ * from term id to the files containing it with their term weight. A term
+ * weighs {@code (1 + ln tf) * ln(1 + N / df)}; the idf part is applied when
+ * comparing so adding a file never rewrites the others. A vector length is
+ * computed the first time a file is compared after a change, so a lookup costs
+ * the files it touches rather than the whole corpus.
+ */
+public class DocumentVectors {
+	public static class Match {
+		public final int fileId;
+		public final double score;
+
+		public Match(int fileId, double score) {
+			this.fileId = fileId;
+			this.score = score;
+		}
+	}
+
+	public static class TermScore {
+		public final int termId;
+		public final double score;
+
+		TermScore(int termId, double score) {
+			this.termId = termId;
+			this.score = score;
+		}
+	}
+
+	private static class Postings {
+		int[] fileIds = new int[4];
+		float[] weights = new float[4];
+		int size;
+
+		void add(int fileId, float weight) {
+			if (size == fileIds.length) {
+				fileIds = Arrays.copyOf(fileIds, size * 2);
+				weights = Arrays.copyOf(weights, size * 2);
+			}
+			fileIds[size] = fileId;
+			weights[size] = weight;
+			size++;
+		}
+
+		void remove(int fileId) {
+			for (int i = 0; i < size; i++) {
+				if (fileIds[i] == fileId) {
+					size--;
+					fileIds[i] = fileIds[size];
+					weights[i] = weights[size];
+					return;
+				}
+			}
+		}
+	}
+
+	private static class Vector {
+		final int[] termIds;
+		final int[] termFreqs;
+		final float[] weights;
+		final long length;
+
+		Vector(int[] termIds, int[] termFreqs, float[] weights) {
+			this.termIds = termIds;
+			this.termFreqs = termFreqs;
+			this.weights = weights;
+			long sum = 0;
+			for (int termFreq : termFreqs) {
+				sum += termFreq;
+			}
+			this.length = sum;
+		}
+	}
+
+	private final Map<Integer, Postings> postings = new HashMap<>();
+	private final Map<Integer, Vector> files = new HashMap<>();
+	// Vector lengths computed since the last change, which moves N and some df
+	private Map<Integer, Double> norms = new HashMap<>();
+
+	/**
+	 * Sets the vector of a file from its term frequencies, replacing any
+	 * previous one.
+	 */
+	public synchronized void put(int fileId, Map<Integer, Integer> termFreqs) {
+		remove(fileId);
+		int[] termIds = new int[termFreqs.size()];
+		int[] freqs = new int[termFreqs.size()];
+		float[] weights = new float[termFreqs.size()];
+		int i = 0;
+		for (Map.Entry<Integer, Integer> term : termFreqs.entrySet()) {
+			termIds[i] = term.getKey();
+			freqs[i] = term.getValue();
+			weights[i] = (float) (1 + Math.log(term.getValue()));
+			postings.computeIfAbsent(termIds[i], id -> new Postings()).add(fileId, weights[i]);
+			i++;
+		}
+		files.put(fileId, new Vector(termIds, freqs, weights));
+		norms = new HashMap<>();
+	}
+
+	public synchronized void remove(int fileId) {
+		Vector vector = files.remove(fileId);
+		if (vector == null) {
+			return;
+		}
+		for (int termId : vector.termIds) {
+			Postings list = postings.get(termId);
+			list.remove(fileId);
+			if (list.size == 0) {
+				postings.remove(termId);
+			}
+		}
+		norms = new HashMap<>();
+	}
+
+	public synchronized int size() {
+		return files.size();
+	}
+
+	/**
+	 * Returns the {@code k} files most similar to {@code fileId} by cosine
+	 * similarity, best first. Only the posting lists of the file's own terms
+	 * are visited, so files sharing no term with it are never touched.
+	 */
+	public synchronized List<Match> findSimilar(int fileId, int k) {
+		Vector query = files.get(fileId);
+		if (query == null || k <= 0) {
+			return new ArrayList<>();
+		}
+		Map<Integer, Double> dots = new HashMap<>();
+		for (int i = 0; i < query.termIds.length; i++) {
+			Postings list = postings.get(query.termIds[i]);
+			double idf = idf(list.size);
+			double queryWeight = query.weights[i] * idf;
+			for (int j = 0; j < list.size; j++) {
+				if (list.fileIds[j] != fileId) {
+					dots.merge(list.fileIds[j], queryWeight * list.weights[j] * idf, Double::sum);
+				}
+			}
+		}
+
+		PriorityQueue<Match> best = new PriorityQueue<>(k + 1, DocumentVectors::compare);
+		double queryLength = norm(fileId);
+		for (Map.Entry<Integer, Double> dot : dots.entrySet()) {
+			double length = queryLength * norm(dot.getKey());
+			if (length > 0) {
+				best.add(new Match(dot.getKey(), dot.getValue() / length));
+				if (best.size() > k) {
+					best.poll();
+				}
+			}
+		}
+		List<Match> matches = new ArrayList<>(best);
+		matches.sort(Collections.reverseOrder(DocumentVectors::compare));
+		return matches;
+	}
+
+	/**
+	 * The {@code k} most distinctive terms of a file, best first, scored by
+	 * their share of the file times {@code ln((N + 1) / df)} so that a term
+	 * found in every file still ranks below a rarer one.
+	 */
+	public synchronized List<TermScore> topTerms(int fileId, int k) {
+		Vector vector = files.get(fileId);
+		if (vector == null || vector.length == 0 || k <= 0) {
+			return new ArrayList<>();
+		}
+		PriorityQueue<TermScore> best = new PriorityQueue<>(k + 1, DocumentVectors::compare);
+		for (int i = 0; i < vector.termIds.length; i++) {
+			double idf = Math.log((files.size() + 1.0) / postings.get(vector.termIds[i]).size);
+			best.add(new TermScore(vector.termIds[i], (double) vector.termFreqs[i] / vector.length * idf));
+			if (best.size() > k) {
+				best.poll();
+			}
+		}
+		List<TermScore> terms = new ArrayList<>(best);
+		terms.sort(Collections.reverseOrder(DocumentVectors::compare));
+		return terms;
+	}
+
+	/**
+	 * Unit-length TF-IDF vectors of every file, weighted as in
+	 * {@link #findSimilar(int, int)}. Files without terms are left out.
+	 */
+	public synchronized List<TermVector> toTermVectors() {
+		List<TermVector> termVectors = new ArrayList<>(files.size());
+		for (Integer fileId : files.keySet()) {
+			TermVector vector = toTermVector(fileId);
+			if (vector != null) {
+				termVectors.add(vector);
+			}
+		}
+		return termVectors;
+	}
+
+	/**
+	 * Unit-length TF-IDF vector of one file, or null when it is unknown or has
+	 * no terms.
+	 */
+	public synchronized TermVector toTermVector(int fileId) {
+		Vector vector = files.get(fileId);
+		double length = vector != null ? norm(fileId) : 0;
+		if (length == 0) {
+			return null;
+		}
+		float[] weights = new float[vector.termIds.length];
+		for (int i = 0; i < weights.length; i++) {
+			weights[i] = (float) (vector.weights[i] * idf(postings.get(vector.termIds[i]).size) / length);
+		}
+		return new TermVector(fileId, vector.termIds, weights);
+	}
+
+	public synchronized Set<Integer> fileIds() {
+		return new HashSet<>(files.keySet());
+	}
+
+	private double norm(int fileId) {
+		return norms.computeIfAbsent(fileId, id -> norm(files.get(id)));
+	}
+
+	// Length of one file's TF-IDF vector from its own terms
+	private double norm(Vector vector) {
+		double sum = 0.0;
+		for (int i = 0; i < vector.termIds.length; i++) {
+			double weight = vector.weights[i] * idf(postings.get(vector.termIds[i]).size);
+			sum += weight * weight;
+		}
+		return Math.sqrt(sum);
+	}
+
+	private double idf(int documentFrequency) {
+		return Math.log(1 + (double) files.size() / documentFrequency);
+	}
+
+	// Lower score first, then higher file id, so the heap drops the weakest match
+	private static int compare(Match a, Match b) {
+		int byScore = Double.compare(a.score, b.score);
+		return byScore != 0 ? byScore : Integer.compare(b.fileId, a.fileId);
+	}
+
+	private static int compare(TermScore a, TermScore b) {
+		int byScore = Double.compare(a.score, b.score);
+		return byScore != 0 ? byScore : Integer.compare(b.termId, a.termId);
+	}
+}
@@ -0,0 +1,173 @@
+package dal;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import dto.SearchResult;
+
+/**
+ * MinHash signatures of stored files with their LSH band keys. A new file is
+ * only compared with the files sharing one of its band keys, found through
+ * the {@code lshbands} primary key, so the cost of a check does not grow with
+ * the corpus. Confirmed near-duplicates are linked in {@code nearduplicates}.
+ */
+public class DuplicateIndex {
+	private final Connection conn;
+
+	public DuplicateIndex(Connection conn) {
+		this.conn = conn;
+	}
+
+	/**
+	 * Stored files whose estimated Jaccard similarity with the signature is at
+	 * least {@code threshold}, most similar first.
+	 */
+	public Map<Integer, Double> findNearDuplicates(int[] signature, double threshold, int excludeFileId)
+			throws SQLException {
+		long[] keys = MinHash.bandKeys(signature);
+		List<Integer> candidates = new ArrayList<>();
+		String query = "SELECT DISTINCT fileId FROM lshbands WHERE "
+				+ String.join(" OR ", Collections.nCopies(MinHash.BANDS, "(band = ? AND bucket = ?)"));
+		try (PreparedStatement stmt = conn.prepareStatement(query)) {
+			for (int band = 0; band < MinHash.BANDS; band++) {
+				stmt.setInt(band * 2 + 1, band);
+				stmt.setLong(band * 2 + 2, keys[band]);
+			}
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					if (rs.getInt(1) != excludeFileId) {
+						candidates.add(rs.getInt(1));
+					}
+				}
+			}
+		}
+
+		List<Map.Entry<Integer, Double>> matches = new ArrayList<>();
+		for (int from = 0; from < candidates.size(); from += 500) {
+			List<Integer> batch = candidates.subList(from, Math.min(candidates.size(), from + 500));
+			String signatureQuery = "SELECT fileId, signature FROM minhash WHERE fileId IN ("
+					+ batch.stream().map(id -> "?").collect(Collectors.joining(", ")) + ")";
+			try (PreparedStatement stmt = conn.prepareStatement(signatureQuery)) {
+				for (int i = 0; i < batch.size(); i++) {
+					stmt.setInt(i + 1, batch.get(i));
+				}
+				try (ResultSet rs = stmt.executeQuery()) {
+					while (rs.next()) {
+						double similarity = MinHash.similarity(signature, MinHash.decode(rs.getBytes(2)));
+						if (similarity >= threshold) {
+							matches.add(new AbstractMap.SimpleEntry<>(rs.getInt(1), similarity));
+						}
+					}
+				}
+			}
+		}
+		matches.sort(Map.Entry.<Integer, Double>comparingByValue().reversed());
+		Map<Integer, Double> duplicates = new LinkedHashMap<>();
+		for (Map.Entry<Integer, Double> match : matches) {
+			duplicates.put(match.getKey(), match.getValue());
+		}
+		return duplicates;
+	}
+
+	/**
+	 * Sets the signature of a file and its band keys, replacing any previous
+	 * ones.
+	 */
+	public void store(int fileId, int[] signature) throws SQLException {
+		for (String table : new String[] { "minhash", "lshbands" }) {
+			try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM " + table + " WHERE fileId = ?")) {
+				stmt.setInt(1, fileId);
+				stmt.executeUpdate();
+			}
+		}
+		if (signature == null) {
+			return;
+		}
+		try (PreparedStatement stmt = conn.prepareStatement("INSERT INTO minhash (fileId, signature) VALUES (?, ?)")) {
+			stmt.setInt(1, fileId);
+			stmt.setBytes(2, MinHash.encode(signature));
+			stmt.executeUpdate();
+		}
+		long[] keys = MinHash.bandKeys(signature);
+		try (PreparedStatement stmt = conn
+				.prepareStatement("INSERT INTO lshbands (band, bucket, fileId) VALUES (?, ?, ?)")) {
+			for (int band = 0; band < MinHash.BANDS; band++) {
+				stmt.setInt(1, band);
+				stmt.setLong(2, keys[band]);
+				stmt.setInt(3, fileId);
+				stmt.addBatch();
+			}
+			stmt.executeBatch();
+		}
+	}
+
+	/**
+	 * Records {@code fileId} as a near-duplicate of each of the given files.
+	 */
+	public void link(int fileId, Map<Integer, Double> duplicates) throws SQLException {
+		if (duplicates.isEmpty()) {
+			return;
+		}
+		String query = "INSERT INTO nearduplicates (fileId, duplicateOf, similarity) VALUES (?, ?, ?)";
+		try (PreparedStatement stmt = conn.prepareStatement(query)) {
+			for (Map.Entry<Integer, Double> duplicate : duplicates.entrySet()) {
+				stmt.setInt(1, fileId);
+				stmt.setInt(2, duplicate.getKey());
+				stmt.setDouble(3, duplicate.getValue());
+				stmt.addBatch();
+			}
+			stmt.executeBatch();
+		}
+	}
+
+	/**
+	 * Files linked to {@code fileId} in either direction, most similar first.
+	 */
+	public List<SearchResult> getNearDuplicates(int fileId) throws SQLException {
+		List<SearchResult> files = new ArrayList<>();
+		String query = "SELECT n.duplicateOf, f.fileName, n.similarity FROM nearduplicates n"
+				+ " JOIN files f ON f.fileid = n.duplicateOf WHERE n.fileId = ?"
+				+ " UNION SELECT n.fileId, f.fileName, n.similarity FROM nearduplicates n"
+				+ " JOIN files f ON f.fileid = n.fileId WHERE n.duplicateOf = ? ORDER BY 3 DESC, 1";
+		try (PreparedStatement stmt = conn.prepareStatement(query)) {
+			stmt.setInt(1, fileId);
+			stmt.setInt(2, fileId);
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					files.add(new SearchResult(rs.getInt(1), rs.getString(2), rs.getDouble(3), new ArrayList<>(),
+							new ArrayList<>()));
+				}
+			}
+		}
+		return files;
+	}
+
+	/**
+	 * Up to {@code limit} files after {@code afterFileId} that have no
+	 * signature, either stored before signatures were kept or without words.
+	 */
+	public List<Integer> findUnsigned(int afterFileId, int limit) throws SQLException {
+		List<Integer> fileIds = new ArrayList<>();
+		String query = "SELECT f.fileId FROM files f LEFT JOIN minhash m ON m.fileId = f.fileId"
+				+ " WHERE f.fileId > ? AND m.fileId IS NULL ORDER BY f.fileId LIMIT ?";
+		try (PreparedStatement stmt = conn.prepareStatement(query)) {
+			stmt.setInt(1, afterFileId);
+			stmt.setInt(2, limit);
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					fileIds.add(rs.getInt(1));
+				}
+			}
+		}
+		return fileIds;
+	}
+}
@@ -0,0 +1,55 @@
+package dal;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Properties;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import pl.EditorPO;
+
+public class EditorConfig {
+	private static final Logger LOGGER = LogManager.getLogger(EditorPO.class);
+	private static Properties properties;
+
+	private static synchronized Properties getProperties() {
+		if (properties == null) {
+			properties = new Properties();
+			try (FileInputStream input = new FileInputStream("config.properties")) {
+				properties.load(input);
+			} catch (IOException e) {
+				e.printStackTrace();
+				LOGGER.error(e.getMessage());
+			}
+		}
+		return properties;
+	}
+
+	public static String getProperty(String key, String defaultValue) {
+		String value = getProperties().getProperty(key);
+		return value == null || value.trim().isEmpty() ? defaultValue : value.trim();
+	}
+
+	public static boolean getBoolean(String key, boolean defaultValue) {
+		return Boolean.parseBoolean(getProperty(key, Boolean.toString(defaultValue)));
+	}
+
+	public static int getInt(String key, int defaultValue) {
+		try {
+			return Integer.parseInt(getProperty(key, Integer.toString(defaultValue)));
+		} catch (NumberFormatException e) {
+			LOGGER.error("Invalid number for " + key + ": " + e.getMessage());
+			return defaultValue;
+		}
+	}
+
+	public static double getDouble(String key, double defaultValue) {
+		try {
+			return Double.parseDouble(getProperty(key, Double.toString(defaultValue)));
+		} catch (NumberFormatException e) {
+			LOGGER.error("Invalid number for " + key + ": " + e.getMessage());
+			return defaultValue;
+		}
+	}
+}
@@ -1,50 +1,168 @@
 package dal;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
+import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import dto.CancellationToken;
+import dto.ClusterAssignment;
 import dto.Documents;
 import dto.Pages;
+import dto.ScoreFreshness;
+import dto.SearchHit;
+import dto.SearchResult;
+import dto.TermVector;
 import pl.EditorPO;
 
 public class EditorDBDAO implements IEditorDBDAO {
 	private static final Logger LOGGER = LogManager.getLogger(EditorPO.class);
 	Connection conn = null;
+	private final WordDictionary dictionary = new WordDictionary();
+	private final SegmentPageStore pageStore;
+	private final SearchIndex searchIndex;
+	private final TrigramIndex trigramIndex;
+	private final CorpusScanner corpusScanner;
+	private final KeywordIndex keywordIndex;
+	private final DuplicateIndex duplicateIndex;
+	private final TfIdfScores tfidfScores;
+	private TfIdfRefresher tfidfRefresher;
+	private final Path corpusModelPath;
+	// Loaded on first use, dropped when it can no longer be kept current
+	private CorpusModel corpusModel;
+	// Set once the model cannot be saved, e.g. when its directory is read-only
+	private boolean corpusModelFailed;
+	private final int keywordsPerFile = EditorConfig.getInt("keywords.perFile", 10);
+	private final double keywordDrift = EditorConfig.getDouble("keywords.refreshDrift", 0.2);
+	private final double duplicateThreshold = EditorConfig.getDouble("duplicates.threshold", 0.8);
+	private final boolean skipDuplicates = EditorConfig.getBoolean("duplicates.skip", false);
+	private final double tfidfDrift = EditorConfig.getDouble("tfidf.refreshDrift", 0.2);
+	private final boolean fullTextSearch;
+	private final boolean compressPages = EditorConfig.getBoolean("storage.compressPages", false);
+	private final boolean analysisBlobs = "blob"
+			.equalsIgnoreCase(EditorConfig.getProperty("storage.analysisLayout", "rows"));
+
+	// Writes taken by the similarity graph before it is saved again
+	private static final int GRAPH_SAVE_INTERVAL = 100;
+
+	// Files whose keywords are rescored after each import once the corpus drifts
+	private static final int KEYWORD_REFRESH_BATCH = 20;
+
+	// Row layout tables, indexed like the PageAnalysisCodec sections
+	static final String[] ANALYSIS_TABLES = { "pos", "lemmatization", "rootextraction", "stemmation",
+			"wordsegementation", "pkl", "pmi" };
+	private static final String[] ANALYSIS_COLUMNS = { "posId", "lemmaId", "rootId", "stemId", "segmentId",
+			"pklScore", "pmiScore" };
 
 	public EditorDBDAO() {
-		this.conn = DatabaseConnection.getInstance().getConnection();
+		this(DatabaseConnection.getInstance().getConnection());
 
 	}
 
+	public EditorDBDAO(Connection conn) {
+		this(conn, null);
+	}
+
+	/**
+	 * With a page store the page bodies are kept there and the pages table only
+	 * holds their metadata.
+	 */
+	public EditorDBDAO(Connection conn, SegmentPageStore pageStore) {
+		this(conn, pageStore, EditorConfig.getBoolean("tfidf.model", true)
+				? Paths.get(EditorConfig.getProperty("tfidf.modelPath", "data/corpus.model"))
+				: null);
+	}
+
+	/**
+	 * Keeps the TF-IDF corpus model at {@code corpusModelPath}, or scores
+	 * against the stored files when it is null.
+	 */
+	public EditorDBDAO(Connection conn, SegmentPageStore pageStore, Path corpusModelPath) {
+		this.conn = conn;
+		this.pageStore = pageStore;
+		this.searchIndex = EditorConfig.getBoolean("similar.approximate", false)
+				? new SearchIndex(conn, dictionary,
+						Paths.get(EditorConfig.getProperty("similar.graphPath", "data/similar.hnsw")),
+						EditorConfig.getInt("similar.efSearch", 64))
+				: new SearchIndex(conn, dictionary);
+		boolean fullTextIndex = supportsFullText();
+		this.trigramIndex = new TrigramIndex(conn, fullTextIndex);
+		this.corpusScanner = new CorpusScanner(this::readFiles);
+		this.keywordIndex = new KeywordIndex(conn, dictionary);
+		this.duplicateIndex = new DuplicateIndex(conn);
+		this.fullTextSearch = EditorConfig.getBoolean("search.fullText", false) && fullTextIndex;
+		if (EditorConfig.getBoolean("search.fullText", false) && !fullTextIndex) {
+			LOGGER.warn("search.fullText needs MariaDB, using the trigram index");
+		}
+		this.tfidfScores = new TfIdfScores(conn);
+		this.corpusModelPath = corpusModelPath;
+	}
+
+	/**
+	 * Starts rescoring stale TF-IDF scores in the background every
+	 * tfidf.refreshIntervalSeconds, unless that is 0. Only the editor does
+	 * this; maintenance runs and tests work on the DAO alone.
+	 */
+	public synchronized void startTfIdfRefresher() {
+		int refreshInterval = EditorConfig.getInt("tfidf.refreshIntervalSeconds", 60);
+		if (tfidfRefresher == null && refreshInterval > 0) {
+			tfidfRefresher = new TfIdfRefresher(this, EditorConfig.getInt("tfidf.refreshBatch", 500), refreshInterval);
+		}
+	}
+
+	/**
+	 * Stops the background refresh and closes the corpus model's log.
+	 */
+	public synchronized void close() {
+		if (tfidfRefresher != null) {
+			tfidfRefresher.stop();
+			tfidfRefresher = null;
+		}
+		closeCorpusModel();
+	}
+
+	// MATCH ... AGAINST needs MariaDB; the embedded database has no FULLTEXT
+	private boolean supportsFullText() {
+		try {
+			String product = conn.getMetaData().getDatabaseProductName();
+			return product.contains("MariaDB") || product.contains("MySQL");
+		} catch (SQLException e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+		}
+		return false;
+	}
+
 	@Override
 	public synchronized boolean createFileInDB(String nameOfFile, String content) {
 		String hash = null;
 		List<Pages> pages = null;
+		int[] signature = null;
+		int fileID = -1;
 
 		String insertQuery = "INSERT INTO files (fileName, fileHash) VALUES (?, ?)";
-		String pageQuery = "INSERT INTO pages (fileId, pageNumber, pageContent) VALUES (?, ?, ?)";
-		String transliterateQuery = "INSERT INTO transliteratedpages (pageId, transliteratedText) VALUES (?, ?)";
+		String pageQuery = "INSERT INTO pages (fileId, pageNumber, pageContent, pageContentZ) VALUES (?, ?, ?, ?)";
+		String transliterateQuery = "INSERT INTO transliteratedpages (pageId, transliteratedText, transliteratedTextZ) VALUES (?, ?, ?)";
 		;
-		String posQuery = "INSERT INTO pos (pageId, word, pos) VALUES (?, ?, ?)";
-		String lemmaQuery = "INSERT INTO lemmatization (pageId, word, lemma) VALUES (?, ?, ?)";
-		String rootQuery = "INSERT INTO rootextraction (pageId, word, root) VALUES (?, ?, ?)";
-		String stemQuery = "INSERT INTO stemmation (pageId, word, stem) VALUES (?, ?, ?)";
-		String segmentQuery = "INSERT INTO wordsegementation (pageId, word, segment) VALUES (?, ?, ?)";
-		String tfidfQuery = "INSERT INTO tfidf (fileId, tfidfScore) VALUES (?, ?)";
-		String pklQuery = "INSERT INTO pkl (pageId, word, pklScore) VALUES (?, ?, ?)";
-		String pmiQuery = "INSERT INTO pmi (pageId, word, pmiScore) VALUES (?, ?, ?)";
-		Map<String, String> analyticsMap = new HashMap<>();
-		Map<String, Double> scoreMap = new HashMap<>();
+		String tfidfQuery = "INSERT INTO tfidf (fileId, tfidfScore, corpusFiles, corpusChanges) VALUES (?, ?, ?, ?)";
 
 //		PreparedStatement fileStmt = null;
 //		PreparedStatement transliteratetStmt = null;
@@ -60,6 +178,7 @@ public class EditorDBDAO implements IEditorDBDAO {
 
 			hash = HashCalculator.calculateHash(content);
 			pages = PaginationDAO.paginate(content);
+			signature = MinHash.signature(content);
 		} catch (Exception e) {
 			e.printStackTrace();
 			LOGGER.error(e.getMessage());
@@ -68,16 +187,26 @@ public class EditorDBDAO implements IEditorDBDAO {
 		try (PreparedStatement fileStmt = conn.prepareStatement(insertQuery, PreparedStatement.RETURN_GENERATED_KEYS);
 				PreparedStatement pageStmt = conn.prepareStatement(pageQuery, PreparedStatement.RETURN_GENERATED_KEYS);
 				PreparedStatement transliteratetStmt = conn.prepareStatement(transliterateQuery);
-				PreparedStatement posStmt = conn.prepareStatement(posQuery);
-				PreparedStatement lemmaStmt = conn.prepareStatement(lemmaQuery);
-				PreparedStatement rootStmt = conn.prepareStatement(rootQuery);
-				PreparedStatement segmentStmt = conn.prepareStatement(segmentQuery);
-				PreparedStatement stemStmt = conn.prepareStatement(stemQuery);
-				PreparedStatement pklStmt = conn.prepareStatement(pklQuery);
-				PreparedStatement pmiStmt = conn.prepareStatement(pmiQuery);
 				PreparedStatement tfidfStmt = conn.prepareStatement(tfidfQuery)) {
-			conn = DatabaseConnection.getInstance().getConnection();
-			double tfidf = performTFIDF(getAllExistingFilesContent(conn), content);
+			Map<Integer, Double> duplicates = signature != null
+					? duplicateIndex.findNearDuplicates(signature, duplicateThreshold, -1)
+					: new LinkedHashMap<>();
+			if (skipDuplicates && !duplicates.isEmpty()) {
+				LOGGER.warn(nameOfFile + " is a near-duplicate of file " + duplicates.keySet().iterator().next()
+						+ ", not imported");
+				return false;
+			}
+			CorpusModel model = corpusModel();
+			double tfidf;
+			int corpusFiles;
+			if (model != null) {
+				tfidf = model.calculateDocumentTfIdf(content, -1);
+				corpusFiles = model.getFileCount(-1);
+			} else {
+				List<String> corpus = getAllExistingFilesContent(conn);
+				tfidf = performTFIDF(corpus, content);
+				corpusFiles = corpus.size();
+			}
 			conn.setAutoCommit(false);
 
 			// Insert into files table
@@ -88,14 +217,14 @@ public class EditorDBDAO implements IEditorDBDAO {
 
 			ResultSet fileRS = fileStmt.getGeneratedKeys();
 			fileRS.next();
-			int fileID = fileRS.getInt(1);
+			fileID = fileRS.getInt(1);
 
 			for (Pages page : pages) {
 				// Insert into pages table
 //				pageStmt = conn.prepareStatement(pageQuery, PreparedStatement.RETURN_GENERATED_KEYS);
 				pageStmt.setInt(1, fileID);
 				pageStmt.setInt(2, page.getPageNumber());
-				pageStmt.setString(3, page.getPageContent());
+				setPageContent(pageStmt, 3, 4, fileID, page.getPageNumber(), page.getPageContent());
 				pageStmt.executeUpdate();
 
 				ResultSet pageRS = pageStmt.getGeneratedKeys();
@@ -106,130 +235,55 @@ public class EditorDBDAO implements IEditorDBDAO {
 				String transliteratedText = Transliteration.transliterate(page.getPageContent());
 //				transliteratetStmt = conn.prepareStatement(transliterateQuery);
 				transliteratetStmt.setInt(1, pageId);
-				transliteratetStmt.setString(2, transliteratedText);
+				setPageBody(transliteratetStmt, 2, 3, transliteratedText);
 				transliteratetStmt.executeUpdate();
 
-				// POS Tagging
-				Map<String, List<String>> posTagsMap = POSTagger.extractPOS(page.getPageContent());
-
-//				posStmt = conn.prepareStatement(posQuery);
-
-				for (Map.Entry<String, List<String>> entry : posTagsMap.entrySet()) {
-					String word = entry.getKey();
-					List<String> posTags = entry.getValue();
-					String posTagString = String.join("|", posTags);
-
-					posStmt.setInt(1, pageId);
-					posStmt.setString(2, word);
-					posStmt.setString(3, posTagString);
-					posStmt.addBatch();
-				}
-				posStmt.executeBatch();
-
-				analyticsMap = Lemmatization.lemmatizeWords(page.getPageContent());
-
-//				lemmaStmt = conn.prepareStatement(lemmaQuery);
-
-				for (Map.Entry<String, String> entry : analyticsMap.entrySet()) {
-					String word = entry.getKey();
-					String lemma = entry.getValue();
-					String lemmaString = String.join("|", lemma);
-
-					lemmaStmt.setInt(1, pageId);
-					lemmaStmt.setString(2, word);
-					lemmaStmt.setString(3, lemmaString);
-					lemmaStmt.addBatch();
-				}
-				lemmaStmt.executeBatch();
-				analyticsMap = RootExtraction.extractRoots(page.getPageContent());
-
-//				rootStmt = conn.prepareStatement(rootQuery);
-
-				for (Map.Entry<String, String> entry : analyticsMap.entrySet()) {
-					String word = entry.getKey();
-					String root = entry.getValue();
-					String rootString = String.join("|", root);
-
-					rootStmt.setInt(1, pageId);
-					rootStmt.setString(2, word);
-					rootStmt.setString(3, rootString);
-					rootStmt.addBatch();
-				}
-				rootStmt.executeBatch();
-
-				analyticsMap = WordSegmentation.extractSegments(page.getPageContent());
-//				segmentStmt = conn.prepareStatement(segmentQuery);
-
-				for (Map.Entry<String, String> entry : analyticsMap.entrySet()) {
-					String word = entry.getKey();
-					String segment = entry.getValue();
-					String segmentString = String.join("|", segment);
-
-					segmentStmt.setInt(1, pageId);
-					segmentStmt.setString(2, word);
-					segmentStmt.setString(3, segmentString);
-					segmentStmt.addBatch();
-				}
-				segmentStmt.executeBatch();
-
-				analyticsMap = Stemmation.stemWords(page.getPageContent());
-//				stemStmt = conn.prepareStatement(stemQuery);
-
-				for (Map.Entry<String, String> entry : analyticsMap.entrySet()) {
-					String word = entry.getKey();
-					String stem = entry.getValue();
-					String stemString = String.join("|", stem);
-
-					stemStmt.setInt(1, pageId);
-					stemStmt.setString(2, word);
-					stemStmt.setString(3, stemString);
-					stemStmt.addBatch();
-				}
-				stemStmt.executeBatch();
-
-				scoreMap = performPKL(page.getPageContent());
-//				pklStmt = conn.prepareStatement(pklQuery);
-
-				for (Map.Entry<String, Double> entry : scoreMap.entrySet()) {
-					String word = entry.getKey();
-					Double pkl = entry.getValue();
-
-					pklStmt.setInt(1, pageId);
-					pklStmt.setString(2, word);
-					pklStmt.setDouble(3, pkl);
-					pklStmt.addBatch();
-				}
-				pklStmt.executeBatch();
-
-				scoreMap = performPMI(page.getPageContent());
-//				pmiStmt = conn.prepareStatement(pmiQuery);
-
-				for (Map.Entry<String, Double> entry : scoreMap.entrySet()) {
-					String word = entry.getKey();
-					Double pmi = entry.getValue();
-
-					pmiStmt.setInt(1, pageId);
-					pmiStmt.setString(2, word);
-					pmiStmt.setDouble(3, pmi);
-					pmiStmt.addBatch();
-				}
-				pmiStmt.executeBatch();
+				// Word analyses
+				writePageAnalysis(pageId, page.getPageContent(), false);
+				searchIndex.indexPage(pageId, page.getPageContent(), false);
+				trigramIndex.indexPage(pageId, page.getPageContent(), false);
 
 			}
 
 //			tfidfStmt = conn.prepareStatement(tfidfQuery);
 			if (Double.isNaN(tfidf)) tfidf = 0.0;
+			long changes = tfidfScores.recordChange();
 			tfidfStmt.setInt(1, fileID);
 			tfidfStmt.setDouble(2, tfidf);
+			tfidfStmt.setInt(3, corpusFiles);
+			tfidfStmt.setLong(4, changes);
 			tfidfStmt.executeUpdate();
 
+			searchIndex.updateFileVector(fileID);
+			refreshKeywords(fileID);
+			refreshStaleKeywords(KEYWORD_REFRESH_BATCH);
+			duplicateIndex.store(fileID, signature);
+			duplicateIndex.link(fileID, duplicates);
+			if (!duplicates.isEmpty()) {
+				LOGGER.info(nameOfFile + " is a near-duplicate of files " + duplicates.keySet());
+			}
+
+			if (pageStore != null) {
+				pageStore.sync();
+			}
 			conn.commit();
+			searchIndex.saveGraph(GRAPH_SAVE_INTERVAL);
+			StringBuilder stored = new StringBuilder();
+			for (Pages page : pages) {
+				stored.append(page.getPageContent());
+			}
+			corpusModelChanged(fileID, stored.toString(), changes);
 			return true;
 
 		} catch (Exception e) {
 			try {
 				conn.rollback();
-			} catch (SQLException e1) {
+				dictionary.invalidate();
+				searchIndex.invalidateVectors();
+				if (pageStore != null && fileID != -1) {
+					pageStore.deleteFile(fileID);
+				}
+			} catch (SQLException | IOException e1) {
 				e1.printStackTrace();
 				LOGGER.error(e1.getMessage());
 			}
@@ -241,22 +295,18 @@ public class EditorDBDAO implements IEditorDBDAO {
 	}
 
 	@Override
-	public boolean updateFileInDB(int fileId, String fileName, int pageNumber, String content) {
+	public synchronized boolean updateFileInDB(int fileId, String fileName, int pageNumber, String content) {
 
 		PreparedStatement fileStmt = null;
 		PreparedStatement pageStmt = null;
 		// PreparedStatement transliterateStmt = null;
-		PreparedStatement posStmt = null;
-		PreparedStatement lemmaStmt = null;
-		PreparedStatement rootStmt = null;
-		PreparedStatement segmentStmt = null;
-		PreparedStatement stemStmt = null;
-		PreparedStatement pklStmt = null;
-		PreparedStatement pmiStmt = null;
 		PreparedStatement tfidfStmt = null;
+		String previousContent = null;
 
 		try {
 
+			// Read before the page changes so a rebuild only sees committed files
+			CorpusModel model = corpusModel();
 			conn.setAutoCommit(false);
 
 			// Update file information
@@ -267,11 +317,14 @@ public class EditorDBDAO implements IEditorDBDAO {
 			fileStmt.executeUpdate();
 
 			// Update page content
-			String pageQuery = "UPDATE pages SET pageContent = ? WHERE fileId = ? AND pageNumber = ?";
+			String pageQuery = "UPDATE pages SET pageContent = ?, pageContentZ = ? WHERE fileId = ? AND pageNumber = ?";
 			pageStmt = conn.prepareStatement(pageQuery);
-			pageStmt.setString(1, content);
-			pageStmt.setInt(2, fileId);
-			pageStmt.setInt(3, pageNumber);
+			if (pageStore != null) {
+				previousContent = pageStore.get(fileId, pageNumber);
+			}
+			setPageContent(pageStmt, 1, 2, fileId, pageNumber, content);
+			pageStmt.setInt(3, fileId);
+			pageStmt.setInt(4, pageNumber);
 			pageStmt.executeUpdate();
 
 			// Get the pageId of the updated page
@@ -293,151 +346,61 @@ public class EditorDBDAO implements IEditorDBDAO {
 //	        transliterateStmt.setInt(2, pageId);
 //	        transliterateStmt.executeUpdate();
 
-			// Update POS tagging
-			Map<String, List<String>> posTagsMap = POSTagger.extractPOS(content);
-			String deletePosQuery = "DELETE FROM pos WHERE pageId = ?";
-			posStmt = conn.prepareStatement(deletePosQuery);
-			posStmt.setInt(1, pageId);
-			posStmt.executeUpdate();
-
-			String insertPosQuery = "INSERT INTO pos (pageId, word, pos) VALUES (?, ?, ?)";
-			posStmt = conn.prepareStatement(insertPosQuery);
-			Map<String, Double> scoreMap = performPMI(content);
-
-			for (Map.Entry<String, Double> entry : scoreMap.entrySet()) {
-			    String word = entry.getKey();
-			    Double value = entry.getValue();
-			    if (value == null || value.isNaN()) {
-			        value = 0.0;
-			    }
-
-			    pmiStmt.setInt(1, pageId);
-			    pmiStmt.setString(2, word);
-			    pmiStmt.setDouble(3, value);
-			    pmiStmt.addBatch();
-			}
-
-			posStmt.executeBatch();
-
-			// Update lemmatization
-			Map<String, String> lemmaMap = Lemmatization.lemmatizeWords(content);
-			String deleteLemmaQuery = "DELETE FROM lemmatization WHERE pageId = ?";
-			lemmaStmt = conn.prepareStatement(deleteLemmaQuery);
-			lemmaStmt.setInt(1, pageId);
-			lemmaStmt.executeUpdate();
-
-			String insertLemmaQuery = "INSERT INTO lemmatization (pageId, word, lemma) VALUES (?, ?, ?)";
-			lemmaStmt = conn.prepareStatement(insertLemmaQuery);
-			for (Map.Entry<String, String> entry : lemmaMap.entrySet()) {
-				lemmaStmt.setInt(1, pageId);
-				lemmaStmt.setString(2, entry.getKey());
-				lemmaStmt.setString(3, entry.getValue());
-				lemmaStmt.addBatch();
-			}
-			lemmaStmt.executeBatch();
-
-			// Update root extraction
-			Map<String, String> rootMap = RootExtraction.extractRoots(content);
-			String deleteRootQuery = "DELETE FROM rootextraction WHERE pageId = ?";
-			rootStmt = conn.prepareStatement(deleteRootQuery);
-			rootStmt.setInt(1, pageId);
-			rootStmt.executeUpdate();
-
-			String insertRootQuery = "INSERT INTO rootextraction (pageId, word, root) VALUES (?, ?, ?)";
-			rootStmt = conn.prepareStatement(insertRootQuery);
-			for (Map.Entry<String, String> entry : rootMap.entrySet()) {
-				rootStmt.setInt(1, pageId);
-				rootStmt.setString(2, entry.getKey());
-				rootStmt.setString(3, entry.getValue());
-				rootStmt.addBatch();
-			}
-			rootStmt.executeBatch();
-
-			// Update word segmentation
-			Map<String, String> segmentMap = WordSegmentation.extractSegments(content);
-			String deleteSegmentQuery = "DELETE FROM wordsegementation WHERE pageId = ?";
-			segmentStmt = conn.prepareStatement(deleteSegmentQuery);
-			segmentStmt.setInt(1, pageId);
-			segmentStmt.executeUpdate();
-
-			String insertSegmentQuery = "INSERT INTO wordsegementation (pageId, word, segment) VALUES (?, ?, ?)";
-			segmentStmt = conn.prepareStatement(insertSegmentQuery);
-			for (Map.Entry<String, String> entry : segmentMap.entrySet()) {
-				segmentStmt.setInt(1, pageId);
-				segmentStmt.setString(2, entry.getKey());
-				segmentStmt.setString(3, entry.getValue());
-				segmentStmt.addBatch();
-			}
-			segmentStmt.executeBatch();
-
-			// Update stemming
-			Map<String, String> stemMap = Stemmation.stemWords(content);
-			String deleteStemQuery = "DELETE FROM stemmation WHERE pageId = ?";
-			stemStmt = conn.prepareStatement(deleteStemQuery);
-			stemStmt.setInt(1, pageId);
-			stemStmt.executeUpdate();
-
-			String insertStemQuery = "INSERT INTO stemmation (pageId, word, stem) VALUES (?, ?, ?)";
-			stemStmt = conn.prepareStatement(insertStemQuery);
-			for (Map.Entry<String, String> entry : stemMap.entrySet()) {
-				stemStmt.setInt(1, pageId);
-				stemStmt.setString(2, entry.getKey());
-				stemStmt.setString(3, entry.getValue());
-				stemStmt.addBatch();
-			}
-			stemStmt.executeBatch();
-
-			// Update PKL
-			Map<String, Double> pklMap = performPKL(content);
-			String deletePklQuery = "DELETE FROM pkl WHERE pageId = ?";
-			pklStmt = conn.prepareStatement(deletePklQuery);
-			pklStmt.setInt(1, pageId);
-			pklStmt.executeUpdate();
-
-			String insertPklQuery = "INSERT INTO pkl (pageId, word, pklScore) VALUES (?, ?, ?)";
-			pklStmt = conn.prepareStatement(insertPklQuery);
-			for (Map.Entry<String, Double> entry : pklMap.entrySet()) {
-				pklStmt.setInt(1, pageId);
-				pklStmt.setString(2, entry.getKey());
-				pklStmt.setDouble(3, entry.getValue());
-				pklStmt.addBatch();
-			}
-			pklStmt.executeBatch();
-
-			// Update PMI
-			Map<String, Double> pmiMap = performPMI(content);
-			String deletePmiQuery = "DELETE FROM pmi WHERE pageId = ?";
-			pmiStmt = conn.prepareStatement(deletePmiQuery);
-			pmiStmt.setInt(1, pageId);
-			pmiStmt.executeUpdate();
-
-			String insertPmiQuery = "INSERT INTO pmi (pageId, word, pmiScore) VALUES (?, ?, ?)";
-			pmiStmt = conn.prepareStatement(insertPmiQuery);
-			for (Map.Entry<String, Double> entry : pmiMap.entrySet()) {
-				pmiStmt.setInt(1, pageId);
-				pmiStmt.setString(2, entry.getKey());
-				pmiStmt.setDouble(3, entry.getValue());
-				pmiStmt.addBatch();
-			}
-			pmiStmt.executeBatch();
-
-			// Update TF-IDF
-			double tfidf = performTFIDF(getAllExistingFilesContent(conn), content);
-			String tfidfQuery = "UPDATE tfidf SET tfidfScore = ? WHERE fileId = ?";
+			// Update POS, lemmas, roots, segments, stems, PKL and PMI
+			writePageAnalysis(pageId, content, true);
+			searchIndex.indexPage(pageId, content, true);
+			trigramIndex.indexPage(pageId, content, true);
+
+			// Update TF-IDF, against the other files when the corpus model is on
+			String fileContent = null;
+			double tfidf;
+			int corpusFiles;
+			if (model != null) {
+				fileContent = readFileContent(fileId);
+				tfidf = model.calculateDocumentTfIdf(fileContent, fileId);
+				corpusFiles = model.getFileCount(fileId);
+			} else {
+				List<String> corpus = getAllExistingFilesContent(conn);
+				tfidf = performTFIDF(corpus, content);
+				corpusFiles = corpus.size();
+			}
+			long changes = tfidfScores.recordChange();
+			String tfidfQuery = "UPDATE tfidf SET tfidfScore = ?, corpusFiles = ?, corpusChanges = ? WHERE fileId = ?";
 			tfidfStmt = conn.prepareStatement(tfidfQuery);
 			if (Double.isNaN(tfidf)) tfidf = 0.0;
 			tfidfStmt.setDouble(1, tfidf);
-			tfidfStmt.setInt(2, fileId);
+			tfidfStmt.setInt(2, corpusFiles);
+			tfidfStmt.setLong(3, changes);
+			tfidfStmt.setInt(4, fileId);
 			tfidfStmt.executeUpdate();
 
+			searchIndex.updateFileVector(fileId);
+			refreshKeywords(fileId);
+			if (fileContent == null) {
+				fileContent = readFileContent(fileId);
+			}
+			duplicateIndex.store(fileId, MinHash.signature(fileContent));
+
+			if (pageStore != null) {
+				pageStore.sync();
+			}
 			conn.commit();
+			searchIndex.saveGraph(GRAPH_SAVE_INTERVAL);
+			corpusModelChanged(fileId, fileContent, changes);
 			return true;
 		} catch (Exception e) {
 			try {
 
 				conn.rollback();
+				dictionary.invalidate();
+				searchIndex.invalidateVectors();
+				if (previousContent != null) {
+					pageStore.put(fileId, pageNumber, previousContent);
+				} else if (pageStore != null) {
+					pageStore.delete(fileId, pageNumber);
+				}
 
-			} catch (SQLException rollbackEx) {
+			} catch (SQLException | IOException rollbackEx) {
 				rollbackEx.printStackTrace();
 				LOGGER.error(rollbackEx.getMessage());
 			}
@@ -448,16 +411,35 @@ public class EditorDBDAO implements IEditorDBDAO {
 	}
 
 	@Override
-	public boolean deleteFileInDB(int id) {
-		String query = "DELETE FROM FILES WHERE fileId = ?";
+	public synchronized boolean deleteFileInDB(int id) {
+		String query = "DELETE FROM files WHERE fileId = ?";
 		try (PreparedStatement fileStmt = conn.prepareStatement(query)) {
+			conn.setAutoCommit(false);
 
 			fileStmt.setInt(1, id);
 			int rowsAffected = fileStmt.executeUpdate();
+			long changes = rowsAffected > 0 ? tfidfScores.recordChange() : -1;
 
+			conn.commit();
+			if (rowsAffected > 0) {
+				corpusModelChanged(id, null, changes);
+			}
+			searchIndex.invalidateStatistics();
+			searchIndex.removeFileVector(id);
+			searchIndex.saveGraph(GRAPH_SAVE_INTERVAL);
+			if (pageStore != null) {
+				pageStore.deleteFile(id);
+				pageStore.sync();
+			}
 			return rowsAffected > 0;
 
-		} catch (SQLException e) {
+		} catch (SQLException | IOException e) {
+			try {
+				conn.rollback();
+			} catch (SQLException rollbackEx) {
+				rollbackEx.printStackTrace();
+				LOGGER.error(rollbackEx.getMessage());
+			}
 			e.printStackTrace();
 			LOGGER.error(e.getMessage());
 			return false;
@@ -483,7 +465,7 @@ public class EditorDBDAO implements IEditorDBDAO {
 //	}
 
 	@Override
-	public List<Documents> getFilesFromDB() {
+	public synchronized List<Documents> getFilesFromDB() {
 		List<Documents> documents = new ArrayList<>();
 
 		PreparedStatement stmt = null;
@@ -504,7 +486,7 @@ public class EditorDBDAO implements IEditorDBDAO {
 				String lastModified = rs.getString("lastModified");
 				String dateCreated = rs.getString("dateCreated");
 
-				String query1 = "SELECT pageId, fileId, pageNumber, pageContent FROM pages where fileId = ?";
+				String query1 = "SELECT pageId, fileId, pageNumber, pageContent, pageContentZ FROM pages where fileId = ?";
 				PreparedStatement stmt1 = conn.prepareStatement(query1);
 				stmt1.setInt(1, id);
 				ResultSet rs1 = stmt1.executeQuery();
@@ -512,7 +494,7 @@ public class EditorDBDAO implements IEditorDBDAO {
 
 				while (rs1.next()) {
 					pages.add(new Pages(rs1.getInt("pageId"), rs1.getInt("fileId"), rs1.getInt("pageNumber"),
-							rs1.getString("pageContent")));
+							readPageContent(rs1)));
 				}
 
 				documents.add(new Documents(id, name, hash, lastModified, dateCreated, pages));
@@ -531,10 +513,10 @@ public class EditorDBDAO implements IEditorDBDAO {
 	}
 
 	@Override
-	public String transliterateInDB(int pageId, String arabicText) {
+	public synchronized String transliterateInDB(int pageId, String arabicText) {
 		String content;
 		String deleteQuery = "DELETE FROM transliteratedpages WHERE pageId = ?";
-		String insertQuery = "INSERT INTO transliteratedpages (pageId, transliteratedText) VALUES (?, ?)";
+		String insertQuery = "INSERT INTO transliteratedpages (pageId, transliteratedText, transliteratedTextZ) VALUES (?, ?, ?)";
 
 		try {
 			// Ensure the transliteration result is valid
@@ -552,7 +534,7 @@ public class EditorDBDAO implements IEditorDBDAO {
 			// Insert new transliterated content
 			try (PreparedStatement insertStmt = conn.prepareStatement(insertQuery)) {
 				insertStmt.setInt(1, pageId);
-				insertStmt.setString(2, content);
+				setPageBody(insertStmt, 2, 3, content);
 				insertStmt.executeUpdate();
 			}
 
@@ -575,19 +557,915 @@ public class EditorDBDAO implements IEditorDBDAO {
 		}
 	}
 
-	private List<String> getAllExistingFilesContent(Connection conn) throws SQLException {
-		List<String> allFilesContent = new ArrayList<>();
-		String query = "SELECT f.fileId, GROUP_CONCAT(p.pageContent ORDER BY p.pageNumber SEPARATOR '') AS fileContent "
-				+ "FROM files f " + "JOIN pages p ON f.fileId = p.fileId " + "GROUP BY f.fileId";
+	@Override
+	public synchronized PageAnalysis getPageAnalysis(int pageId) {
+		String query = "SELECT analysis FROM pageanalysis WHERE pageId = ?";
+		try (PreparedStatement stmt = conn.prepareStatement(query)) {
+			stmt.setInt(1, pageId);
+			byte[] data = null;
+			try (ResultSet rs = stmt.executeQuery()) {
+				if (rs.next()) {
+					data = rs.getBytes("analysis");
+				}
+			}
+			if (data == null) {
+				// Page written under the row layout
+				data = PageAnalysisCodec.encode(readAnalysisRows(pageId));
+			}
+			return new PageAnalysis(pageId, data, ids -> dictionary.getWords(conn, ids));
+		} catch (SQLException e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+			return null;
+		}
+	}
+
+	@Override
+	public synchronized List<SearchHit> searchPages(String query) {
+		try {
+			return searchIndex.search(query);
+		} catch (SQLException e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+			return new ArrayList<>();
+		}
+	}
+
+	@Override
+	public synchronized List<SearchHit> searchPhrase(String phrase) {
+		try {
+			return searchIndex.searchPhrase(phrase);
+		} catch (SQLException e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+			return new ArrayList<>();
+		}
+	}
+
+	@Override
+	public synchronized List<SearchHit> searchNear(String first, String second, int distance) {
+		try {
+			return searchIndex.searchNear(first, second, distance);
+		} catch (SQLException e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+			return new ArrayList<>();
+		}
+	}
+
+	@Override
+	public synchronized List<SearchHit> searchFuzzy(String query, int maxDistance) {
+		try {
+			return searchIndex.searchFuzzy(query, maxDistance);
+		} catch (SQLException e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+			return new ArrayList<>();
+		}
+	}
+
+	@Override
+	public synchronized List<SearchHit> searchSubstring(String fragment) {
+		try {
+			List<Integer> candidates = fullTextSearch ? trigramIndex.findFullTextCandidates(fragment) : null;
+			if (candidates != null) {
+				return searchIndex.toPageHits(trigramIndex.confirmMatches(fragment, candidates, this::readPageContents));
+			}
+			return searchIndex.toPageHits(trigramIndex.findMatches(fragment, this::readPageContents));
+		} catch (SQLException e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+			return new ArrayList<>();
+		}
+	}
+
+	@Override
+	public synchronized List<SearchResult> searchRanked(String query, int limit) {
+		try {
+			return searchIndex.rank(query, limit, this::readPageContents);
+		} catch (SQLException e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+			return new ArrayList<>();
+		}
+	}
+
+	@Override
+	public synchronized void searchRanked(String query, int limit, CancellationToken token, Consumer<List<SearchResult>> sink) {
+		try {
+			searchIndex.rank(query, limit, this::readPageContents, token, sink);
+		} catch (SQLException e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+		}
+	}
+
+	@Override
+	public synchronized ScoreFreshness getTfIdf(int fileId) {
+		try {
+			return tfidfScores.getScore(fileId, tfidfDrift);
+		} catch (SQLException e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+			return null;
+		}
+	}
+
+	@Override
+	public synchronized Map<String, Double> getKeywords(int fileId) {
+		try {
+			return keywordIndex.getKeywords(fileId);
+		} catch (SQLException e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+			return new LinkedHashMap<>();
+		}
+	}
+
+	@Override
+	public synchronized List<SearchResult> findFilesByKeyword(String word, int limit) {
+		try {
+			return keywordIndex.findFiles(word, limit);
+		} catch (SQLException e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+			return new ArrayList<>();
+		}
+	}
 
-		try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(query)) {
+	private void refreshKeywords(int fileId) throws SQLException {
+		keywordIndex.store(fileId, searchIndex.topTerms(fileId, keywordsPerFile), searchIndex.getFileCount());
+	}
+
+	/**
+	 * Rescores the keywords of up to {@code limit} files scored against a
+	 * corpus that has since grown or shrunk by more than keywords.refreshDrift.
+	 */
+	int refreshStaleKeywords(int limit) throws SQLException {
+		List<Integer> stale = keywordIndex.findStale(searchIndex.getFileCount(), keywordDrift, limit);
+		for (int fileId : stale) {
+			refreshKeywords(fileId);
+		}
+		return stale.size();
+	}
+
+	/**
+	 * Rescores the keywords of every file, one batch per transaction.
+	 */
+	synchronized int refreshAllKeywords() throws SQLException {
+		int refreshed = 0;
+		int lastId = 0;
+		conn.setAutoCommit(false);
+		try (PreparedStatement stmt = conn
+				.prepareStatement("SELECT fileId FROM files WHERE fileId > ? ORDER BY fileId LIMIT 500")) {
+			while (true) {
+				List<Integer> fileIds = new ArrayList<>();
+				stmt.setInt(1, lastId);
+				try (ResultSet rs = stmt.executeQuery()) {
+					while (rs.next()) {
+						fileIds.add(rs.getInt(1));
+					}
+				}
+				if (fileIds.isEmpty()) {
+					break;
+				}
+				for (int fileId : fileIds) {
+					refreshKeywords(fileId);
+					lastId = fileId;
+				}
+				conn.commit();
+				refreshed += fileIds.size();
+				LOGGER.info("Refreshed the keywords of " + refreshed + " files");
+			}
+		} catch (SQLException e) {
+			conn.rollback();
+			throw e;
+		}
+		return refreshed;
+	}
+
+	@Override
+	public synchronized List<TermVector> getTermVectors() {
+		try {
+			return searchIndex.getTermVectors();
+		} catch (SQLException e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+			return new ArrayList<>();
+		}
+	}
+
+	@Override
+	public synchronized boolean storeClusters(List<ClusterAssignment> assignments) {
+		try (PreparedStatement deleteStmt = conn.prepareStatement("DELETE FROM fileclusters");
+				PreparedStatement insertStmt = conn
+						.prepareStatement("INSERT INTO fileclusters (fileId, clusterId, similarity) VALUES (?, ?, ?)")) {
+			conn.setAutoCommit(false);
+			deleteStmt.executeUpdate();
+			for (int i = 0; i < assignments.size(); i++) {
+				ClusterAssignment assignment = assignments.get(i);
+				insertStmt.setInt(1, assignment.getFileId());
+				insertStmt.setInt(2, assignment.getClusterId());
+				insertStmt.setDouble(3, assignment.getSimilarity());
+				insertStmt.addBatch();
+				if (i % 1000 == 999) {
+					insertStmt.executeBatch();
+				}
+			}
+			insertStmt.executeBatch();
+			conn.commit();
+			return true;
+		} catch (SQLException e) {
+			try {
+				conn.rollback();
+			} catch (SQLException rollbackEx) {
+				rollbackEx.printStackTrace();
+				LOGGER.error(rollbackEx.getMessage());
+			}
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+			return false;
+		}
+	}
+
+	@Override
+	public synchronized Map<Integer, List<SearchResult>> getClusters() {
+		Map<Integer, List<SearchResult>> clusters = new LinkedHashMap<>();
+		String query = "SELECT c.clusterId, c.fileId, f.fileName, c.similarity FROM fileclusters c"
+				+ " JOIN files f ON f.fileid = c.fileId ORDER BY c.clusterId, c.similarity DESC, c.fileId";
+		try (PreparedStatement stmt = conn.prepareStatement(query); ResultSet rs = stmt.executeQuery()) {
 			while (rs.next()) {
-				allFilesContent.add(rs.getString("fileContent"));
+				clusters.computeIfAbsent(rs.getInt(1), id -> new ArrayList<>()).add(new SearchResult(rs.getInt(2),
+						rs.getString(3), rs.getDouble(4), new ArrayList<>(), new ArrayList<>()));
+			}
+		} catch (SQLException e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+		}
+		return clusters;
+	}
+
+	@Override
+	public synchronized List<SearchResult> findNearDuplicates(int fileId) {
+		try {
+			return duplicateIndex.getNearDuplicates(fileId);
+		} catch (SQLException e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+			return new ArrayList<>();
+		}
+	}
+
+	/**
+	 * Computes the signatures of files stored without one and links them to
+	 * their near-duplicates, one batch per transaction.
+	 */
+	synchronized int indexDuplicates() throws SQLException {
+		int indexed = 0;
+		int lastId = 0;
+		conn.setAutoCommit(false);
+		try {
+			while (true) {
+				List<Integer> fileIds = duplicateIndex.findUnsigned(lastId, 100);
+				if (fileIds.isEmpty()) {
+					break;
+				}
+				for (int fileId : fileIds) {
+					int[] signature = MinHash.signature(readFileContent(fileId));
+					if (signature != null) {
+						duplicateIndex.link(fileId,
+								duplicateIndex.findNearDuplicates(signature, duplicateThreshold, fileId));
+						duplicateIndex.store(fileId, signature);
+					}
+					lastId = fileId;
+				}
+				conn.commit();
+				indexed += fileIds.size();
+				LOGGER.info("Indexed the signatures of " + indexed + " files");
+			}
+		} catch (SQLException e) {
+			conn.rollback();
+			throw e;
+		}
+		return indexed;
+	}
+
+	// Whole text of a file, its pages joined as they were cut
+	private String readFileContent(int fileId) throws SQLException {
+		String content = readFilesContent(conn, Collections.singletonList(fileId)).get(fileId);
+		return content != null ? content : "";
+	}
+
+	/**
+	 * Builds the similarity graph again from the stored files, when
+	 * similar.approximate is on.
+	 */
+	synchronized int rebuildSimilarityGraph() throws SQLException {
+		return searchIndex.rebuildGraph();
+	}
+
+	@Override
+	public synchronized List<SearchResult> findSimilar(int fileId, int k) {
+		try {
+			return searchIndex.findSimilar(fileId, k);
+		} catch (SQLException e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+			return new ArrayList<>();
+		}
+	}
+
+	@Override
+	public synchronized List<SearchHit> scanPages(CorpusScanner.PageMatcher matcher, int limit, CancellationToken token) {
+		try {
+			return corpusScanner.scan(matcher, limit, token);
+		} catch (SQLException e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+			return new ArrayList<>();
+		}
+	}
+
+	private List<Documents> readFiles(int afterFileId, int fileCount) throws SQLException {
+		Map<Integer, Documents> files = new LinkedHashMap<>();
+		try (PreparedStatement stmt = conn.prepareStatement(
+				"SELECT fileId, fileName, fileHash, dateCreated, lastModified FROM files WHERE fileId > ? ORDER BY fileId LIMIT ?")) {
+			stmt.setInt(1, afterFileId);
+			stmt.setInt(2, fileCount);
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					int id = rs.getInt("fileId");
+					files.put(id, new Documents(id, rs.getString("fileName"), rs.getString("fileHash"),
+							rs.getString("lastModified"), rs.getString("dateCreated"), new ArrayList<>()));
+				}
+			}
+		}
+		if (files.isEmpty()) {
+			return new ArrayList<>();
+		}
+
+		try (PreparedStatement stmt = conn.prepareStatement(
+				"SELECT pageId, fileId, pageNumber, pageContent, pageContentZ FROM pages WHERE fileId > ? AND fileId <= ? ORDER BY fileId, pageNumber")) {
+			stmt.setInt(1, afterFileId);
+			stmt.setInt(2, new ArrayList<>(files.keySet()).get(files.size() - 1));
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					Documents file = files.get(rs.getInt("fileId"));
+					if (file != null) {
+						file.getPages().add(new Pages(rs.getInt("pageId"), rs.getInt("fileId"),
+								rs.getInt("pageNumber"), readPageContent(rs)));
+					}
+				}
+			}
+		}
+		return new ArrayList<>(files.values());
+	}
+
+	private Map<Integer, String> readPageContents(Collection<Integer> pageIds) throws SQLException {
+		Map<Integer, String> contents = new HashMap<>();
+		List<Integer> ids = new ArrayList<>(pageIds);
+		for (int from = 0; from < ids.size(); from += 500) {
+			List<Integer> chunk = ids.subList(from, Math.min(ids.size(), from + 500));
+			StringBuilder query = new StringBuilder(
+					"SELECT pageId, fileId, pageNumber, pageContent, pageContentZ FROM pages WHERE pageId IN (");
+			for (int i = 0; i < chunk.size(); i++) {
+				query.append(i == 0 ? "?" : ", ?");
+			}
+			query.append(")");
+			try (PreparedStatement stmt = conn.prepareStatement(query.toString())) {
+				for (int i = 0; i < chunk.size(); i++) {
+					stmt.setInt(i + 1, chunk.get(i));
+				}
+				try (ResultSet rs = stmt.executeQuery()) {
+					while (rs.next()) {
+						contents.put(rs.getInt("pageId"), readPageContent(rs));
+					}
+				}
+			}
+		}
+		return contents;
+	}
+
+	@Override
+	public synchronized List<SearchHit> searchByRoot(String word) {
+		return searchByForm(PageAnalysisCodec.ROOT, word, RootExtraction.extractRoots(word));
+	}
+
+	@Override
+	public synchronized List<SearchHit> searchByLemma(String word) {
+		return searchByForm(PageAnalysisCodec.LEMMA, word, Lemmatization.lemmatizeWords(word));
+	}
+
+	@Override
+	public synchronized List<SearchHit> searchByStem(String word) {
+		return searchByForm(PageAnalysisCodec.STEM, word, Stemmation.stemWords(word));
+	}
+
+	/**
+	 * Looks up the pages sharing the analyzed form of {@code word}. The word is
+	 * also tried as a form itself, so typing a root directly finds its words.
+	 */
+	private List<SearchHit> searchByForm(int form, String word, Map<String, String> analysis) {
+		Set<String> forms = new LinkedHashSet<>();
+		for (String value : analysis.values()) {
+			if (value != null && !value.isEmpty()) {
+				forms.add(value);
+			}
+		}
+		String plain = PreProcessText.preprocessText(word);
+		if (plain != null && !plain.isEmpty()) {
+			forms.add(plain);
+		}
+		try {
+			return searchIndex.searchForms(form, forms);
+		} catch (SQLException e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+			return new ArrayList<>();
+		}
+	}
+
+	/**
+	 * Re-indexes every stored page, committing after each batch. Used to build
+	 * the postings, word forms and trigrams of pages written before the index existed.
+	 */
+	synchronized int rebuildSearchIndex() throws SQLException {
+		searchIndex.invalidateVectors();
+		String query = "SELECT pageId, fileId, pageNumber, pageContent, pageContentZ FROM pages WHERE pageId > ?"
+				+ " ORDER BY pageId LIMIT 500";
+		int indexed = 0;
+		int lastId = 0;
+
+		conn.setAutoCommit(false);
+		try (PreparedStatement stmt = conn.prepareStatement(query)) {
+			while (true) {
+				Map<Integer, String> pages = new LinkedHashMap<>();
+				stmt.setInt(1, lastId);
+				try (ResultSet rs = stmt.executeQuery()) {
+					while (rs.next()) {
+						lastId = rs.getInt("pageId");
+						pages.put(lastId, readPageContent(rs));
+					}
+				}
+				if (pages.isEmpty()) {
+					break;
+				}
+				for (Map.Entry<Integer, String> page : pages.entrySet()) {
+					searchIndex.indexPage(page.getKey(), page.getValue(), true);
+					trigramIndex.indexPage(page.getKey(), page.getValue(), true);
+					PageAnalysis analysis = getPageAnalysis(page.getKey());
+					searchIndex.removeForms(page.getKey());
+					if (analysis != null) {
+						searchIndex.indexForms(page.getKey(), PageAnalysisCodec.LEMMA, analysis.getLemmas());
+						searchIndex.indexForms(page.getKey(), PageAnalysisCodec.ROOT, analysis.getRoots());
+						searchIndex.indexForms(page.getKey(), PageAnalysisCodec.STEM, analysis.getStems());
+					}
+				}
+				conn.commit();
+				indexed += pages.size();
+				LOGGER.info("Indexed " + indexed + " pages");
+			}
+		} catch (SQLException e) {
+			conn.rollback();
+			throw e;
+		}
+		return indexed;
+	}
+
+	/**
+	 * Writes every analysis of a page in the configured layout. With
+	 * {@code replace} the page's previous analyses are removed first.
+	 */
+	private void writePageAnalysis(int pageId, String content, boolean replace) throws SQLException {
+		List<Map<String, String>> analyses = new ArrayList<>();
+		analyses.add(joinPOSTags(POSTagger.extractPOS(content)));
+		analyses.add(Lemmatization.lemmatizeWords(content));
+		analyses.add(RootExtraction.extractRoots(content));
+		analyses.add(Stemmation.stemWords(content));
+		analyses.add(WordSegmentation.extractSegments(content));
+		Map<String, Double> pklScores = performPKL(content);
+		Map<String, Double> pmiScores = performPMI(content);
+
+		if (replace) {
+			for (String table : ANALYSIS_TABLES) {
+				deletePageRows(table, pageId);
+			}
+			deletePageRows("pageanalysis", pageId);
+			searchIndex.removeForms(pageId);
+		}
+		searchIndex.indexForms(pageId, PageAnalysisCodec.LEMMA, analyses.get(PageAnalysisCodec.LEMMA));
+		searchIndex.indexForms(pageId, PageAnalysisCodec.ROOT, analyses.get(PageAnalysisCodec.ROOT));
+		searchIndex.indexForms(pageId, PageAnalysisCodec.STEM, analyses.get(PageAnalysisCodec.STEM));
+
+		if (analysisBlobs) {
+			writeAnalysisBlob(pageId, analyses, pklScores, pmiScores);
+			return;
+		}
+		for (int section = 0; section < analyses.size(); section++) {
+			try (PreparedStatement insertStmt = conn.prepareStatement("INSERT INTO " + ANALYSIS_TABLES[section]
+					+ " (pageId, wordId, " + ANALYSIS_COLUMNS[section] + ") VALUES (?, ?, ?)")) {
+				insertAnalysis(insertStmt, pageId, analyses.get(section));
+			}
+		}
+		try (PreparedStatement insertStmt = conn
+				.prepareStatement("INSERT INTO pkl (pageId, wordId, pklScore) VALUES (?, ?, ?)")) {
+			insertScores(insertStmt, pageId, pklScores);
+		}
+		try (PreparedStatement insertStmt = conn
+				.prepareStatement("INSERT INTO pmi (pageId, wordId, pmiScore) VALUES (?, ?, ?)")) {
+			insertScores(insertStmt, pageId, pmiScores);
+		}
+	}
+
+	private void writeAnalysisBlob(int pageId, List<Map<String, String>> analyses, Map<String, Double> pklScores,
+			Map<String, Double> pmiScores) throws SQLException {
+		List<String> words = new ArrayList<>();
+		for (Map<String, String> analysis : analyses) {
+			words.addAll(analysis.keySet());
+			words.addAll(analysis.values());
+		}
+		words.addAll(pklScores.keySet());
+		words.addAll(pmiScores.keySet());
+		Map<String, Integer> wordIds = dictionary.getWordIds(conn, words);
+
+		PageAnalysisCodec.Section[] sections = new PageAnalysisCodec.Section[PageAnalysisCodec.SECTION_COUNT];
+		for (int section = 0; section < analyses.size(); section++) {
+			Map<String, String> analysis = analyses.get(section);
+			int[] keys = new int[analysis.size()];
+			int[] values = new int[analysis.size()];
+			int i = 0;
+			for (Map.Entry<String, String> entry : analysis.entrySet()) {
+				keys[i] = wordIds.get(entry.getKey());
+				values[i] = entry.getValue() == null ? 0 : wordIds.get(entry.getValue());
+				i++;
+			}
+			sections[section] = new PageAnalysisCodec.Section(keys, values, null);
+		}
+		sections[PageAnalysisCodec.PKL] = scoreSection(pklScores, wordIds);
+		sections[PageAnalysisCodec.PMI] = scoreSection(pmiScores, wordIds);
+
+		String insertQuery = "INSERT INTO pageanalysis (pageId, formatVersion, analysis) VALUES (?, ?, ?)";
+		try (PreparedStatement insertStmt = conn.prepareStatement(insertQuery)) {
+			insertStmt.setInt(1, pageId);
+			insertStmt.setInt(2, PageAnalysisCodec.FORMAT_VERSION);
+			insertStmt.setBytes(3, PageAnalysisCodec.encode(sections));
+			insertStmt.executeUpdate();
+		}
+	}
+
+	private static PageAnalysisCodec.Section scoreSection(Map<String, Double> scores, Map<String, Integer> wordIds) {
+		int[] keys = new int[scores.size()];
+		double[] values = new double[scores.size()];
+		int i = 0;
+		for (Map.Entry<String, Double> entry : scores.entrySet()) {
+			Double value = entry.getValue();
+			keys[i] = wordIds.get(entry.getKey());
+			values[i] = value == null || value.isNaN() ? 0.0 : value;
+			i++;
+		}
+		return new PageAnalysisCodec.Section(keys, null, values);
+	}
+
+	/**
+	 * Reads the analyses of a page stored under the row layout into codec
+	 * sections.
+	 */
+	PageAnalysisCodec.Section[] readAnalysisRows(int pageId) throws SQLException {
+		PageAnalysisCodec.Section[] sections = new PageAnalysisCodec.Section[PageAnalysisCodec.SECTION_COUNT];
+		for (int section = 0; section < PageAnalysisCodec.SECTION_COUNT; section++) {
+			boolean scores = PageAnalysisCodec.isScoreSection(section);
+			String query = "SELECT wordId, " + ANALYSIS_COLUMNS[section] + " FROM " + ANALYSIS_TABLES[section]
+					+ " WHERE pageId = ? ORDER BY id";
+
+			List<Integer> keys = new ArrayList<>();
+			List<Number> values = new ArrayList<>();
+			try (PreparedStatement stmt = conn.prepareStatement(query)) {
+				stmt.setInt(1, pageId);
+				try (ResultSet rs = stmt.executeQuery()) {
+					while (rs.next()) {
+						keys.add(rs.getInt(1));
+						values.add(scores ? (Number) rs.getDouble(2) : (Number) rs.getInt(2));
+					}
+				}
+			}
+
+			int[] wordIds = new int[keys.size()];
+			int[] valueIds = scores ? null : new int[keys.size()];
+			double[] scoreValues = scores ? new double[keys.size()] : null;
+			for (int i = 0; i < keys.size(); i++) {
+				wordIds[i] = keys.get(i);
+				if (scores) {
+					scoreValues[i] = values.get(i).doubleValue();
+				} else {
+					valueIds[i] = values.get(i).intValue();
+				}
+			}
+			sections[section] = new PageAnalysisCodec.Section(wordIds, valueIds, scoreValues);
+		}
+		return sections;
+	}
+
+	private void deletePageRows(String table, int pageId) throws SQLException {
+		try (PreparedStatement deleteStmt = conn.prepareStatement("DELETE FROM " + table + " WHERE pageId = ?")) {
+			deleteStmt.setInt(1, pageId);
+			deleteStmt.executeUpdate();
+		}
+	}
+
+	private void insertAnalysis(PreparedStatement stmt, int pageId, Map<String, String> analysis)
+			throws SQLException {
+		List<String> words = new ArrayList<>(analysis.keySet());
+		words.addAll(analysis.values());
+		Map<String, Integer> wordIds = dictionary.getWordIds(conn, words);
+
+		for (Map.Entry<String, String> entry : analysis.entrySet()) {
+			stmt.setInt(1, pageId);
+			stmt.setInt(2, wordIds.get(entry.getKey()));
+			if (entry.getValue() == null) {
+				stmt.setNull(3, Types.INTEGER);
+			} else {
+				stmt.setInt(3, wordIds.get(entry.getValue()));
+			}
+			stmt.addBatch();
+		}
+		stmt.executeBatch();
+	}
+
+	private void insertScores(PreparedStatement stmt, int pageId, Map<String, Double> scores) throws SQLException {
+		Map<String, Integer> wordIds = dictionary.getWordIds(conn, scores.keySet());
+
+		for (Map.Entry<String, Double> entry : scores.entrySet()) {
+			Double value = entry.getValue();
+			if (value == null || value.isNaN()) {
+				value = 0.0;
+			}
+			stmt.setInt(1, pageId);
+			stmt.setInt(2, wordIds.get(entry.getKey()));
+			stmt.setDouble(3, value);
+			stmt.addBatch();
+		}
+		stmt.executeBatch();
+	}
+
+	private static Map<String, String> joinPOSTags(Map<String, List<String>> posTagsMap) {
+		Map<String, String> joined = new HashMap<>();
+		for (Map.Entry<String, List<String>> entry : posTagsMap.entrySet()) {
+			joined.put(entry.getKey(), String.join("|", entry.getValue()));
+		}
+		return joined;
+	}
+
+	private List<String> getAllExistingFilesContent(Connection conn) throws SQLException {
+		return new ArrayList<>(readAllFilesContent(conn).values());
+	}
+
+	// Whole text of every file by fileId, in fileId order
+	private Map<Integer, String> readAllFilesContent(Connection conn) throws SQLException {
+		return readFilesContent(conn, null);
+	}
+
+	// Whole text of the given files, or of all of them when null
+	private Map<Integer, String> readFilesContent(Connection conn, Collection<Integer> fileIds) throws SQLException {
+		Map<Integer, String> allFilesContent = new LinkedHashMap<>();
+		if (fileIds != null && fileIds.isEmpty()) {
+			return allFilesContent;
+		}
+		// Pages are joined here rather than with GROUP_CONCAT so compressed bodies
+		// can be decoded first
+		String where = fileIds == null ? ""
+				: " WHERE fileId IN (" + String.join(", ", Collections.nCopies(fileIds.size(), "?")) + ")";
+		String query = "SELECT fileId, pageNumber, pageContent, pageContentZ FROM pages" + where
+				+ " ORDER BY fileId, pageNumber";
+
+		try (PreparedStatement stmt = conn.prepareStatement(query)) {
+			if (fileIds != null) {
+				int i = 1;
+				for (int fileId : fileIds) {
+					stmt.setInt(i++, fileId);
+				}
+			}
+			try (ResultSet rs = stmt.executeQuery()) {
+				StringBuilder fileContent = null;
+				int currentFileId = -1;
+				while (rs.next()) {
+					int fileId = rs.getInt("fileId");
+					if (fileContent == null || fileId != currentFileId) {
+						if (fileContent != null) {
+							allFilesContent.put(currentFileId, fileContent.toString());
+						}
+						fileContent = new StringBuilder();
+						currentFileId = fileId;
+					}
+					fileContent.append(readPageContent(rs));
+				}
+				if (fileContent != null) {
+					allFilesContent.put(currentFileId, fileContent.toString());
+				}
 			}
 		}
 		return allFilesContent;
 	}
 
+	/**
+	 * Rescores the stored TF-IDF of every file against all the other files in
+	 * one pass, e.g. after a bulk import left the early files scored against a
+	 * much smaller corpus. Returns -1 when the scores could not be written.
+	 */
+	@Override
+	public synchronized int rescoreTfIdf() {
+		try {
+			return rescoreFiles(null);
+		} catch (SQLException e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+			return -1;
+		}
+	}
+
+	/**
+	 * Rescores up to {@code limit} files whose stored TF-IDF has drifted by
+	 * more than tfidf.refreshDrift, oldest scores first.
+	 */
+	synchronized int refreshStaleTfIdf(int limit) throws SQLException {
+		List<Integer> stale = tfidfScores.findStale(tfidfDrift, limit);
+		if (stale.isEmpty()) {
+			return 0;
+		}
+		CorpusModel model = corpusModel();
+		return model != null ? rescoreFiles(model, stale) : rescoreFiles(new HashSet<>(stale));
+	}
+
+	synchronized long getCorpusChanges() throws SQLException {
+		return tfidfScores.getChanges();
+	}
+
+	@Override
+	public synchronized List<ScoreFreshness> getTfIdfFreshness(int limit) {
+		try {
+			return tfidfScores.getFreshness(tfidfDrift, limit);
+		} catch (SQLException e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+			return new ArrayList<>();
+		}
+	}
+
+	/**
+	 * The corpus model matching the stored files, opened from
+	 * tfidf.modelPath or rebuilt from the pages when it is missing or behind
+	 * the database. Null when tfidf.model is off.
+	 */
+	private CorpusModel corpusModel() throws SQLException {
+		if (corpusModelPath == null || corpusModelFailed) {
+			return null;
+		}
+		long changes = tfidfScores.getChanges();
+		if (corpusModel == null) {
+			try {
+				corpusModel = CorpusModel.open(corpusModelPath);
+			} catch (IOException e) {
+				LOGGER.info("No corpus model at " + corpusModelPath + ", building it");
+			}
+		}
+		if (corpusModel == null || corpusModel.getCorpusChanges() != changes) {
+			closeCorpusModel();
+			long start = System.currentTimeMillis();
+			try {
+				corpusModel = CorpusModel.build(corpusModelPath, readAllFilesContent(conn), changes);
+			} catch (IOException e) {
+				// The model only saves work; scoring goes on without it
+				e.printStackTrace();
+				LOGGER.error("Cannot save the corpus model at " + corpusModelPath
+						+ ", scoring TF-IDF against the stored files: " + e.getMessage());
+				corpusModel = null;
+				corpusModelFailed = true;
+				return null;
+			}
+			LOGGER.info("Corpus model built in " + (System.currentTimeMillis() - start) + " ms");
+		}
+		return corpusModel;
+	}
+
+	// Applies a committed change to the corpus model when it is the next one;
+	// otherwise another client changed the files too and the model is rebuilt
+	// on its next use
+	private void corpusModelChanged(int fileId, String content, long changes) {
+		if (corpusModel == null || corpusModel.getCorpusChanges() != changes - 1) {
+			return;
+		}
+		try {
+			if (content != null) {
+				corpusModel.put(fileId, content, changes);
+			} else {
+				corpusModel.remove(fileId, changes);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+			closeCorpusModel();
+		}
+	}
+
+	private void closeCorpusModel() {
+		if (corpusModel != null) {
+			try {
+				corpusModel.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+				LOGGER.error(e.getMessage());
+			}
+			corpusModel = null;
+		}
+	}
+
+	// Scores the given files against the corpus model, reading only their text
+	private int rescoreFiles(CorpusModel model, List<Integer> fileIds) throws SQLException {
+		conn.setAutoCommit(false);
+		try {
+			long changes = tfidfScores.getChanges();
+			Map<Integer, String> contents = readFilesContent(conn, fileIds);
+			Map<Integer, Double> rescored = new LinkedHashMap<>();
+			for (int fileId : fileIds) {
+				// Files without pages have nothing to score
+				String content = contents.get(fileId);
+				rescored.put(fileId, content == null ? 0.0 : model.calculateDocumentTfIdf(content, fileId));
+			}
+			int updated = tfidfScores.update(rescored, Math.max(model.getFileCount(-1) - 1, 0), changes);
+			conn.commit();
+			return updated;
+		} catch (SQLException e) {
+			conn.rollback();
+			throw e;
+		}
+	}
+
+	// Scores the given files, or all of them when null, in one transaction
+	private int rescoreFiles(Set<Integer> fileIds) throws SQLException {
+		conn.setAutoCommit(false);
+		try {
+			long changes = tfidfScores.getChanges();
+			Map<Integer, String> contents = readAllFilesContent(conn);
+			double[] scores = TFIDFCalculator.calculateCorpusTfIdf(new ArrayList<>(contents.values()));
+			Map<Integer, Double> rescored = new LinkedHashMap<>();
+			int i = 0;
+			for (int fileId : contents.keySet()) {
+				if (fileIds == null || fileIds.contains(fileId)) {
+					rescored.put(fileId, scores[i]);
+				}
+				i++;
+			}
+			if (fileIds != null) {
+				// Files without pages have nothing to score
+				for (int fileId : fileIds) {
+					rescored.putIfAbsent(fileId, 0.0);
+				}
+			}
+			int updated = tfidfScores.update(rescored, Math.max(contents.size() - 1, 0), changes);
+			conn.commit();
+			return updated;
+		} catch (SQLException e) {
+			conn.rollback();
+			throw e;
+		}
+	}
+
+	private void setPageBody(PreparedStatement stmt, int textIndex, int compressedIndex, String text)
+			throws SQLException {
+		if (compressPages) {
+			stmt.setString(textIndex, "");
+			stmt.setBytes(compressedIndex, PageCodec.compress(text));
+		} else {
+			stmt.setString(textIndex, text);
+			stmt.setNull(compressedIndex, Types.BLOB);
+		}
+	}
+
+	private void setPageContent(PreparedStatement stmt, int textIndex, int compressedIndex, int fileId,
+			int pageNumber, String content) throws SQLException, IOException {
+		if (pageStore != null) {
+			pageStore.put(fileId, pageNumber, content);
+			stmt.setString(textIndex, "");
+			stmt.setNull(compressedIndex, Types.BLOB);
+		} else {
+			setPageBody(stmt, textIndex, compressedIndex, content);
+		}
+	}
+
+	private String readPageContent(ResultSet rs) throws SQLException {
+		if (pageStore != null) {
+			String content = pageStore.get(rs.getInt("fileId"), rs.getInt("pageNumber"));
+			if (content != null) {
+				return content;
+			}
+		}
+		return readPageBody(rs, "pageContent", "pageContentZ");
+	}
+
+	static String readPageBody(ResultSet rs, String textColumn, String compressedColumn) throws SQLException {
+		byte[] compressed = rs.getBytes(compressedColumn);
+		return compressed != null ? PageCodec.decompress(compressed) : rs.getString(textColumn);
+	}
+
 	@Override
 	public synchronized Map<String, String> lemmatizeWords(String text) {
 		// TODO Auto-generated method stub
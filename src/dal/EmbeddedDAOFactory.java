@@ -0,0 +1,10 @@
+package dal;
+
+public class EmbeddedDAOFactory extends AbstractDAOEditorFactory {
+
+	@Override
+	public IEditorDBDAO createEditorDAO() {
+		return new EditorDBDAO(EmbeddedDatabase.getInstance().getConnection());
+	}
+
+}
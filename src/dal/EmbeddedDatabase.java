@@ -0,0 +1,107 @@
+package dal;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import pl.EditorPO;
+
+/**
+ * In-process H2 database used by {@link EmbeddedDAOFactory}. The database file
+ * lives at {@code embedded.path} (default {@code data/realeditor}) and is
+ * created with {@code resource/Database/EmbeddedDBQuery.sql} on first start.
+ * H2 runs in MariaDB compatibility mode so {@link EditorDBDAO} issues the same
+ * SQL against both backends.
+ */
+public class EmbeddedDatabase {
+	private static final Logger LOGGER = LogManager.getLogger(EditorPO.class);
+	private static final String SCHEMA_FILE = "resource/Database/EmbeddedDBQuery.sql";
+	private static EmbeddedDatabase INSTANCE;
+
+	private Connection connection;
+
+	private EmbeddedDatabase() {
+		try {
+			connection = open(EditorConfig.getProperty("embedded.path", "data/realeditor"));
+		} catch (IOException | SQLException e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+		}
+	}
+
+	public static synchronized EmbeddedDatabase getInstance() {
+		if (INSTANCE == null) {
+			INSTANCE = new EmbeddedDatabase();
+		}
+		return INSTANCE;
+	}
+
+	public Connection getConnection() {
+		return connection;
+	}
+
+	public void closeConnection() {
+		if (connection != null) {
+			try {
+				connection.close();
+			} catch (SQLException e) {
+				e.printStackTrace();
+				LOGGER.error(e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Opens (creating if needed) the embedded database stored at {@code path}.
+	 */
+	public static Connection open(String path) throws IOException, SQLException {
+		String url = "jdbc:h2:file:" + Paths.get(path).toAbsolutePath()
+				+ ";MODE=MariaDB;DATABASE_TO_LOWER=TRUE";
+		Connection conn = DriverManager.getConnection(url, "sa", "");
+		if (!hasSchema(conn)) {
+			createSchema(conn);
+		}
+		return conn;
+	}
+
+	private static boolean hasSchema(Connection conn) throws SQLException {
+		try (ResultSet rs = conn.getMetaData().getTables(null, null, "files", new String[] { "TABLE" })) {
+			return rs.next();
+		}
+	}
+
+	private static void createSchema(Connection conn) throws IOException, SQLException {
+		StringBuilder script = new StringBuilder();
+		for (String line : Files.readAllLines(Paths.get(SCHEMA_FILE), StandardCharsets.UTF_8)) {
+			if (!line.trim().startsWith("--")) {
+				script.append(line).append('\n');
+			}
+		}
+
+		boolean autoCommit = conn.getAutoCommit();
+		conn.setAutoCommit(false);
+		try (Statement stmt = conn.createStatement()) {
+			for (String statement : script.toString().split(";")) {
+				if (!statement.trim().isEmpty()) {
+					stmt.execute(statement);
+				}
+			}
+			conn.commit();
+			LOGGER.info("Created embedded database schema");
+		} catch (SQLException e) {
+			conn.rollback();
+			throw e;
+		} finally {
+			conn.setAutoCommit(autoCommit);
+		}
+	}
+}
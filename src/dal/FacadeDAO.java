@@ -2,8 +2,15 @@ package dal;
 
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
+import dto.CancellationToken;
+import dto.ClusterAssignment;
 import dto.Documents;
+import dto.ScoreFreshness;
+import dto.SearchHit;
+import dto.SearchResult;
+import dto.TermVector;
 
 public class FacadeDAO implements IFacadeDAO {
 
@@ -64,6 +71,16 @@ public class FacadeDAO implements IFacadeDAO {
 		return mariaDB.performTFIDF(unSelectedDocsContent, selectedDocContent);
 	}
 
+	@Override
+	public int rescoreTfIdf() {
+		return mariaDB.rescoreTfIdf();
+	}
+
+	@Override
+	public List<ScoreFreshness> getTfIdfFreshness(int limit) {
+		return mariaDB.getTfIdfFreshness(limit);
+	}
+
 	@Override
 	public Map<String, Double> performPMI(String content) {
 		// TODO Auto-generated method stub
@@ -88,6 +105,106 @@ public class FacadeDAO implements IFacadeDAO {
 		return mariaDB.segmentWords(text);
 	}
 
+	@Override
+	public PageAnalysis getPageAnalysis(int pageId) {
+		return mariaDB.getPageAnalysis(pageId);
+	}
+
+	@Override
+	public List<SearchHit> searchPages(String query) {
+		return mariaDB.searchPages(query);
+	}
+
+	@Override
+	public List<SearchHit> searchPhrase(String phrase) {
+		return mariaDB.searchPhrase(phrase);
+	}
+
+	@Override
+	public List<SearchHit> searchNear(String first, String second, int distance) {
+		return mariaDB.searchNear(first, second, distance);
+	}
+
+	@Override
+	public List<SearchHit> searchFuzzy(String query, int maxDistance) {
+		return mariaDB.searchFuzzy(query, maxDistance);
+	}
+
+	@Override
+	public ScoreFreshness getTfIdf(int fileId) {
+		return mariaDB.getTfIdf(fileId);
+	}
+
+	@Override
+	public Map<String, Double> getKeywords(int fileId) {
+		return mariaDB.getKeywords(fileId);
+	}
+
+	@Override
+	public List<SearchResult> findFilesByKeyword(String word, int limit) {
+		return mariaDB.findFilesByKeyword(word, limit);
+	}
+
+	@Override
+	public List<SearchResult> findSimilar(int fileId, int k) {
+		return mariaDB.findSimilar(fileId, k);
+	}
+
+	@Override
+	public List<SearchResult> findNearDuplicates(int fileId) {
+		return mariaDB.findNearDuplicates(fileId);
+	}
+
+	@Override
+	public List<TermVector> getTermVectors() {
+		return mariaDB.getTermVectors();
+	}
+
+	@Override
+	public boolean storeClusters(List<ClusterAssignment> assignments) {
+		return mariaDB.storeClusters(assignments);
+	}
+
+	@Override
+	public Map<Integer, List<SearchResult>> getClusters() {
+		return mariaDB.getClusters();
+	}
+
+	@Override
+	public List<SearchHit> scanPages(CorpusScanner.PageMatcher matcher, int limit, CancellationToken token) {
+		return mariaDB.scanPages(matcher, limit, token);
+	}
+
+	@Override
+	public List<SearchHit> searchSubstring(String fragment) {
+		return mariaDB.searchSubstring(fragment);
+	}
+
+	@Override
+	public List<SearchResult> searchRanked(String query, int limit) {
+		return mariaDB.searchRanked(query, limit);
+	}
+
+	@Override
+	public void searchRanked(String query, int limit, CancellationToken token, Consumer<List<SearchResult>> sink) {
+		mariaDB.searchRanked(query, limit, token, sink);
+	}
+
+	@Override
+	public List<SearchHit> searchByRoot(String word) {
+		return mariaDB.searchByRoot(word);
+	}
+
+	@Override
+	public List<SearchHit> searchByLemma(String word) {
+		return mariaDB.searchByLemma(word);
+	}
+
+	@Override
+	public List<SearchHit> searchByStem(String word) {
+		return mariaDB.searchByStem(word);
+	}
+
 
 
 }
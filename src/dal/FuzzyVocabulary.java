@@ -0,0 +1,227 @@
+package dal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Vocabulary that finds the terms within a Levenshtein distance of a query.
+ * Terms are kept sorted and laid out as a trie in preorder: node n has a label
+ * character, its children start at n + 1 and its subtree ends before
+ * {@code end[n]}, which is also its next sibling. A lookup extends the edit
+ * distance row of the query one trie level at a time and skips every subtree
+ * whose row has no cell within the distance. This is the Levenshtein
+ * automaton evaluated on the fly; only prefixes close to the query are
+ * visited, and they are visited in array order.
+ *
+ * New terms are collected in a small sorted set that is merged into the trie
+ * once it grows past a fraction of it.
+ */
+public class FuzzyVocabulary {
+	private static final int MIN_MERGE_SIZE = 4096;
+
+	public static class Match {
+		public final String term;
+		public final int distance;
+
+		Match(String term, int distance) {
+			this.term = term;
+			this.distance = distance;
+		}
+	}
+
+	private String[] terms = new String[0];
+	private final TreeSet<String> recent = new TreeSet<>();
+	// Trie in preorder; node 0 is the empty prefix
+	private char[] labels = new char[1];
+	private int[] ends = { 1 };
+	private int[] termIndexes = { -1 };
+
+	/**
+	 * Adds a term; returns false when it is already present.
+	 */
+	public synchronized boolean add(String term) {
+		if (Arrays.binarySearch(terms, term) >= 0 || !recent.add(term)) {
+			return false;
+		}
+		if (recent.size() >= Math.max(MIN_MERGE_SIZE, terms.length / 64)) {
+			merge();
+		}
+		return true;
+	}
+
+	public synchronized void addAll(Collection<String> words) {
+		String[] all = new String[terms.length + recent.size() + words.size()];
+		System.arraycopy(terms, 0, all, 0, terms.length);
+		int count = terms.length;
+		for (String term : recent) {
+			all[count++] = term;
+		}
+		for (String word : words) {
+			all[count++] = word;
+		}
+		Arrays.sort(all);
+
+		int distinct = 0;
+		for (int i = 0; i < all.length; i++) {
+			if (distinct == 0 || !all[i].equals(all[distinct - 1])) {
+				all[distinct++] = all[i];
+			}
+		}
+		terms = Arrays.copyOf(all, distinct);
+		recent.clear();
+		buildTrie();
+	}
+
+	public synchronized int size() {
+		return terms.length + recent.size();
+	}
+
+	/**
+	 * Returns the terms within {@code maxDistance} of {@code query}, closest
+	 * first and then in term order.
+	 */
+	public synchronized List<Match> search(String query, int maxDistance) {
+		List<Match> matches = new ArrayList<>();
+		int[] row = new int[query.length() + 1];
+		for (int j = 0; j < row.length; j++) {
+			row[j] = j;
+		}
+		List<int[]> rows = new ArrayList<>();
+		rows.add(row);
+		walk(0, 0, rows, query, maxDistance, matches);
+
+		for (String term : recent) {
+			int distance = distance(query, term, maxDistance);
+			if (distance <= maxDistance) {
+				matches.add(new Match(term, distance));
+			}
+		}
+		matches.sort((a, b) -> a.distance != b.distance ? Integer.compare(a.distance, b.distance)
+				: a.term.compareTo(b.term));
+		return matches;
+	}
+
+	/**
+	 * Visits the subtree of {@code node}; {@code rows.get(depth)} is the distance
+	 * row of the node's prefix.
+	 */
+	private void walk(int node, int depth, List<int[]> rows, String query, int maxDistance, List<Match> matches) {
+		int[] row = rows.get(depth);
+		if (termIndexes[node] >= 0 && row[query.length()] <= maxDistance) {
+			matches.add(new Match(terms[termIndexes[node]], row[query.length()]));
+		}
+		if (rows.size() == depth + 1) {
+			rows.add(new int[row.length]);
+		}
+		int[] next = rows.get(depth + 1);
+		for (int child = node + 1; child < ends[node]; child = ends[child]) {
+			char ch = labels[child];
+			next[0] = row[0] + 1;
+			int min = next[0];
+			for (int j = 1; j < next.length; j++) {
+				int cost = query.charAt(j - 1) == ch ? 0 : 1;
+				next[j] = Math.min(Math.min(next[j - 1] + 1, row[j] + 1), row[j - 1] + cost);
+				min = Math.min(min, next[j]);
+			}
+			if (min <= maxDistance) {
+				walk(child, depth + 1, rows, query, maxDistance, matches);
+			}
+		}
+	}
+
+	private void merge() {
+		String[] merged = new String[terms.length + recent.size()];
+		int i = 0;
+		int k = 0;
+		for (String term : recent) {
+			while (i < terms.length && terms[i].compareTo(term) < 0) {
+				merged[k++] = terms[i++];
+			}
+			merged[k++] = term;
+		}
+		while (i < terms.length) {
+			merged[k++] = terms[i++];
+		}
+		terms = merged;
+		recent.clear();
+		buildTrie();
+	}
+
+	private void buildTrie() {
+		int capacity = 1;
+		for (String term : terms) {
+			capacity += term.length();
+		}
+		char[] newLabels = new char[capacity];
+		int[] newEnds = new int[capacity];
+		int[] newTermIndexes = new int[capacity];
+		Arrays.fill(newTermIndexes, -1);
+
+		// path[d] is the open node at depth d of the previous term
+		int[] path = new int[1];
+		int depth = 0;
+		int count = 1;
+		String previous = "";
+		for (int t = 0; t < terms.length; t++) {
+			String term = terms[t];
+			int common = 0;
+			int limit = Math.min(depth, Math.min(previous.length(), term.length()));
+			while (common < limit && previous.charAt(common) == term.charAt(common)) {
+				common++;
+			}
+			for (; depth > common; depth--) {
+				newEnds[path[depth]] = count;
+			}
+			if (path.length < term.length() + 1) {
+				path = Arrays.copyOf(path, Math.max(term.length() + 1, path.length * 2));
+			}
+			for (; depth < term.length(); depth++) {
+				newLabels[count] = term.charAt(depth);
+				path[depth + 1] = count++;
+			}
+			newTermIndexes[path[depth]] = t;
+			previous = term;
+		}
+		for (; depth >= 0; depth--) {
+			newEnds[path[depth]] = count;
+		}
+
+		labels = Arrays.copyOf(newLabels, count);
+		ends = Arrays.copyOf(newEnds, count);
+		termIndexes = Arrays.copyOf(newTermIndexes, count);
+	}
+
+	/**
+	 * Levenshtein distance between {@code a} and {@code b}, or any value above
+	 * {@code max} once the distance is known to exceed it.
+	 */
+	public static int distance(String a, String b, int max) {
+		if (Math.abs(a.length() - b.length()) > max) {
+			return max + 1;
+		}
+		int[] previous = new int[b.length() + 1];
+		int[] current = new int[b.length() + 1];
+		for (int j = 0; j <= b.length(); j++) {
+			previous[j] = j;
+		}
+		for (int i = 1; i <= a.length(); i++) {
+			current[0] = i;
+			int rowMin = current[0];
+			for (int j = 1; j <= b.length(); j++) {
+				int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+				current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+				rowMin = Math.min(rowMin, current[j]);
+			}
+			if (rowMin > max) {
+				return max + 1;
+			}
+			int[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+		return previous[b.length()];
+	}
+}
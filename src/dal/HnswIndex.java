@@ -0,0 +1,469 @@
+package dal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Hierarchical navigable small world graph for approximate cosine nearest
+ * neighbours of sparse unit-length vectors. Each file is a node linked to its
+ * closest neighbours on every level up to a random one; a search walks down
+ * from the sparse top level and explores the dense bottom level from there,
+ * visiting a few hundred nodes instead of the whole corpus.
+ *
+ * Removed files stay in the graph as routing nodes and are left out of
+ * results; the graph is rebuilt once they outnumber the live files.
+ *
+ * <pre>
+ * int   magic, format version, M, efConstruction
+ * int   node count, entry point, top level
+ * per node:
+ *   int     fileId, byte deleted, int level
+ *   int     term count, int[] term ids, float[] weights
+ *   per level: int neighbour count, int[] node indexes
+ * </pre>
+ */
+public class HnswIndex {
+	private static final int MAGIC = 0x484E5357;
+	private static final int VERSION = 1;
+
+	private static class Node {
+		final int fileId;
+		final int[] termIds;
+		final float[] weights;
+		final int[][] neighbours;
+		final int[] degrees;
+		boolean deleted;
+
+		Node(int fileId, int[] termIds, float[] weights, int level, int m) {
+			this.fileId = fileId;
+			this.termIds = termIds;
+			this.weights = weights;
+			this.neighbours = new int[level + 1][];
+			this.degrees = new int[level + 1];
+			for (int l = 0; l <= level; l++) {
+				neighbours[l] = new int[maxDegree(l, m) + 1];
+			}
+		}
+
+		int level() {
+			return neighbours.length - 1;
+		}
+	}
+
+	private static class Candidate {
+		final int node;
+		final float similarity;
+
+		Candidate(int node, float similarity) {
+			this.node = node;
+			this.similarity = similarity;
+		}
+	}
+
+	private static final Comparator<Candidate> CLOSEST_LAST = (a, b) -> Float.compare(a.similarity, b.similarity);
+
+	private final int m;
+	private final int efConstruction;
+	private final double levelFactor;
+	private final Random random;
+	private final List<Node> nodes = new ArrayList<>();
+	// Live node of every file
+	private final Map<Integer, Integer> nodeOf = new HashMap<>();
+	private int entryPoint = -1;
+	private int topLevel = -1;
+	private int changes;
+	// Weights of the vector being searched for by term id, zero elsewhere
+	private float[] query = new float[0];
+	// Same for the node whose neighbours are being selected
+	private float[] probe = new float[0];
+	// Above every term id of every node, the least length of query and probe
+	private int dimensions;
+	private final SimilarityKernel kernel = SimilarityKernel.get();
+
+	public HnswIndex() {
+		this(16, 100, 42);
+	}
+
+	/**
+	 * @param m              neighbours kept per node on the upper levels,
+	 *                       twice as many on the bottom one
+	 * @param efConstruction candidates considered when linking a new node
+	 */
+	public HnswIndex(int m, int efConstruction, long seed) {
+		this.m = m;
+		this.efConstruction = efConstruction;
+		this.levelFactor = 1 / Math.log(m);
+		this.random = new Random(seed);
+	}
+
+	public synchronized int size() {
+		return nodeOf.size();
+	}
+
+	public synchronized boolean contains(int fileId) {
+		return nodeOf.containsKey(fileId);
+	}
+
+	public synchronized Set<Integer> fileIds() {
+		return new HashSet<>(nodeOf.keySet());
+	}
+
+	/**
+	 * Inserts or replaces the vector of a file.
+	 */
+	public synchronized void insert(int fileId, int[] termIds, float[] weights) {
+		markDeleted(fileId);
+		link(new Node(fileId, termIds.clone(), weights.clone(), randomLevel(), m));
+		changes++;
+	}
+
+	public synchronized void remove(int fileId) {
+		if (markDeleted(fileId)) {
+			changes++;
+			if (nodes.size() - nodeOf.size() > nodeOf.size()) {
+				rebuild();
+			}
+		}
+	}
+
+	/**
+	 * The {@code k} live files closest to the vector, best first, leaving out
+	 * {@code excludeFileId} and files sharing no term with it. A larger
+	 * {@code ef} explores more of the graph for better recall.
+	 */
+	public synchronized List<DocumentVectors.Match> search(int[] termIds, float[] weights, int k, int ef,
+			int excludeFileId) {
+		List<DocumentVectors.Match> matches = new ArrayList<>();
+		if (entryPoint < 0 || k <= 0) {
+			return matches;
+		}
+		query = scatter(query, termIds, weights);
+		int entry = entryPoint;
+		for (int level = topLevel; level > 0; level--) {
+			entry = greedyClosest(entry, level);
+		}
+		List<Candidate> found = searchLayer(Collections.singletonList(entry), Math.max(ef, k + 1), 0);
+		gather(query, termIds);
+		for (int i = found.size() - 1; i >= 0 && matches.size() < k; i--) {
+			Node node = nodes.get(found.get(i).node);
+			if (!node.deleted && node.fileId != excludeFileId && found.get(i).similarity > 0) {
+				matches.add(new DocumentVectors.Match(node.fileId, found.get(i).similarity));
+			}
+		}
+		return matches;
+	}
+
+	/**
+	 * Number of inserts and removals since the index was created, loaded or
+	 * last saved.
+	 */
+	public synchronized int getChanges() {
+		return changes;
+	}
+
+	/**
+	 * Writes the index to a temporary file and moves it over {@code path}, so
+	 * a crash leaves the previous copy intact.
+	 */
+	public synchronized void save(Path path) throws IOException {
+		if (path.toAbsolutePath().getParent() != null) {
+			Files.createDirectories(path.toAbsolutePath().getParent());
+		}
+		Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(m);
+			out.writeInt(efConstruction);
+			out.writeInt(nodes.size());
+			out.writeInt(entryPoint);
+			out.writeInt(topLevel);
+			for (Node node : nodes) {
+				out.writeInt(node.fileId);
+				out.writeByte(node.deleted ? 1 : 0);
+				out.writeInt(node.level());
+				out.writeInt(node.termIds.length);
+				for (int termId : node.termIds) {
+					out.writeInt(termId);
+				}
+				for (float weight : node.weights) {
+					out.writeFloat(weight);
+				}
+				for (int level = 0; level <= node.level(); level++) {
+					out.writeInt(node.degrees[level]);
+					for (int i = 0; i < node.degrees[level]; i++) {
+						out.writeInt(node.neighbours[level][i]);
+					}
+				}
+			}
+		}
+		Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		changes = 0;
+	}
+
+	public static HnswIndex load(Path path) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				throw new IOException("Not a similarity index: " + path);
+			}
+			HnswIndex index = new HnswIndex(in.readInt(), in.readInt(), 42);
+			int count = in.readInt();
+			index.entryPoint = in.readInt();
+			index.topLevel = in.readInt();
+			for (int n = 0; n < count; n++) {
+				int fileId = in.readInt();
+				boolean deleted = in.readByte() != 0;
+				int level = in.readInt();
+				int[] termIds = new int[in.readInt()];
+				float[] weights = new float[termIds.length];
+				for (int i = 0; i < termIds.length; i++) {
+					termIds[i] = in.readInt();
+				}
+				for (int i = 0; i < weights.length; i++) {
+					weights[i] = in.readFloat();
+				}
+				Node node = new Node(fileId, termIds, weights, level, index.m);
+				for (int l = 0; l <= level; l++) {
+					node.degrees[l] = in.readInt();
+					for (int i = 0; i < node.degrees[l]; i++) {
+						node.neighbours[l][i] = in.readInt();
+					}
+				}
+				node.deleted = deleted;
+				index.addNode(node);
+				if (!deleted) {
+					index.nodeOf.put(fileId, n);
+				}
+			}
+			return index;
+		}
+	}
+
+	private void addNode(Node node) {
+		nodes.add(node);
+		for (int termId : node.termIds) {
+			dimensions = Math.max(dimensions, termId + 1);
+		}
+	}
+
+	private void link(Node node) {
+		int id = nodes.size();
+		addNode(node);
+		nodeOf.put(node.fileId, id);
+		if (entryPoint < 0) {
+			entryPoint = id;
+			topLevel = node.level();
+			return;
+		}
+
+		query = scatter(query, node.termIds, node.weights);
+		int entry = entryPoint;
+		for (int level = topLevel; level > node.level(); level--) {
+			entry = greedyClosest(entry, level);
+		}
+		List<Integer> entries = Collections.singletonList(entry);
+		for (int level = Math.min(node.level(), topLevel); level >= 0; level--) {
+			List<Candidate> found = searchLayer(entries, efConstruction, level);
+			for (int neighbour : selectNeighbours(found, maxDegree(level, m))) {
+				node.neighbours[level][node.degrees[level]++] = neighbour;
+				connect(neighbour, id, level);
+			}
+			entries = new ArrayList<>();
+			for (Candidate candidate : found) {
+				entries.add(candidate.node);
+			}
+		}
+		gather(query, node.termIds);
+		if (node.level() > topLevel) {
+			entryPoint = id;
+			topLevel = node.level();
+		}
+	}
+
+	// Adds a back link, selecting the neighbours again when the node is full
+	private void connect(int from, int to, int level) {
+		Node node = nodes.get(from);
+		node.neighbours[level][node.degrees[level]++] = to;
+		if (node.degrees[level] <= maxDegree(level, m)) {
+			return;
+		}
+		List<Candidate> candidates = new ArrayList<>();
+		probe = scatter(probe, node.termIds, node.weights);
+		for (int i = 0; i < node.degrees[level]; i++) {
+			int neighbour = node.neighbours[level][i];
+			candidates.add(new Candidate(neighbour, score(probe, nodes.get(neighbour))));
+		}
+		gather(probe, node.termIds);
+		candidates.sort(CLOSEST_LAST);
+		List<Integer> kept = selectNeighbours(candidates, maxDegree(level, m));
+		node.degrees[level] = kept.size();
+		for (int i = 0; i < kept.size(); i++) {
+			node.neighbours[level][i] = kept.get(i);
+		}
+	}
+
+	/**
+	 * Picks up to {@code degree} of the candidates, given farthest first,
+	 * skipping any that is closer to an already picked one than to the node.
+	 * Without this a node in a dense cluster links only inside it and the
+	 * clusters end up unreachable from each other.
+	 */
+	private List<Integer> selectNeighbours(List<Candidate> candidates, int degree) {
+		List<Integer> selected = new ArrayList<>();
+		for (int i = candidates.size() - 1; i >= 0 && selected.size() < degree; i--) {
+			Candidate candidate = candidates.get(i);
+			Node node = nodes.get(candidate.node);
+			probe = scatter(probe, node.termIds, node.weights);
+			boolean diverse = true;
+			for (int j = 0; j < selected.size() && diverse; j++) {
+				diverse = score(probe, nodes.get(selected.get(j))) <= candidate.similarity;
+			}
+			gather(probe, node.termIds);
+			if (diverse) {
+				selected.add(candidate.node);
+			}
+		}
+		return selected;
+	}
+
+	private int greedyClosest(int entry, int level) {
+		float best = score(query, nodes.get(entry));
+		boolean moved = true;
+		while (moved) {
+			moved = false;
+			Node node = nodes.get(entry);
+			for (int i = 0; i < node.degrees[level]; i++) {
+				int neighbour = node.neighbours[level][i];
+				float similarity = score(query, nodes.get(neighbour));
+				if (similarity > best) {
+					best = similarity;
+					entry = neighbour;
+					moved = true;
+				}
+			}
+		}
+		return entry;
+	}
+
+	// Up to ef closest nodes reachable from the entries, farthest first
+	private List<Candidate> searchLayer(List<Integer> entries, int ef, int level) {
+		BitSet visited = new BitSet(nodes.size());
+		PriorityQueue<Candidate> candidates = new PriorityQueue<>(CLOSEST_LAST.reversed());
+		PriorityQueue<Candidate> results = new PriorityQueue<>(CLOSEST_LAST);
+		for (int entry : entries) {
+			if (!visited.get(entry)) {
+				visited.set(entry);
+				Candidate candidate = new Candidate(entry, score(query, nodes.get(entry)));
+				candidates.add(candidate);
+				results.add(candidate);
+			}
+		}
+		while (results.size() > ef) {
+			results.poll();
+		}
+		while (!candidates.isEmpty()) {
+			Candidate closest = candidates.poll();
+			if (results.size() >= ef && closest.similarity < results.peek().similarity) {
+				break;
+			}
+			Node node = nodes.get(closest.node);
+			for (int i = 0; i < node.degrees[level]; i++) {
+				int neighbour = node.neighbours[level][i];
+				if (visited.get(neighbour)) {
+					continue;
+				}
+				visited.set(neighbour);
+				float similarity = score(query, nodes.get(neighbour));
+				if (results.size() < ef || similarity > results.peek().similarity) {
+					Candidate candidate = new Candidate(neighbour, similarity);
+					candidates.add(candidate);
+					results.add(candidate);
+					if (results.size() > ef) {
+						results.poll();
+					}
+				}
+			}
+		}
+		List<Candidate> found = new ArrayList<>(results);
+		found.sort(CLOSEST_LAST);
+		return found;
+	}
+
+	private boolean markDeleted(int fileId) {
+		Integer id = nodeOf.remove(fileId);
+		if (id == null) {
+			return false;
+		}
+		nodes.get(id).deleted = true;
+		return true;
+	}
+
+	// Relinks the live nodes into a new graph
+	private void rebuild() {
+		List<Node> live = new ArrayList<>();
+		for (Node node : nodes) {
+			if (!node.deleted) {
+				live.add(node);
+			}
+		}
+		nodes.clear();
+		nodeOf.clear();
+		entryPoint = -1;
+		topLevel = -1;
+		for (Node node : live) {
+			link(new Node(node.fileId, node.termIds, node.weights, node.level(), m));
+		}
+	}
+
+	private int randomLevel() {
+		return (int) (-Math.log(1 - random.nextDouble()) * levelFactor);
+	}
+
+	private static int maxDegree(int level, int m) {
+		return level == 0 ? 2 * m : m;
+	}
+
+	// Spreads a vector over a dense array indexed by term id, grown to cover
+	// the terms of every node
+	private float[] scatter(float[] dense, int[] termIds, float[] weights) {
+		int length = dimensions;
+		for (int termId : termIds) {
+			length = Math.max(length, termId + 1);
+		}
+		if (length > dense.length) {
+			dense = new float[Math.max(length, dense.length * 2)];
+		}
+		for (int i = 0; i < termIds.length; i++) {
+			dense[termIds[i]] = weights[i];
+		}
+		return dense;
+	}
+
+	private static void gather(float[] dense, int[] termIds) {
+		for (int termId : termIds) {
+			dense[termId] = 0;
+		}
+	}
+
+	// Dot product of a node with a scattered vector
+	private float score(float[] dense, Node node) {
+		return kernel.gatherDot(node.termIds, node.weights, dense);
+	}
+}
@@ -2,8 +2,15 @@ package dal;
 
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
+import dto.CancellationToken;
+import dto.ClusterAssignment;
 import dto.Documents;
+import dto.ScoreFreshness;
+import dto.SearchHit;
+import dto.SearchResult;
+import dto.TermVector;
 
 public interface IEditorDBDAO {
 	boolean createFileInDB(String nameOfFile, String content);
@@ -24,6 +31,10 @@ public interface IEditorDBDAO {
 
 	double performTFIDF(List<String> unSelectedDocsContent, String selectedDocContent);
 
+	int rescoreTfIdf();
+
+	List<ScoreFreshness> getTfIdfFreshness(int limit);
+
 	Map<String, Double> performPMI(String content);
 
 	Map<String, Double> performPKL(String content);
@@ -32,4 +43,44 @@ public interface IEditorDBDAO {
 
 	Map<String, String> segmentWords(String text);
 
+	PageAnalysis getPageAnalysis(int pageId);
+
+	List<SearchHit> searchPages(String query);
+
+	List<SearchHit> searchPhrase(String phrase);
+
+	List<SearchHit> searchNear(String first, String second, int distance);
+
+	List<SearchHit> searchFuzzy(String query, int maxDistance);
+
+	ScoreFreshness getTfIdf(int fileId);
+
+	Map<String, Double> getKeywords(int fileId);
+
+	List<SearchResult> findFilesByKeyword(String word, int limit);
+
+	List<SearchResult> findSimilar(int fileId, int k);
+
+	List<SearchResult> findNearDuplicates(int fileId);
+
+	List<TermVector> getTermVectors();
+
+	boolean storeClusters(List<ClusterAssignment> assignments);
+
+	Map<Integer, List<SearchResult>> getClusters();
+
+	List<SearchHit> scanPages(CorpusScanner.PageMatcher matcher, int limit, CancellationToken token);
+
+	List<SearchHit> searchSubstring(String fragment);
+
+	List<SearchResult> searchRanked(String query, int limit);
+
+	void searchRanked(String query, int limit, CancellationToken token, Consumer<List<SearchResult>> sink);
+
+	List<SearchHit> searchByRoot(String word);
+
+	List<SearchHit> searchByLemma(String word);
+
+	List<SearchHit> searchByStem(String word);
+
 }
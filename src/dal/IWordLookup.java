@@ -0,0 +1,9 @@
+package dal;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Map;
+
+public interface IWordLookup {
+	Map<Integer, String> getWords(Collection<Integer> wordIds) throws SQLException;
+}
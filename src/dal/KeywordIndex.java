@@ -0,0 +1,121 @@
+package dal;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import dto.SearchResult;
+
+/**
+ * Top TF-IDF terms of every file, kept in the {@code keywords} table so that
+ * listing a file's keywords or the files tagged with a word is an index
+ * lookup. Each row records the file count of the corpus it was scored
+ * against, which tells how far the corpus has drifted since.
+ */
+public class KeywordIndex {
+	private final Connection conn;
+	private final WordDictionary dictionary;
+
+	public KeywordIndex(Connection conn, WordDictionary dictionary) {
+		this.conn = conn;
+		this.dictionary = dictionary;
+	}
+
+	public void store(int fileId, List<DocumentVectors.TermScore> terms, int corpusFiles) throws SQLException {
+		try (PreparedStatement deleteStmt = conn.prepareStatement("DELETE FROM keywords WHERE fileId = ?")) {
+			deleteStmt.setInt(1, fileId);
+			deleteStmt.executeUpdate();
+		}
+		if (terms.isEmpty()) {
+			return;
+		}
+		String insertQuery = "INSERT INTO keywords (fileId, wordId, score, corpusFiles) VALUES (?, ?, ?, ?)";
+		try (PreparedStatement insertStmt = conn.prepareStatement(insertQuery)) {
+			for (DocumentVectors.TermScore term : terms) {
+				insertStmt.setInt(1, fileId);
+				insertStmt.setInt(2, term.termId);
+				insertStmt.setDouble(3, term.score);
+				insertStmt.setInt(4, corpusFiles);
+				insertStmt.addBatch();
+			}
+			insertStmt.executeBatch();
+		}
+	}
+
+	/**
+	 * Keywords of a file with their scores, best first.
+	 */
+	public Map<String, Double> getKeywords(int fileId) throws SQLException {
+		Map<Integer, Double> scores = new LinkedHashMap<>();
+		try (PreparedStatement stmt = conn
+				.prepareStatement("SELECT wordId, score FROM keywords WHERE fileId = ? ORDER BY score DESC")) {
+			stmt.setInt(1, fileId);
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					scores.put(rs.getInt(1), rs.getDouble(2));
+				}
+			}
+		}
+		Map<Integer, String> words = dictionary.getWords(conn, scores.keySet());
+		Map<String, Double> keywords = new LinkedHashMap<>();
+		for (Map.Entry<Integer, Double> score : scores.entrySet()) {
+			keywords.put(words.get(score.getKey()), score.getValue());
+		}
+		return keywords;
+	}
+
+	/**
+	 * Files having {@code word} among their keywords, highest score first.
+	 */
+	public List<SearchResult> findFiles(String word, int limit) throws SQLException {
+		List<SearchResult> files = new ArrayList<>();
+		String term = Tokenizer.normalize(word);
+		if (term == null) {
+			return files;
+		}
+		Integer wordId = dictionary.findWordIds(conn, Collections.singleton(term)).get(term);
+		if (wordId == null) {
+			return files;
+		}
+
+		String query = "SELECT k.fileId, f.fileName, k.score FROM keywords k JOIN files f ON f.fileid = k.fileId"
+				+ " WHERE k.wordId = ? ORDER BY k.score DESC LIMIT ?";
+		try (PreparedStatement stmt = conn.prepareStatement(query)) {
+			stmt.setInt(1, wordId);
+			stmt.setInt(2, limit);
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					files.add(new SearchResult(rs.getInt(1), rs.getString(2), rs.getDouble(3), new ArrayList<>(),
+							new ArrayList<>()));
+				}
+			}
+		}
+		return files;
+	}
+
+	/**
+	 * Files whose keywords were scored against a corpus whose file count
+	 * differs from {@code corpusFiles} by more than the {@code drift} fraction.
+	 */
+	public List<Integer> findStale(int corpusFiles, double drift, int limit) throws SQLException {
+		List<Integer> fileIds = new ArrayList<>();
+		String query = "SELECT DISTINCT fileId FROM keywords WHERE corpusFiles < ? OR corpusFiles > ? LIMIT ?";
+		try (PreparedStatement stmt = conn.prepareStatement(query)) {
+			stmt.setDouble(1, corpusFiles / (1 + drift));
+			stmt.setDouble(2, drift < 1 ? corpusFiles / (1 - drift) : Integer.MAX_VALUE);
+			stmt.setInt(3, limit);
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					fileIds.add(rs.getInt(1));
+				}
+			}
+		}
+		return fileIds;
+	}
+}
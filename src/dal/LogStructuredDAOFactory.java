@@ -0,0 +1,10 @@
+package dal;
+
+public class LogStructuredDAOFactory extends AbstractDAOEditorFactory {
+
+	@Override
+	public IEditorDBDAO createEditorDAO() {
+		return new EditorDBDAO(EmbeddedDatabase.getInstance().getConnection(), SegmentPageStore.getInstance());
+	}
+
+}
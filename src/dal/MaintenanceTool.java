@@ -0,0 +1,205 @@
+package dal;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import pl.EditorPO;
+
+/**
+ * Offline maintenance commands for an existing database. Run from the install
+ * directory so config.properties is found, e.g.
+ * {@code java -cp RealEditor.jar dal.MaintenanceTool compress-pages}.
+ */
+public class MaintenanceTool {
+	private static final Logger LOGGER = LogManager.getLogger(EditorPO.class);
+	private static final int BATCH_SIZE = 500;
+
+	public static void main(String[] args) {
+		if (args.length == 0) {
+			printUsage();
+			return;
+		}
+
+		boolean embedded = EmbeddedDAOFactory.class.getName().equals(EditorConfig.getProperty("db.type", ""));
+		Connection conn = embedded ? EmbeddedDatabase.getInstance().getConnection()
+				: DatabaseConnection.getInstance().getConnection();
+		try {
+			switch (args[0]) {
+			case "compress-pages":
+				System.out.println("Compressed " + convertPages(conn, true) + " rows.");
+				break;
+			case "decompress-pages":
+				System.out.println("Decompressed " + convertPages(conn, false) + " rows.");
+				break;
+			case "rebuild-search-index":
+				System.out.println("Indexed " + new EditorDBDAO(conn).rebuildSearchIndex() + " pages.");
+				break;
+			case "refresh-keywords":
+				System.out.println("Refreshed the keywords of " + new EditorDBDAO(conn).refreshAllKeywords() + " files.");
+				break;
+			case "build-similarity-graph":
+				System.out.println("Linked " + new EditorDBDAO(conn).rebuildSimilarityGraph() + " files.");
+				break;
+			case "index-duplicates":
+				System.out.println("Indexed the signatures of " + new EditorDBDAO(conn).indexDuplicates() + " files.");
+				break;
+			case "refresh-tfidf":
+				System.out.println("Rescored the stale TF-IDF of " + refreshTfIdf(new EditorDBDAO(conn)) + " files.");
+				break;
+			case "rescore-tfidf":
+				int rescored = new EditorDBDAO(conn).rescoreTfIdf();
+				System.out.println(rescored < 0 ? "Rescoring the TF-IDF failed, see the log."
+						: "Rescored the TF-IDF of " + rescored + " files.");
+				break;
+			case "pack-analysis":
+				System.out.println("Packed the analyses of " + packAnalysis(conn, new EditorDBDAO(conn)) + " pages.");
+				break;
+			default:
+				printUsage();
+			}
+		} catch (SQLException e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+		} finally {
+			if (embedded) {
+				EmbeddedDatabase.getInstance().closeConnection();
+			} else {
+				DatabaseConnection.getInstance().closeConnection();
+			}
+		}
+	}
+
+	private static void printUsage() {
+		System.out.println("Usage: java dal.MaintenanceTool <command>");
+		System.out.println("  compress-pages     move page and transliteration text into the compressed columns");
+		System.out.println("  decompress-pages   move compressed page and transliteration text back to plain text");
+		System.out.println("  build-similarity-graph  rebuild the HNSW graph used when similar.approximate is on");
+		System.out.println("  index-duplicates   sign files stored without a MinHash signature and link near-duplicates");
+		System.out.println("  pack-analysis      move per-word analysis rows into one pageanalysis record per page");
+		System.out.println("  rebuild-search-index  re-index every page for keyword search");
+		System.out.println("  refresh-tfidf      rescore the stored TF-IDF of every file scored against a drifted corpus");
+		System.out.println("  rescore-tfidf      rescore the stored TF-IDF of every file against the whole corpus");
+		System.out.println("  refresh-keywords   rescore the stored keywords of every file");
+	}
+
+	static int refreshTfIdf(EditorDBDAO dao) throws SQLException {
+		int refreshed = 0;
+		int batch;
+		while ((batch = dao.refreshStaleTfIdf(BATCH_SIZE)) > 0) {
+			refreshed += batch;
+			LOGGER.info("Rescored the stale TF-IDF of " + refreshed + " files");
+		}
+		return refreshed;
+	}
+
+	static int convertPages(Connection conn, boolean compress) throws SQLException {
+		return convertTable(conn, "pages", "pageId", "pageContent", "pageContentZ", compress)
+				+ convertTable(conn, "transliteratedpages", "id", "transliteratedText", "transliteratedTextZ",
+						compress);
+	}
+
+	/**
+	 * Moves the analyses of every page without a {@code pageanalysis} record out
+	 * of the row tables, one page per transaction.
+	 */
+	static int packAnalysis(Connection conn, EditorDBDAO dao) throws SQLException {
+		String selectQuery = "SELECT p.pageId FROM pages p LEFT JOIN pageanalysis a ON a.pageId = p.pageId"
+				+ " WHERE a.pageId IS NULL AND p.pageId > ? ORDER BY p.pageId LIMIT " + BATCH_SIZE;
+		String insertQuery = "INSERT INTO pageanalysis (pageId, formatVersion, analysis) VALUES (?, ?, ?)";
+		int packed = 0;
+		int lastId = 0;
+
+		conn.setAutoCommit(false);
+		try (PreparedStatement selectStmt = conn.prepareStatement(selectQuery);
+				PreparedStatement insertStmt = conn.prepareStatement(insertQuery)) {
+			while (true) {
+				List<Integer> pageIds = new ArrayList<>();
+				selectStmt.setInt(1, lastId);
+				try (ResultSet rs = selectStmt.executeQuery()) {
+					while (rs.next()) {
+						pageIds.add(rs.getInt("pageId"));
+					}
+				}
+				if (pageIds.isEmpty()) {
+					break;
+				}
+				for (int pageId : pageIds) {
+					insertStmt.setInt(1, pageId);
+					insertStmt.setInt(2, PageAnalysisCodec.FORMAT_VERSION);
+					insertStmt.setBytes(3, PageAnalysisCodec.encode(dao.readAnalysisRows(pageId)));
+					insertStmt.executeUpdate();
+					for (String table : EditorDBDAO.ANALYSIS_TABLES) {
+						try (PreparedStatement deleteStmt = conn
+								.prepareStatement("DELETE FROM " + table + " WHERE pageId = ?")) {
+							deleteStmt.setInt(1, pageId);
+							deleteStmt.executeUpdate();
+						}
+					}
+					conn.commit();
+					lastId = pageId;
+					packed++;
+				}
+				LOGGER.info("Packed the analyses of " + packed + " pages");
+			}
+		} catch (SQLException e) {
+			conn.rollback();
+			throw e;
+		}
+		return packed;
+	}
+
+	private static int convertTable(Connection conn, String table, String idColumn, String textColumn,
+			String compressedColumn, boolean compress) throws SQLException {
+		String selectQuery = "SELECT " + idColumn + ", " + textColumn + ", " + compressedColumn + " FROM " + table
+				+ " WHERE " + idColumn + " > ? AND " + compressedColumn + (compress ? " IS NULL" : " IS NOT NULL")
+				+ " ORDER BY " + idColumn + " LIMIT " + BATCH_SIZE;
+		String updateQuery = "UPDATE " + table + " SET " + textColumn + " = ?, " + compressedColumn + " = ? WHERE "
+				+ idColumn + " = ?";
+		int converted = 0;
+		int lastId = 0;
+
+		conn.setAutoCommit(false);
+		try (PreparedStatement selectStmt = conn.prepareStatement(selectQuery);
+				PreparedStatement updateStmt = conn.prepareStatement(updateQuery)) {
+			while (true) {
+				int rows = 0;
+				selectStmt.setInt(1, lastId);
+				try (ResultSet rs = selectStmt.executeQuery()) {
+					while (rs.next()) {
+						lastId = rs.getInt(idColumn);
+						String body = EditorDBDAO.readPageBody(rs, textColumn, compressedColumn);
+						if (compress) {
+							updateStmt.setString(1, "");
+							updateStmt.setBytes(2, PageCodec.compress(body));
+						} else {
+							updateStmt.setString(1, body);
+							updateStmt.setNull(2, Types.BLOB);
+						}
+						updateStmt.setInt(3, lastId);
+						updateStmt.addBatch();
+						rows++;
+					}
+				}
+				if (rows == 0) {
+					break;
+				}
+				updateStmt.executeBatch();
+				conn.commit();
+				converted += rows;
+				LOGGER.info("Converted " + converted + " rows of " + table);
+			}
+		} catch (SQLException e) {
+			conn.rollback();
+			throw e;
+		}
+		return converted;
+	}
+}
@@ -0,0 +1,116 @@
+package dal;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * MinHash signatures of documents for near-duplicate detection. A document is
+ * reduced to the set of its {@value #SHINGLE_WORDS}-word shingles over the
+ * normalized {@link Tokenizer} terms, so re-formatting and re-diacritizing a
+ * text does not change it. The share of equal signature values estimates the
+ * Jaccard similarity of two shingle sets.
+ *
+ * For LSH the signature is cut into {@value #BANDS} bands of {@value #ROWS}
+ * values; documents sharing any band key are candidates. With these sizes a
+ * pair at Jaccard 0.8 becomes a candidate with probability above 0.99 and one
+ * at 0.3 with probability about 0.23.
+ */
+public class MinHash {
+	public static final int BANDS = 32;
+	public static final int ROWS = 4;
+	public static final int HASHES = BANDS * ROWS;
+	static final int SHINGLE_WORDS = 3;
+
+	private static final long[] SEEDS = new long[HASHES];
+
+	static {
+		long seed = 0x5DEECE66DL;
+		for (int i = 0; i < HASHES; i++) {
+			seed += 0x9E3779B97F4A7C15L;
+			SEEDS[i] = mix(seed);
+		}
+	}
+
+	/**
+	 * @return the signature of the text, or null when it has no words
+	 */
+	public static int[] signature(String content) {
+		List<Tokenizer.Token> tokens = Tokenizer.tokenize(content);
+		if (tokens.isEmpty()) {
+			return null;
+		}
+		int[] signature = new int[HASHES];
+		Arrays.fill(signature, Integer.MAX_VALUE);
+		int shingles = Math.max(1, tokens.size() - SHINGLE_WORDS + 1);
+		for (int start = 0; start < shingles; start++) {
+			long shingle = 0xCBF29CE484222325L;
+			for (int i = start; i < Math.min(tokens.size(), start + SHINGLE_WORDS); i++) {
+				String term = tokens.get(i).term;
+				for (int c = 0; c < term.length(); c++) {
+					shingle = (shingle ^ term.charAt(c)) * 0x100000001B3L;
+				}
+				shingle = (shingle ^ ' ') * 0x100000001B3L;
+			}
+			for (int h = 0; h < HASHES; h++) {
+				int value = (int) (mix(shingle ^ SEEDS[h]) >>> 33);
+				if (value < signature[h]) {
+					signature[h] = value;
+				}
+			}
+		}
+		return signature;
+	}
+
+	/**
+	 * One key per band, unique across bands.
+	 */
+	public static long[] bandKeys(int[] signature) {
+		long[] keys = new long[BANDS];
+		for (int band = 0; band < BANDS; band++) {
+			long key = SEEDS[band];
+			for (int row = 0; row < ROWS; row++) {
+				key = mix(key ^ signature[band * ROWS + row]);
+			}
+			keys[band] = key;
+		}
+		return keys;
+	}
+
+	/**
+	 * Estimated Jaccard similarity of the shingle sets behind two signatures.
+	 */
+	public static double similarity(int[] a, int[] b) {
+		int equal = 0;
+		for (int i = 0; i < HASHES; i++) {
+			if (a[i] == b[i]) {
+				equal++;
+			}
+		}
+		return (double) equal / HASHES;
+	}
+
+	public static byte[] encode(int[] signature) {
+		ByteBuffer buffer = ByteBuffer.allocate(HASHES * 4);
+		for (int value : signature) {
+			buffer.putInt(value);
+		}
+		return buffer.array();
+	}
+
+	public static int[] decode(byte[] data) {
+		ByteBuffer buffer = ByteBuffer.wrap(data);
+		int[] signature = new int[HASHES];
+		for (int i = 0; i < HASHES; i++) {
+			signature[i] = buffer.getInt();
+		}
+		return signature;
+	}
+
+	// SplitMix64 finalizer
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -0,0 +1,150 @@
+package dal;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import pl.EditorPO;
+
+/**
+ * Stored analyses of one page. Only the raw {@link PageAnalysisCodec} record is
+ * kept; each analysis is decoded, and its word ids resolved, the first time it
+ * is asked for.
+ */
+public class PageAnalysis {
+	private static final Logger LOGGER = LogManager.getLogger(EditorPO.class);
+
+	private final int pageId;
+	private final byte[] data;
+	private final IWordLookup lookup;
+
+	private Map<String, List<String>> pos;
+	private Map<String, String> lemmas;
+	private Map<String, String> roots;
+	private Map<String, String> stems;
+	private Map<String, String> segments;
+	private Map<String, Double> pkl;
+	private Map<String, Double> pmi;
+
+	public PageAnalysis(int pageId, byte[] data, IWordLookup lookup) {
+		this.pageId = pageId;
+		this.data = data;
+		this.lookup = lookup;
+	}
+
+	public int getPageId() {
+		return pageId;
+	}
+
+	public int getFormatVersion() {
+		return PageAnalysisCodec.getFormatVersion(data);
+	}
+
+	public int getStoredSize() {
+		return data.length;
+	}
+
+	public synchronized Map<String, List<String>> getPOS() {
+		if (pos == null) {
+			pos = new LinkedHashMap<>();
+			for (Map.Entry<String, String> entry : decodeWords(PageAnalysisCodec.POS).entrySet()) {
+				pos.put(entry.getKey(), entry.getValue() == null ? new ArrayList<String>()
+						: new ArrayList<>(Arrays.asList(entry.getValue().split("\\|"))));
+			}
+		}
+		return pos;
+	}
+
+	public synchronized Map<String, String> getLemmas() {
+		if (lemmas == null) {
+			lemmas = decodeWords(PageAnalysisCodec.LEMMA);
+		}
+		return lemmas;
+	}
+
+	public synchronized Map<String, String> getRoots() {
+		if (roots == null) {
+			roots = decodeWords(PageAnalysisCodec.ROOT);
+		}
+		return roots;
+	}
+
+	public synchronized Map<String, String> getStems() {
+		if (stems == null) {
+			stems = decodeWords(PageAnalysisCodec.STEM);
+		}
+		return stems;
+	}
+
+	public synchronized Map<String, String> getSegments() {
+		if (segments == null) {
+			segments = decodeWords(PageAnalysisCodec.SEGMENT);
+		}
+		return segments;
+	}
+
+	public synchronized Map<String, Double> getPKL() {
+		if (pkl == null) {
+			pkl = decodeScores(PageAnalysisCodec.PKL);
+		}
+		return pkl;
+	}
+
+	public synchronized Map<String, Double> getPMI() {
+		if (pmi == null) {
+			pmi = decodeScores(PageAnalysisCodec.PMI);
+		}
+		return pmi;
+	}
+
+	private Map<String, String> decodeWords(int sectionId) {
+		Map<String, String> analysis = new LinkedHashMap<>();
+		try {
+			PageAnalysisCodec.Section section = PageAnalysisCodec.decodeSection(data, sectionId);
+			List<Integer> ids = new ArrayList<>(section.size() * 2);
+			for (int i = 0; i < section.size(); i++) {
+				ids.add(section.wordIds[i]);
+				if (section.valueIds[i] != 0) {
+					ids.add(section.valueIds[i]);
+				}
+			}
+			Map<Integer, String> words = lookup.getWords(ids);
+			for (int i = 0; i < section.size(); i++) {
+				analysis.put(words.get(section.wordIds[i]),
+						section.valueIds[i] == 0 ? null : words.get(section.valueIds[i]));
+			}
+		} catch (SQLException | RuntimeException e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+			return Collections.emptyMap();
+		}
+		return analysis;
+	}
+
+	private Map<String, Double> decodeScores(int sectionId) {
+		Map<String, Double> scores = new LinkedHashMap<>();
+		try {
+			PageAnalysisCodec.Section section = PageAnalysisCodec.decodeSection(data, sectionId);
+			List<Integer> ids = new ArrayList<>(section.size());
+			for (int id : section.wordIds) {
+				ids.add(id);
+			}
+			Map<Integer, String> words = lookup.getWords(ids);
+			for (int i = 0; i < section.size(); i++) {
+				scores.put(words.get(section.wordIds[i]), section.scores[i]);
+			}
+		} catch (SQLException | RuntimeException e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+			return Collections.emptyMap();
+		}
+		return scores;
+	}
+}
@@ -0,0 +1,128 @@
+package dal;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Binary record holding every analysis of one page, stored in
+ * {@code pageanalysis.analysis}. All words are {@link WordDictionary} ids.
+ *
+ * <pre>
+ * byte    format version (1)
+ * varint  byte length of each of the {@link #SECTION_COUNT} sections
+ * section POS, LEMMA, ROOT, STEM, SEGMENT: varint count, then count x (varint wordId, varint valueId or 0 for none)
+ * section PKL, PMI:                         varint count, then count x (varint wordId, 8 byte double score)
+ * </pre>
+ *
+ * The length table lets a reader jump straight to the section it needs without
+ * decoding the others.
+ */
+public class PageAnalysisCodec {
+	public static final byte FORMAT_VERSION = 1;
+
+	public static final int POS = 0;
+	public static final int LEMMA = 1;
+	public static final int ROOT = 2;
+	public static final int STEM = 3;
+	public static final int SEGMENT = 4;
+	public static final int PKL = 5;
+	public static final int PMI = 6;
+	public static final int SECTION_COUNT = 7;
+
+	public static class Section {
+		public final int[] wordIds;
+		public final int[] valueIds;
+		public final double[] scores;
+
+		public Section(int[] wordIds, int[] valueIds, double[] scores) {
+			this.wordIds = wordIds;
+			this.valueIds = valueIds;
+			this.scores = scores;
+		}
+
+		public int size() {
+			return wordIds.length;
+		}
+	}
+
+	public static boolean isScoreSection(int section) {
+		return section == PKL || section == PMI;
+	}
+
+	public static byte[] encode(Section[] sections) {
+		if (sections.length != SECTION_COUNT) {
+			throw new IllegalArgumentException("Expected " + SECTION_COUNT + " sections");
+		}
+
+		byte[][] encoded = new byte[SECTION_COUNT][];
+		for (int s = 0; s < SECTION_COUNT; s++) {
+			encoded[s] = encodeSection(s, sections[s]);
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(FORMAT_VERSION);
+		for (byte[] section : encoded) {
+			VarInt.write(out, section.length);
+		}
+		for (byte[] section : encoded) {
+			out.write(section, 0, section.length);
+		}
+		return out.toByteArray();
+	}
+
+	public static int getFormatVersion(byte[] data) {
+		return data[0];
+	}
+
+	public static Section decodeSection(byte[] data, int section) {
+		if (data[0] != FORMAT_VERSION) {
+			throw new IllegalArgumentException("Unsupported analysis format: " + data[0]);
+		}
+		ByteBuffer in = ByteBuffer.wrap(data);
+		in.position(1);
+
+		int offset = 0;
+		int length = 0;
+		for (int s = 0; s < SECTION_COUNT; s++) {
+			int sectionLength = VarInt.read(in);
+			if (s < section) {
+				offset += sectionLength;
+			} else if (s == section) {
+				length = sectionLength;
+			}
+		}
+		in.position(in.position() + offset);
+		in.limit(in.position() + length);
+
+		int count = VarInt.read(in);
+		int[] wordIds = new int[count];
+		int[] valueIds = isScoreSection(section) ? null : new int[count];
+		double[] scores = isScoreSection(section) ? new double[count] : null;
+		for (int i = 0; i < count; i++) {
+			wordIds[i] = VarInt.read(in);
+			if (scores != null) {
+				scores[i] = in.getDouble();
+			} else {
+				valueIds[i] = VarInt.read(in);
+			}
+		}
+		return new Section(wordIds, valueIds, scores);
+	}
+
+	private static byte[] encodeSection(int section, Section data) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		int count = data == null ? 0 : data.size();
+		VarInt.write(out, count);
+		byte[] score = new byte[8];
+		for (int i = 0; i < count; i++) {
+			VarInt.write(out, data.wordIds[i]);
+			if (isScoreSection(section)) {
+				ByteBuffer.wrap(score).putDouble(data.scores[i]);
+				out.write(score, 0, score.length);
+			} else {
+				VarInt.write(out, data.valueIds[i]);
+			}
+		}
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,112 @@
+package dal;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses page bodies for the binary storage columns. The first byte of every
+ * encoded value names the format, so stored pages stay readable if the codec
+ * changes:
+ * <ul>
+ * <li>{@code 0} - plain UTF-8, used when compression would not save space</li>
+ * <li>{@code 1} - raw deflate at {@link Deflater#BEST_SPEED} primed with
+ * {@link #DICTIONARY}</li>
+ * </ul>
+ * Pages are only 100 characters long, which is too short for deflate to find
+ * repeats on its own; the preset dictionary of frequent Arabic words gives it
+ * something to match against from the first byte. Never edit the dictionary of
+ * an existing format, add a new format id instead.
+ */
+public class PageCodec {
+	private static final byte FORMAT_PLAIN = 0;
+	private static final byte FORMAT_DEFLATE = 1;
+
+	private static final byte[] DICTIONARY = ("the and of to in is that for with on as are this was "
+			+ "كانت كان هذه هذا ذلك التي الذي الذين بين بعد قبل عند حتى كل قد لقد لم لن لا ما إذا إن أن "
+			+ "أو ثم عن إلى على من في و ال بال وال فال لل يا أيها الناس الأرض السماء رب ربك ربكم الله "
+			+ "بسم الله الرحمن الرحيم ").getBytes(StandardCharsets.UTF_8);
+
+	// Deflater and Inflater allocate native buffers, so each thread keeps one
+	private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal
+			.withInitial(() -> new Deflater(Deflater.BEST_SPEED, true));
+	private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(() -> new Inflater(true));
+
+	public static byte[] compress(String text) {
+		if (text == null) {
+			return null;
+		}
+		byte[] plain = text.getBytes(StandardCharsets.UTF_8);
+
+		Deflater deflater = DEFLATER.get();
+		try {
+			deflater.setDictionary(DICTIONARY);
+			deflater.setInput(plain);
+			deflater.finish();
+
+			byte[] buffer = new byte[plain.length + 64];
+			buffer[0] = FORMAT_DEFLATE;
+			int length = 1;
+			while (!deflater.finished()) {
+				if (length == buffer.length) {
+					buffer = Arrays.copyOf(buffer, buffer.length * 2);
+				}
+				length += deflater.deflate(buffer, length, buffer.length - length);
+			}
+
+			if (length >= plain.length + 1) {
+				byte[] stored = new byte[plain.length + 1];
+				stored[0] = FORMAT_PLAIN;
+				System.arraycopy(plain, 0, stored, 1, plain.length);
+				return stored;
+			}
+			return Arrays.copyOf(buffer, length);
+		} finally {
+			deflater.reset();
+		}
+	}
+
+	public static String decompress(byte[] data) {
+		if (data == null) {
+			return null;
+		}
+		if (data.length == 0) {
+			return "";
+		}
+
+		switch (data[0]) {
+		case FORMAT_PLAIN:
+			return new String(data, 1, data.length - 1, StandardCharsets.UTF_8);
+		case FORMAT_DEFLATE:
+			return inflate(data);
+		default:
+			throw new IllegalArgumentException("Unknown page format: " + data[0]);
+		}
+	}
+
+	private static String inflate(byte[] data) {
+		Inflater inflater = INFLATER.get();
+		try {
+			inflater.setDictionary(DICTIONARY);
+			inflater.setInput(data, 1, data.length - 1);
+
+			ByteArrayOutputStream output = new ByteArrayOutputStream(data.length * 3);
+			byte[] buffer = new byte[1024];
+			while (!inflater.finished()) {
+				int count = inflater.inflate(buffer);
+				if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					throw new IllegalArgumentException("Truncated compressed page");
+				}
+				output.write(buffer, 0, count);
+			}
+			return new String(output.toByteArray(), StandardCharsets.UTF_8);
+		} catch (DataFormatException e) {
+			throw new IllegalArgumentException("Corrupt compressed page: " + e.getMessage(), e);
+		} finally {
+			inflater.reset();
+		}
+	}
+}
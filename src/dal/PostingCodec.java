@@ -0,0 +1,62 @@
+package dal;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Encodes the occurrences of one term on one page for {@code postings.positions}:
+ * a varint count, then for every occurrence the token position and start offset
+ * as deltas from the previous occurrence and the length in characters.
+ */
+public class PostingCodec {
+
+	public static class Occurrences {
+		public final int[] positions;
+		public final int[] starts;
+		public final int[] ends;
+
+		public Occurrences(int[] positions, int[] starts, int[] ends) {
+			this.positions = positions;
+			this.starts = starts;
+			this.ends = ends;
+		}
+
+		public int size() {
+			return positions.length;
+		}
+	}
+
+	public static byte[] encode(List<Tokenizer.Token> tokens) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		VarInt.write(out, tokens.size());
+		int position = 0;
+		int start = 0;
+		for (Tokenizer.Token token : tokens) {
+			VarInt.write(out, token.position - position);
+			VarInt.write(out, token.start - start);
+			VarInt.write(out, token.end - token.start);
+			position = token.position;
+			start = token.start;
+		}
+		return out.toByteArray();
+	}
+
+	public static Occurrences decode(byte[] data) {
+		ByteBuffer in = ByteBuffer.wrap(data);
+		int count = VarInt.read(in);
+		int[] positions = new int[count];
+		int[] starts = new int[count];
+		int[] ends = new int[count];
+		int position = 0;
+		int start = 0;
+		for (int i = 0; i < count; i++) {
+			position += VarInt.read(in);
+			start += VarInt.read(in);
+			positions[i] = position;
+			starts[i] = start;
+			ends[i] = start + VarInt.read(in);
+		}
+		return new Occurrences(positions, starts, ends);
+	}
+}
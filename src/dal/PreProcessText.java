@@ -8,10 +8,14 @@ public class PreProcessText {
 	private static final Set<Character> DIACRITICS = new HashSet<>(
 			Arrays.asList('َ', 'ً', 'ُ', 'ٌ', 'ِ', 'ٍ', 'ْ', 'ّ'));
 
+	public static boolean isHaraka(char ch) {
+		return DIACRITICS.contains(ch);
+	}
+
 	public static String removeHarakat(String text) {
 		StringBuilder result = new StringBuilder();
 		for (char ch : text.toCharArray()) {
-			if (!DIACRITICS.contains(ch)) {
+			if (!isHaraka(ch)) {
 				result.append(ch);
 			}
 		}
@@ -0,0 +1,1055 @@
+package dal;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import dto.CancellationToken;
+import dto.SearchHit;
+import dto.SearchResult;
+import dto.Snippet;
+import dto.TermVector;
+import pl.EditorPO;
+
+/**
+ * Positional inverted index kept in the {@code postings} table: one row per
+ * term and page with the term frequency and the encoded occurrences. Pages are
+ * indexed as they are written, so a query only reads the posting lists of its
+ * own terms.
+ */
+public class SearchIndex {
+	private static final Logger LOGGER = LogManager.getLogger(EditorPO.class);
+	private static final int LOOKUP_CHUNK_SIZE = 500;
+	private static final String NOT_FOUND = "Not found";
+	private static final double K1 = 1.2;
+	private static final double B = 0.75;
+	private static final int MAX_SNIPPETS = 3;
+	private static final int SNIPPET_CONTEXT = 60;
+	private static final int RESULT_BATCH = 10;
+	private static final int MAX_EXPANSIONS = 50;
+
+	/**
+	 * Reads the content of pages, keyed by page id.
+	 */
+	interface PageReader {
+		Map<Integer, String> read(Collection<Integer> pageIds) throws SQLException;
+	}
+
+	private static class ScoredFile {
+		final int fileId;
+		final double score;
+
+		ScoredFile(int fileId, double score) {
+			this.fileId = fileId;
+			this.score = score;
+		}
+	}
+
+	private final Connection conn;
+	private final WordDictionary dictionary;
+	// File count and total token count of the corpus, recomputed after writes
+	private volatile long[] statistics;
+	// Indexed terms for fuzzy lookups, loaded on first use
+	private volatile FuzzyVocabulary vocabulary;
+	// TF-IDF vector of every file for similarity lookups, loaded on first use
+	private volatile DocumentVectors vectors;
+	// Neighbour graph over the vectors, saved at graphPath; null when disabled
+	private final Path graphPath;
+	private final int efSearch;
+	private volatile HnswIndex graph;
+	// Set when the vectors were dropped, so the graph may have missed writes
+	private volatile boolean graphStale;
+
+	public SearchIndex(Connection conn, WordDictionary dictionary) {
+		this(conn, dictionary, null, 0);
+	}
+
+	/**
+	 * With a graph path, similar files are looked up in an HNSW graph kept in
+	 * memory and saved there, instead of by scanning the vectors. The graph
+	 * keeps each file's weights from when it was added, so scores drift from
+	 * the exact ones as the corpus grows until the graph is rebuilt.
+	 */
+	public SearchIndex(Connection conn, WordDictionary dictionary, Path graphPath, int efSearch) {
+		this.conn = conn;
+		this.dictionary = dictionary;
+		this.graphPath = graphPath;
+		this.efSearch = efSearch;
+	}
+
+	/**
+	 * Writes the postings of a page. With {@code replace} its previous postings
+	 * are removed first.
+	 */
+	public void indexPage(int pageId, String content, boolean replace) throws SQLException {
+		if (replace) {
+			removePage(pageId);
+		}
+
+		List<Tokenizer.Token> tokens = Tokenizer.tokenize(content);
+		Map<String, List<Tokenizer.Token>> terms = new LinkedHashMap<>();
+		for (Tokenizer.Token token : tokens) {
+			terms.computeIfAbsent(token.term, term -> new ArrayList<>()).add(token);
+		}
+
+		String statsQuery = "INSERT INTO pagestats (pageId, fileId, tokenCount) SELECT pageId, fileId, ? FROM pages WHERE pageId = ?";
+		try (PreparedStatement statsStmt = conn.prepareStatement(statsQuery)) {
+			statsStmt.setInt(1, tokens.size());
+			statsStmt.setInt(2, pageId);
+			statsStmt.executeUpdate();
+		}
+		invalidateStatistics();
+		if (terms.isEmpty()) {
+			return;
+		}
+
+		Map<String, Integer> wordIds = dictionary.getWordIds(conn, terms.keySet());
+		FuzzyVocabulary loaded = vocabulary;
+		if (loaded != null) {
+			for (String term : terms.keySet()) {
+				loaded.add(term);
+			}
+		}
+		String insertQuery = "INSERT INTO postings (wordId, pageId, termFreq, positions) VALUES (?, ?, ?, ?)";
+		try (PreparedStatement insertStmt = conn.prepareStatement(insertQuery)) {
+			for (Map.Entry<String, List<Tokenizer.Token>> entry : terms.entrySet()) {
+				insertStmt.setInt(1, wordIds.get(entry.getKey()));
+				insertStmt.setInt(2, pageId);
+				insertStmt.setInt(3, entry.getValue().size());
+				insertStmt.setBytes(4, PostingCodec.encode(entry.getValue()));
+				insertStmt.addBatch();
+			}
+			insertStmt.executeBatch();
+		}
+	}
+
+	public void removePage(int pageId) throws SQLException {
+		try (PreparedStatement deleteStmt = conn.prepareStatement("DELETE FROM postings WHERE pageId = ?")) {
+			deleteStmt.setInt(1, pageId);
+			deleteStmt.executeUpdate();
+		}
+		try (PreparedStatement deleteStmt = conn.prepareStatement("DELETE FROM pagestats WHERE pageId = ?")) {
+			deleteStmt.setInt(1, pageId);
+			deleteStmt.executeUpdate();
+		}
+		invalidateStatistics();
+	}
+
+	/**
+	 * Must be called when pages disappear without going through this index, for
+	 * example when a file is deleted and its rows cascade.
+	 */
+	public void invalidateStatistics() {
+		statistics = null;
+	}
+
+	/**
+	 * Ranks files against the query with BM25 and returns the best {@code limit}
+	 * of them, each with its matching pages and a few highlighted snippets.
+	 * Only the posting lists of the query terms are read; page content is read
+	 * for the returned files only.
+	 */
+	public List<SearchResult> rank(String query, int limit, PageReader reader) throws SQLException {
+		List<SearchResult> results = new ArrayList<>();
+		rank(query, limit, reader, new CancellationToken(), results::addAll);
+		return results;
+	}
+
+	/**
+	 * Streaming form of {@link #rank(String, int, PageReader)}: results are
+	 * handed to {@code sink} in rank order, a small batch at a time, as soon as
+	 * their snippets are read. Stops between posting lists and between batches
+	 * once {@code token} is cancelled.
+	 */
+	public void rank(String query, int limit, PageReader reader, CancellationToken token,
+			Consumer<List<SearchResult>> sink) throws SQLException {
+		List<String> terms = new ArrayList<>();
+		for (Tokenizer.Token queryToken : Tokenizer.tokenize(query)) {
+			if (!terms.contains(queryToken.term)) {
+				terms.add(queryToken.term);
+			}
+		}
+		List<Integer> termIds = new ArrayList<>(dictionary.findWordIds(conn, terms).values());
+		if (termIds.isEmpty() || limit <= 0) {
+			return;
+		}
+
+		// Term frequencies per file and the matching pages of each file
+		Map<Integer, int[]> fileFrequencies = new HashMap<>();
+		Map<Integer, Set<Integer>> filePages = new HashMap<>();
+		int[] documentFrequencies = new int[termIds.size()];
+		String postingQuery = "SELECT p.pageId, p.termFreq, s.fileId FROM postings p"
+				+ " JOIN pagestats s ON s.pageId = p.pageId WHERE p.wordId = ?";
+		try (PreparedStatement stmt = conn.prepareStatement(postingQuery)) {
+			for (int t = 0; t < termIds.size(); t++) {
+				if (token.isCancelled()) {
+					return;
+				}
+				stmt.setInt(1, termIds.get(t));
+				try (ResultSet rs = stmt.executeQuery()) {
+					while (rs.next()) {
+						int fileId = rs.getInt("fileId");
+						int[] frequencies = fileFrequencies.computeIfAbsent(fileId, id -> new int[termIds.size()]);
+						if (frequencies[t] == 0) {
+							documentFrequencies[t]++;
+						}
+						frequencies[t] += rs.getInt("termFreq");
+						filePages.computeIfAbsent(fileId, id -> new LinkedHashSet<>()).add(rs.getInt("pageId"));
+					}
+				}
+			}
+		}
+		if (fileFrequencies.isEmpty()) {
+			return;
+		}
+
+		long[] corpus = getStatistics();
+		double averageLength = corpus[0] == 0 ? 1.0 : Math.max(1.0, (double) corpus[1] / corpus[0]);
+		double[] idf = new double[termIds.size()];
+		for (int t = 0; t < idf.length; t++) {
+			idf[t] = Math.log(1.0 + (corpus[0] - documentFrequencies[t] + 0.5) / (documentFrequencies[t] + 0.5));
+		}
+
+		Map<Integer, Long> fileLengths = getFileLengths(fileFrequencies.keySet());
+		// Min-heap holding the best files seen so far; ties favour the older file
+		PriorityQueue<ScoredFile> best = new PriorityQueue<>(limit + 1, Comparator
+				.<ScoredFile>comparingDouble(file -> file.score).thenComparing(file -> -file.fileId));
+		for (Map.Entry<Integer, int[]> file : fileFrequencies.entrySet()) {
+			double norm = K1 * (1 - B + B * fileLengths.getOrDefault(file.getKey(), 0L) / averageLength);
+			double score = 0;
+			int[] frequencies = file.getValue();
+			for (int t = 0; t < frequencies.length; t++) {
+				if (frequencies[t] > 0) {
+					score += idf[t] * frequencies[t] * (K1 + 1) / (frequencies[t] + norm);
+				}
+			}
+			best.add(new ScoredFile(file.getKey(), score));
+			if (best.size() > limit) {
+				best.poll();
+			}
+		}
+
+		List<ScoredFile> ranked = new ArrayList<>(best);
+		ranked.sort(Comparator.<ScoredFile>comparingDouble(file -> -file.score).thenComparing(file -> file.fileId));
+		for (int from = 0; from < ranked.size(); from += RESULT_BATCH) {
+			if (token.isCancelled()) {
+				return;
+			}
+			sink.accept(toResults(ranked.subList(from, Math.min(ranked.size(), from + RESULT_BATCH)), filePages,
+					termIds, reader));
+		}
+	}
+
+	private List<SearchResult> toResults(List<ScoredFile> ranked, Map<Integer, Set<Integer>> filePages,
+			List<Integer> termIds, PageReader reader) throws SQLException {
+		Map<Integer, List<PostingCodec.Occurrences>> pages = new LinkedHashMap<>();
+		for (ScoredFile file : ranked) {
+			for (int pageId : filePages.get(file.fileId)) {
+				pages.put(pageId, new ArrayList<>());
+			}
+		}
+		for (int termId : termIds) {
+			for (Map.Entry<Integer, PostingCodec.Occurrences> posting : readPostings(termId, pages.keySet())
+					.entrySet()) {
+				pages.get(posting.getKey()).add(posting.getValue());
+			}
+		}
+
+		Map<Integer, List<SearchHit>> hitsByFile = new HashMap<>();
+		for (SearchHit hit : toHits(pages)) {
+			hitsByFile.computeIfAbsent(hit.getFileId(), id -> new ArrayList<>()).add(hit);
+		}
+		List<Integer> snippetPages = new ArrayList<>();
+		for (List<SearchHit> hits : hitsByFile.values()) {
+			for (int i = 0; i < Math.min(MAX_SNIPPETS, hits.size()); i++) {
+				snippetPages.add(hits.get(i).getPageId());
+			}
+		}
+		Map<Integer, String> contents = reader.read(snippetPages);
+
+		List<SearchResult> results = new ArrayList<>();
+		for (ScoredFile file : ranked) {
+			List<SearchHit> hits = hitsByFile.get(file.fileId);
+			if (hits == null) {
+				continue;
+			}
+			List<Integer> pageNumbers = new ArrayList<>();
+			List<Snippet> snippets = new ArrayList<>();
+			for (SearchHit hit : hits) {
+				pageNumbers.add(hit.getPageNumber());
+				String content = contents.get(hit.getPageId());
+				if (snippets.size() < MAX_SNIPPETS && content != null) {
+					snippets.add(snippet(hit, content));
+				}
+			}
+			results.add(new SearchResult(file.fileId, hits.get(0).getFileName(), file.score, pageNumbers, snippets));
+		}
+		return results;
+	}
+
+	/**
+	 * Cuts a window of page text around the first match, widened to word
+	 * boundaries, and moves the match offsets into it.
+	 */
+	static Snippet snippet(SearchHit hit, String content) {
+		int[] starts = hit.getStartOffsets();
+		int[] ends = hit.getEndOffsets();
+		int first = starts.length == 0 ? 0 : Math.min(starts[0], content.length());
+		int from = Math.max(0, first - SNIPPET_CONTEXT);
+		int to = Math.min(content.length(), (ends.length == 0 ? first : ends[0]) + SNIPPET_CONTEXT);
+		while (from > 0 && !Character.isWhitespace(content.charAt(from - 1))) {
+			from--;
+		}
+		while (to < content.length() && !Character.isWhitespace(content.charAt(to))) {
+			to++;
+		}
+
+		int count = 0;
+		for (int i = 0; i < starts.length; i++) {
+			if (starts[i] >= from && ends[i] <= to) {
+				count++;
+			}
+		}
+		int[] snippetStarts = new int[count];
+		int[] snippetEnds = new int[count];
+		count = 0;
+		for (int i = 0; i < starts.length; i++) {
+			if (starts[i] >= from && ends[i] <= to) {
+				snippetStarts[count] = starts[i] - from;
+				snippetEnds[count] = ends[i] - from;
+				count++;
+			}
+		}
+		return new Snippet(hit.getPageNumber(), content.substring(from, to), snippetStarts, snippetEnds);
+	}
+
+	private long[] getStatistics() throws SQLException {
+		long[] current = statistics;
+		if (current != null) {
+			return current;
+		}
+		current = new long[2];
+		String query = "SELECT COUNT(DISTINCT fileId), SUM(tokenCount) FROM pagestats";
+		try (PreparedStatement stmt = conn.prepareStatement(query); ResultSet rs = stmt.executeQuery()) {
+			if (rs.next()) {
+				current[0] = rs.getLong(1);
+				current[1] = rs.getLong(2);
+			}
+		}
+		statistics = current;
+		return current;
+	}
+
+	private Map<Integer, Long> getFileLengths(Collection<Integer> fileIds) throws SQLException {
+		Map<Integer, Long> lengths = new HashMap<>();
+		List<Integer> ids = new ArrayList<>(fileIds);
+		for (int from = 0; from < ids.size(); from += LOOKUP_CHUNK_SIZE) {
+			List<Integer> chunk = ids.subList(from, Math.min(ids.size(), from + LOOKUP_CHUNK_SIZE));
+			StringBuilder query = new StringBuilder("SELECT fileId, SUM(tokenCount) FROM pagestats WHERE fileId IN (");
+			appendPlaceholders(query, chunk.size());
+			query.append(") GROUP BY fileId");
+			try (PreparedStatement stmt = conn.prepareStatement(query.toString())) {
+				for (int i = 0; i < chunk.size(); i++) {
+					stmt.setInt(i + 1, chunk.get(i));
+				}
+				try (ResultSet rs = stmt.executeQuery()) {
+					while (rs.next()) {
+						lengths.put(rs.getInt(1), rs.getLong(2));
+					}
+				}
+			}
+		}
+		return lengths;
+	}
+
+	/**
+	 * Records which words of a page share a root, lemma or stem, taken from the
+	 * word to form map produced by the analyzer. {@code form} is the
+	 * {@link PageAnalysisCodec} section of the analysis (ROOT, LEMMA or STEM).
+	 */
+	public void indexForms(int pageId, int form, Map<String, String> analysis) throws SQLException {
+		Map<String, String> forms = new LinkedHashMap<>();
+		for (Map.Entry<String, String> entry : analysis.entrySet()) {
+			String value = entry.getValue();
+			if (value != null && !value.isEmpty() && !NOT_FOUND.equals(value)) {
+				forms.put(entry.getKey(), value);
+			}
+		}
+		if (forms.isEmpty()) {
+			return;
+		}
+
+		List<String> words = new ArrayList<>(forms.keySet());
+		words.addAll(forms.values());
+		Map<String, Integer> wordIds = dictionary.getWordIds(conn, words);
+
+		Set<Long> pairs = new LinkedHashSet<>();
+		for (Map.Entry<String, String> entry : forms.entrySet()) {
+			pairs.add(((long) wordIds.get(entry.getValue()) << 32) | wordIds.get(entry.getKey()));
+		}
+		String insertQuery = "INSERT INTO morphindex (form, formId, pageId, wordId) VALUES (?, ?, ?, ?)";
+		try (PreparedStatement insertStmt = conn.prepareStatement(insertQuery)) {
+			for (long pair : pairs) {
+				insertStmt.setInt(1, form);
+				insertStmt.setInt(2, (int) (pair >>> 32));
+				insertStmt.setInt(3, pageId);
+				insertStmt.setInt(4, (int) pair);
+				insertStmt.addBatch();
+			}
+			insertStmt.executeBatch();
+		}
+	}
+
+	public void removeForms(int pageId) throws SQLException {
+		try (PreparedStatement deleteStmt = conn.prepareStatement("DELETE FROM morphindex WHERE pageId = ?")) {
+			deleteStmt.setInt(1, pageId);
+			deleteStmt.executeUpdate();
+		}
+	}
+
+	/**
+	 * Returns every page with a word whose root, lemma or stem is one of
+	 * {@code values}. The offsets point at those inflected words.
+	 */
+	public List<SearchHit> searchForms(int form, Collection<String> values) throws SQLException {
+		Map<String, Integer> formIds = dictionary.findWordIds(conn, values);
+		if (formIds.isEmpty()) {
+			return new ArrayList<>();
+		}
+
+		Map<Integer, List<PostingCodec.Occurrences>> pages = new LinkedHashMap<>();
+		Set<Integer> wordIds = new LinkedHashSet<>();
+		StringBuilder query = new StringBuilder("SELECT pageId, wordId FROM morphindex WHERE form = ? AND formId IN (");
+		appendPlaceholders(query, formIds.size());
+		query.append(") ORDER BY pageId");
+		try (PreparedStatement stmt = conn.prepareStatement(query.toString())) {
+			stmt.setInt(1, form);
+			int i = 2;
+			for (int formId : formIds.values()) {
+				stmt.setInt(i++, formId);
+			}
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					pages.putIfAbsent(rs.getInt("pageId"), new ArrayList<>());
+					wordIds.add(rs.getInt("wordId"));
+				}
+			}
+		}
+		if (pages.isEmpty()) {
+			return new ArrayList<>();
+		}
+
+		// The analyzers see whitespace separated words, the postings hold tokens
+		Set<String> terms = new LinkedHashSet<>();
+		for (String word : dictionary.getWords(conn, wordIds).values()) {
+			for (Tokenizer.Token token : Tokenizer.tokenize(word)) {
+				terms.add(token.term);
+			}
+		}
+		for (int termId : dictionary.findWordIds(conn, terms).values()) {
+			for (Map.Entry<Integer, PostingCodec.Occurrences> posting : readPostings(termId, pages.keySet())
+					.entrySet()) {
+				pages.get(posting.getKey()).add(posting.getValue());
+			}
+		}
+		return toHits(pages);
+	}
+
+	/**
+	 * Returns every page containing all terms of the query, ordered by file and
+	 * page number, with the offsets of the matched terms.
+	 */
+	public List<SearchHit> search(String query) throws SQLException {
+		Set<String> terms = new LinkedHashSet<>();
+		for (Tokenizer.Token token : Tokenizer.tokenize(query)) {
+			terms.add(token.term);
+		}
+		if (terms.isEmpty()) {
+			return new ArrayList<>();
+		}
+
+		Map<String, Integer> wordIds = dictionary.findWordIds(conn, terms);
+		if (wordIds.size() < terms.size()) {
+			// A term that was never indexed cannot match anything
+			return new ArrayList<>();
+		}
+		Map<Integer, List<PostingCodec.Occurrences>> pages = new LinkedHashMap<>();
+		for (Map.Entry<Integer, PostingCodec.Occurrences[]> page : intersect(new ArrayList<>(wordIds.values()))
+				.entrySet()) {
+			pages.put(page.getKey(), Arrays.asList(page.getValue()));
+		}
+		return toHits(pages);
+	}
+
+	/**
+	 * Returns every page containing the words of {@code phrase} at consecutive
+	 * token positions. Each offset pair spans one whole occurrence of the
+	 * phrase; punctuation between the words is ignored.
+	 */
+	public List<SearchHit> searchPhrase(String phrase) throws SQLException {
+		List<Integer> wordIds = findTermIds(phrase);
+		if (wordIds == null) {
+			return new ArrayList<>();
+		}
+
+		Map<Integer, int[][]> matches = new LinkedHashMap<>();
+		for (Map.Entry<Integer, PostingCodec.Occurrences[]> page : intersect(wordIds).entrySet()) {
+			PostingCodec.Occurrences[] terms = page.getValue();
+			List<int[]> spans = new ArrayList<>();
+			for (int i = 0; i < terms[0].size(); i++) {
+				int position = terms[0].positions[i];
+				int last = -1;
+				for (int t = 1; t < terms.length; t++) {
+					last = Arrays.binarySearch(terms[t].positions, position + t);
+					if (last < 0) {
+						break;
+					}
+				}
+				if (terms.length == 1) {
+					spans.add(new int[] { terms[0].starts[i], terms[0].ends[i] });
+				} else if (last >= 0) {
+					spans.add(new int[] { terms[0].starts[i], terms[terms.length - 1].ends[last] });
+				}
+			}
+			if (!spans.isEmpty()) {
+				matches.put(page.getKey(), toOffsets(spans));
+			}
+		}
+		return toPageHits(matches);
+	}
+
+	/**
+	 * Returns every page where {@code first} and {@code second} occur at most
+	 * {@code distance} tokens apart, in either order. Each offset pair spans
+	 * one occurrence of {@code first} and its nearest {@code second}.
+	 */
+	public List<SearchHit> searchNear(String first, String second, int distance) throws SQLException {
+		List<Integer> wordIds = findTermIds(first + " " + second);
+		if (wordIds == null || wordIds.size() != 2 || distance < 1) {
+			return new ArrayList<>();
+		}
+
+		Map<Integer, int[][]> matches = new LinkedHashMap<>();
+		for (Map.Entry<Integer, PostingCodec.Occurrences[]> page : intersect(wordIds).entrySet()) {
+			PostingCodec.Occurrences a = page.getValue()[0];
+			PostingCodec.Occurrences b = page.getValue()[1];
+			List<int[]> spans = new ArrayList<>();
+			int j = 0;
+			for (int i = 0; i < a.size(); i++) {
+				// Both lists are in position order, so the nearest b only moves forward
+				while (j + 1 < b.size() && b.positions[j + 1] <= a.positions[i]) {
+					j++;
+				}
+				int nearest = -1;
+				for (int k = j; k <= Math.min(j + 1, b.size() - 1); k++) {
+					int gap = Math.abs(b.positions[k] - a.positions[i]);
+					if (gap > 0 && gap <= distance
+							&& (nearest < 0 || gap < Math.abs(b.positions[nearest] - a.positions[i]))) {
+						nearest = k;
+					}
+				}
+				if (nearest >= 0) {
+					spans.add(new int[] { Math.min(a.starts[i], b.starts[nearest]),
+							Math.max(a.ends[i], b.ends[nearest]) });
+				}
+			}
+			if (!spans.isEmpty()) {
+				matches.put(page.getKey(), toOffsets(spans));
+			}
+		}
+		return toPageHits(matches);
+	}
+
+	/**
+	 * Like {@link #search(String)}, but every query term also matches indexed
+	 * terms within {@code maxDistance} edits. Terms of up to three characters
+	 * must match exactly and terms of up to five allow one edit, since shorter
+	 * words have too many close neighbours to be useful.
+	 */
+	public List<SearchHit> searchFuzzy(String query, int maxDistance) throws SQLException {
+		List<Set<Integer>> expansions = new ArrayList<>();
+		for (Tokenizer.Token token : Tokenizer.tokenize(query)) {
+			String term = token.term;
+			int allowed = term.length() <= 3 ? 0 : term.length() <= 5 ? Math.min(1, maxDistance) : maxDistance;
+			List<String> candidates = new ArrayList<>();
+			for (FuzzyVocabulary.Match match : getVocabulary().search(term, allowed)) {
+				if (candidates.size() == MAX_EXPANSIONS) {
+					break;
+				}
+				candidates.add(match.term);
+			}
+			Set<Integer> ids = new LinkedHashSet<>(dictionary.findWordIds(conn, candidates).values());
+			if (ids.isEmpty()) {
+				return new ArrayList<>();
+			}
+			expansions.add(ids);
+		}
+		if (expansions.isEmpty()) {
+			return new ArrayList<>();
+		}
+
+		// The narrowest term goes first so later ones only probe its pages
+		expansions.sort(Comparator.comparingInt(Set::size));
+		Map<Integer, List<PostingCodec.Occurrences>> pages = null;
+		for (Set<Integer> ids : expansions) {
+			Map<Integer, List<PostingCodec.Occurrences>> matched = new LinkedHashMap<>();
+			for (int wordId : ids) {
+				for (Map.Entry<Integer, PostingCodec.Occurrences> posting : readPostings(wordId,
+						pages == null ? null : pages.keySet()).entrySet()) {
+					List<PostingCodec.Occurrences> occurrences = matched.get(posting.getKey());
+					if (occurrences == null) {
+						occurrences = pages == null ? new ArrayList<>() : new ArrayList<>(pages.get(posting.getKey()));
+						matched.put(posting.getKey(), occurrences);
+					}
+					occurrences.add(posting.getValue());
+				}
+			}
+			pages = matched;
+			if (pages.isEmpty()) {
+				break;
+			}
+		}
+		return toHits(pages);
+	}
+
+	private FuzzyVocabulary getVocabulary() throws SQLException {
+		FuzzyVocabulary loaded = vocabulary;
+		if (loaded != null) {
+			return loaded;
+		}
+		synchronized (this) {
+			if (vocabulary == null) {
+				loaded = new FuzzyVocabulary();
+				String query = "SELECT w.word FROM words w WHERE EXISTS (SELECT 1 FROM postings p WHERE p.wordId = w.wordId)";
+				List<String> words = new ArrayList<>();
+				try (PreparedStatement stmt = conn.prepareStatement(query); ResultSet rs = stmt.executeQuery()) {
+					while (rs.next()) {
+						words.add(rs.getString(1));
+					}
+				}
+				loaded.addAll(words);
+				vocabulary = loaded;
+			}
+			return vocabulary;
+		}
+	}
+
+	/**
+	 * Returns the {@code k} files closest to {@code fileId} by cosine similarity
+	 * of their TF-IDF vectors, best first. Results carry no pages or snippets.
+	 */
+	public List<SearchResult> findSimilar(int fileId, int k) throws SQLException {
+		List<DocumentVectors.Match> matches;
+		if (graphPath != null) {
+			TermVector vector = getVectors().toTermVector(fileId);
+			matches = vector == null ? new ArrayList<>()
+					: getGraph().search(vector.getTermIds(), vector.getWeights(), k, efSearch, fileId);
+		} else {
+			matches = getVectors().findSimilar(fileId, k);
+		}
+		if (matches.isEmpty()) {
+			return new ArrayList<>();
+		}
+
+		Map<Integer, String> names = new HashMap<>();
+		StringBuilder query = new StringBuilder("SELECT fileid, fileName FROM files WHERE fileid IN (");
+		appendPlaceholders(query, matches.size());
+		query.append(")");
+		try (PreparedStatement stmt = conn.prepareStatement(query.toString())) {
+			for (int i = 0; i < matches.size(); i++) {
+				stmt.setInt(i + 1, matches.get(i).fileId);
+			}
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					names.put(rs.getInt(1), rs.getString(2));
+				}
+			}
+		}
+
+		List<SearchResult> results = new ArrayList<>();
+		for (DocumentVectors.Match match : matches) {
+			if (names.containsKey(match.fileId)) {
+				results.add(new SearchResult(match.fileId, names.get(match.fileId), match.score, new ArrayList<>(),
+						new ArrayList<>()));
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * The {@code k} most distinctive terms of a file by TF-IDF.
+	 */
+	public List<DocumentVectors.TermScore> topTerms(int fileId, int k) throws SQLException {
+		return getVectors().topTerms(fileId, k);
+	}
+
+	public List<TermVector> getTermVectors() throws SQLException {
+		return getVectors().toTermVectors();
+	}
+
+	public int getFileCount() throws SQLException {
+		return getVectors().size();
+	}
+
+	/**
+	 * Recomputes the vector of a file from its postings. Call after its pages
+	 * were indexed.
+	 */
+	public void updateFileVector(int fileId) throws SQLException {
+		DocumentVectors loaded = vectors;
+		if (loaded != null) {
+			Map<Integer, Map<Integer, Integer>> termFreqs = readFileTermFreqs(fileId);
+			loaded.put(fileId, termFreqs.getOrDefault(fileId, new HashMap<>()));
+			HnswIndex loadedGraph = graph;
+			if (loadedGraph != null) {
+				TermVector vector = loaded.toTermVector(fileId);
+				if (vector != null) {
+					loadedGraph.insert(fileId, vector.getTermIds(), vector.getWeights());
+				} else {
+					loadedGraph.remove(fileId);
+				}
+			}
+		}
+	}
+
+	public void removeFileVector(int fileId) {
+		DocumentVectors loaded = vectors;
+		if (loaded != null) {
+			loaded.remove(fileId);
+		}
+		HnswIndex loadedGraph = graph;
+		if (loadedGraph != null) {
+			loadedGraph.remove(fileId);
+		}
+	}
+
+	/**
+	 * Saves the neighbour graph once it has taken {@code minChanges} writes
+	 * since it was last saved. A graph that is lost or behind is brought up to
+	 * date from the vectors on next use.
+	 */
+	public void saveGraph(int minChanges) {
+		HnswIndex loadedGraph = graph;
+		if (loadedGraph != null && loadedGraph.getChanges() >= minChanges) {
+			try {
+				loadedGraph.save(graphPath);
+			} catch (IOException e) {
+				e.printStackTrace();
+				LOGGER.error(e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Builds the neighbour graph again from the current vectors and saves it.
+	 * Returns the number of files in it.
+	 */
+	public synchronized int rebuildGraph() throws SQLException {
+		if (graphPath == null) {
+			return 0;
+		}
+		graph = new HnswIndex();
+		graphStale = true;
+		int size = getGraph().size();
+		saveGraph(0);
+		return size;
+	}
+
+	/**
+	 * Drops the loaded vectors so they are read again on next use, for example
+	 * after a rolled back write.
+	 */
+	public void invalidateVectors() {
+		vectors = null;
+		graphStale = true;
+	}
+
+	private DocumentVectors getVectors() throws SQLException {
+		DocumentVectors loaded = vectors;
+		if (loaded != null) {
+			return loaded;
+		}
+		synchronized (this) {
+			if (vectors == null) {
+				loaded = new DocumentVectors();
+				for (Map.Entry<Integer, Map<Integer, Integer>> file : readFileTermFreqs(null).entrySet()) {
+					loaded.put(file.getKey(), file.getValue());
+				}
+				vectors = loaded;
+			}
+			return vectors;
+		}
+	}
+
+	// Loads the saved graph on first use and adds or drops files to match the vectors
+	private HnswIndex getGraph() throws SQLException {
+		HnswIndex loaded = graph;
+		if (loaded != null && !graphStale) {
+			return loaded;
+		}
+		synchronized (this) {
+			if (graph == null) {
+				graph = new HnswIndex();
+				if (Files.exists(graphPath)) {
+					try {
+						graph = HnswIndex.load(graphPath);
+					} catch (IOException e) {
+						e.printStackTrace();
+						LOGGER.error(e.getMessage());
+					}
+				}
+				graphStale = true;
+			}
+			if (graphStale) {
+				DocumentVectors current = getVectors();
+				Set<Integer> fileIds = current.fileIds();
+				for (int fileId : graph.fileIds()) {
+					if (!fileIds.contains(fileId)) {
+						graph.remove(fileId);
+					}
+				}
+				for (int fileId : fileIds) {
+					TermVector vector = graph.contains(fileId) ? null : current.toTermVector(fileId);
+					if (vector != null) {
+						graph.insert(fileId, vector.getTermIds(), vector.getWeights());
+					}
+				}
+				graphStale = false;
+			}
+			return graph;
+		}
+	}
+
+	// Term frequencies summed over the pages of one file, or of all files
+	private Map<Integer, Map<Integer, Integer>> readFileTermFreqs(Integer fileId) throws SQLException {
+		String query = "SELECT s.fileId, p.wordId, SUM(p.termFreq) FROM postings p JOIN pagestats s ON s.pageId = p.pageId"
+				+ (fileId == null ? "" : " WHERE s.fileId = ?") + " GROUP BY s.fileId, p.wordId";
+		Map<Integer, Map<Integer, Integer>> files = new HashMap<>();
+		try (PreparedStatement stmt = conn.prepareStatement(query)) {
+			if (fileId != null) {
+				stmt.setInt(1, fileId);
+			}
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					files.computeIfAbsent(rs.getInt(1), id -> new HashMap<>()).put(rs.getInt(2), rs.getInt(3));
+				}
+			}
+		}
+		return files;
+	}
+
+	/**
+	 * Term ids of the query tokens in query order, or null when a term was never
+	 * indexed and so cannot match.
+	 */
+	private List<Integer> findTermIds(String query) throws SQLException {
+		List<String> terms = new ArrayList<>();
+		for (Tokenizer.Token token : Tokenizer.tokenize(query)) {
+			terms.add(token.term);
+		}
+		Map<String, Integer> ids = dictionary.findWordIds(conn, terms);
+		if (terms.isEmpty() || !ids.keySet().containsAll(terms)) {
+			return null;
+		}
+		List<Integer> wordIds = new ArrayList<>();
+		for (String term : terms) {
+			wordIds.add(ids.get(term));
+		}
+		return wordIds;
+	}
+
+	private static int[][] toOffsets(List<int[]> spans) {
+		spans.sort(Comparator.<int[]>comparingInt(span -> span[0]).thenComparingInt(span -> span[1]));
+		int[] starts = new int[spans.size()];
+		int[] ends = new int[spans.size()];
+		for (int i = 0; i < spans.size(); i++) {
+			starts[i] = spans.get(i)[0];
+			ends[i] = spans.get(i)[1];
+		}
+		return new int[][] { starts, ends };
+	}
+
+	/**
+	 * Reads the posting lists of the given words, rarest first, keeping only the
+	 * pages that contain all of them. Returns the occurrences per page, indexed
+	 * like {@code wordIds}.
+	 */
+	Map<Integer, PostingCodec.Occurrences[]> intersect(List<Integer> wordIds) throws SQLException {
+		List<Integer> ordered = new ArrayList<>(new LinkedHashSet<>(wordIds));
+		Map<Integer, Integer> frequencies = getDocumentFrequencies(ordered);
+		ordered.sort(Comparator.comparing(id -> frequencies.getOrDefault(id, 0)));
+
+		Map<Integer, PostingCodec.Occurrences[]> pages = null;
+		for (int wordId : ordered) {
+			Map<Integer, PostingCodec.Occurrences> postings = readPostings(wordId,
+					pages == null ? null : pages.keySet());
+			Map<Integer, PostingCodec.Occurrences[]> matched = new LinkedHashMap<>();
+			for (Map.Entry<Integer, PostingCodec.Occurrences> posting : postings.entrySet()) {
+				PostingCodec.Occurrences[] occurrences = pages == null
+						? new PostingCodec.Occurrences[wordIds.size()]
+						: pages.get(posting.getKey());
+				for (int i = 0; i < wordIds.size(); i++) {
+					if (wordIds.get(i) == wordId) {
+						occurrences[i] = posting.getValue();
+					}
+				}
+				matched.put(posting.getKey(), occurrences);
+			}
+			pages = matched;
+			if (pages.isEmpty()) {
+				break;
+			}
+		}
+		return pages;
+	}
+
+	Map<Integer, Integer> getDocumentFrequencies(Collection<Integer> wordIds) throws SQLException {
+		Map<Integer, Integer> frequencies = new HashMap<>();
+		StringBuilder query = new StringBuilder("SELECT wordId, COUNT(*) FROM postings WHERE wordId IN (");
+		appendPlaceholders(query, wordIds.size());
+		query.append(") GROUP BY wordId");
+
+		try (PreparedStatement stmt = conn.prepareStatement(query.toString())) {
+			int i = 1;
+			for (int wordId : wordIds) {
+				stmt.setInt(i++, wordId);
+			}
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					frequencies.put(rs.getInt(1), rs.getInt(2));
+				}
+			}
+		}
+		return frequencies;
+	}
+
+	/**
+	 * Reads the posting list of a word, limited to {@code pageIds} when given.
+	 */
+	Map<Integer, PostingCodec.Occurrences> readPostings(int wordId, Collection<Integer> pageIds)
+			throws SQLException {
+		Map<Integer, PostingCodec.Occurrences> postings = new LinkedHashMap<>();
+		if (pageIds == null) {
+			String query = "SELECT pageId, positions FROM postings WHERE wordId = ? ORDER BY pageId";
+			try (PreparedStatement stmt = conn.prepareStatement(query)) {
+				stmt.setInt(1, wordId);
+				readPostings(stmt, postings);
+			}
+			return postings;
+		}
+
+		List<Integer> ids = new ArrayList<>(pageIds);
+		for (int from = 0; from < ids.size(); from += LOOKUP_CHUNK_SIZE) {
+			List<Integer> chunk = ids.subList(from, Math.min(ids.size(), from + LOOKUP_CHUNK_SIZE));
+			StringBuilder query = new StringBuilder("SELECT pageId, positions FROM postings WHERE wordId = ? AND pageId IN (");
+			appendPlaceholders(query, chunk.size());
+			query.append(") ORDER BY pageId");
+			try (PreparedStatement stmt = conn.prepareStatement(query.toString())) {
+				stmt.setInt(1, wordId);
+				for (int i = 0; i < chunk.size(); i++) {
+					stmt.setInt(i + 2, chunk.get(i));
+				}
+				readPostings(stmt, postings);
+			}
+		}
+		return postings;
+	}
+
+	private void readPostings(PreparedStatement stmt, Map<Integer, PostingCodec.Occurrences> postings)
+			throws SQLException {
+		try (ResultSet rs = stmt.executeQuery()) {
+			while (rs.next()) {
+				postings.put(rs.getInt("pageId"), PostingCodec.decode(rs.getBytes("positions")));
+			}
+		}
+	}
+
+	/**
+	 * Looks up the file and page number of each matched page and builds the hits.
+	 */
+	List<SearchHit> toHits(Map<Integer, List<PostingCodec.Occurrences>> pages) throws SQLException {
+		Map<Integer, int[][]> offsets = new LinkedHashMap<>();
+		for (Map.Entry<Integer, List<PostingCodec.Occurrences>> page : pages.entrySet()) {
+			offsets.put(page.getKey(), mergeOffsets(page.getValue()));
+		}
+		return toPageHits(offsets);
+	}
+
+	/**
+	 * Builds hits from start and end offsets keyed by page id.
+	 */
+	List<SearchHit> toPageHits(Map<Integer, int[][]> pages) throws SQLException {
+		List<SearchHit> hits = new ArrayList<>();
+		List<Integer> ids = new ArrayList<>(pages.keySet());
+		for (int from = 0; from < ids.size(); from += LOOKUP_CHUNK_SIZE) {
+			List<Integer> chunk = ids.subList(from, Math.min(ids.size(), from + LOOKUP_CHUNK_SIZE));
+			StringBuilder query = new StringBuilder("SELECT p.pageId, p.pageNumber, f.fileid, f.fileName FROM pages p"
+					+ " JOIN files f ON f.fileid = p.fileId WHERE p.pageId IN (");
+			appendPlaceholders(query, chunk.size());
+			query.append(")");
+			try (PreparedStatement stmt = conn.prepareStatement(query.toString())) {
+				for (int i = 0; i < chunk.size(); i++) {
+					stmt.setInt(i + 1, chunk.get(i));
+				}
+				try (ResultSet rs = stmt.executeQuery()) {
+					while (rs.next()) {
+						int pageId = rs.getInt("pageId");
+						int[][] offsets = pages.get(pageId);
+						hits.add(new SearchHit(rs.getInt("fileid"), rs.getString("fileName"), pageId,
+								rs.getInt("pageNumber"), offsets[0], offsets[1]));
+					}
+				}
+			}
+		}
+		hits.sort(Comparator.comparing(SearchHit::getFileId).thenComparing(SearchHit::getPageNumber));
+		return hits;
+	}
+
+	private static int[][] mergeOffsets(List<PostingCodec.Occurrences> occurrences) {
+		int count = 0;
+		for (PostingCodec.Occurrences occurrence : occurrences) {
+			count += occurrence.size();
+		}
+		long[] packed = new long[count];
+		int i = 0;
+		for (PostingCodec.Occurrences occurrence : occurrences) {
+			for (int j = 0; j < occurrence.size(); j++) {
+				packed[i++] = ((long) occurrence.starts[j] << 32) | occurrence.ends[j];
+			}
+		}
+		Arrays.sort(packed);
+
+		int[] starts = new int[count];
+		int[] ends = new int[count];
+		for (i = 0; i < count; i++) {
+			starts[i] = (int) (packed[i] >>> 32);
+			ends[i] = (int) packed[i];
+		}
+		return new int[][] { starts, ends };
+	}
+
+	private static void appendPlaceholders(StringBuilder query, int count) {
+		for (int i = 0; i < count; i++) {
+			query.append(i == 0 ? "?" : ", ?");
+		}
+	}
+}
@@ -0,0 +1,422 @@
+package dal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import pl.EditorPO;
+
+/**
+ * Append-only store for page bodies, keyed by fileId and pageNumber.
+ *
+ * Every write appends one record to the active segment file; once a segment
+ * reaches {@code pagestore.segmentBytes} a new one is started. Reads go through
+ * read-only memory maps of the segments, located by an in-memory index that is
+ * rebuilt by scanning the segments on open. A background task rewrites the live
+ * records of segments that are mostly overwritten or deleted and removes the old
+ * files.
+ *
+ * <pre>
+ * int   CRC32 of the rest of the record
+ * int   fileId
+ * int   pageNumber
+ * int   body length in bytes, -1 for a deleted page
+ * bytes UTF-8 body
+ * </pre>
+ */
+public class SegmentPageStore {
+	private static final Logger LOGGER = LogManager.getLogger(EditorPO.class);
+	private static final int HEADER_BYTES = 16;
+	private static final int TOMBSTONE = -1;
+	private static final String SEGMENT_PREFIX = "segment-";
+	private static final String SEGMENT_SUFFIX = ".log";
+	private static SegmentPageStore INSTANCE;
+
+	private static class Segment {
+		final int id;
+		final Path path;
+		final FileChannel channel;
+		volatile long size;
+		volatile MappedByteBuffer map;
+		long liveBytes;
+
+		Segment(int id, Path path, FileChannel channel, long size) {
+			this.id = id;
+			this.path = path;
+			this.channel = channel;
+			this.size = size;
+		}
+	}
+
+	private static class Location {
+		final Segment segment;
+		final long offset;
+		final int length;
+
+		Location(Segment segment, long offset, int length) {
+			this.segment = segment;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		int recordBytes() {
+			return HEADER_BYTES + Math.max(length, 0);
+		}
+	}
+
+	private final Path directory;
+	private final long segmentBytes;
+	private final double compactRatio;
+	private final ConcurrentSkipListMap<Long, Location> index = new ConcurrentSkipListMap<>();
+	private final NavigableMap<Integer, Segment> segments = new TreeMap<>();
+	private final ScheduledExecutorService compactor;
+	private final Object compactionLock = new Object();
+	private Segment active;
+	private boolean dirty;
+
+	public SegmentPageStore(Path directory, long segmentBytes, double compactRatio, long compactIntervalSeconds)
+			throws IOException {
+		this.directory = directory;
+		this.segmentBytes = segmentBytes;
+		this.compactRatio = compactRatio;
+		Files.createDirectories(directory);
+		recover();
+
+		compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "page-store-compactor");
+			thread.setDaemon(true);
+			return thread;
+		});
+		if (compactIntervalSeconds > 0) {
+			compactor.scheduleWithFixedDelay(this::compactQuietly, compactIntervalSeconds, compactIntervalSeconds,
+					TimeUnit.SECONDS);
+		}
+	}
+
+	public static synchronized SegmentPageStore getInstance() {
+		if (INSTANCE == null) {
+			try {
+				INSTANCE = new SegmentPageStore(Paths.get(EditorConfig.getProperty("pagestore.path", "data/pages")),
+						EditorConfig.getInt("pagestore.segmentBytes", 64 * 1024 * 1024),
+						EditorConfig.getDouble("pagestore.compactRatio", 0.5),
+						EditorConfig.getInt("pagestore.compactIntervalSeconds", 60));
+			} catch (IOException e) {
+				e.printStackTrace();
+				LOGGER.error(e.getMessage());
+			}
+		}
+		return INSTANCE;
+	}
+
+	public synchronized void put(int fileId, int pageNumber, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		append(fileId, pageNumber, bytes.length, ByteBuffer.wrap(bytes));
+	}
+
+	public synchronized void delete(int fileId, int pageNumber) throws IOException {
+		if (contains(fileId, pageNumber)) {
+			append(fileId, pageNumber, TOMBSTONE, ByteBuffer.allocate(0));
+		}
+	}
+
+	/**
+	 * Deletes every page of a file.
+	 */
+	public synchronized void deleteFile(int fileId) throws IOException {
+		for (Long key : new ArrayList<>(fileKeys(fileId).keySet())) {
+			append(fileId, (int) (long) key, TOMBSTONE, ByteBuffer.allocate(0));
+		}
+	}
+
+	public String get(int fileId, int pageNumber) {
+		ByteBuffer body = getRaw(fileId, pageNumber);
+		return body == null ? null : StandardCharsets.UTF_8.decode(body).toString();
+	}
+
+	/**
+	 * Returns a read-only view of the stored body, backed directly by the segment
+	 * map, or null if the page is not stored.
+	 */
+	public ByteBuffer getRaw(int fileId, int pageNumber) {
+		Location location = index.get(key(fileId, pageNumber));
+		if (location == null) {
+			return null;
+		}
+		try {
+			ByteBuffer view = mapped(location.segment, location.offset + location.recordBytes()).duplicate();
+			view.position((int) location.offset + HEADER_BYTES);
+			view.limit((int) location.offset + HEADER_BYTES + location.length);
+			return view.slice().asReadOnlyBuffer();
+		} catch (IOException e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+			return null;
+		}
+	}
+
+	public boolean contains(int fileId, int pageNumber) {
+		return index.containsKey(key(fileId, pageNumber));
+	}
+
+	/**
+	 * Forces appended records to disk.
+	 */
+	public synchronized void sync() throws IOException {
+		if (dirty) {
+			active.channel.force(false);
+			dirty = false;
+		}
+	}
+
+	public int getSegmentCount() {
+		synchronized (this) {
+			return segments.size();
+		}
+	}
+
+	/**
+	 * Rewrites every sealed segment whose live share has dropped below the
+	 * configured ratio. Returns the number of segments removed.
+	 */
+	public int compact() throws IOException {
+		synchronized (compactionLock) {
+			List<Segment> candidates = new ArrayList<>();
+			synchronized (this) {
+				for (Segment segment : segments.values()) {
+					if (segment != active && segment.liveBytes < segment.size * compactRatio) {
+						candidates.add(segment);
+					}
+				}
+			}
+
+			for (Segment segment : candidates) {
+				compactSegment(segment);
+			}
+			return candidates.size();
+		}
+	}
+
+	public synchronized void close() {
+		compactor.shutdownNow();
+		for (Segment segment : segments.values()) {
+			try {
+				segment.channel.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+				LOGGER.error(e.getMessage());
+			}
+		}
+		segments.clear();
+		index.clear();
+	}
+
+	private void compactQuietly() {
+		try {
+			int removed = compact();
+			if (removed > 0) {
+				LOGGER.info("Compacted " + removed + " page store segments");
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+		}
+	}
+
+	private void compactSegment(Segment segment) throws IOException {
+		ByteBuffer records = mapped(segment, segment.size).duplicate();
+		long offset = 0;
+		while (offset < segment.size) {
+			records.position((int) offset);
+			records.getInt();
+			int fileId = records.getInt();
+			int pageNumber = records.getInt();
+			int length = records.getInt();
+			long recordOffset = offset;
+			offset += HEADER_BYTES + Math.max(length, 0);
+
+			synchronized (this) {
+				Long key = key(fileId, pageNumber);
+				Location current = index.get(key);
+				if (length == TOMBSTONE) {
+					// Keep the tombstone while an older segment may still hold the page
+					if (current == null && segments.firstKey() < segment.id) {
+						append(fileId, pageNumber, TOMBSTONE, ByteBuffer.allocate(0));
+					}
+				} else if (current != null && current.segment == segment && current.offset == recordOffset) {
+					ByteBuffer body = records.duplicate();
+					body.position((int) recordOffset + HEADER_BYTES);
+					body.limit((int) recordOffset + HEADER_BYTES + length);
+					append(fileId, pageNumber, length, body.slice());
+				}
+			}
+		}
+
+		synchronized (this) {
+			sync();
+			segments.remove(segment.id);
+			segment.channel.close();
+		}
+		try {
+			Files.deleteIfExists(segment.path);
+		} catch (IOException e) {
+			// Still mapped on some platforms; its records are all superseded, so
+			// recovery ignores it and the next compaction retries
+			LOGGER.error("Could not delete " + segment.path + ": " + e.getMessage());
+		}
+	}
+
+	private void append(int fileId, int pageNumber, int length, ByteBuffer body) throws IOException {
+		int recordBytes = HEADER_BYTES + Math.max(length, 0);
+		if (active == null || (active.size > 0 && active.size + recordBytes > segmentBytes)) {
+			if (active != null) {
+				active.channel.force(false);
+			}
+			active = openSegment(segments.isEmpty() ? 1 : segments.lastKey() + 1);
+		}
+
+		ByteBuffer record = ByteBuffer.allocate(recordBytes);
+		record.putInt(0);
+		record.putInt(fileId);
+		record.putInt(pageNumber);
+		record.putInt(length);
+		record.put(body);
+		record.putInt(0, checksum(record.array(), recordBytes));
+		record.flip();
+
+		long offset = active.size;
+		while (record.hasRemaining()) {
+			active.channel.write(record, offset + record.position());
+		}
+		active.size += recordBytes;
+		dirty = true;
+
+		Long key = key(fileId, pageNumber);
+		Location previous = length == TOMBSTONE ? index.remove(key)
+				: index.put(key, new Location(active, offset, length));
+		if (previous != null) {
+			previous.segment.liveBytes -= previous.recordBytes();
+		}
+		active.liveBytes += recordBytes;
+	}
+
+	private ByteBuffer mapped(Segment segment, long end) throws IOException {
+		MappedByteBuffer map = segment.map;
+		if (map == null || map.capacity() < end) {
+			synchronized (segment) {
+				map = segment.map;
+				if (map == null || map.capacity() < end) {
+					map = segment.channel.map(FileChannel.MapMode.READ_ONLY, 0, segment.size);
+					segment.map = map;
+				}
+			}
+		}
+		return map;
+	}
+
+	private Segment openSegment(int id) throws IOException {
+		Path path = directory.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		Segment segment = new Segment(id, path, channel, channel.size());
+		segments.put(id, segment);
+		return segment;
+	}
+
+	private synchronized void recover() throws IOException {
+		List<Integer> ids = new ArrayList<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+				SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+			for (Path file : files) {
+				String name = file.getFileName().toString();
+				ids.add(Integer.parseInt(
+						name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+			}
+		}
+		ids.sort(null);
+
+		for (int id : ids) {
+			Segment segment = openSegment(id);
+			long valid = scan(segment);
+			if (valid < segment.size) {
+				LOGGER.error("Truncating " + segment.path + " at " + valid + " of " + segment.size + " bytes");
+				segment.channel.truncate(valid);
+				segment.size = valid;
+				segment.map = null;
+			}
+			active = segment;
+		}
+	}
+
+	/**
+	 * Adds the records of a segment to the index and returns the length of its
+	 * intact prefix.
+	 */
+	private long scan(Segment segment) throws IOException {
+		if (segment.size == 0) {
+			return 0;
+		}
+		ByteBuffer records = mapped(segment, segment.size).duplicate();
+		long offset = 0;
+		while (segment.size - offset >= HEADER_BYTES) {
+			records.position((int) offset);
+			int crc = records.getInt();
+			int fileId = records.getInt();
+			int pageNumber = records.getInt();
+			int length = records.getInt();
+			int recordBytes = HEADER_BYTES + Math.max(length, 0);
+			if (length < TOMBSTONE || offset + recordBytes > segment.size) {
+				break;
+			}
+			byte[] record = new byte[recordBytes];
+			records.position((int) offset);
+			records.get(record);
+			if (checksum(record, recordBytes) != crc) {
+				break;
+			}
+
+			Long key = key(fileId, pageNumber);
+			Location previous = length == TOMBSTONE ? index.remove(key)
+					: index.put(key, new Location(segment, offset, length));
+			if (previous != null) {
+				previous.segment.liveBytes -= previous.recordBytes();
+			}
+			segment.liveBytes += recordBytes;
+			offset += recordBytes;
+		}
+		return offset;
+	}
+
+	private Map<Long, Location> fileKeys(int fileId) {
+		return index.subMap(key(fileId, 0), true, key(fileId, -1), true);
+	}
+
+	private static int checksum(byte[] record, int length) {
+		CRC32 crc = new CRC32();
+		crc.update(record, 4, length - 4);
+		return (int) crc.getValue();
+	}
+
+	private static Long key(int fileId, int pageNumber) {
+		return ((long) fileId << 32) | (pageNumber & 0xFFFFFFFFL);
+	}
+}
@@ -0,0 +1,150 @@
+package dal;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import pl.EditorPO;
+
+/**
+ * Inner loops of the similarity and scoring jobs: dot products of dense
+ * vectors, and of a sparse vector with a dense array indexed by term id. The
+ * kernel in use is picked once from similarity.kernel:
+ * <ul>
+ * <li>{@code unrolled}, the default, keeps four independent sums so that each
+ * add does not wait on the one before it, which lets the JIT pipeline the loop
+ * or turn it into SIMD instructions;</li>
+ * <li>{@code scalar} is the plain loop the others are checked against;</li>
+ * <li>any other value names a subclass to load instead, e.g. one built on
+ * {@code jdk.incubator.vector} where the JDK has it. The scalar kernel is
+ * used when it cannot be loaded.</li>
+ * </ul>
+ * Kernels add in different orders, so their sums may differ in the last bits.
+ */
+public abstract class SimilarityKernel {
+	private static final Logger LOGGER = LogManager.getLogger(EditorPO.class);
+
+	public static final SimilarityKernel SCALAR = new Scalar();
+	public static final SimilarityKernel UNROLLED = new Unrolled();
+
+	private static class Holder {
+		static final SimilarityKernel KERNEL = forName(EditorConfig.getProperty("similarity.kernel", "unrolled"));
+	}
+
+	public static SimilarityKernel get() {
+		return Holder.KERNEL;
+	}
+
+	/**
+	 * The kernel for a similarity.kernel value.
+	 */
+	public static SimilarityKernel forName(String name) {
+		if ("unrolled".equalsIgnoreCase(name)) {
+			return UNROLLED;
+		}
+		if ("scalar".equalsIgnoreCase(name)) {
+			return SCALAR;
+		}
+		try {
+			return (SimilarityKernel) Class.forName(name).getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | ClassCastException | LinkageError e) {
+			LOGGER.warn("Cannot load similarity kernel " + name + ", using the scalar loop: " + e);
+			return SCALAR;
+		}
+	}
+
+	/**
+	 * Dot product of the first {@code length} values of two vectors.
+	 */
+	public abstract float dot(float[] a, float[] b, int length);
+
+	/**
+	 * Sum of {@code values[i] * dense[indices[i]]}; every index must fall
+	 * inside {@code dense}.
+	 */
+	public abstract float gatherDot(int[] indices, float[] values, float[] dense);
+
+	/**
+	 * Sum of {@code counts[i] * dense[indices[i]]}; every index must fall
+	 * inside {@code dense}.
+	 */
+	public abstract double gatherDot(int[] indices, int[] counts, double[] dense);
+
+	static final class Scalar extends SimilarityKernel {
+		@Override
+		public float dot(float[] a, float[] b, int length) {
+			float sum = 0;
+			for (int i = 0; i < length; i++) {
+				sum += a[i] * b[i];
+			}
+			return sum;
+		}
+
+		@Override
+		public float gatherDot(int[] indices, float[] values, float[] dense) {
+			float sum = 0;
+			for (int i = 0; i < indices.length; i++) {
+				sum += values[i] * dense[indices[i]];
+			}
+			return sum;
+		}
+
+		@Override
+		public double gatherDot(int[] indices, int[] counts, double[] dense) {
+			double sum = 0;
+			for (int i = 0; i < indices.length; i++) {
+				sum += counts[i] * dense[indices[i]];
+			}
+			return sum;
+		}
+	}
+
+	static final class Unrolled extends SimilarityKernel {
+		@Override
+		public float dot(float[] a, float[] b, int length) {
+			float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+			int i = 0;
+			for (int end = length & ~3; i < end; i += 4) {
+				s0 += a[i] * b[i];
+				s1 += a[i + 1] * b[i + 1];
+				s2 += a[i + 2] * b[i + 2];
+				s3 += a[i + 3] * b[i + 3];
+			}
+			for (; i < length; i++) {
+				s0 += a[i] * b[i];
+			}
+			return (s0 + s1) + (s2 + s3);
+		}
+
+		@Override
+		public float gatherDot(int[] indices, float[] values, float[] dense) {
+			float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+			int i = 0;
+			for (int end = indices.length & ~3; i < end; i += 4) {
+				s0 += values[i] * dense[indices[i]];
+				s1 += values[i + 1] * dense[indices[i + 1]];
+				s2 += values[i + 2] * dense[indices[i + 2]];
+				s3 += values[i + 3] * dense[indices[i + 3]];
+			}
+			for (; i < indices.length; i++) {
+				s0 += values[i] * dense[indices[i]];
+			}
+			return (s0 + s1) + (s2 + s3);
+		}
+
+		@Override
+		public double gatherDot(int[] indices, int[] counts, double[] dense) {
+			double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+			int i = 0;
+			for (int end = indices.length & ~3; i < end; i += 4) {
+				s0 += counts[i] * dense[indices[i]];
+				s1 += counts[i + 1] * dense[indices[i + 1]];
+				s2 += counts[i + 2] * dense[indices[i + 2]];
+				s3 += counts[i + 3] * dense[indices[i + 3]];
+			}
+			for (; i < indices.length; i++) {
+				s0 += counts[i] * dense[indices[i]];
+			}
+			return (s0 + s1) + (s2 + s3);
+		}
+	}
+}
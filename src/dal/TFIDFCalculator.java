@@ -8,16 +8,20 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class TFIDFCalculator {
 
 	private List<String> corpus = new ArrayList<>();
+	// Built on first use and dropped when the corpus changes
+	private Map<String, Double> idf;
 
 	public void addDocumentToCorpus(String document) {
 		if (document != null) {
 			String preprocessed = PreProcessText.preprocessText(document);
 			if (preprocessed != null && !preprocessed.trim().isEmpty()) {
 				corpus.add(preprocessed);
+				idf = null;
 			}
 		}
 	}
@@ -86,6 +90,13 @@ public class TFIDFCalculator {
 	}
 
 	private Map<String, Double> calculateInverseDocumentFrequency() {
+		if (idf == null) {
+			idf = buildInverseDocumentFrequency();
+		}
+		return idf;
+	}
+
+	private Map<String, Double> buildInverseDocumentFrequency() {
 		Map<String, Double> idf = new HashMap<>();
 		int totalDocs = corpus.size();
 		
@@ -117,6 +128,81 @@ public class TFIDFCalculator {
 		return idf;
 	}
 
+	/**
+	 * Scores each document against all the others, as
+	 * {@link #calculateDocumentTfIdf} scores a document against a corpus of the
+	 * rest. The documents are read once into term ids and counts, the IDF of
+	 * every term is frozen into an array, and the scores are then computed in
+	 * parallel as dot products of the counts with it.
+	 *
+	 * @return the scores in the order of the documents
+	 */
+	public static double[] calculateCorpusTfIdf(List<String> documents) {
+		String[] texts = documents.parallelStream().map(document -> document == null ? null
+				: PreProcessText.preprocessText(document)).toArray(String[]::new);
+
+		Map<String, Integer> termIds = new HashMap<>();
+		int[][] terms = new int[texts.length][];
+		int[][] counts = new int[texts.length][];
+		int[] lengths = new int[texts.length];
+		int corpusSize = 0;
+		for (int d = 0; d < texts.length; d++) {
+			if (texts[d] == null || texts[d].trim().isEmpty()) {
+				continue;
+			}
+			corpusSize++;
+			String[] words = texts[d].split("\\s+");
+			lengths[d] = words.length;
+			int[] ids = new int[words.length];
+			int size = 0;
+			for (String word : words) {
+				if (!word.trim().isEmpty()) {
+					ids[size++] = termIds.computeIfAbsent(word, w -> termIds.size());
+				}
+			}
+			Arrays.sort(ids, 0, size);
+			int distinct = 0;
+			int[] wordCounts = new int[size];
+			for (int i = 0; i < size; i++) {
+				if (distinct == 0 || ids[distinct - 1] != ids[i]) {
+					ids[distinct++] = ids[i];
+				}
+				wordCounts[distinct - 1]++;
+			}
+			terms[d] = Arrays.copyOf(ids, distinct);
+			counts[d] = Arrays.copyOf(wordCounts, distinct);
+		}
+
+		int[] documentFrequency = new int[termIds.size()];
+		for (int[] documentTerms : terms) {
+			if (documentTerms != null) {
+				for (int termId : documentTerms) {
+					documentFrequency[termId]++;
+				}
+			}
+		}
+
+		int others = corpusSize - 1;
+		double[] scores = new double[texts.length];
+		if (others == 0) {
+			return scores;
+		}
+		// IDF of each term against the other files; a document is always one of
+		// the files counted for its own terms
+		double[] idf = new double[documentFrequency.length];
+		for (int termId = 0; termId < idf.length; termId++) {
+			int otherFrequency = documentFrequency[termId] - 1;
+			idf[termId] = otherFrequency > 0 ? Math.log((double) others / otherFrequency) : Math.log(others + 1);
+		}
+		SimilarityKernel kernel = SimilarityKernel.get();
+		IntStream.range(0, texts.length).parallel().forEach(d -> {
+			if (terms[d] != null) {
+				scores[d] = kernel.gatherDot(terms[d], counts[d], idf) / lengths[d] / lengths[d];
+			}
+		});
+		return scores;
+	}
+
 //    public static void main(String[] args) {
 //        TFIDF calculator = new TFIDF();
 //        
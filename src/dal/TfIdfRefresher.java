@@ -0,0 +1,60 @@
+package dal;
+
+import java.sql.SQLException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import pl.EditorPO;
+
+/**
+ * Rescores stale stored TF-IDF scores in the background, one batch of the
+ * oldest scores per interval. A run is skipped while the corpus is still
+ * changing, so a bulk import is not slowed down by rescoring files that the
+ * next import would make stale again. Batches hold the DAO's lock, as every
+ * DAO method using the shared connection does, so their commits cannot land
+ * inside another transaction.
+ */
+public class TfIdfRefresher {
+	private static final Logger LOGGER = LogManager.getLogger(EditorPO.class);
+
+	private final EditorDBDAO dao;
+	private final int batchSize;
+	private final ScheduledExecutorService scheduler;
+	private long lastChanges = -1;
+
+	public TfIdfRefresher(EditorDBDAO dao, int batchSize, long intervalSeconds) {
+		this.dao = dao;
+		this.batchSize = batchSize;
+		scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "tfidf-refresher");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.scheduleWithFixedDelay(this::refreshQuietly, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+	}
+
+	public void stop() {
+		scheduler.shutdownNow();
+	}
+
+	private void refreshQuietly() {
+		try {
+			long changes = dao.getCorpusChanges();
+			if (changes != lastChanges) {
+				lastChanges = changes;
+				return;
+			}
+			int refreshed = dao.refreshStaleTfIdf(batchSize);
+			if (refreshed > 0) {
+				LOGGER.info("Refreshed the stale TF-IDF scores of " + refreshed + " files");
+			}
+		} catch (SQLException e) {
+			e.printStackTrace();
+			LOGGER.error(e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,153 @@
+package dal;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import dto.ScoreFreshness;
+
+/**
+ * Stored TF-IDF scores with the corpus each was computed against: its file
+ * count and the value of the corpus change counter at the time. The counter
+ * in {@code corpusstate} goes up with every import, update and delete, so the
+ * changes since a score, over the files it was scored against, measure how far
+ * the corpus has drifted from it. Scores stored before the counter existed
+ * have {@code corpusChanges = -1} and are always stale.
+ */
+public class TfIdfScores {
+	private final Connection conn;
+
+	public TfIdfScores(Connection conn) {
+		this.conn = conn;
+	}
+
+	/**
+	 * Counts one more change to the corpus, in the caller's transaction.
+	 *
+	 * @return the new value of the counter
+	 */
+	public long recordChange() throws SQLException {
+		try (PreparedStatement stmt = conn.prepareStatement("UPDATE corpusstate SET changes = changes + 1 WHERE id = 1")) {
+			if (stmt.executeUpdate() == 0) {
+				try (PreparedStatement insertStmt = conn
+						.prepareStatement("INSERT INTO corpusstate (id, changes) VALUES (1, 1)")) {
+					insertStmt.executeUpdate();
+				}
+			}
+		}
+		return getChanges();
+	}
+
+	public long getChanges() throws SQLException {
+		try (PreparedStatement stmt = conn.prepareStatement("SELECT changes FROM corpusstate WHERE id = 1");
+				ResultSet rs = stmt.executeQuery()) {
+			return rs.next() ? rs.getLong(1) : 0;
+		}
+	}
+
+	/**
+	 * Replaces the scores of the given files, all computed against the same
+	 * corpus.
+	 *
+	 * @return the number of files updated
+	 */
+	public int update(Map<Integer, Double> scores, int corpusFiles, long changes) throws SQLException {
+		int updated = 0;
+		String query = "UPDATE tfidf SET tfidfScore = ?, corpusFiles = ?, corpusChanges = ? WHERE fileId = ?";
+		try (PreparedStatement stmt = conn.prepareStatement(query)) {
+			int pending = 0;
+			for (Map.Entry<Integer, Double> score : scores.entrySet()) {
+				stmt.setDouble(1, Double.isNaN(score.getValue()) ? 0.0 : score.getValue());
+				stmt.setInt(2, corpusFiles);
+				stmt.setLong(3, changes);
+				stmt.setInt(4, score.getKey());
+				stmt.addBatch();
+				if (++pending == 1000) {
+					updated += updatedRows(stmt.executeBatch());
+					pending = 0;
+				}
+			}
+			updated += updatedRows(stmt.executeBatch());
+		}
+		return updated;
+	}
+
+	/**
+	 * Up to {@code limit} files whose score has drifted by more than
+	 * {@code drift}, oldest scores first.
+	 */
+	public List<Integer> findStale(double drift, int limit) throws SQLException {
+		List<Integer> fileIds = new ArrayList<>();
+		// The cast keeps H2 from typing the drift after the INT column
+		String query = "SELECT fileId FROM tfidf WHERE corpusChanges < 0 OR ? - corpusChanges"
+				+ " > GREATEST(corpusFiles, 1) * CAST(? AS DECIMAL(10, 4)) ORDER BY corpusChanges, fileId LIMIT ?";
+		try (PreparedStatement stmt = conn.prepareStatement(query)) {
+			stmt.setLong(1, getChanges());
+			stmt.setDouble(2, drift);
+			stmt.setInt(3, limit);
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					fileIds.add(rs.getInt(1));
+				}
+			}
+		}
+		return fileIds;
+	}
+
+	/**
+	 * How fresh the score of each file is, oldest scores first.
+	 */
+	public List<ScoreFreshness> getFreshness(double drift, int limit) throws SQLException {
+		List<ScoreFreshness> files = new ArrayList<>();
+		long changes = getChanges();
+		String query = "SELECT t.fileId, f.fileName, t.tfidfScore, t.corpusFiles, t.corpusChanges FROM tfidf t"
+				+ " JOIN files f ON f.fileid = t.fileId ORDER BY t.corpusChanges, t.fileId LIMIT ?";
+		try (PreparedStatement stmt = conn.prepareStatement(query)) {
+			stmt.setInt(1, limit);
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					files.add(freshness(rs, changes, drift));
+				}
+			}
+		}
+		return files;
+	}
+
+	/**
+	 * The stored score of one file and how fresh it is, or null when the file
+	 * has no score.
+	 */
+	public ScoreFreshness getScore(int fileId, double drift) throws SQLException {
+		String query = "SELECT t.fileId, f.fileName, t.tfidfScore, t.corpusFiles, t.corpusChanges,"
+				+ " (SELECT changes FROM corpusstate WHERE id = 1) FROM tfidf t"
+				+ " JOIN files f ON f.fileid = t.fileId WHERE t.fileId = ?";
+		try (PreparedStatement stmt = conn.prepareStatement(query)) {
+			stmt.setInt(1, fileId);
+			try (ResultSet rs = stmt.executeQuery()) {
+				// A missing corpusstate row reads as 0, as in getChanges()
+				return rs.next() ? freshness(rs, rs.getLong(6), drift) : null;
+			}
+		}
+	}
+
+	private static ScoreFreshness freshness(ResultSet rs, long changes, double drift) throws SQLException {
+		int corpusFiles = rs.getInt(4);
+		long scoredAt = rs.getLong(5);
+		long changesSince = scoredAt < 0 ? -1 : changes - scoredAt;
+		boolean stale = scoredAt < 0 || changesSince > Math.max(corpusFiles, 1) * drift;
+		return new ScoreFreshness(rs.getInt(1), rs.getString(2), rs.getDouble(3), corpusFiles, changesSince, stale);
+	}
+
+	private static int updatedRows(int[] counts) {
+		int rows = 0;
+		for (int count : counts) {
+			rows += count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(count, 0);
+		}
+		return rows;
+	}
+}
@@ -0,0 +1,65 @@
+package dal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits page text into the normalized tokens used by the search index. A
+ * token is a run of letters and digits; harakat and tatweel inside a word are
+ * kept in its offsets but dropped from its term, and terms are lower case.
+ */
+public class Tokenizer {
+	private static final char TATWEEL = 'ـ';
+
+	public static class Token {
+		public final String term;
+		public final int position;
+		public final int start;
+		public final int end;
+
+		public Token(String term, int position, int start, int end) {
+			this.term = term;
+			this.position = position;
+			this.start = start;
+			this.end = end;
+		}
+	}
+
+	public static List<Token> tokenize(String text) {
+		List<Token> tokens = new ArrayList<>();
+		if (text == null) {
+			return tokens;
+		}
+
+		StringBuilder term = new StringBuilder();
+		int start = -1;
+		for (int i = 0; i <= text.length(); i++) {
+			char ch = i < text.length() ? text.charAt(i) : ' ';
+			if (Character.isLetterOrDigit(ch)) {
+				if (start == -1) {
+					start = i;
+				}
+				term.append(Character.toLowerCase(ch));
+			} else if (start != -1 && isIgnorable(ch)) {
+				continue;
+			} else if (start != -1) {
+				tokens.add(new Token(term.toString(), tokens.size(), start, i));
+				term.setLength(0);
+				start = -1;
+			}
+		}
+		return tokens;
+	}
+
+	/**
+	 * Normalizes a single query word the same way page tokens are normalized.
+	 */
+	public static String normalize(String word) {
+		List<Token> tokens = tokenize(word);
+		return tokens.size() == 1 ? tokens.get(0).term : null;
+	}
+
+	private static boolean isIgnorable(char ch) {
+		return ch == TATWEEL || Character.getType(ch) == Character.NON_SPACING_MARK;
+	}
+}
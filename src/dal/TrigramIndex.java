@@ -0,0 +1,275 @@
+package dal;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Character trigram index for substring search, kept in the {@code trigrams}
+ * table. Text is folded before it is split into trigrams: harakat are removed
+ * as in {@link PreProcessText#removeHarakat(String)}, together with the other
+ * combining marks and tatweel, letters are lower cased and runs of whitespace
+ * become one space. A trigram is stored as its three
+ * UTF-16 characters packed into a BIGINT.
+ *
+ * On MariaDB the trigrams inside runs of letters and digits are also kept as
+ * words in {@code pagegrams}, whose FULLTEXT index finds candidate pages for
+ * search.fullText. The built-in InnoDB parser then matches inside words and
+ * ignores harakat as this index does, like the ngram parser MariaDB lacks.
+ */
+public class TrigramIndex {
+	private static final char TATWEEL = 'ـ';
+	/**
+	 * Folded text together with the offset in the original text of every folded
+	 * character.
+	 */
+	static class FoldedText {
+		final String text;
+		final int[] offsets;
+
+		FoldedText(String text, int[] offsets) {
+			this.text = text;
+			this.offsets = offsets;
+		}
+	}
+
+	// Marks a word gram so that none is shorter than innodb_ft_min_token_size
+	// or an InnoDB stopword such as "the"
+	private static final char GRAM_PREFIX = '_';
+
+	private final Connection conn;
+	private final boolean fullText;
+
+	public TrigramIndex(Connection conn) {
+		this(conn, false);
+	}
+
+	/**
+	 * @param fullText whether to keep {@code pagegrams} as well, which needs
+	 *                 MariaDB
+	 */
+	public TrigramIndex(Connection conn, boolean fullText) {
+		this.conn = conn;
+		this.fullText = fullText;
+	}
+
+	public void indexPage(int pageId, String content, boolean replace) throws SQLException {
+		if (replace) {
+			removePage(pageId);
+		}
+		String folded = fold(content).text;
+		if (fullText) {
+			try (PreparedStatement insertStmt = conn
+					.prepareStatement("INSERT INTO pagegrams (pageId, grams) VALUES (?, ?)")) {
+				insertStmt.setInt(1, pageId);
+				insertStmt.setString(2, String.join(" ", wordGrams(folded)));
+				insertStmt.executeUpdate();
+			}
+		}
+		Set<Long> grams = trigrams(folded);
+		if (grams.isEmpty()) {
+			return;
+		}
+
+		try (PreparedStatement insertStmt = conn
+				.prepareStatement("INSERT INTO trigrams (gram, pageId) VALUES (?, ?)")) {
+			for (long gram : grams) {
+				insertStmt.setLong(1, gram);
+				insertStmt.setInt(2, pageId);
+				insertStmt.addBatch();
+			}
+			insertStmt.executeBatch();
+		}
+	}
+
+	public void removePage(int pageId) throws SQLException {
+		try (PreparedStatement deleteStmt = conn.prepareStatement("DELETE FROM trigrams WHERE pageId = ?")) {
+			deleteStmt.setInt(1, pageId);
+			deleteStmt.executeUpdate();
+		}
+		if (fullText) {
+			try (PreparedStatement deleteStmt = conn.prepareStatement("DELETE FROM pagegrams WHERE pageId = ?")) {
+				deleteStmt.setInt(1, pageId);
+				deleteStmt.executeUpdate();
+			}
+		}
+	}
+
+	/**
+	 * Finds every page containing {@code fragment} once both are folded and
+	 * returns the start and end offsets of each occurrence in the original page
+	 * text, keyed by page id. Pages holding all trigrams of the fragment are
+	 * candidates; only their text is read to confirm the match. Fragments
+	 * shorter than three folded characters find nothing.
+	 */
+	public Map<Integer, int[][]> findMatches(String fragment, SearchIndex.PageReader reader) throws SQLException {
+		String needle = fold(fragment).text.trim();
+		Set<Long> grams = trigrams(needle);
+		if (grams.isEmpty()) {
+			return new LinkedHashMap<>();
+		}
+
+		return confirmMatches(needle, findCandidates(grams), reader);
+	}
+
+	/**
+	 * Reads the candidate pages and keeps those that really contain
+	 * {@code fragment}, with the offsets of each occurrence.
+	 */
+	public Map<Integer, int[][]> confirmMatches(String fragment, Collection<Integer> pageIds,
+			SearchIndex.PageReader reader) throws SQLException {
+		String needle = fold(fragment).text.trim();
+		Map<Integer, int[][]> matches = new LinkedHashMap<>();
+		if (needle.isEmpty()) {
+			return matches;
+		}
+		for (Map.Entry<Integer, String> page : reader.read(pageIds).entrySet()) {
+			int[][] offsets = findOccurrences(page.getValue(), needle);
+			if (offsets[0].length > 0) {
+				matches.put(page.getKey(), offsets);
+			}
+		}
+		return matches;
+	}
+
+	/**
+	 * Pages holding every word gram of {@code fragment}, found by the FULLTEXT
+	 * index on {@code pagegrams}. Returns null when the fragment has no run of
+	 * three letters or digits, so the caller falls back to
+	 * {@link #findMatches(String, SearchIndex.PageReader)}.
+	 */
+	public List<Integer> findFullTextCandidates(String fragment) throws SQLException {
+		Set<String> grams = wordGrams(fold(fragment).text);
+		if (!fullText || grams.isEmpty()) {
+			return null;
+		}
+		// Grams hold only letters, digits and the prefix, never an operator
+		String against = "+" + String.join(" +", grams);
+
+		List<Integer> pageIds = new ArrayList<>();
+		try (PreparedStatement stmt = conn
+				.prepareStatement("SELECT pageId FROM pagegrams WHERE MATCH (grams) AGAINST (? IN BOOLEAN MODE)")) {
+			stmt.setString(1, against);
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					pageIds.add(rs.getInt(1));
+				}
+			}
+		}
+		return pageIds;
+	}
+
+	/**
+	 * Pages holding every one of the given trigrams.
+	 */
+	List<Integer> findCandidates(Set<Long> grams) throws SQLException {
+		StringBuilder query = new StringBuilder("SELECT pageId FROM trigrams WHERE gram IN (");
+		for (int i = 0; i < grams.size(); i++) {
+			query.append(i == 0 ? "?" : ", ?");
+		}
+		query.append(") GROUP BY pageId HAVING COUNT(*) = ?");
+
+		List<Integer> pageIds = new ArrayList<>();
+		try (PreparedStatement stmt = conn.prepareStatement(query.toString())) {
+			int i = 1;
+			for (long gram : grams) {
+				stmt.setLong(i++, gram);
+			}
+			stmt.setInt(i, grams.size());
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					pageIds.add(rs.getInt(1));
+				}
+			}
+		}
+		return pageIds;
+	}
+
+	static int[][] findOccurrences(String content, String needle) {
+		FoldedText folded = fold(content);
+		List<int[]> found = new ArrayList<>();
+		for (int at = folded.text.indexOf(needle); at >= 0; at = folded.text.indexOf(needle, at + 1)) {
+			// Keep the marks of the last letter inside the match
+			int end = folded.offsets[at + needle.length() - 1] + 1;
+			while (end < content.length() && isMark(content.charAt(end))) {
+				end++;
+			}
+			found.add(new int[] { folded.offsets[at], end });
+		}
+		int[] starts = new int[found.size()];
+		int[] ends = new int[found.size()];
+		for (int i = 0; i < found.size(); i++) {
+			starts[i] = found.get(i)[0];
+			ends[i] = found.get(i)[1];
+		}
+		return new int[][] { starts, ends };
+	}
+
+	/**
+	 * Folds text the way pages and substring queries are compared.
+	 */
+	public static String normalize(String text) {
+		return fold(text).text;
+	}
+
+	static FoldedText fold(String text) {
+		if (text == null) {
+			return new FoldedText("", new int[0]);
+		}
+		StringBuilder folded = new StringBuilder(text.length());
+		int[] offsets = new int[text.length()];
+		for (int i = 0; i < text.length(); i++) {
+			char ch = text.charAt(i);
+			if (isMark(ch)) {
+				continue;
+			}
+			if (Character.isWhitespace(ch)) {
+				if (folded.length() > 0 && folded.charAt(folded.length() - 1) == ' ') {
+					continue;
+				}
+				ch = ' ';
+			}
+			offsets[folded.length()] = i;
+			folded.append(Character.toLowerCase(ch));
+		}
+		return new FoldedText(folded.toString(), Arrays.copyOf(offsets, folded.length()));
+	}
+
+	private static boolean isMark(char ch) {
+		return PreProcessText.isHaraka(ch) || ch == TATWEEL || Character.getType(ch) == Character.NON_SPACING_MARK;
+	}
+
+	/**
+	 * The trigrams of folded text made only of letters and digits, each
+	 * written as a word for the FULLTEXT index. Text containing a fragment
+	 * holds every word gram of the fragment.
+	 */
+	public static Set<String> wordGrams(String folded) {
+		Set<String> grams = new LinkedHashSet<>();
+		int run = 0;
+		for (int i = 0; i < folded.length(); i++) {
+			run = Character.isLetterOrDigit(folded.charAt(i)) ? run + 1 : 0;
+			if (run >= 3) {
+				grams.add(GRAM_PREFIX + folded.substring(i - 2, i + 1));
+			}
+		}
+		return grams;
+	}
+
+	static Set<Long> trigrams(String folded) {
+		Set<Long> grams = new LinkedHashSet<>();
+		for (int i = 0; i + 3 <= folded.length(); i++) {
+			grams.add(((long) folded.charAt(i) << 32) | ((long) folded.charAt(i + 1) << 16) | folded.charAt(i + 2));
+		}
+		return grams;
+	}
+}
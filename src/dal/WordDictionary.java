@@ -0,0 +1,257 @@
+package dal;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Maps words to the integer ids of the {@code words} table. Ids are cached
+ * in-process so repeated words cost a map lookup instead of a round trip.
+ */
+public class WordDictionary {
+	private static final Logger LOGGER = LogManager.getLogger(WordDictionary.class);
+	public static final int MAX_WORD_LENGTH = 512;
+	// Separator and MD5 hex digest that end a shortened word
+	private static final int DIGEST_LENGTH = 33;
+	private static final int MAX_CACHED_WORDS = 200000;
+	private static final int LOOKUP_CHUNK_SIZE = 500;
+
+	private final Map<String, Integer> wordIds = new LinkedHashMap<String, Integer>(1024, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+			return size() > MAX_CACHED_WORDS;
+		}
+	};
+
+	private final Map<Integer, String> words = new LinkedHashMap<Integer, String>(1024, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+			return size() > MAX_CACHED_WORDS;
+		}
+	};
+
+	public synchronized int getWordId(Connection conn, String word) throws SQLException {
+		List<String> words = new ArrayList<>();
+		words.add(word);
+		return getWordIds(conn, words).get(word);
+	}
+
+	/**
+	 * Returns the id of every given word, inserting the ones the database does not
+	 * know yet. The returned map is keyed by the words exactly as passed in.
+	 */
+	public synchronized Map<String, Integer> getWordIds(Connection conn, Collection<String> words)
+			throws SQLException {
+		Map<String, Integer> result = new HashMap<>();
+		Map<String, String> missing = new LinkedHashMap<>();
+
+		for (String word : words) {
+			if (word == null || result.containsKey(word) || missing.containsKey(word)) {
+				continue;
+			}
+			String stored = normalize(word);
+			Integer id = wordIds.get(stored);
+			if (id != null) {
+				result.put(word, id);
+			} else {
+				missing.put(word, stored);
+			}
+		}
+
+		if (!missing.isEmpty()) {
+			Set<String> stored = new LinkedHashSet<>(missing.values());
+			insertMissing(conn, stored);
+			Map<String, Integer> loaded = loadIds(conn, stored);
+			for (Map.Entry<String, String> word : missing.entrySet()) {
+				Integer id = loaded.get(word.getValue());
+				if (id == null) {
+					throw new SQLException("No dictionary id for word: " + word.getKey());
+				}
+				if (!word.getKey().equals(word.getValue())) {
+					LOGGER.warn("Word of " + word.getKey().length() + " characters stored as " + word.getValue());
+				}
+				result.put(word.getKey(), id);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the ids of the given words that are already in the dictionary,
+	 * without adding the others.
+	 */
+	public synchronized Map<String, Integer> findWordIds(Connection conn, Collection<String> words)
+			throws SQLException {
+		Map<String, Integer> result = new HashMap<>();
+		Map<String, String> missing = new LinkedHashMap<>();
+
+		for (String word : words) {
+			if (result.containsKey(word) || missing.containsKey(word)) {
+				continue;
+			}
+			String stored = normalize(word);
+			Integer id = wordIds.get(stored);
+			if (id != null) {
+				result.put(word, id);
+			} else {
+				missing.put(word, stored);
+			}
+		}
+
+		if (!missing.isEmpty()) {
+			Map<String, Integer> loaded = loadIds(conn, new LinkedHashSet<>(missing.values()));
+			for (Map.Entry<String, String> word : missing.entrySet()) {
+				Integer id = loaded.get(word.getValue());
+				if (id != null) {
+					result.put(word.getKey(), id);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the word of every given id. Ids that are not in the table are left
+	 * out of the returned map.
+	 */
+	public synchronized Map<Integer, String> getWords(Connection conn, Collection<Integer> ids) throws SQLException {
+		Map<Integer, String> result = new HashMap<>();
+		List<Integer> chunk = new ArrayList<>(LOOKUP_CHUNK_SIZE);
+
+		for (Integer id : new LinkedHashSet<>(ids)) {
+			if (id == null) {
+				continue;
+			}
+			String word = words.get(id);
+			if (word != null) {
+				result.put(id, word);
+				continue;
+			}
+			chunk.add(id);
+			if (chunk.size() == LOOKUP_CHUNK_SIZE) {
+				loadWordsChunk(conn, chunk, result);
+				chunk.clear();
+			}
+		}
+		if (!chunk.isEmpty()) {
+			loadWordsChunk(conn, chunk, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Drops every cached id. Must be called when a transaction that may have added
+	 * words is rolled back, otherwise the cache would hand out ids that no longer
+	 * exist.
+	 */
+	public synchronized void invalidate() {
+		wordIds.clear();
+		words.clear();
+	}
+
+	private void insertMissing(Connection conn, Set<String> missing) throws SQLException {
+		String insertQuery = "INSERT IGNORE INTO words (word) VALUES (?)";
+		try (PreparedStatement insertStmt = conn.prepareStatement(insertQuery)) {
+			for (String word : missing) {
+				insertStmt.setString(1, word);
+				insertStmt.addBatch();
+			}
+			insertStmt.executeBatch();
+		}
+	}
+
+	private Map<String, Integer> loadIds(Connection conn, Set<String> words) throws SQLException {
+		Map<String, Integer> loaded = new HashMap<>();
+		List<String> chunk = new ArrayList<>(LOOKUP_CHUNK_SIZE);
+		for (String word : words) {
+			chunk.add(word);
+			if (chunk.size() == LOOKUP_CHUNK_SIZE) {
+				loadChunk(conn, chunk, loaded);
+				chunk.clear();
+			}
+		}
+		if (!chunk.isEmpty()) {
+			loadChunk(conn, chunk, loaded);
+		}
+		wordIds.putAll(loaded);
+		return loaded;
+	}
+
+	private void loadChunk(Connection conn, List<String> chunk, Map<String, Integer> loaded) throws SQLException {
+		StringBuilder query = new StringBuilder("SELECT wordId, word FROM words WHERE word IN (");
+		for (int i = 0; i < chunk.size(); i++) {
+			query.append(i == 0 ? "?" : ", ?");
+		}
+		query.append(")");
+
+		try (PreparedStatement selectStmt = conn.prepareStatement(query.toString())) {
+			for (int i = 0; i < chunk.size(); i++) {
+				selectStmt.setString(i + 1, chunk.get(i));
+			}
+			try (ResultSet rs = selectStmt.executeQuery()) {
+				while (rs.next()) {
+					loaded.put(rs.getString("word"), rs.getInt("wordId"));
+				}
+			}
+		}
+	}
+
+	private void loadWordsChunk(Connection conn, List<Integer> chunk, Map<Integer, String> loaded)
+			throws SQLException {
+		StringBuilder query = new StringBuilder("SELECT wordId, word FROM words WHERE wordId IN (");
+		for (int i = 0; i < chunk.size(); i++) {
+			query.append(i == 0 ? "?" : ", ?");
+		}
+		query.append(")");
+
+		try (PreparedStatement selectStmt = conn.prepareStatement(query.toString())) {
+			for (int i = 0; i < chunk.size(); i++) {
+				selectStmt.setInt(i + 1, chunk.get(i));
+			}
+			try (ResultSet rs = selectStmt.executeQuery()) {
+				while (rs.next()) {
+					int id = rs.getInt("wordId");
+					String word = rs.getString("word");
+					loaded.put(id, word);
+					words.put(id, word);
+				}
+			}
+		}
+	}
+
+	// Words longer than the column keep their start and a digest of the whole
+	// word, so two long words sharing a prefix still get different ids. The
+	// length is counted in UTF-16 units as H2 does, which is never less than
+	// MariaDB's count; migration 001 builds the same form in SQL
+	private static String normalize(String word) {
+		if (word.length() <= MAX_WORD_LENGTH) {
+			return word;
+		}
+		int prefix = MAX_WORD_LENGTH - DIGEST_LENGTH;
+		if (Character.isHighSurrogate(word.charAt(prefix - 1))) {
+			prefix--;
+		}
+		try {
+			return word.substring(0, prefix) + "~" + HashCalculator.calculateHash(word);
+		} catch (Exception e) {
+			// Every Java platform has MD5
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,18 @@
+package dto;
+
+/**
+ * Handed to a long running search so the caller can stop it. The search checks
+ * the token between batches and returns early once it is cancelled.
+ */
+public class CancellationToken {
+
+	private volatile boolean cancelled;
+
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+}
@@ -0,0 +1,29 @@
+package dto;
+
+public class ClusterAssignment {
+
+	int fileId;
+	int clusterId;
+	double similarity;
+
+	public ClusterAssignment(int fileId, int clusterId, double similarity) {
+		this.fileId = fileId;
+		this.clusterId = clusterId;
+		this.similarity = similarity;
+	}
+
+	public int getFileId() {
+		return fileId;
+	}
+
+	public int getClusterId() {
+		return clusterId;
+	}
+
+	/**
+	 * Cosine similarity of the file with the centre of its cluster.
+	 */
+	public double getSimilarity() {
+		return similarity;
+	}
+}
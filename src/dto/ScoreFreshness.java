@@ -0,0 +1,59 @@
+package dto;
+
+public class ScoreFreshness {
+
+	int fileId;
+	String fileName;
+	double score;
+	int corpusFiles;
+	long changesSince;
+	boolean stale;
+
+	public ScoreFreshness(int fileId, String fileName, double score, int corpusFiles, long changesSince,
+			boolean stale) {
+		this.fileId = fileId;
+		this.fileName = fileName;
+		this.score = score;
+		this.corpusFiles = corpusFiles;
+		this.changesSince = changesSince;
+		this.stale = stale;
+	}
+
+	public int getFileId() {
+		return fileId;
+	}
+
+	public String getFileName() {
+		return fileName;
+	}
+
+	public double getScore() {
+		return score;
+	}
+
+	/**
+	 * Files in the corpus the score was computed against.
+	 */
+	public int getCorpusFiles() {
+		return corpusFiles;
+	}
+
+	/**
+	 * Imports, updates and deletes since the score was computed, or -1 when it
+	 * was stored before changes were counted.
+	 */
+	public long getChangesSince() {
+		return changesSince;
+	}
+
+	/**
+	 * Changes since the score as a share of the files it was scored against.
+	 */
+	public double getDrift() {
+		return changesSince < 0 ? Double.POSITIVE_INFINITY : (double) changesSince / Math.max(corpusFiles, 1);
+	}
+
+	public boolean isStale() {
+		return stale;
+	}
+}
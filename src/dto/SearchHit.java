@@ -0,0 +1,48 @@
+package dto;
+
+public class SearchHit {
+
+	int fileId;
+	String fileName;
+	int pageId;
+	int pageNumber;
+	int[] startOffsets;
+	int[] endOffsets;
+
+	public SearchHit(int fileId, String fileName, int pageId, int pageNumber, int[] startOffsets,
+			int[] endOffsets) {
+		this.fileId = fileId;
+		this.fileName = fileName;
+		this.pageId = pageId;
+		this.pageNumber = pageNumber;
+		this.startOffsets = startOffsets;
+		this.endOffsets = endOffsets;
+	}
+
+	public int getFileId() {
+		return fileId;
+	}
+
+	public String getFileName() {
+		return fileName;
+	}
+
+	public int getPageId() {
+		return pageId;
+	}
+
+	public int getPageNumber() {
+		return pageNumber;
+	}
+
+	/**
+	 * Character offsets of the matches within the page content, in page order.
+	 */
+	public int[] getStartOffsets() {
+		return startOffsets;
+	}
+
+	public int[] getEndOffsets() {
+		return endOffsets;
+	}
+}
@@ -0,0 +1,44 @@
+package dto;
+
+import java.util.List;
+
+public class SearchResult {
+
+	int fileId;
+	String fileName;
+	double score;
+	List<Integer> pageNumbers;
+	List<Snippet> snippets;
+
+	public SearchResult(int fileId, String fileName, double score, List<Integer> pageNumbers,
+			List<Snippet> snippets) {
+		this.fileId = fileId;
+		this.fileName = fileName;
+		this.score = score;
+		this.pageNumbers = pageNumbers;
+		this.snippets = snippets;
+	}
+
+	public int getFileId() {
+		return fileId;
+	}
+
+	public String getFileName() {
+		return fileName;
+	}
+
+	public double getScore() {
+		return score;
+	}
+
+	/**
+	 * Numbers of the pages that contain a query term, in page order.
+	 */
+	public List<Integer> getPageNumbers() {
+		return pageNumbers;
+	}
+
+	public List<Snippet> getSnippets() {
+		return snippets;
+	}
+}
@@ -0,0 +1,35 @@
+package dto;
+
+public class Snippet {
+
+	int pageNumber;
+	String text;
+	int[] highlightStarts;
+	int[] highlightEnds;
+
+	public Snippet(int pageNumber, String text, int[] highlightStarts, int[] highlightEnds) {
+		this.pageNumber = pageNumber;
+		this.text = text;
+		this.highlightStarts = highlightStarts;
+		this.highlightEnds = highlightEnds;
+	}
+
+	public int getPageNumber() {
+		return pageNumber;
+	}
+
+	public String getText() {
+		return text;
+	}
+
+	/**
+	 * Character offsets of the matched terms within {@link #getText()}.
+	 */
+	public int[] getHighlightStarts() {
+		return highlightStarts;
+	}
+
+	public int[] getHighlightEnds() {
+		return highlightEnds;
+	}
+}
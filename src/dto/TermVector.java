@@ -0,0 +1,29 @@
+package dto;
+
+public class TermVector {
+
+	int fileId;
+	int[] termIds;
+	float[] weights;
+
+	public TermVector(int fileId, int[] termIds, float[] weights) {
+		this.fileId = fileId;
+		this.termIds = termIds;
+		this.weights = weights;
+	}
+
+	public int getFileId() {
+		return fileId;
+	}
+
+	public int[] getTermIds() {
+		return termIds;
+	}
+
+	/**
+	 * TF-IDF weight of each term, scaled to a unit-length vector.
+	 */
+	public float[] getWeights() {
+		return weights;
+	}
+}
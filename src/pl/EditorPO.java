@@ -12,10 +12,10 @@ import java.awt.event.ActionEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.rmi.RemoteException;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
 import java.util.function.Supplier;
 
 import javax.swing.BorderFactory;
@@ -31,6 +31,7 @@ import javax.swing.JTextArea;
 import javax.swing.JTextField;
 import javax.swing.SwingConstants;
 import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 import javax.swing.UIManager;
 import javax.swing.table.DefaultTableModel;
 
@@ -40,11 +41,13 @@ import org.apache.logging.log4j.Logger;
 import bll.IEditorBO;
 import dto.Documents;
 import dto.Pages;
+import dto.ScoreFreshness;
 
 public class EditorPO extends JFrame {
 
 	private static final long serialVersionUID = 1L;
 	private static final Logger logger = LogManager.getLogger(EditorPO.class);
+	private static final int SEARCH_RESULT_LIMIT = 50;
 	private IEditorBO businessObj;
 	private DefaultTableModel tableModel;
 	private JPanel mainPanel, editPanel, transliterationPanel;
@@ -64,13 +67,12 @@ public class EditorPO extends JFrame {
 	private int selectedRow = 0;
 	// private int unselectedRows = 0;
 	// private int totalRows = 0;
-	private Thread importThread;
 	private Thread autoSaveThread;
 	private boolean autoSaveRunning = false;
-	private Thread tfidfThread;
 	private int selectedDocFileId;
-	private Documents selectedDoc;
-	private double tfidfScore = 0;
+	private String selectedDocName;
+	// Read and written on the event dispatch thread only
+	private ScoreFreshness tfidfScore;
 	private Thread pklThread;
 	private Map<String, Double> pklResults = new HashMap<>();
 	private Thread pmiThread;
@@ -204,69 +206,42 @@ public class EditorPO extends JFrame {
 						openEditPanel(fileId);
 					}
 				} else if (event.getClickCount() == 1) {
-					tfidfThread = new Thread(new Runnable() {
+					selectedRow = fileTable.getSelectedRow();
+					if (selectedRow == -1) {
+						return;
+					}
+					selectedDocFileId = (int) tableModel.getValueAt(selectedRow, 0);
+					selectedDocName = (String) tableModel.getValueAt(selectedRow, 1);
+					int fileId = selectedDocFileId;
+					tfidfScore = null;
+					tfidfButton.setEnabled(false);
+					new SwingWorker<ScoreFreshness, Void>() {
+						@Override
+						protected ScoreFreshness doInBackground() {
+							// The stored score, one keyed row
+							return businessObj.getTfIdf(fileId);
+						}
 
 						@Override
-						public void run() {
-							selectedDocFileId = (int) tableModel.getValueAt(selectedRow, 0);
-							selectedDoc = null;
-							selectedDoc = businessObj.getFile(selectedDocFileId);
-							pages = selectedDoc.getPages();
-							String selectedDocContent = null;
-							for (int i = 0; i < pages.size(); i++) {
-								selectedDocContent = pages.get(i).getPageContent();
+						protected void done() {
+							if (fileId != selectedDocFileId) {
+								return;
 							}
-
-							List<String> unselectedDocsContent = new ArrayList<String>();
-							for (int row = 0; row < fileTable.getRowCount(); row++) {
-								int unselectedDocFileId = (int) tableModel.getValueAt(row, 0);
-								if (unselectedDocFileId != selectedDocFileId) {
-									Documents unselectedDoc = null;
-									unselectedDoc = businessObj.getFile(unselectedDocFileId);
-									pages = unselectedDoc.getPages();
-									String unselectedDocContent = null;
-									for (int i = 0; i < pages.size(); i++) {
-										unselectedDocContent = pages.get(i).getPageContent();
-									}
-									unselectedDocsContent.add(unselectedDocContent);
-								}
+							try {
+								tfidfScore = get();
+								tfidfButton.setEnabled(tfidfScore != null);
+							} catch (InterruptedException | ExecutionException e) {
+								e.printStackTrace();
+								logger.error(e.getMessage());
 							}
-							tfidfScore = businessObj.performTFIDF(unselectedDocsContent, selectedDocContent);
 						}
-
-					});
-					tfidfThread.start();
-					tfidfButton.setEnabled(true);
-					// totalRows = fileTable.getRowCount();
-					selectedRow = fileTable.getSelectedRow();
-					// unselectedRows = totalRows - selectedRow;
+					}.execute();
 				}
 			}
 		});
 
 		importFileButton.addActionListener(e -> {
-			importThread = new Thread(new Runnable() {
-
-				@Override
-				public void run() {
-					FileImporter fileImporter = new FileImporter(businessObj);
-					importProgressLabel.setText("Importing files, please wait...");
-					importProgressLabel.setVisible(true);
-					fileImporter.importFiles(e);
-					refreshFileList();
-					importProgressLabel.setText("Import complete!");
-					try {
-						Thread.sleep(2000);
-					} catch (InterruptedException e1) {
-						// TODO Auto-generated catch block
-						e1.printStackTrace();
-						logger.error(e1.getMessage());
-					}
-					importProgressLabel.setVisible(false);
-				}
-
-			});
-			importThread.start();
+			new FileImporter(businessObj).importFiles(importProgressLabel, this::refreshFileList);
 		});
 		createFileButton.addActionListener(e -> {
 			createFile(e);
@@ -280,13 +255,7 @@ public class EditorPO extends JFrame {
 		searchbutton.addActionListener(e -> {
 			String keyword = searchfield.getText();
 			try {
-				List<String> resultFiles = businessObj.searchKeyword(keyword);
-				if (resultFiles.isEmpty()) {
-					JOptionPane.showMessageDialog(this, "No files found while searching.");
-					logger.info("No files found while searching.");
-				} else {
-					new SearchFrame(resultFiles);
-				}
+				new SearchFrame(businessObj, keyword, SEARCH_RESULT_LIMIT);
 			} catch (IllegalArgumentException exception) {
 				JOptionPane.showMessageDialog(this, exception.getMessage());
 				logger.error(exception.getMessage());
@@ -294,8 +263,10 @@ public class EditorPO extends JFrame {
 		});
 
 		tfidfButton.addActionListener(e -> {
-			JOptionPane.showMessageDialog(null, "TF-IDF Score for '" + selectedDoc.getName() + "' is: " + tfidfScore);
-			logger.info("TF-IDF Score for '" + selectedDoc.getName() + "' is: " + tfidfScore);
+			String message = "TF-IDF Score for '" + selectedDocName + "' is: " + tfidfScore.getScore()
+					+ (tfidfScore.isStale() ? " (out of date, awaiting rescore)" : "");
+			JOptionPane.showMessageDialog(null, message);
+			logger.info(message);
 		});
 	}
 
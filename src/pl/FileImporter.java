@@ -1,10 +1,14 @@
 package pl;
 
-import java.awt.event.ActionEvent;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 import javax.swing.JFileChooser;
+import javax.swing.JLabel;
 import javax.swing.JOptionPane;
+import javax.swing.SwingWorker;
 import javax.swing.UIManager;
 
 import org.apache.logging.log4j.LogManager;
@@ -16,9 +20,22 @@ public class FileImporter {
 	private static final Logger logger = LogManager.getLogger(EditorPO.class);
     private IEditorBO businessObj;
 
+    private static class ImportResult {
+        final int imported;
+        final List<String> failed;
+        // Files rescored, -1 when rescoring failed or 0 when not needed
+        final int rescored;
+
+        ImportResult(int imported, List<String> failed, int rescored) {
+            this.imported = imported;
+            this.failed = failed;
+            this.rescored = rescored;
+        }
+    }
+
     public FileImporter(IEditorBO businessObj) {
         this.businessObj = businessObj;
-        
+
         try {
             UIManager.setLookAndFeel("javax.swing.plaf.nimbus.NimbusLookAndFeel");
         } catch (Exception e) {
@@ -26,22 +43,80 @@ public class FileImporter {
         }
     }
 
-    public void importFiles(ActionEvent e) {
+    /**
+     * Asks for the files to import on the event dispatch thread, then imports
+     * and rescores them on a background worker, showing progress in
+     * {@code status}. {@code onDone} runs on the event dispatch thread once the
+     * worker has finished, before the one summary dialog.
+     */
+    public void importFiles(JLabel status, Runnable onDone) {
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setMultiSelectionEnabled(true);
         int result = fileChooser.showOpenDialog(null);
+        if (result != JFileChooser.APPROVE_OPTION || fileChooser.getSelectedFiles().length == 0) {
+            return;
+        }
+        File[] selectedFiles = fileChooser.getSelectedFiles();
 
-        if (result == JFileChooser.APPROVE_OPTION) {
-            File[] selectedFiles = fileChooser.getSelectedFiles();
-            if (selectedFiles.length > 0) {
-                for (File selectedFile : selectedFiles) {
-                    String fileName = selectedFile.getName();
-                    boolean isImport = businessObj.importTextFiles(selectedFile, fileName);
-                    JOptionPane.showMessageDialog(null,
-                            isImport ? fileName + " uploaded successfully!" : fileName + " failed to upload!");
+        status.setText("Importing files, please wait...");
+        status.setVisible(true);
+        new SwingWorker<ImportResult, String>() {
+            @Override
+            protected ImportResult doInBackground() {
+                int imported = 0;
+                List<String> failed = new ArrayList<>();
+                for (int i = 0; i < selectedFiles.length; i++) {
+                    String fileName = selectedFiles[i].getName();
+                    publish("Importing " + (i + 1) + " of " + selectedFiles.length + ": " + fileName);
+                    boolean isImport = businessObj.importTextFiles(selectedFiles[i], fileName);
                     logger.info(isImport ? fileName + " uploaded successfully!" : fileName + " failed to upload!");
+                    if (isImport) {
+                        imported++;
+                    } else {
+                        failed.add(fileName);
+                    }
                 }
+                // Each file was scored against the ones before it; score them all
+                // against the whole batch
+                int rescored = 0;
+                if (imported > 1) {
+                    publish("Rescoring TF-IDF of the imported files...");
+                    rescored = businessObj.rescoreTfIdf();
+                }
+                return new ImportResult(imported, failed, rescored);
             }
-        }
+
+            @Override
+            protected void process(List<String> messages) {
+                status.setText(messages.get(messages.size() - 1));
+            }
+
+            @Override
+            protected void done() {
+                onDone.run();
+                ImportResult importResult;
+                try {
+                    importResult = get();
+                } catch (InterruptedException | ExecutionException exception) {
+                    exception.printStackTrace();
+                    logger.error(exception.getMessage());
+                    status.setText("Import failed!");
+                    JOptionPane.showMessageDialog(null, "Import failed: " + exception.getMessage());
+                    return;
+                }
+                StringBuilder summary = new StringBuilder();
+                summary.append(importResult.imported).append(" of ").append(selectedFiles.length)
+                        .append(" files uploaded successfully!");
+                if (!importResult.failed.isEmpty()) {
+                    summary.append("\nFailed to upload: ").append(String.join(", ", importResult.failed));
+                }
+                if (importResult.rescored < 0) {
+                    summary.append("\nTF-IDF scores could not be updated, see the log.");
+                }
+                status.setText("Import complete!");
+                JOptionPane.showMessageDialog(null, summary.toString());
+                status.setVisible(false);
+            }
+        }.execute();
     }
 }
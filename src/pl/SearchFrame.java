@@ -1,12 +1,25 @@
 package pl;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.table.AbstractTableModel;
 import javax.swing.table.TableCellRenderer;
 import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.ArrayList;
 import java.util.List;
 
-class ButtonColumn extends JButton {
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import bll.IEditorBO;
+import dto.CancellationToken;
+import dto.SearchResult;
+import dto.Snippet;
+
+class ButtonColumn extends JButton implements TableCellRenderer {
     /**
 	 * 
 	 */
@@ -15,75 +28,172 @@ class ButtonColumn extends JButton {
 	public ButtonColumn(String text) {
         super(text);
     }
+
+    @Override
+    public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus,
+            int row, int column) {
+        return this;
+    }
 }
 
-class SearchResultsTableModel extends DefaultTableModel {
+/**
+ * Rows are kept as the search results themselves; cell text is built only when
+ * a row is painted, so appending a batch costs nothing for rows off screen.
+ */
+class SearchResultsTableModel extends AbstractTableModel {
 	private static final long serialVersionUID = 1L;
+	private static final String[] COLUMNS = {"File Name", "Score", "Pages", "Snippet", "Actions"};
+
+    private final List<SearchResult> results = new ArrayList<>();
+
+    public void addResults(List<SearchResult> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        int first = results.size();
+        results.addAll(batch);
+        fireTableRowsInserted(first, results.size() - 1);
+    }
+
+    @Override
+    public int getRowCount() {
+        return results.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
 
-	public SearchResultsTableModel() {
-        super(new Object[]{"File Name", "Prefix", "Keyword", "Actions"}, 0);
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
     }
 
     @Override
-    public boolean isCellEditable(int row, int column) {
-        return column == 3;
+    public Object getValueAt(int row, int column) {
+        SearchResult result = results.get(row);
+        switch (column) {
+        case 0:
+            return result.getFileName();
+        case 1:
+            return String.format("%.2f", result.getScore());
+        case 2:
+            return result.getPageNumbers().toString();
+        case 3:
+            return result.getSnippets().isEmpty() ? "" : toHtml(result.getSnippets().get(0));
+        default:
+            return "Replace";
+        }
+    }
+
+    private static String toHtml(Snippet snippet) {
+        String text = snippet.getText();
+        StringBuilder html = new StringBuilder("<html>p.").append(snippet.getPageNumber()).append(": ");
+        int last = 0;
+        for (int i = 0; i < snippet.getHighlightStarts().length; i++) {
+            int start = Math.max(last, snippet.getHighlightStarts()[i]);
+            int end = Math.max(start, snippet.getHighlightEnds()[i]);
+            html.append(escape(text.substring(last, start))).append("<b>").append(escape(text.substring(start, end)))
+                    .append("</b>");
+            last = end;
+        }
+        return html.append(escape(text.substring(last))).append("</html>").toString();
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\n", " ");
     }
 }
 
 public class SearchFrame extends JFrame {
 	private static final long serialVersionUID = 1L;
+	private static final Logger LOGGER = LogManager.getLogger(EditorPO.class);
+	private static final int ACTIONS_COLUMN = 4;
+
 	private JTable resultsTable;
     private SearchResultsTableModel tableModel;
+    private final JLabel statusLabel = new JLabel("Searching...");
+    private final CancellationToken token = new CancellationToken();
 
-    public SearchFrame(List<String> searchResults) {
+    /**
+     * Opens the frame at once and fills it from a background search, a batch at
+     * a time. Closing the frame or pressing Cancel stops the search.
+     */
+    public SearchFrame(IEditorBO businessObj, String keyword, int limit) {
         setTitle("Search Results");
         setExtendedState(JFrame.MAXIMIZED_BOTH);
-		setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+		setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
 		setLocationRelativeTo(null);
-		setLayout(new CardLayout());
+		setLayout(new BorderLayout());
 
         tableModel = new SearchResultsTableModel();
-        resultsTable = new JTable(tableModel) {
-			private static final long serialVersionUID = 1L;
-
-			@Override
-            public Component prepareRenderer(TableCellRenderer renderer, int row, int column) {
-                Component c = super.prepareRenderer(renderer, row, column);
-                if (column == 3) {
-                    JButton button = new ButtonColumn("Replace");
-                    button.setPreferredSize(new Dimension(80, 30));
-                    button.addActionListener(e -> {
-                        System.out.println("Replace button clicked for row " + row);
-                    });
-                    return button;
+        resultsTable = new JTable(tableModel);
+        resultsTable.getColumnModel().getColumn(ACTIONS_COLUMN).setCellRenderer(new ButtonColumn("Replace"));
+        resultsTable.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int row = resultsTable.rowAtPoint(e.getPoint());
+                if (row >= 0 && resultsTable.columnAtPoint(e.getPoint()) == ACTIONS_COLUMN) {
+                    System.out.println("Replace button clicked for row " + row);
                 }
-                return c;
             }
-        };
+        });
         JScrollPane scrollPane = new JScrollPane(resultsTable);
 
-        for (String result : searchResults) {
-            String[] parts = result.split(" - ");
-            if (parts.length == 2) {
-                String fileName = parts[0];
-                String prefixAndKeyword = parts[1];
-                String[] prefixAndKeywordParts = prefixAndKeyword.split(" ");
-                String prefix = prefixAndKeywordParts[0];
-                String keyword = prefixAndKeywordParts[1];
-                tableModel.addRow(new Object[]{fileName, prefix, keyword, "Replace"});
+        SwingWorker<Void, List<SearchResult>> worker = new SwingWorker<Void, List<SearchResult>>() {
+            @Override
+            protected Void doInBackground() {
+                businessObj.searchRanked(keyword, limit, token, this::publish);
+                return null;
+            }
+
+            @Override
+            protected void process(List<List<SearchResult>> batches) {
+                for (List<SearchResult> batch : batches) {
+                    tableModel.addResults(batch);
+                }
+                statusLabel.setText("Searching... " + tableModel.getRowCount() + " files so far");
             }
-        }
+
+            @Override
+            protected void done() {
+                if (token.isCancelled()) {
+                    statusLabel.setText("Cancelled after " + tableModel.getRowCount() + " files.");
+                } else if (tableModel.getRowCount() == 0) {
+                    statusLabel.setText("No files found.");
+                    LOGGER.info("No files found while searching.");
+                } else {
+                    statusLabel.setText(tableModel.getRowCount() + " files found.");
+                }
+            }
+        };
+
+        JButton cancelButton = new JButton("Cancel");
+        cancelButton.addActionListener(e -> {
+            token.cancel();
+        });
 
         JButton backButton = new JButton("Back to Menu");
         backButton.addActionListener(e -> {
             dispose();
         });
 
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                token.cancel();
+            }
+        });
+
         JPanel buttonPanel = new JPanel();
+        buttonPanel.add(statusLabel);
+        buttonPanel.add(cancelButton);
         buttonPanel.add(backButton);
         add(scrollPane, BorderLayout.CENTER);
         add(buttonPanel, BorderLayout.SOUTH);
 
         setVisible(true);
+        worker.execute();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,49 @@
+package dal;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Similarity kernel on the incubating Vector API, using the widest vectors
+ * the CPU has. Needs JDK 16 or later; see the README for building it and
+ * selecting it with similarity.kernel.
+ */
+public class VectorSimilarityKernel extends SimilarityKernel {
+	private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+
+	@Override
+	public float dot(float[] a, float[] b, int length) {
+		FloatVector sum = FloatVector.zero(FLOATS);
+		int i = 0;
+		for (int end = FLOATS.loopBound(length); i < end; i += FLOATS.length()) {
+			sum = FloatVector.fromArray(FLOATS, a, i).fma(FloatVector.fromArray(FLOATS, b, i), sum);
+		}
+		float total = sum.reduceLanes(VectorOperators.ADD);
+		for (; i < length; i++) {
+			total += a[i] * b[i];
+		}
+		return total;
+	}
+
+	@Override
+	public float gatherDot(int[] indices, float[] values, float[] dense) {
+		FloatVector sum = FloatVector.zero(FLOATS);
+		int i = 0;
+		for (int end = FLOATS.loopBound(indices.length); i < end; i += FLOATS.length()) {
+			FloatVector gathered = FloatVector.fromArray(FLOATS, dense, 0, indices, i);
+			sum = FloatVector.fromArray(FLOATS, values, i).fma(gathered, sum);
+		}
+		float total = sum.reduceLanes(VectorOperators.ADD);
+		for (; i < indices.length; i++) {
+			total += values[i] * dense[indices[i]];
+		}
+		return total;
+	}
+
+	// Converting the counts lane by lane costs more than the unrolled loop
+	@Override
+	public double gatherDot(int[] indices, int[] counts, double[] dense) {
+		return UNROLLED.gatherDot(indices, counts, dense);
+	}
+}